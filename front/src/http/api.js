@@ -8,7 +8,7 @@ import axiosInstance from './index'
 // ==================== 项目相关API ====================
 export const projectApi = {
   // 获取所有项目
-  getProjects: () => axiosInstance.get('/api/projects'),
+  getProjects: (params) => axiosInstance.get('/api/projects', { params }),
 
   // 获取单个项目
   getProject: (id) => axiosInstance.get(`/api/projects/${id}`),
@@ -36,7 +36,7 @@ export default {
       try {
         commit('SET_LOADING', true);
         const response = await projectApi.getProjects();
-        commit('SET_PROJECTS', response.data.data || []);
+        commit('SET_PROJECTS', response.data.data?.items || []);
       } catch (error) {
         console.error('获取项目列表失败:', error);
         throw error;
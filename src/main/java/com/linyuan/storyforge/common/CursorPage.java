@@ -0,0 +1,62 @@
+package com.linyuan.storyforge.common;
+
+import com.linyuan.storyforge.entity.BaseEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * CursorPage - 键集分页结果
+ *
+ * @param <T> 元素类型
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 本页条数
+     */
+    private int size;
+
+    /**
+     * 由多查询一行的结果构建分页
+     *
+     * @param rows     查询结果（最多 pageSize + 1 行，多出的一行表示还有下一页）
+     * @param pageSize 每页条数
+     * @param mapper   实体到 DTO 的转换
+     */
+    public static <E extends BaseEntity, T> CursorPage<T> of(List<E> rows, int pageSize, Function<E, T> mapper) {
+        boolean hasMore = rows.size() > pageSize;
+        List<E> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            E last = page.get(page.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        List<T> items = page.stream().map(mapper).collect(Collectors.toList());
+        return new CursorPage<>(items, nextCursor, hasMore, items.size());
+    }
+}
@@ -0,0 +1,113 @@
+package com.linyuan.storyforge.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * DeltaCompression - 文本增量压缩工具
+ * 使用 Deflate 预置字典实现增量编码：以基准版本正文作为字典压缩目标版本，
+ * 相似度越高，压缩结果越小；不提供基准时退化为普通压缩（完整快照）
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public final class DeltaCompression {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private DeltaCompression() {
+    }
+
+    /**
+     * 压缩文本
+     *
+     * @param content 待压缩文本
+     * @param base    基准文本（null 表示完整压缩）
+     * @return 压缩后的字节
+     */
+    public static byte[] compress(String content, String base) {
+        byte[] input = toBytes(content);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            if (base != null && !base.isEmpty()) {
+                // 字典超过 32KB 窗口时 zlib 只使用末尾部分
+                deflater.setDictionary(toBytes(base));
+            }
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压文本
+     *
+     * @param payload 压缩字节
+     * @param base    压缩时使用的基准文本（完整快照传 null）
+     * @return 原始文本
+     */
+    public static String decompress(byte[] payload, String base) {
+        if (payload == null) {
+            return null;
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        if (base == null) {
+                            throw new IllegalStateException("增量数据缺少基准版本");
+                        }
+                        inflater.setDictionary(toBytes(base));
+                        continue;
+                    }
+                    if (inflater.needsInput()) {
+                        throw new IllegalStateException("压缩数据不完整");
+                    }
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩数据损坏: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 计算文本校验和（CRC32）
+     *
+     * @param content 文本
+     * @return 校验和
+     */
+    public static long checksum(String content) {
+        CRC32 crc = new CRC32();
+        crc.update(toBytes(content));
+        return crc.getValue();
+    }
+
+    private static byte[] toBytes(String text) {
+        return text != null ? text.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+}
@@ -0,0 +1,37 @@
+package com.linyuan.storyforge.common;
+
+import com.linyuan.storyforge.entity.BaseEntity;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.UUID;
+
+/**
+ * EntityIds - 关联实体主键读取工具
+ * DTO 转换只需要 LAZY 关联的主键。对未初始化的代理直接从 LazyInitializer 读取外键值，
+ * 不依赖 getId() 在代理上的行为（开启 JPA proxy compliance 时 getId() 会触发加载），
+ * 保证列表转换不会逐行查询关联表
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public final class EntityIds {
+
+    private EntityIds() {
+    }
+
+    /**
+     * 读取关联实体主键，不初始化代理
+     *
+     * @param entity 关联实体（可为 null）
+     * @return 主键，entity 为 null 时返回 null
+     */
+    public static UUID idOf(BaseEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+        if (entity instanceof HibernateProxy proxy) {
+            return (UUID) proxy.getHibernateLazyInitializer().getIdentifier();
+        }
+        return entity.getId();
+    }
+}
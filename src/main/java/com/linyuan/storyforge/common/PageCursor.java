@@ -0,0 +1,81 @@
+package com.linyuan.storyforge.common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * PageCursor - 键集分页游标
+ * 列表按 (created_at, id) 排序，游标记录上一页最后一行的这两个值，
+ * 编码为 URL 安全的 Base64 字符串返回给客户端
+ *
+ * @param createdAt 上一页最后一行的创建时间
+ * @param id        上一页最后一行的ID
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public record PageCursor(LocalDateTime createdAt, UUID id) {
+
+    /**
+     * 默认每页条数
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * 每页条数上限，超过时按上限返回
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 编码为游标字符串
+     */
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串
+     *
+     * @param token 游标（为空表示第一页）
+     * @return 游标，第一页返回 null
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid page cursor: " + token);
+            }
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + token, e);
+        }
+    }
+
+    /**
+     * 规范化每页条数
+     *
+     * @param requested 请求的条数（为空时取默认值）
+     * @return 不超过 MAX_PAGE_SIZE 的条数
+     * @throws IllegalArgumentException 条数小于 1
+     */
+    public static int pageSize(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (requested < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,90 @@
+package com.linyuan.storyforge.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight - 相同请求合并执行
+ * 同一个 key 同时只执行一次：执行期间到达的相同请求等待并共享这次的结果（或异常），
+ * 执行结束即移除，不缓存结果，之后的请求重新执行
+ *
+ * @param <K> 请求指纹，需要实现 equals/hashCode
+ * @param <V> 结果，会被多个调用方共享，可变对象需由调用方自行复制
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * 执行请求；相同请求正在执行时等待它的结果
+     *
+     * @param key  请求指纹
+     * @param call 实际执行
+     * @return 结果
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        executions.incrementAndGet();
+        try {
+            V value = call.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.incrementAndGet();
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 获取合并统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long executed = executions.get();
+        long shared = coalesced.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executions", executed);
+        stats.put("coalesced", shared);
+        stats.put("failures", failures.get());
+        stats.put("inFlight", inFlight.size());
+        stats.put("coalescedRate", executed + shared > 0 ? (double) shared / (executed + shared) : 0.0);
+        return stats;
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待相同请求的结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
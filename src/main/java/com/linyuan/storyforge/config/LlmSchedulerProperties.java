@@ -0,0 +1,95 @@
+package com.linyuan.storyforge.config;
+
+import com.linyuan.storyforge.enums.LlmPriority;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型调用调度配置
+ * 所有模型调用共享固定数量的并发名额，按优先级加权分配，同一优先级内按项目公平排队
+ *
+ * 配置来源: application.yml 中的 storyforge.llm.scheduler 节点
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "storyforge.llm.scheduler")
+public class LlmSchedulerProperties {
+
+    /**
+     * 同时进行的模型调用上限
+     * 默认: 16
+     */
+    private int maxConcurrency = 16;
+
+    /**
+     * 交互优先级
+     * 默认: 权重 8，可占满全部名额，最多排队 30 秒
+     */
+    private PriorityClass interactive = new PriorityClass(8, 1.0, 30000);
+
+    /**
+     * 批量优先级
+     * 默认: 权重 2，最多占一半名额，最多排队 5 分钟
+     */
+    private PriorityClass batch = new PriorityClass(2, 0.5, 300000);
+
+    /**
+     * 后台优先级
+     * 默认: 权重 1，最多占四分之一名额，最多排队 5 分钟
+     */
+    private PriorityClass background = new PriorityClass(1, 0.25, 300000);
+
+    /**
+     * 来源（调用点）到优先级的映射，用量范围没有指定优先级时使用
+     * key: 用量来源 (如 "memory-extraction")
+     * value: 优先级 (interactive / batch / background)
+     */
+    private Map<String, LlmPriority> sources = new HashMap<>();
+
+    /**
+     * 既没有指定优先级、来源也没有映射的调用使用的优先级
+     * 默认: interactive
+     */
+    private LlmPriority defaultPriority = LlmPriority.INTERACTIVE;
+
+    public PriorityClass classFor(LlmPriority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> interactive;
+            case BATCH -> batch;
+            case BACKGROUND -> background;
+        };
+    }
+
+    /**
+     * 优先级配置
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriorityClass {
+
+        /**
+         * 权重，多个优先级同时排队时按权重比例分配空出的名额
+         */
+        private int weight = 1;
+
+        /**
+         * 该优先级最多占用的名额比例 (0-1]，至少 1 个
+         */
+        private double maxShare = 1.0;
+
+        /**
+         * 最长排队时间 (毫秒)，超过后放弃该请求
+         */
+        private long maxWaitMs = 30000;
+    }
+}
@@ -0,0 +1,75 @@
+package com.linyuan.storyforge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 记忆整合配置
+ * 把角色长期不用的记忆按关键词聚类，每类概括为一条语义记忆，原记忆移入归档表
+ *
+ * 配置来源: application.yml 中的 storyforge.memory.consolidation 节点
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "storyforge.memory.consolidation")
+public class MemoryConsolidationProperties {
+
+    /**
+     * 是否启用定时整合
+     * 默认: true
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个角色在线记忆数的目标上限，超出部分按可访问性从低到高参与整合
+     * （核心记忆和尚未陈旧的概括记忆不参与，实际在线数可超出这部分）
+     * 默认: 300
+     */
+    private int workingSetSize = 300;
+
+    /**
+     * 可访问性不高于该值的记忆视为陈旧（与检索阈值一致，陈旧记忆本就不会被检索到）
+     * 默认: 0.3
+     */
+    private float staleThreshold = 0.3f;
+
+    /**
+     * 陈旧记忆至少达到该数量才整合该角色，聚类也至少包含这么多条记忆
+     * 默认: 3
+     */
+    private int minClusterSize = 3;
+
+    /**
+     * 单个聚类最多包含的记忆数
+     * 默认: 12
+     */
+    private int maxClusterSize = 12;
+
+    /**
+     * 记忆的关键词中至少有该比例出现在聚类里才归入该聚类
+     * 默认: 0.5
+     */
+    private double keywordOverlap = 0.5;
+
+    /**
+     * 单次执行最多整合的角色数（陈旧记忆多的角色优先）
+     * 默认: 50
+     */
+    private int maxCharactersPerRun = 50;
+
+    /**
+     * 单个角色单次最多参与整合的记忆数
+     * 默认: 500
+     */
+    private int maxMemoriesPerCharacter = 500;
+
+    /**
+     * 概括一个聚类时模型的最大输出 token 数
+     * 默认: 300
+     */
+    private int summaryMaxTokens = 300;
+}
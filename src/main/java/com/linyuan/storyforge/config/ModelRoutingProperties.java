@@ -0,0 +1,108 @@
+package com.linyuan.storyforge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型路由配置
+ * 调用点（用量范围的来源或模板名称）映射到模型档位，每个档位是一条按优先级排列的降级链
+ *
+ * 配置来源: application.yml 中的 storyforge.llm.routing 节点
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "storyforge.llm.routing")
+public class ModelRoutingProperties {
+
+    /**
+     * 模型档位
+     * key: 档位名称 (如 "fast")
+     * value: 档位配置
+     */
+    private Map<String, Tier> tiers = new HashMap<>();
+
+    /**
+     * 调用点路由
+     * key: 模板名称或用量来源 (如 "memory-extraction")
+     * value: 档位名称
+     */
+    private Map<String, String> routes = new HashMap<>();
+
+    /**
+     * 未配置路由的调用使用的档位
+     * 档位不存在时使用 ai.openai.model
+     */
+    private String defaultTier = "standard";
+
+    /**
+     * 自适应路由使用的耗时分位数
+     * 默认: 0.9
+     */
+    private double latencyPercentile = 0.9;
+
+    /**
+     * 每个 档位/模型 保留的最近耗时样本数
+     * 默认: 200
+     */
+    private int latencyWindow = 200;
+
+    /**
+     * 样本数达到该值后才按耗时调整顺序
+     * 默认: 20
+     */
+    private int minSamples = 20;
+
+    /**
+     * 连续失败多少次后暂时跳过该模型
+     * 默认: 3
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 暂时跳过的时长 (毫秒)
+     * 默认: 30000
+     */
+    private long cooldownMs = 30000;
+
+    /**
+     * 被降到链尾的模型仍按该比例优先尝试，用于探测是否恢复
+     * 默认: 0.05
+     */
+    private double probeRatio = 0.05;
+
+    /**
+     * 模型档位配置
+     */
+    @Data
+    public static class Tier {
+
+        /**
+         * 降级链：按优先级排列的模型，前一个出错或超时后依次尝试下一个
+         */
+        private List<String> models = new ArrayList<>();
+
+        /**
+         * 链上非最后一个模型的读取超时 (毫秒)，超时即切换到下一个模型
+         * 0 表示使用默认超时
+         * 默认: 0
+         */
+        private long timeoutMs = 0;
+
+        /**
+         * 慢模型阈值 (毫秒)
+         * 耗时分位数超过该值的模型被降到链尾
+         * 0 表示不按耗时调整
+         * 默认: 0
+         */
+        private long slowThresholdMs = 0;
+    }
+}
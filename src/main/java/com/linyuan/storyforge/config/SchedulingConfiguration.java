@@ -0,0 +1,17 @@
+package com.linyuan.storyforge.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ * 启用 @Scheduled 维护任务（生成历史分区维护与归档等）
+ * 多实例部署时各任务通过 PostgreSQL advisory lock 保证同一时刻只有一个实例执行
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
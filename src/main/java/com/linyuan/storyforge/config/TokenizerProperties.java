@@ -0,0 +1,36 @@
+package com.linyuan.storyforge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 提示词 token 计数配置
+ * 配置了 tokenizer.json 的模型用模型自己的分词器计数，其余模型按字符估算并按模型分别校准
+ *
+ * 配置来源: application.yml 中的 storyforge.llm.tokenizer 节点
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "storyforge.llm.tokenizer")
+public class TokenizerProperties {
+
+    /**
+     * 组装提示词时（尚未确定调用哪个模型）按该模型计数
+     * 默认: deepseek-v3.1-250821
+     */
+    private String defaultModel = "deepseek-v3.1-250821";
+
+    /**
+     * 模型到分词器文件的映射
+     * key: 模型名称 (含 "." 时用 "[deepseek-v3.1-250821]" 形式书写)
+     * value: HuggingFace tokenizer.json 的文件路径，为空或加载失败时该模型按字符估算
+     */
+    private Map<String, String> files = new HashMap<>();
+}
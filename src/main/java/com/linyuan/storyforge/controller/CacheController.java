@@ -0,0 +1,51 @@
+package com.linyuan.storyforge.controller;
+
+import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.service.EntityCacheService;
+import com.linyuan.storyforge.service.PromptCacheStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Second-level cache statistics and maintenance
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final EntityCacheService entityCacheService;
+    private final PromptCacheStats promptCacheStats;
+
+    /**
+     * Get second-level and query cache hit statistics
+     */
+    @GetMapping("/statistics")
+    public ApiResponse<Map<String, Object>> getStatistics() {
+        log.info("GET /api/cache/statistics - Getting cache statistics");
+        return ApiResponse.success(entityCacheService.getStatistics(), "Cache statistics retrieved successfully");
+    }
+
+    /**
+     * Get prompt prefix reuse and provider-side cached token statistics
+     */
+    @GetMapping("/prompt-prefix/statistics")
+    public ApiResponse<Map<String, Object>> getPromptPrefixStatistics() {
+        log.info("GET /api/cache/prompt-prefix/statistics - Getting prompt prefix cache statistics");
+        return ApiResponse.success(promptCacheStats.getStatistics(), "Prompt prefix statistics retrieved successfully");
+    }
+
+    /**
+     * Evict all second-level cache regions
+     */
+    @DeleteMapping
+    public ApiResponse<Void> evictAll() {
+        log.info("DELETE /api/cache - Evicting all cache regions");
+        entityCacheService.evictAll();
+        return ApiResponse.success(null, "Cache evicted successfully");
+    }
+}
@@ -2,6 +2,8 @@ package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
 import com.linyuan.storyforge.enums.ContentType;
+import com.linyuan.storyforge.enums.LlmPriority;
+import com.linyuan.storyforge.service.LlmUsageScope;
 import com.linyuan.storyforge.validator.CharacterConsistencyValidator;
 import com.linyuan.storyforge.validator.ConsistencyResult;
 import lombok.RequiredArgsConstructor;
@@ -133,20 +135,23 @@ public class CharacterConsistencyController {
         List<ConsistencyResult> results = new ArrayList<>();
         int passedCount = 0;
 
-        for (Map<String, String> item : contents) {
-            String content = item.get("content");
-            String typeStr = item.get("type");
-            ContentType type = ContentType.fromCode(typeStr);
-
-            ConsistencyResult result = consistencyValidator.validateContent(
-                    characterId,
-                    content,
-                    type
-            );
-
-            results.add(result);
-            if (result.getPassed()) {
-                passedCount++;
+        // Queue the AI checks as batch work so they do not crowd out interactive generation
+        try (LlmUsageScope ignored = LlmUsageScope.open(null, "validation").priority(LlmPriority.BATCH)) {
+            for (Map<String, String> item : contents) {
+                String content = item.get("content");
+                String typeStr = item.get("type");
+                ContentType type = ContentType.fromCode(typeStr);
+
+                ConsistencyResult result = consistencyValidator.validateContent(
+                        characterId,
+                        content,
+                        type
+                );
+
+                results.add(result);
+                if (result.getPassed()) {
+                    passedCount++;
+                }
             }
         }
 
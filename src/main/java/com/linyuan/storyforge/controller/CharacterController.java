@@ -1,13 +1,17 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.CharacterDTO;
 import com.linyuan.storyforge.service.CharacterService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -24,13 +28,27 @@ public class CharacterController {
     private final CharacterService characterService;
 
     /**
-     * Get all characters
+     * Get all characters, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<CharacterDTO>> getAllCharacters() {
-        log.info("GET /api/characters - Fetching all characters");
-        List<CharacterDTO> characters = characterService.getAllCharacters();
-        return ApiResponse.success(characters, "Characters retrieved successfully");
+    public ApiResponse<CursorPage<CharacterDTO>> getAllCharacters(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/characters - Fetching characters page");
+        CursorPage<CharacterDTO> page = characterService.getCharactersPage(cursor, size);
+        return ApiResponse.success(page, "Characters retrieved successfully");
+    }
+
+    /**
+     * Stream all characters as NDJSON (Accept: application/x-ndjson)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCharacters() {
+        log.info("GET /api/characters - Streaming all characters as NDJSON");
+        StreamingResponseBody body = characterService::exportCharacters;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -1,13 +1,17 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.CharacterMemoryDTO;
 import com.linyuan.storyforge.service.CharacterMemoryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -24,13 +28,27 @@ public class CharacterMemoryController {
     private final CharacterMemoryService memoryService;
 
     /**
-     * Get all memories
+     * Get all memories, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<CharacterMemoryDTO>> getAllMemories() {
-        log.info("GET /api/character-memories - Fetching all memories");
-        List<CharacterMemoryDTO> memories = memoryService.getAllMemories();
-        return ApiResponse.success(memories, "Memories retrieved successfully");
+    public ApiResponse<CursorPage<CharacterMemoryDTO>> getAllMemories(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/character-memories - Fetching memories page");
+        CursorPage<CharacterMemoryDTO> page = memoryService.getMemoriesPage(cursor, size);
+        return ApiResponse.success(page, "Memories retrieved successfully");
+    }
+
+    /**
+     * Stream all memories as NDJSON (Accept: application/x-ndjson)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMemories() {
+        log.info("GET /api/character-memories - Streaming all memories as NDJSON");
+        StreamingResponseBody body = memoryService::exportMemories;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -44,58 +62,69 @@ public class CharacterMemoryController {
     }
 
     /**
-     * Get memories by character ID
+     * Get memories by character ID (keyset pagination)
      */
     @GetMapping("/character/{characterId}")
-    public ApiResponse<List<CharacterMemoryDTO>> getMemoriesByCharacterId(@PathVariable UUID characterId) {
+    public ApiResponse<CursorPage<CharacterMemoryDTO>> getMemoriesByCharacterId(
+            @PathVariable UUID characterId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/character-memories/character/{} - Fetching memories by character", characterId);
-        List<CharacterMemoryDTO> memories = memoryService.getMemoriesByCharacterId(characterId);
+        CursorPage<CharacterMemoryDTO> memories = memoryService.getMemoriesByCharacterId(characterId, cursor, size);
         return ApiResponse.success(memories, "Memories retrieved successfully");
     }
 
     /**
-     * Get memories by character ID and type
+     * Get memories by character ID and type (keyset pagination)
      */
     @GetMapping("/character/{characterId}/type/{memoryType}")
-    public ApiResponse<List<CharacterMemoryDTO>> getMemoriesByCharacterIdAndType(
+    public ApiResponse<CursorPage<CharacterMemoryDTO>> getMemoriesByCharacterIdAndType(
             @PathVariable UUID characterId,
-            @PathVariable String memoryType) {
+            @PathVariable String memoryType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/character-memories/character/{}/type/{} - Fetching memories", characterId, memoryType);
-        List<CharacterMemoryDTO> memories = memoryService.getMemoriesByCharacterIdAndType(characterId, memoryType);
+        CursorPage<CharacterMemoryDTO> memories = memoryService.getMemoriesByCharacterIdAndType(characterId, memoryType, cursor, size);
         return ApiResponse.success(memories, "Memories retrieved successfully");
     }
 
     /**
-     * Get accessible memories
+     * Get accessible memories (keyset pagination)
      */
     @GetMapping("/character/{characterId}/accessible")
-    public ApiResponse<List<CharacterMemoryDTO>> getAccessibleMemories(
+    public ApiResponse<CursorPage<CharacterMemoryDTO>> getAccessibleMemories(
             @PathVariable UUID characterId,
-            @RequestParam(defaultValue = "0.5") Float threshold) {
+            @RequestParam(defaultValue = "0.5") Float threshold,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/character-memories/character/{}/accessible - Fetching accessible memories", characterId);
-        List<CharacterMemoryDTO> memories = memoryService.getAccessibleMemories(characterId, threshold);
+        CursorPage<CharacterMemoryDTO> memories = memoryService.getAccessibleMemories(characterId, threshold, cursor, size);
         return ApiResponse.success(memories, "Accessible memories retrieved successfully");
     }
 
     /**
-     * Get emotional memories
+     * Get emotional memories (keyset pagination)
      */
     @GetMapping("/character/{characterId}/emotional")
-    public ApiResponse<List<CharacterMemoryDTO>> getEmotionalMemories(
+    public ApiResponse<CursorPage<CharacterMemoryDTO>> getEmotionalMemories(
             @PathVariable UUID characterId,
-            @RequestParam(defaultValue = "0.7") Float threshold) {
+            @RequestParam(defaultValue = "0.7") Float threshold,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/character-memories/character/{}/emotional - Fetching emotional memories", characterId);
-        List<CharacterMemoryDTO> memories = memoryService.getEmotionalMemories(characterId, threshold);
+        CursorPage<CharacterMemoryDTO> memories = memoryService.getEmotionalMemories(characterId, threshold, cursor, size);
         return ApiResponse.success(memories, "Emotional memories retrieved successfully");
     }
 
     /**
-     * Get most accessed memories
+     * Get most accessed memories (top {@code size}, same default and maximum as a page)
      */
     @GetMapping("/character/{characterId}/most-accessed")
-    public ApiResponse<List<CharacterMemoryDTO>> getMostAccessedMemories(@PathVariable UUID characterId) {
+    public ApiResponse<List<CharacterMemoryDTO>> getMostAccessedMemories(
+            @PathVariable UUID characterId,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/character-memories/character/{}/most-accessed - Fetching most accessed memories", characterId);
-        List<CharacterMemoryDTO> memories = memoryService.getMostAccessedMemories(characterId);
+        List<CharacterMemoryDTO> memories = memoryService.getMostAccessedMemories(characterId, size);
         return ApiResponse.success(memories, "Most accessed memories retrieved successfully");
     }
 
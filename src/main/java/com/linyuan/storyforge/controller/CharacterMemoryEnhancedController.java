@@ -3,6 +3,8 @@ package com.linyuan.storyforge.controller;
 import com.linyuan.storyforge.common.ApiResponse;
 import com.linyuan.storyforge.entity.CharacterMemory;
 import com.linyuan.storyforge.service.CharacterMemoryEnhancedService;
+import com.linyuan.storyforge.service.MemoryConsolidationService;
+import com.linyuan.storyforge.service.MemoryDecayService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +27,8 @@ import java.util.UUID;
 public class CharacterMemoryEnhancedController {
 
     private final CharacterMemoryEnhancedService enhancedService;
+    private final MemoryDecayService memoryDecayService;
+    private final MemoryConsolidationService memoryConsolidationService;
 
     /**
      * 智能记忆检索
@@ -75,6 +79,47 @@ public class CharacterMemoryEnhancedController {
                 String.format("成功更新 %d 条记忆的可访问性", updatedCount));
     }
 
+    /**
+     * 获取定时衰减任务统计
+     * GET /api/character-memories/enhanced/decay/statistics
+     */
+    @GetMapping("/decay/statistics")
+    public ApiResponse<Map<String, Object>> getDecayStatistics() {
+        log.info("GET /api/character-memories/enhanced/decay/statistics - 获取记忆衰减统计");
+
+        return ApiResponse.success(memoryDecayService.getStatistics(), "获取记忆衰减统计成功");
+    }
+
+    /**
+     * 立即整合角色的陈旧记忆（未达到整合条件时不做任何事）
+     * POST /api/character-memories/enhanced/consolidate/{characterId}
+     */
+    @PostMapping("/consolidate/{characterId}")
+    public ApiResponse<Map<String, Object>> consolidateMemories(@PathVariable UUID characterId) {
+        log.info("POST /api/character-memories/enhanced/consolidate/{} - 整合陈旧记忆", characterId);
+
+        long archivedCount = memoryConsolidationService.consolidateCharacter(characterId);
+
+        Map<String, Object> result = Map.of(
+                "characterId", characterId,
+                "archivedCount", archivedCount
+        );
+
+        return ApiResponse.success(result,
+                String.format("成功整合 %d 条记忆", archivedCount));
+    }
+
+    /**
+     * 获取记忆整合任务统计
+     * GET /api/character-memories/enhanced/consolidation/statistics
+     */
+    @GetMapping("/consolidation/statistics")
+    public ApiResponse<Map<String, Object>> getConsolidationStatistics() {
+        log.info("GET /api/character-memories/enhanced/consolidation/statistics - 获取记忆整合统计");
+
+        return ApiResponse.success(memoryConsolidationService.getStatistics(), "获取记忆整合统计成功");
+    }
+
     /**
      * 获取角色最重要的记忆
      * GET /api/character-memories/enhanced/top-important/{characterId}?limit=10
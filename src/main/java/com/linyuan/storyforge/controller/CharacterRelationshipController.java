@@ -1,7 +1,10 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.CharacterRelationshipDTO;
+import com.linyuan.storyforge.dto.RelationshipGraphDTO;
+import com.linyuan.storyforge.service.CharacterRelationshipGraphService;
 import com.linyuan.storyforge.service.CharacterRelationshipService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +13,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -22,15 +26,18 @@ import java.util.UUID;
 public class CharacterRelationshipController {
 
     private final CharacterRelationshipService relationshipService;
+    private final CharacterRelationshipGraphService graphService;
 
     /**
-     * Get all character relationships
+     * Get all character relationships, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<CharacterRelationshipDTO>> getAllRelationships() {
-        log.info("GET /api/character-relationships - Fetching all relationships");
-        List<CharacterRelationshipDTO> relationships = relationshipService.getAllRelationships();
-        return ApiResponse.success(relationships, "Relationships retrieved successfully");
+    public ApiResponse<CursorPage<CharacterRelationshipDTO>> getAllRelationships(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/character-relationships - Fetching relationships page");
+        CursorPage<CharacterRelationshipDTO> page = relationshipService.getRelationshipsPage(cursor, size);
+        return ApiResponse.success(page, "Relationships retrieved successfully");
     }
 
     /**
@@ -96,4 +103,53 @@ public class CharacterRelationshipController {
         relationshipService.deleteRelationship(id);
         return ApiResponse.success(null, "Relationship deleted successfully");
     }
+
+    /**
+     * Get the k-hop relationship neighbourhood of a character
+     */
+    @GetMapping("/graph/neighbourhood")
+    public ApiResponse<RelationshipGraphDTO> getNeighbourhood(
+            @RequestParam UUID projectId,
+            @RequestParam UUID characterId,
+            @RequestParam(defaultValue = "2") int hops,
+            @RequestParam(required = false) String categories) {
+        log.info("GET /api/character-relationships/graph/neighbourhood - character: {}, hops: {}", characterId, hops);
+        RelationshipGraphDTO graph = graphService.getNeighbourhood(projectId, characterId, hops,
+                CharacterRelationshipGraphService.parseCategories(categories));
+        return ApiResponse.success(graph, "Neighbourhood retrieved successfully");
+    }
+
+    /**
+     * Get the shortest relationship path between two characters
+     */
+    @GetMapping("/graph/path")
+    public ApiResponse<RelationshipGraphDTO> getShortestPath(
+            @RequestParam UUID projectId,
+            @RequestParam UUID from,
+            @RequestParam UUID to,
+            @RequestParam(required = false) String categories) {
+        log.info("GET /api/character-relationships/graph/path - from: {}, to: {}", from, to);
+        RelationshipGraphDTO path = graphService.getShortestPath(projectId, from, to,
+                CharacterRelationshipGraphService.parseCategories(categories));
+        return ApiResponse.success(path, path.getEdges().isEmpty() && !from.equals(to)
+                ? "No relationship path found" : "Path retrieved successfully");
+    }
+
+    /**
+     * Get friendly communities and the hostile relationships between them
+     */
+    @GetMapping("/graph/communities")
+    public ApiResponse<RelationshipGraphDTO> getCommunities(@RequestParam UUID projectId) {
+        log.info("GET /api/character-relationships/graph/communities - project: {}", projectId);
+        RelationshipGraphDTO communities = graphService.getCommunities(projectId);
+        return ApiResponse.success(communities, "Communities retrieved successfully");
+    }
+
+    /**
+     * Get relationship graph statistics
+     */
+    @GetMapping("/graph/statistics")
+    public ApiResponse<Map<String, Object>> getGraphStatistics() {
+        return ApiResponse.success(graphService.getStatistics(), "Graph statistics retrieved successfully");
+    }
 }
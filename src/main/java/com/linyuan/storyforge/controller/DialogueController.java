@@ -1,13 +1,17 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.DialogueDTO;
 import com.linyuan.storyforge.service.DialogueService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -24,13 +28,27 @@ public class DialogueController {
     private final DialogueService dialogueService;
 
     /**
-     * Get all dialogues
+     * Get all dialogues, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<DialogueDTO>> getAllDialogues() {
-        log.info("GET /api/dialogues - Fetching all dialogues");
-        List<DialogueDTO> dialogues = dialogueService.getAllDialogues();
-        return ApiResponse.success(dialogues, "Dialogues retrieved successfully");
+    public ApiResponse<CursorPage<DialogueDTO>> getAllDialogues(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/dialogues - Fetching dialogues page");
+        CursorPage<DialogueDTO> page = dialogueService.getDialoguesPage(cursor, size);
+        return ApiResponse.success(page, "Dialogues retrieved successfully");
+    }
+
+    /**
+     * Stream all dialogues as NDJSON (Accept: application/x-ndjson)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportDialogues() {
+        log.info("GET /api/dialogues - Streaming all dialogues as NDJSON");
+        StreamingResponseBody body = dialogueService::exportDialogues;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -1,15 +1,20 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.GenerationHistoryDTO;
 import com.linyuan.storyforge.service.GenerationHistoryService;
+import com.linyuan.storyforge.service.GenerationHistoryWriter;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -22,15 +27,30 @@ import java.util.UUID;
 public class GenerationHistoryController {
 
     private final GenerationHistoryService historyService;
+    private final GenerationHistoryWriter historyWriter;
 
     /**
-     * Get all generation history
+     * Get all generation history, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<GenerationHistoryDTO>> getAllHistory() {
-        log.info("GET /api/generation-history - Fetching all history");
-        List<GenerationHistoryDTO> history = historyService.getAllHistory();
-        return ApiResponse.success(history, "Generation history retrieved successfully");
+    public ApiResponse<CursorPage<GenerationHistoryDTO>> getAllHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/generation-history - Fetching history page");
+        CursorPage<GenerationHistoryDTO> page = historyService.getHistoryPage(cursor, size);
+        return ApiResponse.success(page, "Generation history retrieved successfully");
+    }
+
+    /**
+     * Stream all history as NDJSON (Accept: application/x-ndjson)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportHistory() {
+        log.info("GET /api/generation-history - Streaming all history as NDJSON");
+        StreamingResponseBody body = historyService::exportHistory;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -47,50 +67,63 @@ public class GenerationHistoryController {
      * Get history by project ID
      */
     @GetMapping("/project/{projectId}")
-    public ApiResponse<List<GenerationHistoryDTO>> getHistoryByProjectId(@PathVariable UUID projectId) {
+    public ApiResponse<CursorPage<GenerationHistoryDTO>> getHistoryByProjectId(
+            @PathVariable UUID projectId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/generation-history/project/{} - Fetching history by project", projectId);
-        List<GenerationHistoryDTO> history = historyService.getHistoryByProjectId(projectId);
+        CursorPage<GenerationHistoryDTO> history = historyService.getHistoryByProjectId(projectId, cursor, size);
         return ApiResponse.success(history, "Generation history retrieved successfully");
     }
 
     /**
-     * Get history by generation type
+     * Get history by generation type, newest first (keyset pagination)
      */
     @GetMapping("/type/{generationType}")
-    public ApiResponse<List<GenerationHistoryDTO>> getHistoryByGenerationType(@PathVariable String generationType) {
+    public ApiResponse<CursorPage<GenerationHistoryDTO>> getHistoryByGenerationType(
+            @PathVariable String generationType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/generation-history/type/{} - Fetching history by type", generationType);
-        List<GenerationHistoryDTO> history = historyService.getHistoryByGenerationType(generationType);
+        CursorPage<GenerationHistoryDTO> history = historyService.getHistoryByGenerationType(generationType, cursor, size);
         return ApiResponse.success(history, "Generation history retrieved successfully");
     }
 
     /**
-     * Get history by target ID
+     * Get history by target ID, newest first (keyset pagination)
      */
     @GetMapping("/target/{targetId}")
-    public ApiResponse<List<GenerationHistoryDTO>> getHistoryByTargetId(@PathVariable UUID targetId) {
+    public ApiResponse<CursorPage<GenerationHistoryDTO>> getHistoryByTargetId(
+            @PathVariable UUID targetId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/generation-history/target/{} - Fetching history by target", targetId);
-        List<GenerationHistoryDTO> history = historyService.getHistoryByTargetId(targetId);
+        CursorPage<GenerationHistoryDTO> history = historyService.getHistoryByTargetId(targetId, cursor, size);
         return ApiResponse.success(history, "Generation history retrieved successfully");
     }
 
     /**
-     * Get high-quality generations
+     * Get high-quality generations, newest first (keyset pagination)
      */
     @GetMapping("/high-quality")
-    public ApiResponse<List<GenerationHistoryDTO>> getHighQualityGenerations(
-            @RequestParam(defaultValue = "0.7") Float threshold) {
+    public ApiResponse<CursorPage<GenerationHistoryDTO>> getHighQualityGenerations(
+            @RequestParam(defaultValue = "0.7") Float threshold,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/generation-history/high-quality - Fetching high-quality generations");
-        List<GenerationHistoryDTO> history = historyService.getHighQualityGenerations(threshold);
+        CursorPage<GenerationHistoryDTO> history = historyService.getHighQualityGenerations(threshold, cursor, size);
         return ApiResponse.success(history, "High-quality generations retrieved successfully");
     }
 
     /**
-     * Get generations with user feedback
+     * Get generations with user feedback, newest first (keyset pagination)
      */
     @GetMapping("/with-feedback")
-    public ApiResponse<List<GenerationHistoryDTO>> getGenerationsWithFeedback() {
+    public ApiResponse<CursorPage<GenerationHistoryDTO>> getGenerationsWithFeedback(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         log.info("GET /api/generation-history/with-feedback - Fetching generations with feedback");
-        List<GenerationHistoryDTO> history = historyService.getGenerationsWithFeedback();
+        CursorPage<GenerationHistoryDTO> history = historyService.getGenerationsWithFeedback(cursor, size);
         return ApiResponse.success(history, "Generations with feedback retrieved successfully");
     }
 
@@ -147,4 +180,13 @@ public class GenerationHistoryController {
         long count = historyService.countHistoryByProjectId(projectId);
         return ApiResponse.success(count, "History count retrieved successfully");
     }
+
+    /**
+     * Get async history writer statistics (queue depth, batches, failures)
+     */
+    @GetMapping("/writer/statistics")
+    public ApiResponse<Map<String, Object>> getWriterStatistics() {
+        log.info("GET /api/generation-history/writer/statistics - Getting writer statistics");
+        return ApiResponse.success(historyWriter.getStatistics(), "Writer statistics retrieved successfully");
+    }
 }
@@ -0,0 +1,106 @@
+package com.linyuan.storyforge.controller;
+
+import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.service.LlmBudgetService;
+import com.linyuan.storyforge.service.LlmRequestScheduler;
+import com.linyuan.storyforge.service.LlmUsageLedger;
+import com.linyuan.storyforge.service.MemoryIntegrationService;
+import com.linyuan.storyforge.service.ModelRouter;
+import com.linyuan.storyforge.service.QianfanDirectService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Model token usage, estimated cost, daily budgets, model routing, call scheduling and request coalescing
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/usage")
+@RequiredArgsConstructor
+public class LlmUsageController {
+
+    private final LlmUsageLedger usageLedger;
+    private final LlmBudgetService budgetService;
+    private final ModelRouter modelRouter;
+    private final LlmRequestScheduler scheduler;
+    private final QianfanDirectService qianfanService;
+    private final MemoryIntegrationService memoryService;
+
+    /**
+     * Get a project's daily token usage per model
+     */
+    @GetMapping("/projects/{projectId}/daily")
+    public ApiResponse<List<Map<String, Object>>> getDailyUsage(
+            @PathVariable UUID projectId,
+            @RequestParam(defaultValue = "30") int days) {
+        log.info("GET /api/usage/projects/{}/daily - days: {}", projectId, days);
+        validateDays(days);
+        return ApiResponse.success(usageLedger.getDailyUsage(projectId, days), "Daily usage retrieved successfully");
+    }
+
+    /**
+     * Get a project's token usage per source, prompt template and model
+     */
+    @GetMapping("/projects/{projectId}/breakdown")
+    public ApiResponse<List<Map<String, Object>>> getBreakdown(
+            @PathVariable UUID projectId,
+            @RequestParam(defaultValue = "30") int days) {
+        log.info("GET /api/usage/projects/{}/breakdown - days: {}", projectId, days);
+        validateDays(days);
+        return ApiResponse.success(usageLedger.getBreakdown(projectId, days), "Usage breakdown retrieved successfully");
+    }
+
+    /**
+     * Get a project's budget state for today
+     */
+    @GetMapping("/projects/{projectId}/budget")
+    public ApiResponse<Map<String, Object>> getBudget(@PathVariable UUID projectId) {
+        log.info("GET /api/usage/projects/{}/budget - Getting budget state", projectId);
+        return ApiResponse.success(budgetService.getStatus(projectId), "Budget state retrieved successfully");
+    }
+
+    /**
+     * Get the projects with the highest token usage
+     */
+    @GetMapping("/projects")
+    public ApiResponse<List<Map<String, Object>>> getProjectTotals(
+            @RequestParam(defaultValue = "7") int days,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("GET /api/usage/projects - days: {}, limit: {}", days, limit);
+        validateDays(days);
+        if (limit < 1 || limit > 1000) {
+            throw new IllegalArgumentException("limit must be between 1 and 1000");
+        }
+        return ApiResponse.success(usageLedger.getProjectTotals(days, limit), "Project usage retrieved successfully");
+    }
+
+    /**
+     * Get ledger writer, budget enforcement, model routing, scheduler queue and request coalescing statistics
+     */
+    @GetMapping("/statistics")
+    public ApiResponse<Map<String, Object>> getStatistics() {
+        log.info("GET /api/usage/statistics - Getting usage statistics");
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ledger", usageLedger.getStatistics());
+        stats.put("budget", budgetService.getStatistics());
+        stats.put("routing", modelRouter.getStatistics());
+        stats.put("scheduler", scheduler.getStatistics());
+        Map<String, Object> coalescing = new LinkedHashMap<>();
+        coalescing.put("modelCalls", qianfanService.getCoalescingStatistics());
+        coalescing.put("generationContext", memoryService.getContextCoalescingStatistics());
+        stats.put("coalescing", coalescing);
+        return ApiResponse.success(stats, "Usage statistics retrieved successfully");
+    }
+
+    private static void validateDays(int days) {
+        if (days < 1 || days > 366) {
+            throw new IllegalArgumentException("days must be between 1 and 366");
+        }
+    }
+}
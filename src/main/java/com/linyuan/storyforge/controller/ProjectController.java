@@ -1,14 +1,23 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.ProjectDTO;
+import com.linyuan.storyforge.enums.ExportFormat;
+import com.linyuan.storyforge.service.ManuscriptExportService;
 import com.linyuan.storyforge.service.ProjectService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,15 +31,18 @@ import java.util.UUID;
 public class ProjectController {
 
     private final ProjectService projectService;
+    private final ManuscriptExportService manuscriptExportService;
 
     /**
-     * Get all projects
+     * Get all projects, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<ProjectDTO>> getAllProjects() {
-        log.info("GET /api/projects - Fetching all projects");
-        List<ProjectDTO> projects = projectService.getAllProjects();
-        return ApiResponse.success(projects, "Projects retrieved successfully");
+    public ApiResponse<CursorPage<ProjectDTO>> getAllProjects(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/projects - Fetching projects page");
+        CursorPage<ProjectDTO> page = projectService.getProjectsPage(cursor, size);
+        return ApiResponse.success(page, "Projects retrieved successfully");
     }
 
     /**
@@ -106,4 +118,29 @@ public class ProjectController {
         List<ProjectDTO> projects = projectService.searchProjectsByName(name);
         return ApiResponse.success(projects, "Projects retrieved successfully");
     }
+
+    /**
+     * Export the project manuscript (latest version of each chapter) as a file download.
+     * Chapters are streamed from a database cursor, so memory use does not grow with book length.
+     */
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> exportManuscript(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "txt") String format,
+            @RequestParam(required = false) String status) {
+        log.info("GET /api/projects/{}/export?format={} - Exporting manuscript", id, format);
+        ExportFormat exportFormat = ExportFormat.fromCode(format);
+        String projectName = manuscriptExportService.getProjectName(id);
+
+        StreamingResponseBody body = out ->
+                manuscriptExportService.exportManuscript(id, projectName, exportFormat, status, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(projectName + exportFormat.getExtension(), StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .body(body);
+    }
 }
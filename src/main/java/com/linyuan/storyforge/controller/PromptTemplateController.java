@@ -1,7 +1,9 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.PromptTemplateDTO;
+import com.linyuan.storyforge.service.PromptTemplateRegistry;
 import com.linyuan.storyforge.service.PromptTemplateService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +12,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -22,15 +25,18 @@ import java.util.UUID;
 public class PromptTemplateController {
 
     private final PromptTemplateService templateService;
+    private final PromptTemplateRegistry templateRegistry;
 
     /**
-     * Get all templates
+     * Get all templates, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<PromptTemplateDTO>> getAllTemplates() {
-        log.info("GET /api/prompt-templates - Fetching all templates");
-        List<PromptTemplateDTO> templates = templateService.getAllTemplates();
-        return ApiResponse.success(templates, "Templates retrieved successfully");
+    public ApiResponse<CursorPage<PromptTemplateDTO>> getAllTemplates(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/prompt-templates - Fetching templates page");
+        CursorPage<PromptTemplateDTO> page = templateService.getTemplatesPage(cursor, size);
+        return ApiResponse.success(page, "Templates retrieved successfully");
     }
 
     /**
@@ -157,4 +163,38 @@ public class PromptTemplateController {
         long count = templateService.countActiveTemplates();
         return ApiResponse.success(count, "Active template count retrieved successfully");
     }
+
+    /**
+     * Get latency, token usage and quality score per variant of a template group
+     */
+    @GetMapping("/variants/{group}/metrics")
+    public ApiResponse<List<Map<String, Object>>> getVariantMetrics(
+            @PathVariable String group,
+            @RequestParam(defaultValue = "30") int days) {
+        log.info("GET /api/prompt-templates/variants/{}/metrics?days={} - Fetching variant metrics", group, days);
+        if (days < 1 || days > 365) {
+            throw new IllegalArgumentException("Days must be between 1 and 365");
+        }
+        List<Map<String, Object>> metrics = templateRegistry.getVariantMetrics(group, days);
+        return ApiResponse.success(metrics, "Variant metrics retrieved successfully");
+    }
+
+    /**
+     * Get runtime template registry statistics
+     */
+    @GetMapping("/registry/statistics")
+    public ApiResponse<Map<String, Object>> getRegistryStatistics() {
+        log.info("GET /api/prompt-templates/registry/statistics - Fetching registry statistics");
+        return ApiResponse.success(templateRegistry.getStatistics(), "Registry statistics retrieved successfully");
+    }
+
+    /**
+     * Reload the runtime template registry from the database
+     */
+    @PostMapping("/registry/reload")
+    public ApiResponse<Map<String, Object>> reloadRegistry() {
+        log.info("POST /api/prompt-templates/registry/reload - Reloading template registry");
+        templateRegistry.reload();
+        return ApiResponse.success(templateRegistry.getStatistics(), "Template registry reloaded successfully");
+    }
 }
@@ -1,6 +1,7 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.SceneDTO;
 import com.linyuan.storyforge.service.SceneService;
 import jakarta.validation.Valid;
@@ -24,13 +25,15 @@ public class SceneController {
     private final SceneService sceneService;
 
     /**
-     * Get all scenes
+     * Get all scenes, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<SceneDTO>> getAllScenes() {
-        log.info("GET /api/scenes - Fetching all scenes");
-        List<SceneDTO> scenes = sceneService.getAllScenes();
-        return ApiResponse.success(scenes, "Scenes retrieved successfully");
+    public ApiResponse<CursorPage<SceneDTO>> getAllScenes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/scenes - Fetching scenes page");
+        CursorPage<SceneDTO> page = sceneService.getScenesPage(cursor, size);
+        return ApiResponse.success(page, "Scenes retrieved successfully");
     }
 
     /**
@@ -4,14 +4,23 @@ import com.linyuan.storyforge.common.ApiResponse;
 import com.linyuan.storyforge.dto.SceneDTO;
 import com.linyuan.storyforge.dto.SceneGenerationRequest;
 import com.linyuan.storyforge.enums.SceneType;
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
+import com.linyuan.storyforge.service.LlmUsageScope;
 import com.linyuan.storyforge.service.SceneGenerationService;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * SceneGenerationController - 场景AI生成控制器
@@ -23,11 +32,27 @@ import java.util.*;
 @Slf4j
 @RestController
 @RequestMapping("/api/scenes")
-@RequiredArgsConstructor
 public class SceneGenerationController {
 
+    /**
+     * 流式生成的 SSE 超时（生成含重试可能超过一分钟）
+     */
+    private static final long STREAM_TIMEOUT_MS = 5 * 60 * 1000L;
+
     private final SceneGenerationService sceneGenerationService;
 
+    /**
+     * 流式生成在 Spring Boot 的 applicationTaskExecutor 上执行（与流式导出共用），
+     * 线程数与排队上限见 spring.task.execution，关闭应用时等待进行中的生成结束
+     */
+    private final AsyncTaskExecutor streamExecutor;
+
+    public SceneGenerationController(SceneGenerationService sceneGenerationService,
+                                     @Qualifier("applicationTaskExecutor") AsyncTaskExecutor streamExecutor) {
+        this.sceneGenerationService = sceneGenerationService;
+        this.streamExecutor = streamExecutor;
+    }
+
     /**
      * 生成单个场景
      * POST /api/scenes/generate
@@ -55,12 +80,104 @@ public class SceneGenerationController {
         } catch (IllegalArgumentException e) {
             log.error("场景生成请求参数错误", e);
             return ApiResponse.error(400, e.getMessage());
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("场景生成失败", e);
             return ApiResponse.error(500, "场景生成失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 流式生成单个场景（Server-Sent Events）
+     * POST /api/scenes/generate/stream
+     * <p>
+     * 每个字段解析完成时推送 field 事件 {"field": 字段名, "value": 值}，
+     * 保存成功后推送 complete 事件（完整场景），失败时推送 error 事件
+     * <p>
+     * 模型调用排队期间客户端断开时放弃该请求，已开始的生成不中断
+     *
+     * @param request 场景生成请求
+     * @return SSE 流
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generateSceneStream(@Valid @RequestBody SceneGenerationRequest request) {
+        log.info("POST /api/scenes/generate/stream - 流式生成场景: {}", request.getSimpleDescription());
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        String validationError = request.validate();
+        if (validationError != null) {
+            sendQuietly(emitter, "error", ApiResponse.error(400, validationError));
+            emitter.complete();
+            return emitter;
+        }
+
+        AtomicBoolean clientGone = new AtomicBoolean();
+        emitter.onTimeout(() -> clientGone.set(true));
+        emitter.onError(e -> clientGone.set(true));
+
+        try {
+            streamExecutor.execute(() -> streamScene(request, emitter, clientGone));
+        } catch (TaskRejectedException e) {
+            log.warn("流式生成排队已满，拒绝请求: {}", e.getMessage());
+            sendQuietly(emitter, "error", ApiResponse.error(503, "生成请求过多，请稍后重试"));
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * 在执行器线程上生成场景并推送事件
+     */
+    private void streamScene(SceneGenerationRequest request, SseEmitter emitter, AtomicBoolean clientGone) {
+        try (LlmUsageScope ignored = LlmUsageScope.open(request.getProjectId(), "scene")
+                .cancelWhen(() -> isClientGone(emitter, clientGone))) {
+            SceneDTO scene = sceneGenerationService.generateScene(request,
+                    (field, value) -> sendQuietly(emitter, "field", Map.of("field", field, "value", value)));
+            sendQuietly(emitter, "complete", ApiResponse.success(scene,
+                    String.format("成功生成场景: %s", scene.getName())));
+        } catch (IllegalArgumentException e) {
+            log.error("场景生成请求参数错误", e);
+            sendQuietly(emitter, "error", ApiResponse.error(400, e.getMessage()));
+        } catch (BudgetExceededException e) {
+            log.warn("场景生成超出预算: {}", e.getMessage());
+            sendQuietly(emitter, "error", ApiResponse.error(429, e.getMessage()));
+        } catch (LlmOverloadedException e) {
+            log.warn("场景生成模型调用被放弃: {}", e.getMessage());
+            sendQuietly(emitter, "error", ApiResponse.error(503, e.getMessage()));
+        } catch (Exception e) {
+            log.error("场景生成失败", e);
+            sendQuietly(emitter, "error", ApiResponse.error(500, "场景生成失败: " + e.getMessage()));
+        }
+        emitter.complete();
+    }
+
+    /**
+     * 客户端断开时只记录日志，不中断已开始的生成（场景仍会保存）
+     */
+    private void sendQuietly(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE 推送失败（客户端可能已断开）: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 模型调用排队时由调度器定期检查：发送一条 SSE 注释，写入失败说明客户端已断开
+     */
+    private boolean isClientGone(SseEmitter emitter, AtomicBoolean clientGone) {
+        if (!clientGone.get()) {
+            try {
+                emitter.send(SseEmitter.event().comment("queued"));
+            } catch (IOException | IllegalStateException e) {
+                clientGone.set(true);
+            }
+        }
+        return clientGone.get();
+    }
+
     /**
      * 批量生成多个场景方案
      * POST /api/scenes/generate/batch?count=3
@@ -92,6 +209,9 @@ public class SceneGenerationController {
             List<SceneDTO> scenes = sceneGenerationService.generateMultipleScenes(request, count);
             return ApiResponse.success(scenes,
                     String.format("成功生成 %d 个场景方案", scenes.size()));
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("批量场景生成失败", e);
             return ApiResponse.error(500, "批量场景生成失败: " + e.getMessage());
@@ -128,6 +248,9 @@ public class SceneGenerationController {
             SceneDTO expandedScene = sceneGenerationService.expandScene(
                     sceneId, expansionPoint, additionalWords);
             return ApiResponse.success(expandedScene, "场景扩展成功");
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("场景扩展失败", e);
             return ApiResponse.error(500, "场景扩展失败: " + e.getMessage());
@@ -239,8 +362,10 @@ public class SceneGenerationController {
     }
 
     /**
-     * 预览场景生成提示词（调试用）
+     * 预览场景生成提示词
      * POST /api/scenes/preview-prompt
+     * <p>
+     * 只读，不记录记忆访问；有效期内提交相同设定的生成请求会复用本次组装的上下文
      *
      * @param request 场景生成请求
      * @return 提示词预览
@@ -257,9 +382,15 @@ public class SceneGenerationController {
             return ApiResponse.error(400, validationError);
         }
 
+        SceneGenerationService.ScenePromptPreview prompt = sceneGenerationService.previewScenePrompt(request);
+
         Map<String, Object> preview = new HashMap<>();
         preview.put("sceneDescription", request.getSimpleDescription());
         preview.put("sceneType", request.getSceneType().getDisplayName());
+        preview.put("prompt", prompt.prompt());
+        preview.put("promptLength", prompt.prompt().length());
+        preview.put("maxTokens", prompt.maxTokens());
+        preview.put("contextTtlSeconds", prompt.contextTtlSeconds());
         preview.put("estimatedTokens", calculateEstimatedTokens(request));
         preview.put("estimatedTime", "20-40秒");
         preview.put("warning", getWarnings(request));
@@ -267,6 +398,16 @@ public class SceneGenerationController {
         return ApiResponse.success(preview, "提示词预览生成成功");
     }
 
+    /**
+     * 获取提示词预览上下文复用统计
+     * GET /api/scenes/preview-prompt/statistics
+     */
+    @GetMapping("/preview-prompt/statistics")
+    public ApiResponse<Map<String, Object>> getPreviewStatistics() {
+        log.info("GET /api/scenes/preview-prompt/statistics - 获取预览统计");
+        return ApiResponse.success(sceneGenerationService.getPreviewStatistics(), "成功获取预览统计");
+    }
+
     /**
      * 从已存在的场景提取时间线事件
      * POST /api/scenes/{sceneId}/extract-timeline-event
@@ -293,6 +434,9 @@ public class SceneGenerationController {
         } catch (IllegalArgumentException e) {
             log.error("参数错误", e);
             return ApiResponse.error(400, "参数错误: " + e.getMessage());
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("提取时间线事件失败", e);
             return ApiResponse.error(500, "提取时间线事件失败: " + e.getMessage());
@@ -1,6 +1,7 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.StoryChapterDTO;
 import com.linyuan.storyforge.service.StoryChapterService;
 import jakarta.validation.Valid;
@@ -24,13 +25,15 @@ public class StoryChapterController {
     private final StoryChapterService chapterService;
 
     /**
-     * Get all chapters
+     * Get all chapters, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<StoryChapterDTO>> getAllChapters() {
-        log.info("GET /api/chapters - Fetching all chapters");
-        List<StoryChapterDTO> chapters = chapterService.getAllChapters();
-        return ApiResponse.success(chapters, "Chapters retrieved successfully");
+    public ApiResponse<CursorPage<StoryChapterDTO>> getAllChapters(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/chapters - Fetching chapters page");
+        CursorPage<StoryChapterDTO> page = chapterService.getChaptersPage(cursor, size);
+        return ApiResponse.success(page, "Chapters retrieved successfully");
     }
 
     /**
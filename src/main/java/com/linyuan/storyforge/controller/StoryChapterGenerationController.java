@@ -2,8 +2,12 @@ package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
 import com.linyuan.storyforge.dto.ChapterGenerationRequest;
+import com.linyuan.storyforge.dto.ChapterVersionDTO;
 import com.linyuan.storyforge.dto.RegenerateOptions;
 import com.linyuan.storyforge.dto.StoryChapterDTO;
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
+import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.service.GenerationHistoryEnhancedService;
 import com.linyuan.storyforge.service.StoryGenerationService;
 import lombok.RequiredArgsConstructor;
@@ -47,6 +51,9 @@ public class StoryChapterGenerationController {
             return ApiResponse.success(chapter);
         } catch (IllegalArgumentException e) {
             return ApiResponse.error(400, e.getMessage());
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("章节生成失败", e);
             return ApiResponse.error(500, "章节生成失败: " + e.getMessage());
@@ -71,6 +78,9 @@ public class StoryChapterGenerationController {
         try {
             StoryChapterDTO chapter = storyGenerationService.regenerateChapter(id, options);
             return ApiResponse.success(chapter);
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("章节重新生成失败", e);
             return ApiResponse.error(500, "章节重新生成失败: " + e.getMessage());
@@ -100,6 +110,9 @@ public class StoryChapterGenerationController {
         try {
             StoryChapterDTO chapter = storyGenerationService.refineChapter(id, userFeedback);
             return ApiResponse.success(chapter);
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("章节优化失败", e);
             return ApiResponse.error(500, "章节优化失败: " + e.getMessage());
@@ -121,6 +134,9 @@ public class StoryChapterGenerationController {
         try {
             String outline = storyGenerationService.generateChapterOutline(request);
             return ApiResponse.success(outline);
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("大纲生成失败", e);
             return ApiResponse.error(500, "大纲生成失败: " + e.getMessage());
@@ -128,22 +144,22 @@ public class StoryChapterGenerationController {
     }
 
     /**
-     * 获取章节的所有版本
+     * 获取章节的所有版本（仅元数据）
      * GET /api/chapters/versions?projectId=xxx&chapterNumber=1
      *
      * @param projectId     项目ID
      * @param chapterNumber 章节编号
-     * @return 所有版本列表
+     * @return 所有版本的元数据列表
      */
     @GetMapping("/versions")
-    public ApiResponse<List<StoryChapterDTO>> getChapterVersions(
+    public ApiResponse<List<ChapterVersionDTO>> getChapterVersions(
             @RequestParam UUID projectId,
             @RequestParam int chapterNumber) {
 
         log.info("获取章节版本 - 项目: {}, 章节号: {}", projectId, chapterNumber);
 
         try {
-            List<StoryChapterDTO> versions = storyGenerationService.getChapterVersions(projectId, chapterNumber);
+            List<ChapterVersionDTO> versions = storyGenerationService.getChapterVersions(projectId, chapterNumber);
             return ApiResponse.success(versions);
         } catch (Exception e) {
             log.error("获取版本失败", e);
@@ -151,6 +167,34 @@ public class StoryChapterGenerationController {
         }
     }
 
+    /**
+     * 获取章节指定版本的完整内容（历史版本按需重建）
+     * GET /api/chapters/versions/2?projectId=xxx&chapterNumber=1
+     *
+     * @param version       版本号
+     * @param projectId     项目ID
+     * @param chapterNumber 章节编号
+     * @return 指定版本的章节
+     */
+    @GetMapping("/versions/{version}")
+    public ApiResponse<StoryChapterDTO> getChapterVersion(
+            @PathVariable int version,
+            @RequestParam UUID projectId,
+            @RequestParam int chapterNumber) {
+
+        log.info("获取章节版本内容 - 项目: {}, 章节号: {}, 版本: {}", projectId, chapterNumber, version);
+
+        try {
+            StoryChapterDTO chapter = storyGenerationService.getChapterVersion(projectId, chapterNumber, version);
+            return ApiResponse.success(chapter);
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.error(404, e.getMessage());
+        } catch (Exception e) {
+            log.error("获取版本内容失败", e);
+            return ApiResponse.error(500, "获取版本内容失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取前文上下文
      * GET /api/chapters/context?projectId=xxx&upToChapter=5&contextSize=2
@@ -242,6 +286,9 @@ public class StoryChapterGenerationController {
 
             StoryChapterDTO chapter = storyGenerationService.generateChapter(request);
             return ApiResponse.success(chapter);
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("快速生成失败", e);
             return ApiResponse.error(500, "快速生成失败: " + e.getMessage());
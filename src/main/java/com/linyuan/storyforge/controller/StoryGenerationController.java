@@ -4,6 +4,8 @@ import com.linyuan.storyforge.common.ApiResponse;
 import com.linyuan.storyforge.dto.GenerationRequest;
 import com.linyuan.storyforge.dto.GenerationResult;
 import com.linyuan.storyforge.enums.ContentType;
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
 import com.linyuan.storyforge.service.GenerationPipeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -53,6 +55,9 @@ public class StoryGenerationController {
                 return ApiResponse.error(500, "生成失败: " + result.getErrorMessage(), result);
             }
 
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 交给 GlobalExceptionHandler 返回 429 / 503
+            throw e;
         } catch (Exception e) {
             log.error("生成失败", e);
             return ApiResponse.error(500, "生成失败: " + e.getMessage());
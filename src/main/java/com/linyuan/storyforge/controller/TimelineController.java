@@ -1,15 +1,22 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.dto.TimelineBatchResultDTO;
 import com.linyuan.storyforge.dto.TimelineDTO;
+import com.linyuan.storyforge.dto.TimelineSnapshotDTO;
 import com.linyuan.storyforge.enums.TimelineEventType;
 import com.linyuan.storyforge.service.TimelineService;
+import com.linyuan.storyforge.service.TimelineSnapshotService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -29,15 +36,30 @@ import java.util.*;
 public class TimelineController {
 
     private final TimelineService timelineService;
+    private final TimelineSnapshotService snapshotService;
 
     /**
-     * Get all timelines
+     * Get all timelines, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<TimelineDTO>> getAllTimelines() {
-        log.info("GET /api/timelines - Fetching all timelines");
-        List<TimelineDTO> timelines = timelineService.getAllTimelines();
-        return ApiResponse.success(timelines, "Timelines retrieved successfully");
+    public ApiResponse<CursorPage<TimelineDTO>> getAllTimelines(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/timelines - Fetching timelines page");
+        CursorPage<TimelineDTO> page = timelineService.getTimelinesPage(cursor, size);
+        return ApiResponse.success(page, "Timelines retrieved successfully");
+    }
+
+    /**
+     * Stream all timelines as NDJSON (Accept: application/x-ndjson)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportTimelines() {
+        log.info("GET /api/timelines - Streaming all timelines as NDJSON");
+        StreamingResponseBody body = timelineService::exportTimelines;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -81,14 +103,15 @@ public class TimelineController {
     }
 
     /**
-     * Get timelines within a time range
+     * Get timelines within a time range, optionally scoped to a project
      */
     @GetMapping("/time-range")
     public ApiResponse<List<TimelineDTO>> getTimelinesByTimeRange(
+            @RequestParam(required = false) UUID projectId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
         log.info("GET /api/timelines/time-range - Fetching timelines between {} and {}", startTime, endTime);
-        List<TimelineDTO> timelines = timelineService.getTimelinesByTimeRange(startTime, endTime);
+        List<TimelineDTO> timelines = timelineService.getTimelinesByTimeRange(projectId, startTime, endTime);
         return ApiResponse.success(timelines, "Timelines retrieved successfully");
     }
 
@@ -166,6 +189,65 @@ public class TimelineController {
                 String.format("成功获取项目时间线，共 %d 个事件", timeline.size()));
     }
 
+    /**
+     * 获取项目时间线快照
+     * GET /api/timelines/project/{projectId}/snapshot?sinceVersion=2f1c9a0b3e4d5-2a
+     * 携带上次的版本号时，若时间线未变化只返回 notModified=true，不返回事件
+     *
+     * @param projectId    项目ID
+     * @param sinceVersion 客户端已有的快照版本（可选）
+     * @return 带版本号的时间线快照
+     */
+    @GetMapping("/project/{projectId}/snapshot")
+    public ApiResponse<TimelineSnapshotDTO> getTimelineSnapshot(
+            @PathVariable UUID projectId,
+            @RequestParam(required = false) String sinceVersion) {
+        log.info("GET /api/timelines/project/{}/snapshot - 获取时间线快照，客户端版本: {}", projectId, sinceVersion);
+        TimelineSnapshotDTO snapshot = timelineService.getTimelineSnapshot(projectId, sinceVersion);
+        return ApiResponse.success(snapshot, snapshot.isNotModified()
+                ? "时间线未变化"
+                : String.format("成功获取时间线快照，共 %d 个事件", snapshot.getTotalEvents()));
+    }
+
+    /**
+     * 获取项目时间范围内的事件
+     * GET /api/timelines/project/{projectId}/range?startTime=...&endTime=...
+     *
+     * @param projectId 项目ID
+     * @param startTime 开始时间（可选）
+     * @param endTime   结束时间（可选）
+     * @return 范围内的事件
+     */
+    @GetMapping("/project/{projectId}/range")
+    public ApiResponse<TimelineSnapshotDTO> getTimelineRange(
+            @PathVariable UUID projectId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        log.info("GET /api/timelines/project/{}/range - 时间范围: {} ~ {}", projectId, startTime, endTime);
+        TimelineSnapshotDTO range = timelineService.getTimelineRange(projectId, startTime, endTime);
+        return ApiResponse.success(range, String.format("成功获取 %d 个事件", range.getTotalEvents()));
+    }
+
+    /**
+     * 获取活跃区间与时间窗口重叠的角色
+     * GET /api/timelines/project/{projectId}/overlap?startTime=...&endTime=...
+     *
+     * @param projectId 项目ID
+     * @param startTime 开始时间（可选）
+     * @param endTime   结束时间（可选）
+     * @return 角色活跃区间列表
+     */
+    @GetMapping("/project/{projectId}/overlap")
+    public ApiResponse<TimelineSnapshotDTO> getOverlappingCharacters(
+            @PathVariable UUID projectId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        log.info("GET /api/timelines/project/{}/overlap - 时间窗口: {} ~ {}", projectId, startTime, endTime);
+        TimelineSnapshotDTO overlap = timelineService.getOverlappingCharacters(projectId, startTime, endTime);
+        return ApiResponse.success(overlap,
+                String.format("时间窗口内活跃的角色 %d 个", overlap.getCharacterSpans().size()));
+    }
+
     /**
      * 获取项目关键事件
      * GET /api/timelines/project/{projectId}/key-events?threshold=7
@@ -206,28 +288,26 @@ public class TimelineController {
     /**
      * 批量创建时间线事件
      * POST /api/timelines/batch
+     * 单个事件校验或写入失败不会中断整批，失败行在 errors 中按下标返回
      *
      * @param timelineDTOs 时间线事件列表
-     * @return 创建的事件列表
+     * @return 批量导入结果
      */
     @PostMapping("/batch")
     @ResponseStatus(HttpStatus.CREATED)
-    public ApiResponse<List<TimelineDTO>> batchCreateTimelines(
-            @Valid @RequestBody List<TimelineDTO> timelineDTOs) {
+    public ApiResponse<TimelineBatchResultDTO> batchCreateTimelines(@RequestBody List<TimelineDTO> timelineDTOs) {
         log.info("POST /api/timelines/batch - 批量创建 {} 个时间线事件", timelineDTOs.size());
 
         if (timelineDTOs.isEmpty()) {
             return ApiResponse.error(400, "事件列表不能为空");
         }
 
-        if (timelineDTOs.size() > 50) {
-            return ApiResponse.error(400, "单次批量创建不能超过50个事件");
-        }
-
         try {
-            List<TimelineDTO> createdEvents = timelineService.batchCreateTimelines(timelineDTOs);
-            return ApiResponse.success(createdEvents,
-                    String.format("成功批量创建 %d 个时间线事件", createdEvents.size()));
+            TimelineBatchResultDTO result = timelineService.batchCreateTimelines(timelineDTOs);
+            return ApiResponse.success(result,
+                    String.format("批量创建时间线事件完成，成功 %d 个，失败 %d 个", result.getCreated(), result.getFailed()));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(400, e.getMessage());
         } catch (Exception e) {
             log.error("批量创建时间线事件失败", e);
             return ApiResponse.error(500, "批量创建失败: " + e.getMessage());
@@ -272,6 +352,15 @@ public class TimelineController {
 
     // ==================== 辅助端点 ====================
 
+    /**
+     * 获取时间线快照缓存统计
+     * GET /api/timelines/snapshot/statistics
+     */
+    @GetMapping("/snapshot/statistics")
+    public ApiResponse<Map<String, Object>> getSnapshotStatistics() {
+        return ApiResponse.success(snapshotService.getStatistics(), "成功获取时间线快照统计");
+    }
+
     /**
      * 获取所有事件类型
      * GET /api/timelines/event-types
@@ -1,6 +1,7 @@
 package com.linyuan.storyforge.controller;
 
 import com.linyuan.storyforge.common.ApiResponse;
+import com.linyuan.storyforge.common.CursorPage;
 import com.linyuan.storyforge.dto.WorldviewDTO;
 import com.linyuan.storyforge.service.WorldviewService;
 import jakarta.validation.Valid;
@@ -24,13 +25,15 @@ public class WorldviewController {
     private final WorldviewService worldviewService;
 
     /**
-     * Get all worldviews
+     * Get all worldviews, page by page (keyset pagination)
      */
     @GetMapping
-    public ApiResponse<List<WorldviewDTO>> getAllWorldviews() {
-        log.info("GET /api/worldviews - Fetching all worldviews");
-        List<WorldviewDTO> worldviews = worldviewService.getAllWorldviews();
-        return ApiResponse.success(worldviews, "Worldviews retrieved successfully");
+    public ApiResponse<CursorPage<WorldviewDTO>> getAllWorldviews(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /api/worldviews - Fetching worldviews page");
+        CursorPage<WorldviewDTO> page = worldviewService.getWorldviewsPage(cursor, size);
+        return ApiResponse.success(page, "Worldviews retrieved successfully");
     }
 
     /**
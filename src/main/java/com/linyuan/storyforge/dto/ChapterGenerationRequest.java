@@ -146,6 +146,23 @@ public class ChapterGenerationRequest {
     @Builder.Default
     private Double temperature = 0.8;
 
+    /**
+     * Best-of-N 候选数（大于1时并发生成多个候选并择优）
+     */
+    @Builder.Default
+    private Integer candidateCount = 1;
+
+    /**
+     * Best-of-N 成本预算（所有候选合计的最大Token数）
+     */
+    private Integer candidateTokenBudget;
+
+    /**
+     * Best-of-N 提前接受阈值
+     */
+    @Builder.Default
+    private Double earlyAcceptScore = 0.9;
+
     /**
      * 最大Token数（根据目标字数自动计算，或手动指定）
      */
@@ -226,6 +243,9 @@ public class ChapterGenerationRequest {
                 .maxRetries(maxRetries)
                 .temperature(temperature)
                 .maxTokens(calculatedMaxTokens)
+                .candidateCount(candidateCount)
+                .candidateTokenBudget(candidateTokenBudget)
+                .earlyAcceptScore(earlyAcceptScore)
                 .autoCreateMemory(autoCreateMemory)
                 .chapterNumber(chapterNumber)
                 .timelineId(timelineId)
@@ -0,0 +1,65 @@
+package com.linyuan.storyforge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ChapterVersionDTO - 章节版本元数据
+ * 列出版本时不返回正文，正文需按版本单独重建
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChapterVersionDTO {
+
+    /**
+     * 记录ID（当前版本为章节ID，历史版本为版本记录ID）
+     */
+    private UUID id;
+
+    private UUID projectId;
+
+    private Integer chapterNumber;
+
+    private Integer version;
+
+    private String title;
+
+    private String status;
+
+    /**
+     * 存储方式：live（story_chapters 中的完整正文）/full（压缩快照）/delta（增量）
+     */
+    private String storage;
+
+    /**
+     * 增量所依赖的版本号
+     */
+    private Integer baseVersion;
+
+    /**
+     * 正文字符数
+     */
+    private Integer contentLength;
+
+    /**
+     * 实际存储字节数（压缩后）
+     */
+    private Integer storedBytes;
+
+    /**
+     * 是否为当前（最新）版本
+     */
+    private boolean current;
+
+    private LocalDateTime createdAt;
+}
@@ -21,7 +21,7 @@ import java.util.UUID;
  * @since 1.0.0
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class GenerationContext {
@@ -46,6 +46,11 @@ public class GenerationContext {
      */
     private Map<UUID, List<CharacterMemory>> characterMemories;
 
+    /**
+     * 参与角色之间及与其他角色的关系（来自关系图，格式化为提示词行）
+     */
+    private List<String> relationships;
+
     /**
      * 场景描述/上下文
      */
@@ -66,6 +71,11 @@ public class GenerationContext {
      */
     private String generationGoal;
 
+    /**
+     * 提示词上下文 token 预算（PromptSettings.maxContextTokens，为空时使用默认配置）
+     */
+    private Integer maxContextTokens;
+
     /**
      * 额外的提示词参数
      */
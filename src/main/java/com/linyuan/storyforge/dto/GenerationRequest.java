@@ -99,6 +99,23 @@ public class GenerationRequest {
     @Builder.Default
     private Integer maxTokens = 2000;
 
+    /**
+     * Best-of-N 候选数（大于1时并发生成多个候选并择优，代替顺序重试）
+     */
+    @Builder.Default
+    private Integer candidateCount = 1;
+
+    /**
+     * Best-of-N 成本预算：所有候选合计的最大Token数（为空则不限，仅受配置上限约束）
+     */
+    private Integer candidateTokenBudget;
+
+    /**
+     * Best-of-N 提前接受阈值：候选通过验证且得分不低于该值时立即返回
+     */
+    @Builder.Default
+    private Double earlyAcceptScore = 0.9;
+
     /**
      * 额外参数
      */
@@ -81,16 +81,48 @@ public class GenerationResult {
      */
     private String errorMessage;
 
+    /**
+     * 流式增量验证提前中止的生成次数
+     */
+    @Builder.Default
+    private int earlyAbortCount = 0;
+
+    /**
+     * Best-of-N 模式下实际生成的候选数
+     */
+    private Integer candidateCount;
+
+    /**
+     * 段落级修正次数（替代整段重新生成）
+     */
+    @Builder.Default
+    private int repairCount = 0;
+
     /**
      * 生成耗时（毫秒）
      */
     private Long durationMs;
 
     /**
-     * Token使用量
+     * Token使用量（输入 + 输出）
      */
     private Integer tokensUsed;
 
+    /**
+     * 输入 token 数（本次生成所有模型调用之和）
+     */
+    private Integer promptTokens;
+
+    /**
+     * 输出 token 数（本次生成所有模型调用之和）
+     */
+    private Integer completionTokens;
+
+    /**
+     * 实际使用的模型（预算降级时为降级后的模型）
+     */
+    private String modelName;
+
     /**
      * 详细日志
      */
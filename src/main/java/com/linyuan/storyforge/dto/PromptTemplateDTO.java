@@ -33,6 +33,9 @@ public class PromptTemplateDTO {
 
     private Boolean isActive; // 默认 true
 
+    private String variantGroup; // A/B 变体组（为空时以模板名称作为组）
+    private Integer trafficWeight; // 组内流量权重，默认 100
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
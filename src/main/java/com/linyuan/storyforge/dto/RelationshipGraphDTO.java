@@ -0,0 +1,107 @@
+package com.linyuan.storyforge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * RelationshipGraphDTO - 角色关系图查询结果
+ * 邻域、路径和阵营查询共用，未涉及的字段为 null
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelationshipGraphDTO {
+
+    private UUID projectId;
+
+    /**
+     * 查询起点角色（邻域/路径查询）
+     */
+    private UUID sourceId;
+
+    /**
+     * 查询终点角色（路径查询）
+     */
+    private UUID targetId;
+
+    /**
+     * 结果中的角色；路径查询时按路径顺序排列
+     */
+    private List<Node> nodes;
+
+    /**
+     * 结果中的关系
+     */
+    private List<Edge> edges;
+
+    /**
+     * 阵营（友好关系连通的角色组）
+     */
+    private List<Community> communities;
+
+    /**
+     * 跨阵营的敌对关系
+     */
+    private List<Edge> hostileEdges;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Node {
+
+        private UUID characterId;
+
+        private String name;
+
+        /**
+         * 与起点的跳数（阵营查询时为 null）
+         */
+        private Integer distance;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Edge {
+
+        private UUID relationshipId;
+
+        private UUID characterAId;
+
+        private UUID characterBId;
+
+        private String relationshipType;
+
+        /**
+         * 关系类别（RelationshipCategory code）
+         */
+        private String category;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Community {
+
+        private int index;
+
+        private List<Node> members;
+
+        /**
+         * 阵营内部的友好关系数
+         */
+        private int internalEdges;
+    }
+}
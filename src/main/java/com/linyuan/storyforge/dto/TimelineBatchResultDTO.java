@@ -0,0 +1,61 @@
+package com.linyuan.storyforge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * TimelineBatchResultDTO - 时间线事件批量导入结果
+ * 单行校验或写入失败不影响其他行，失败行在 errors 中按请求下标返回
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimelineBatchResultDTO {
+
+    /**
+     * 请求中的事件数
+     */
+    private int total;
+
+    /**
+     * 成功写入的事件数
+     */
+    private int created;
+
+    /**
+     * 失败的事件数
+     */
+    private int failed;
+
+    /**
+     * 成功写入的事件（与请求顺序一致）
+     */
+    private List<TimelineDTO> createdEvents;
+
+    /**
+     * 失败行
+     */
+    private List<RowError> errors;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+
+        /**
+         * 请求列表中的下标（从 0 开始）
+         */
+        private int index;
+
+        private String message;
+    }
+}
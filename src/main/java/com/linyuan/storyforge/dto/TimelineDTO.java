@@ -17,7 +17,7 @@ import java.util.UUID;
  * Timeline DTO for API requests/responses
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TimelineDTO {
@@ -0,0 +1,77 @@
+package com.linyuan.storyforge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * TimelineSnapshotDTO - 项目时间线快照
+ * 快照带版本号，客户端携带上次的版本号请求时，若未变化只返回 notModified
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimelineSnapshotDTO {
+
+    private UUID projectId;
+
+    /**
+     * 快照版本，由项目事件的最后更新时间和事件数得出，项目时间线任何写入后改变
+     * 不透明字符串，客户端只需原样传回比较是否相同
+     */
+    private String version;
+
+    /**
+     * 客户端版本与当前版本一致，未返回事件
+     */
+    private boolean notModified;
+
+    /**
+     * 项目事件总数
+     */
+    private int totalEvents;
+
+    /**
+     * 最早/最晚的事件时间
+     */
+    private LocalDateTime earliestEventTime;
+
+    private LocalDateTime latestEventTime;
+
+    /**
+     * 事件列表（按事件时间排序，无绝对时间的事件排在最后）
+     */
+    private List<TimelineDTO> events;
+
+    /**
+     * 角色活跃区间（区间重叠查询）
+     */
+    private List<CharacterSpan> characterSpans;
+
+    @Data
+    @Builder(toBuilder = true)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CharacterSpan {
+
+        private UUID characterId;
+
+        /**
+         * 角色第一个/最后一个事件的时间
+         */
+        private LocalDateTime firstEventTime;
+
+        private LocalDateTime lastEventTime;
+
+        private int eventCount;
+    }
+}
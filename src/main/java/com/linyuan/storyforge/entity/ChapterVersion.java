@@ -0,0 +1,87 @@
+package com.linyuan.storyforge.entity;
+
+import io.hypersistence.utils.hibernate.type.json.JsonBinaryType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Chapter Version entity - archived chapter versions
+ * 最新版本完整保存在 story_chapters，历史版本以压缩快照或增量形式保存
+ */
+@Data
+@Entity
+@Table(name = "chapter_versions",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"project_id", "chapter_number", "version"}))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChapterVersion extends BaseEntity {
+
+    public static final String ENCODING_FULL = "FULL";
+    public static final String ENCODING_DELTA = "DELTA";
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    private Project project;
+
+    @Column(name = "chapter_number", nullable = false)
+    private Integer chapterNumber;
+
+    @Column(nullable = false)
+    private Integer version;
+
+    private String title;
+
+    @Column(columnDefinition = "TEXT")
+    private String outline;
+
+    @Column(name = "main_conflict", columnDefinition = "TEXT")
+    private String mainConflict;
+
+    @Column(name = "target_word_count")
+    private Integer targetWordCount;
+
+    @Column(length = 50)
+    private String tone;
+
+    @Column(length = 30)
+    private String pacing;
+
+    @Column(length = 20)
+    private String status;
+
+    @Type(JsonBinaryType.class)
+    @Column(name = "generation_params", columnDefinition = "jsonb")
+    private Map<String, Object> generationParams;
+
+    // 存储编码
+    @Column(nullable = false, length = 10)
+    private String encoding; // FULL/DELTA
+
+    @Column(name = "base_version")
+    private Integer baseVersion; // 增量编码所依赖的版本号
+
+    @Column(name = "content_length")
+    private Integer contentLength; // 原文字符数
+
+    @Column(name = "content_checksum")
+    private Long contentChecksum; // 原文 CRC32
+
+    @Column(name = "stored_bytes")
+    private Integer storedBytes; // 压缩后字节数
+
+    @ToString.Exclude
+    @Column(name = "content_payload", columnDefinition = "bytea")
+    private byte[] contentPayload;
+
+    @Column(name = "version_created_at")
+    private LocalDateTime versionCreatedAt; // 该版本最初生成时间
+}
@@ -62,20 +62,25 @@ public class CharacterMemory extends BaseEntity {
             this.accessibility = 1.0f;
             return;
         }
+        this.accessibility = decayedAccessibility();
+    }
+
+    /**
+     * 按遗忘曲线计算当前的可访问性，不修改实体（从未访问过时返回已保存的值）
+     */
+    public Float decayedAccessibility() {
+        if (lastAccessed == null) {
+            return accessibility;
+        }
         long daysSinceAccess = ChronoUnit.DAYS.between(lastAccessed, LocalDateTime.now());
         if (daysSinceAccess == 0) {
-            return;
+            return accessibility;
         }
         int count = (accessCount != null) ? accessCount : 0;
         double memoryStrength = 7.0 + Math.log(1 + count) * 3.0;
         double retention = Math.exp(-daysSinceAccess / memoryStrength);
         float weight = (emotionalWeight != null) ? emotionalWeight : 0.5f;
-        this.accessibility = (float) (retention * weight);
-        if (this.accessibility < 0.0f) {
-            this.accessibility = 0.0f;
-        } else if (this.accessibility > 1.0f) {
-            this.accessibility = 1.0f;
-        }
+        return Math.max(0.0f, Math.min(1.0f, (float) (retention * weight)));
     }
 
     public void recordAccess() {
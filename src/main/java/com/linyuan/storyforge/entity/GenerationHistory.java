@@ -57,4 +57,13 @@ public class GenerationHistory extends BaseEntity {
 
     @Column(name = "user_feedback", columnDefinition = "TEXT")
     private String userFeedback;
+
+    @Column(name = "latency_ms")
+    private Integer latencyMs; // 模型调用耗时
+
+    @Column(name = "prompt_tokens")
+    private Integer promptTokens;
+
+    @Column(name = "completion_tokens")
+    private Integer completionTokens;
 }
@@ -0,0 +1,70 @@
+package com.linyuan.storyforge.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Generation Stats entity - pre-aggregated generation history statistics per project and type
+ * 由 GenerationStatsService 以 SQL 聚合增量刷新，只读
+ */
+@Data
+@Entity
+@Table(name = "generation_stats",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"project_id", "generation_type"}))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationStats extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    private Project project;
+
+    @Column(name = "generation_type", length = 50, nullable = false)
+    private String generationType;
+
+    @Column(name = "total_count")
+    private Long totalCount;
+
+    @Column(name = "scored_count")
+    private Long scoredCount; // quality_score 非空的记录数
+
+    @Column(name = "avg_quality")
+    private Double avgQuality;
+
+    @Column(name = "p90_quality")
+    private Double p90Quality;
+
+    @Column(name = "feedback_count")
+    private Long feedbackCount;
+
+    // 质量最高的 K 条记录的参数分析
+    @Column(name = "top_k_sample_size")
+    private Integer topKSampleSize;
+
+    @Column(name = "top_k_avg_quality")
+    private Double topKAvgQuality;
+
+    @Column(name = "top_k_avg_temperature")
+    private Double topKAvgTemperature;
+
+    @Column(name = "top_k_median_temperature")
+    private Double topKMedianTemperature;
+
+    @Column(name = "top_k_avg_max_tokens")
+    private Double topKAvgMaxTokens;
+
+    @Column(name = "top_k_median_max_tokens")
+    private Double topKMedianMaxTokens;
+
+    @Column(name = "last_generated_at")
+    private LocalDateTime lastGeneratedAt;
+
+    @Column(name = "refreshed_at")
+    private LocalDateTime refreshedAt;
+}
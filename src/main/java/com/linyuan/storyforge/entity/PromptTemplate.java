@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
@@ -13,6 +15,8 @@ import java.util.List;
  */
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "prompt_templates")
 @Builder
 @NoArgsConstructor
@@ -43,4 +47,11 @@ public class PromptTemplate extends BaseEntity {
     @Column(name = "is_active")
     @Builder.Default
     private Boolean isActive = true;
+
+    @Column(name = "variant_group")
+    private String variantGroup; // A/B 变体组（为空时以模板名称作为组）
+
+    @Column(name = "traffic_weight", nullable = false)
+    @Builder.Default
+    private Integer trafficWeight = 100; // 组内流量权重
 }
@@ -0,0 +1,84 @@
+package com.linyuan.storyforge.enums;
+
+/**
+ * 书稿导出格式枚举
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public enum ExportFormat {
+
+    /**
+     * 纯文本
+     */
+    TXT("txt", "纯文本", "text/plain;charset=UTF-8", ".txt"),
+
+    /**
+     * Markdown
+     */
+    MARKDOWN("md", "Markdown", "text/markdown;charset=UTF-8", ".md"),
+
+    /**
+     * EPUB 电子书（zip 封装）
+     */
+    EPUB("epub", "EPUB电子书", "application/epub+zip", ".epub");
+
+    /**
+     * 格式标识符
+     */
+    private final String code;
+
+    /**
+     * 中文描述
+     */
+    private final String description;
+
+    /**
+     * 响应内容类型
+     */
+    private final String mediaType;
+
+    /**
+     * 文件扩展名
+     */
+    private final String extension;
+
+    ExportFormat(String code, String description, String mediaType, String extension) {
+        this.code = code;
+        this.description = description;
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 根据code获取枚举
+     *
+     * @param code 格式标识符
+     * @return 对应的枚举值
+     * @throws IllegalArgumentException 如果找不到对应的导出格式
+     */
+    public static ExportFormat fromCode(String code) {
+        for (ExportFormat format : values()) {
+            if (format.code.equalsIgnoreCase(code) || format.name().equalsIgnoreCase(code)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format: " + code);
+    }
+}
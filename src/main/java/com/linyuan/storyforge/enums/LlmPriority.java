@@ -0,0 +1,49 @@
+package com.linyuan.storyforge.enums;
+
+/**
+ * 模型调用优先级枚举
+ * LlmRequestScheduler 按优先级分配模型调用的并发名额
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public enum LlmPriority {
+
+    /**
+     * 交互 - 用户正在等待结果的生成请求
+     */
+    INTERACTIVE("interactive", "交互"),
+
+    /**
+     * 批量 - 批量生成、批量验证
+     */
+    BATCH("batch", "批量"),
+
+    /**
+     * 后台 - 记忆提取、AI 验证等辅助调用
+     */
+    BACKGROUND("background", "后台");
+
+    /**
+     * 优先级标识符
+     */
+    private final String code;
+
+    /**
+     * 中文描述
+     */
+    private final String description;
+
+    LlmPriority(String code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
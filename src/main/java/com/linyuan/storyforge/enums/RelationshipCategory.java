@@ -0,0 +1,198 @@
+package com.linyuan.storyforge.enums;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 角色关系类别枚举
+ * 关系类型可能是 {@link RelationshipType} 的 code，也可能是自由文本（父子/朋友/敌人/恋人等），
+ * 统一归入类别，用于关系图的过滤和阵营划分
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public enum RelationshipCategory {
+
+    /**
+     * 敌对 - 仇敌、宿敌
+     */
+    ENEMY("enemy", "敌对", -1, List.of("敌对", "敌人", "仇人", "仇敌", "仇家", "宿敌", "死敌", "敌手",
+            "enemy", "foe", "nemesis")),
+
+    /**
+     * 竞争 - 对手、竞争者
+     */
+    RIVAL("rival", "竞争", -1, List.of("对手", "竞争", "竞争者", "劲敌", "情敌", "rival", "competitor")),
+
+    /**
+     * 师徒 - 师父、徒弟、导师
+     */
+    MENTOR("mentor", "师徒", 1, List.of("师徒", "师父", "师傅", "师尊", "恩师", "老师", "导师", "徒弟", "弟子", "学生",
+            "mentor", "teacher", "student", "apprentice", "disciple")),
+
+    /**
+     * 恋人 - 恋人、夫妻、伴侣
+     */
+    LOVER("lover", "恋人", 1, List.of("爱情", "恋人", "爱人", "情侣", "伴侣", "夫妻", "夫妇", "丈夫", "妻子",
+            "未婚夫", "未婚妻", "男友", "女友", "男朋友", "女朋友", "配偶", "暗恋", "恋爱", "爱慕",
+            "lover", "spouse", "husband", "wife", "boyfriend", "girlfriend")),
+
+    /**
+     * 亲属 - 父子、兄弟姐妹等
+     */
+    FAMILY("family", "亲属", 1, List.of("家族", "家人", "亲属", "亲戚", "血亲", "父母", "父亲", "母亲", "父子", "父女",
+            "母子", "母女", "儿子", "女儿", "兄弟", "姐妹", "兄妹", "姐弟", "哥哥", "弟弟", "姐姐", "妹妹",
+            "祖父", "祖母", "爷爷", "奶奶", "孙子", "孙女", "叔叔", "伯父", "舅舅", "姑姑", "阿姨", "表亲", "堂兄", "表兄",
+            "family", "parent", "father", "mother", "son", "daughter", "sibling", "brother", "sister", "cousin")),
+
+    /**
+     * 友好 - 朋友、伙伴、盟友、同门
+     */
+    FRIEND("friend", "友好", 1, List.of("友谊", "朋友", "好友", "挚友", "密友", "知己", "伙伴", "同伴", "盟友", "同盟",
+            "战友", "同门", "师兄弟", "师兄", "师姐", "师弟", "师妹", "friend", "friendship", "ally", "companion")),
+
+    /**
+     * 上下级 - 上司与下属、主从
+     */
+    HIERARCHY("hierarchy", "上下级", 1, List.of("上下级", "上司", "下属", "部下", "属下", "手下", "上级", "下级", "领导",
+            "追随者", "主仆", "仆人", "随从", "君臣", "主公", "老板", "boss", "superior", "subordinate", "servant", "follower")),
+
+    /**
+     * 同僚 - 同事、合作者
+     */
+    COLLEAGUE("colleague", "同僚", 0, List.of("同事", "同僚", "合作伙伴", "搭档", "colleague", "coworker", "partner")),
+
+    /**
+     * 陌生 - 初次相遇或不熟悉
+     */
+    STRANGER("stranger", "陌生", 0, List.of("陌生", "陌生人", "路人", "初识", "stranger")),
+
+    /**
+     * 复杂 - 多重或矛盾的关系
+     */
+    COMPLEX("complex", "复杂", 0, List.of("复杂", "亦敌亦友", "complex")),
+
+    /**
+     * 其他
+     */
+    OTHER("other", "其他", 0, List.of());
+
+    private static final Pattern NON_LETTER = Pattern.compile("[^a-z]+");
+
+    /**
+     * 类别标识符
+     */
+    private final String code;
+
+    /**
+     * 中文描述
+     */
+    private final String description;
+
+    /**
+     * 倾向：1 友好，-1 敌对，0 中性
+     */
+    private final int polarity;
+
+    /**
+     * 归类关键词
+     */
+    private final List<String> keywords;
+
+    RelationshipCategory(String code, String description, int polarity, List<String> keywords) {
+        this.code = code;
+        this.description = description;
+        this.polarity = polarity;
+        this.keywords = keywords;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getPolarity() {
+        return polarity;
+    }
+
+    /**
+     * 根据关系类型归类
+     * 先按 {@link RelationshipType} 的 code 识别，其余视为自由文本，按关键词整词匹配：
+     * 命中多个关键词时取最长的一个（"女朋友"优先于"朋友"，"合作伙伴"优先于"伙伴"），英文按单词匹配
+     *
+     * @param relationshipType 关系类型（RelationshipType code 或自由文本）
+     * @return 关系类别，无法识别时返回 OTHER
+     */
+    public static RelationshipCategory classify(String relationshipType) {
+        if (relationshipType == null || relationshipType.isBlank()) {
+            return OTHER;
+        }
+        String normalized = relationshipType.strip().toLowerCase(Locale.ROOT);
+        try {
+            return of(RelationshipType.fromCode(normalized));
+        } catch (IllegalArgumentException e) {
+            // 自由文本
+        }
+
+        Set<String> words = new HashSet<>(Arrays.asList(NON_LETTER.split(normalized)));
+        RelationshipCategory best = OTHER;
+        int bestLength = 0;
+        for (RelationshipCategory category : values()) {
+            for (String keyword : category.keywords) {
+                boolean matched = isAscii(keyword) ? words.contains(keyword) : normalized.contains(keyword);
+                if (matched && keyword.length() > bestLength) {
+                    best = category;
+                    bestLength = keyword.length();
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 关系类型对应的类别
+     *
+     * @param type 关系类型
+     * @return 关系类别
+     */
+    public static RelationshipCategory of(RelationshipType type) {
+        return switch (type) {
+            case FAMILY -> FAMILY;
+            case FRIENDSHIP -> FRIEND;
+            case ROMANCE -> LOVER;
+            case RIVALRY -> ENEMY;
+            case MENTORSHIP -> MENTOR;
+            case COLLEAGUE -> COLLEAGUE;
+            case HIERARCHICAL -> HIERARCHY;
+            case STRANGER -> STRANGER;
+            case COMPLEX -> COMPLEX;
+        };
+    }
+
+    private static boolean isAscii(String keyword) {
+        return keyword.chars().allMatch(c -> c < 0x80);
+    }
+
+    /**
+     * 根据code获取枚举
+     *
+     * @param code 类别标识符
+     * @return 对应的枚举值
+     * @throws IllegalArgumentException 如果找不到对应的关系类别
+     */
+    public static RelationshipCategory fromCode(String code) {
+        for (RelationshipCategory category : values()) {
+            if (category.code.equalsIgnoreCase(code)) {
+                return category;
+            }
+        }
+        throw new IllegalArgumentException("Unknown relationship category: " + code);
+    }
+}
@@ -0,0 +1,13 @@
+package com.linyuan.storyforge.exception;
+
+import java.util.UUID;
+
+/**
+ * Exception thrown when a project's daily token budget is used up
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    public BudgetExceededException(UUID projectId, long usedTokens, long limit) {
+        super(String.format("Project '%s' exceeded its daily token budget: %d / %d tokens", projectId, usedTokens, limit));
+    }
+}
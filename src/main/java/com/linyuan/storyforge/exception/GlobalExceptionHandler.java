@@ -27,6 +27,22 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(ex.getMessage()));
     }
 
+    @ExceptionHandler(BudgetExceededException.class)
+    public ResponseEntity<ApiResponse<Void>> handleBudgetExceededException(BudgetExceededException ex) {
+        log.warn("Budget exceeded: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(LlmOverloadedException.class)
+    public ResponseEntity<ApiResponse<Void>> handleLlmOverloadedException(LlmOverloadedException ex) {
+        log.warn("Model call dropped: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiResponse<Map<String, String>>> handleValidationExceptions(
             MethodArgumentNotValidException ex) {
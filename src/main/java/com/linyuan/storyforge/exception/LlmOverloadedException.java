@@ -0,0 +1,12 @@
+package com.linyuan.storyforge.exception;
+
+/**
+ * Exception thrown when a model call is dropped from the scheduler queue,
+ * either because it waited past its deadline or because its client went away
+ */
+public class LlmOverloadedException extends RuntimeException {
+
+    public LlmOverloadedException(String message) {
+        super(message);
+    }
+}
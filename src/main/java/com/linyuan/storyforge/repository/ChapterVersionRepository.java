@@ -0,0 +1,67 @@
+package com.linyuan.storyforge.repository;
+
+import com.linyuan.storyforge.entity.ChapterVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for ChapterVersion entity
+ */
+@Repository
+public interface ChapterVersionRepository extends JpaRepository<ChapterVersion, UUID> {
+
+    /**
+     * Version metadata without the compressed payload
+     */
+    interface VersionSummary {
+        UUID getId();
+        Integer getVersion();
+        String getTitle();
+        String getStatus();
+        String getEncoding();
+        Integer getBaseVersion();
+        Integer getContentLength();
+        Integer getStoredBytes();
+        LocalDateTime getVersionCreatedAt();
+    }
+
+    /**
+     * Find version metadata of a chapter, ordered by version
+     */
+    @Query("SELECT v.id AS id, v.version AS version, v.title AS title, v.status AS status, " +
+           "v.encoding AS encoding, v.baseVersion AS baseVersion, v.contentLength AS contentLength, " +
+           "v.storedBytes AS storedBytes, v.versionCreatedAt AS versionCreatedAt " +
+           "FROM ChapterVersion v WHERE v.project.id = :projectId AND v.chapterNumber = :chapterNumber " +
+           "ORDER BY v.version ASC")
+    List<VersionSummary> findSummaries(
+            @Param("projectId") UUID projectId,
+            @Param("chapterNumber") Integer chapterNumber);
+
+    /**
+     * Count delta-encoded versions newer than the latest full snapshot
+     */
+    @Query("SELECT COUNT(v) FROM ChapterVersion v WHERE v.project.id = :projectId " +
+           "AND v.chapterNumber = :chapterNumber AND v.encoding = 'DELTA' " +
+           "AND v.version > COALESCE((SELECT MAX(k.version) FROM ChapterVersion k " +
+           "WHERE k.project.id = :projectId AND k.chapterNumber = :chapterNumber AND k.encoding = 'FULL'), 0)")
+    long countDeltasSinceSnapshot(
+            @Param("projectId") UUID projectId,
+            @Param("chapterNumber") Integer chapterNumber);
+
+    /**
+     * Find the delta that is anchored on the given head version
+     */
+    ChapterVersion findFirstByProjectIdAndChapterNumberAndEncodingAndBaseVersion(
+            UUID projectId, Integer chapterNumber, String encoding, Integer baseVersion);
+
+    /**
+     * Check if a version already exists
+     */
+    boolean existsByProjectIdAndChapterNumberAndVersion(UUID projectId, Integer chapterNumber, Integer version);
+}
@@ -1,11 +1,15 @@
 package com.linyuan.storyforge.repository;
 
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.entity.CharacterMemory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,44 +17,32 @@ import java.util.UUID;
  * Repository for CharacterMemory entity
  */
 @Repository
-public interface CharacterMemoryRepository extends JpaRepository<CharacterMemory, UUID> {
+public interface CharacterMemoryRepository extends JpaRepository<CharacterMemory, UUID>, KeysetPagingRepository<CharacterMemory> {
 
     /**
      * Find memories by character ID
      */
     List<CharacterMemory> findByCharacterId(UUID characterId);
 
-    /**
-     * Find memories by character ID and memory type
-     */
-    List<CharacterMemory> findByCharacterIdAndMemoryType(UUID characterId, String memoryType);
-
     /**
      * Find memories by timeline ID
      */
     List<CharacterMemory> findByTimelineId(UUID timelineId);
 
     /**
-     * Find accessible memories (accessibility above threshold)
+     * Find memories whose stored accessibility is strictly above the threshold,
+     * served by idx_character_memories_character_accessibility
      */
-    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.accessibility >= :threshold ORDER BY cm.accessibility DESC")
-    List<CharacterMemory> findAccessibleMemories(
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.accessibility > :threshold ORDER BY cm.accessibility DESC")
+    List<CharacterMemory> findByCharacterIdAndAccessibilityAbove(
             @Param("characterId") UUID characterId,
             @Param("threshold") Float threshold);
 
     /**
-     * Find memories by emotional weight (above threshold)
+     * Find the most accessed memories, limited by the pageable
      */
-    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.emotionalWeight >= :threshold ORDER BY cm.emotionalWeight DESC")
-    List<CharacterMemory> findEmotionalMemories(
-            @Param("characterId") UUID characterId,
-            @Param("threshold") Float threshold);
-
-    /**
-     * Find most accessed memories
-     */
-    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId ORDER BY cm.accessCount DESC")
-    List<CharacterMemory> findMostAccessedMemories(@Param("characterId") UUID characterId);
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId ORDER BY cm.accessCount DESC, cm.id ASC")
+    List<CharacterMemory> findMostAccessedMemories(@Param("characterId") UUID characterId, Pageable pageable);
 
     /**
      * Find memories by memory type
@@ -66,4 +58,115 @@ public interface CharacterMemoryRepository extends JpaRepository<CharacterMemory
      * Count memories by character ID and memory type
      */
     long countByCharacterIdAndMemoryType(UUID characterId, String memoryType);
+
+    /**
+     * First page of a character's memories in (created_at, id) order
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findFirstPageByCharacterId(@Param("characterId") UUID characterId, Pageable pageable);
+
+    /**
+     * Page of a character's memories after the given keyset position
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId " +
+            "AND (cm.createdAt > :createdAt OR (cm.createdAt = :createdAt AND cm.id > :id)) " +
+            "ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findPageAfterByCharacterId(@Param("characterId") UUID characterId,
+                                                     @Param("createdAt") LocalDateTime createdAt,
+                                                     @Param("id") UUID id,
+                                                     Pageable pageable);
+
+    /**
+     * First page of a character's memories of one type in (created_at, id) order
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.memoryType = :memoryType ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findFirstPageByMemoryType(@Param("characterId") UUID characterId, @Param("memoryType") String memoryType,Pageable pageable);
+
+    /**
+     * Page of a character's memories of one type after the given keyset position
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.memoryType = :memoryType " +
+            "AND (cm.createdAt > :createdAt OR (cm.createdAt = :createdAt AND cm.id > :id)) " +
+            "ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findPageAfterByMemoryType(@Param("characterId") UUID characterId,
+                                                    @Param("memoryType") String memoryType,
+                                                    @Param("createdAt") LocalDateTime createdAt,
+                                                    @Param("id") UUID id,
+                                                    Pageable pageable);
+
+    /**
+     * First page of a character's memories with accessibility at least the threshold in (created_at, id) order
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.accessibility >= :threshold ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findFirstPageAccessible(@Param("characterId") UUID characterId, @Param("threshold") Float threshold,Pageable pageable);
+
+    /**
+     * Page of a character's memories with accessibility at least the threshold after the given keyset position
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.accessibility >= :threshold " +
+            "AND (cm.createdAt > :createdAt OR (cm.createdAt = :createdAt AND cm.id > :id)) " +
+            "ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findPageAfterAccessible(@Param("characterId") UUID characterId,
+                                                  @Param("threshold") Float threshold,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") UUID id,
+                                                  Pageable pageable);
+
+    /**
+     * First page of a character's memories with emotional weight at least the threshold in (created_at, id) order
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.emotionalWeight >= :threshold ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findFirstPageEmotional(@Param("characterId") UUID characterId, @Param("threshold") Float threshold,Pageable pageable);
+
+    /**
+     * Page of a character's memories with emotional weight at least the threshold after the given keyset position
+     */
+    @Query("SELECT cm FROM CharacterMemory cm WHERE cm.character.id = :characterId AND cm.emotionalWeight >= :threshold " +
+            "AND (cm.createdAt > :createdAt OR (cm.createdAt = :createdAt AND cm.id > :id)) " +
+            "ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<CharacterMemory> findPageAfterEmotional(@Param("characterId") UUID characterId,
+                                                 @Param("threshold") Float threshold,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") UUID id,
+                                                 Pageable pageable);
+
+    /**
+     * Fetch one keyset page of a character's memories plus one extra row
+     */
+    default List<CharacterMemory> findKeysetPageByCharacterId(UUID characterId, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findFirstPageByCharacterId(characterId, limit)
+                : findPageAfterByCharacterId(characterId, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one keyset page of a character's memories of one type plus one extra row
+     */
+    default List<CharacterMemory> findKeysetPageByMemoryType(UUID characterId, String memoryType, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findFirstPageByMemoryType(characterId, memoryType, limit)
+                : findPageAfterByMemoryType(characterId, memoryType, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one keyset page of a character's accessible memories plus one extra row
+     */
+    default List<CharacterMemory> findKeysetPageAccessible(UUID characterId, Float threshold, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findFirstPageAccessible(characterId, threshold, limit)
+                : findPageAfterAccessible(characterId, threshold, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one keyset page of a character's emotional memories plus one extra row
+     */
+    default List<CharacterMemory> findKeysetPageEmotional(UUID characterId, Float threshold, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findFirstPageEmotional(characterId, threshold, limit)
+                : findPageAfterEmotional(characterId, threshold, cursor.createdAt(), cursor.id(), limit);
+    }
 }
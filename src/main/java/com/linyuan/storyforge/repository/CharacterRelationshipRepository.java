@@ -14,7 +14,28 @@ import java.util.UUID;
  * Repository for CharacterRelationship entity
  */
 @Repository
-public interface CharacterRelationshipRepository extends JpaRepository<CharacterRelationship, UUID> {
+public interface CharacterRelationshipRepository extends JpaRepository<CharacterRelationship, UUID>, KeysetPagingRepository<CharacterRelationship> {
+
+    /**
+     * Edge projection used to build the in-memory relationship graph
+     */
+    interface RelationshipEdge {
+        UUID getId();
+
+        UUID getCharacterAId();
+
+        UUID getCharacterBId();
+
+        String getRelationshipType();
+    }
+
+    /**
+     * Find all relationship edges of a project (without loading entities)
+     */
+    @Query("SELECT cr.id AS id, cr.characterA.id AS characterAId, cr.characterB.id AS characterBId, " +
+           "cr.relationshipType AS relationshipType " +
+           "FROM CharacterRelationship cr WHERE cr.characterA.project.id = :projectId")
+    List<RelationshipEdge> findEdgesByProjectId(@Param("projectId") UUID projectId);
 
     /**
      * Find relationships by character A ID
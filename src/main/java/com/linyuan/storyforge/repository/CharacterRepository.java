@@ -1,10 +1,16 @@
 package com.linyuan.storyforge.repository;
 
 import com.linyuan.storyforge.entity.Character;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -12,11 +18,12 @@ import java.util.UUID;
  * Repository for Character entity
  */
 @Repository
-public interface CharacterRepository extends JpaRepository<Character, UUID> {
+public interface CharacterRepository extends JpaRepository<Character, UUID>, KeysetPagingRepository<Character> {
 
     /**
      * Find characters by project ID
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Character> findByProjectId(UUID projectId);
 
     /**
@@ -39,4 +46,34 @@ public interface CharacterRepository extends JpaRepository<Character, UUID> {
      */
     @Query("SELECT COUNT(c) FROM Character c WHERE c.project.id = :projectId")
     long countByProjectId(UUID projectId);
+
+    /**
+     * Find the project of each character in one query (used by bulk imports)
+     */
+    @Query("SELECT c.id AS id, c.project.id AS projectId FROM Character c WHERE c.id IN :ids")
+    List<CharacterProjectRef> findProjectRefsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Find the last update time of each character without loading the entities
+     */
+    @Query("SELECT c.id AS id, c.updatedAt AS updatedAt FROM Character c WHERE c.id IN :ids")
+    List<CharacterVersionRef> findVersionRefsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Character id / project id projection
+     */
+    interface CharacterProjectRef {
+        UUID getId();
+
+        UUID getProjectId();
+    }
+
+    /**
+     * Character id / updated_at projection
+     */
+    interface CharacterVersionRef {
+        UUID getId();
+
+        LocalDateTime getUpdatedAt();
+    }
 }
@@ -13,7 +13,7 @@ import java.util.UUID;
  * Repository for Dialogue entity
  */
 @Repository
-public interface DialogueRepository extends JpaRepository<Dialogue, UUID> {
+public interface DialogueRepository extends JpaRepository<Dialogue, UUID>, KeysetPagingRepository<Dialogue> {
 
     /**
      * Find dialogues by chapter ID, ordered by sequence number
@@ -1,11 +1,15 @@
 package com.linyuan.storyforge.repository;
 
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.entity.GenerationHistory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,7 +17,7 @@ import java.util.UUID;
  * Repository for GenerationHistory entity
  */
 @Repository
-public interface GenerationHistoryRepository extends JpaRepository<GenerationHistory, UUID> {
+public interface GenerationHistoryRepository extends JpaRepository<GenerationHistory, UUID>, KeysetPagingRepository<GenerationHistory> {
 
     /**
      * Find generation history by project ID
@@ -21,45 +25,180 @@ public interface GenerationHistoryRepository extends JpaRepository<GenerationHis
     List<GenerationHistory> findByProjectIdOrderByCreatedAtDesc(UUID projectId);
 
     /**
-     * Find generation history by generation type
+     * Find generation history by model name
      */
-    List<GenerationHistory> findByGenerationTypeOrderByCreatedAtDesc(String generationType);
+    List<GenerationHistory> findByModelNameOrderByCreatedAtDesc(String modelName);
 
     /**
-     * Find generation history by target ID
+     * Count generations by project ID
      */
-    List<GenerationHistory> findByTargetIdOrderByCreatedAtDesc(UUID targetId);
+    long countByProjectId(UUID projectId);
 
     /**
-     * Find generation history by model name
+     * Count generations by generation type
      */
-    List<GenerationHistory> findByModelNameOrderByCreatedAtDesc(String modelName);
+    long countByGenerationType(String generationType);
 
     /**
-     * Find high-quality generations (quality score above threshold)
+     * Get average quality score by generation type
      */
-    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.qualityScore >= :threshold ORDER BY gh.qualityScore DESC")
-    List<GenerationHistory> findHighQualityGenerations(@Param("threshold") Float threshold);
+    @Query("SELECT AVG(gh.qualityScore) FROM GenerationHistory gh WHERE gh.generationType = :generationType AND gh.qualityScore IS NOT NULL")
+    Float getAverageQualityScoreByType(@Param("generationType") String generationType);
 
     /**
-     * Find generations with user feedback
+     * First page newest first, in (created_at, id) DESC order
      */
-    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.userFeedback IS NOT NULL ORDER BY gh.createdAt DESC")
-    List<GenerationHistory> findGenerationsWithFeedback();
+    @Query("SELECT gh FROM GenerationHistory gh ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findLatestFirstPage(Pageable pageable);
 
     /**
-     * Count generations by project ID
+     * Page before the given keyset position, newest first
      */
-    long countByProjectId(UUID projectId);
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.createdAt < :createdAt OR (gh.createdAt = :createdAt AND gh.id < :id) " +
+            "ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findPageBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") UUID id, Pageable pageable);
 
     /**
-     * Count generations by generation type
+     * First page of a project's history, newest first
      */
-    long countByGenerationType(String generationType);
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.project.id = :projectId ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findLatestFirstPageByProjectId(@Param("projectId") UUID projectId, Pageable pageable);
 
     /**
-     * Get average quality score by generation type
+     * Page of a project's history before the given keyset position, newest first
      */
-    @Query("SELECT AVG(gh.qualityScore) FROM GenerationHistory gh WHERE gh.generationType = :generationType AND gh.qualityScore IS NOT NULL")
-    Float getAverageQualityScoreByType(@Param("generationType") String generationType);
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.project.id = :projectId " +
+            "AND (gh.createdAt < :createdAt OR (gh.createdAt = :createdAt AND gh.id < :id)) " +
+            "ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findPageBeforeByProjectId(@Param("projectId") UUID projectId,
+                                                      @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") UUID id,
+                                                      Pageable pageable);
+
+    /**
+     * Fetch one newest-first page plus one extra row to detect whether more pages exist
+     */
+    default List<GenerationHistory> findLatestPage(PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findLatestFirstPage(limit)
+                : findPageBefore(cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one newest-first page of a project's history plus one extra row
+     */
+    default List<GenerationHistory> findLatestPageByProjectId(UUID projectId, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findLatestFirstPageByProjectId(projectId, limit)
+                : findPageBeforeByProjectId(projectId, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * First page of history of one generation type, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.generationType = :generationType ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findLatestFirstPageByGenerationType(@Param("generationType") String generationType, Pageable pageable);
+
+    /**
+     * Page of history of one generation type before the given keyset position, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.generationType = :generationType " +
+            "AND (gh.createdAt < :createdAt OR (gh.createdAt = :createdAt AND gh.id < :id)) " +
+            "ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findPageBeforeByGenerationType(@Param("generationType") String generationType,
+                                                           @Param("createdAt") LocalDateTime createdAt,
+                                                           @Param("id") UUID id,
+                                                           Pageable pageable);
+
+    /**
+     * First page of history of one target, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.targetId = :targetId ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findLatestFirstPageByTargetId(@Param("targetId") UUID targetId, Pageable pageable);
+
+    /**
+     * Page of history of one target before the given keyset position, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.targetId = :targetId " +
+            "AND (gh.createdAt < :createdAt OR (gh.createdAt = :createdAt AND gh.id < :id)) " +
+            "ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findPageBeforeByTargetId(@Param("targetId") UUID targetId,
+                                                     @Param("createdAt") LocalDateTime createdAt,
+                                                     @Param("id") UUID id,
+                                                     Pageable pageable);
+
+    /**
+     * First page of generations scoring at least the threshold, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.qualityScore >= :threshold ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findLatestFirstPageHighQuality(@Param("threshold") Float threshold, Pageable pageable);
+
+    /**
+     * Page of generations scoring at least the threshold before the given keyset position, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.qualityScore >= :threshold " +
+            "AND (gh.createdAt < :createdAt OR (gh.createdAt = :createdAt AND gh.id < :id)) " +
+            "ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findPageBeforeHighQuality(@Param("threshold") Float threshold,
+                                                      @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") UUID id,
+                                                      Pageable pageable);
+
+    /**
+     * First page of generations with user feedback, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.userFeedback IS NOT NULL ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findLatestFirstPageWithFeedback(Pageable pageable);
+
+    /**
+     * Page of generations with user feedback before the given keyset position, newest first
+     */
+    @Query("SELECT gh FROM GenerationHistory gh WHERE gh.userFeedback IS NOT NULL " +
+            "AND (gh.createdAt < :createdAt OR (gh.createdAt = :createdAt AND gh.id < :id)) " +
+            "ORDER BY gh.createdAt DESC, gh.id DESC")
+    List<GenerationHistory> findPageBeforeWithFeedback(@Param("createdAt") LocalDateTime createdAt,
+                                                       @Param("id") UUID id,
+                                                       Pageable pageable);
+
+    /**
+     * Fetch one newest-first page of one generation type plus one extra row
+     */
+    default List<GenerationHistory> findLatestPageByGenerationType(String generationType, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findLatestFirstPageByGenerationType(generationType, limit)
+                : findPageBeforeByGenerationType(generationType, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one newest-first page of one target's history plus one extra row
+     */
+    default List<GenerationHistory> findLatestPageByTargetId(UUID targetId, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findLatestFirstPageByTargetId(targetId, limit)
+                : findPageBeforeByTargetId(targetId, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one newest-first page of high-quality generations plus one extra row
+     */
+    default List<GenerationHistory> findLatestPageHighQuality(Float threshold, PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findLatestFirstPageHighQuality(threshold, limit)
+                : findPageBeforeHighQuality(threshold, cursor.createdAt(), cursor.id(), limit);
+    }
+
+    /**
+     * Fetch one newest-first page of generations with feedback plus one extra row
+     */
+    default List<GenerationHistory> findLatestPageWithFeedback(PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findLatestFirstPageWithFeedback(limit)
+                : findPageBeforeWithFeedback(cursor.createdAt(), cursor.id(), limit);
+    }
 }
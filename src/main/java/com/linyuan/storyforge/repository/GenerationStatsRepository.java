@@ -0,0 +1,31 @@
+package com.linyuan.storyforge.repository;
+
+import com.linyuan.storyforge.entity.GenerationStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository for GenerationStats entity
+ */
+@Repository
+public interface GenerationStatsRepository extends JpaRepository<GenerationStats, UUID> {
+
+    /**
+     * Find stats of all generation types in a project
+     */
+    List<GenerationStats> findByProjectId(UUID projectId);
+
+    /**
+     * Find stats of one generation type in a project
+     */
+    Optional<GenerationStats> findByProjectIdAndGenerationType(UUID projectId, String generationType);
+
+    /**
+     * Check whether a project has been aggregated at least once
+     */
+    boolean existsByProjectId(UUID projectId);
+}
@@ -0,0 +1,57 @@
+package com.linyuan.storyforge.repository;
+
+import com.linyuan.storyforge.common.PageCursor;
+import com.linyuan.storyforge.entity.BaseEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Keyset pagination and streaming over (created_at, id) for list endpoints
+ */
+@NoRepositoryBean
+public interface KeysetPagingRepository<T extends BaseEntity> {
+
+    /**
+     * First page in (created_at, id) order
+     */
+    @Query("SELECT e FROM #{#entityName} e ORDER BY e.createdAt ASC, e.id ASC")
+    List<T> findFirstPage(Pageable pageable);
+
+    /**
+     * Page after the given keyset position
+     */
+    @Query("SELECT e FROM #{#entityName} e WHERE e.createdAt > :createdAt OR (e.createdAt = :createdAt AND e.id > :id) " +
+            "ORDER BY e.createdAt ASC, e.id ASC")
+    List<T> findPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") UUID id, Pageable pageable);
+
+    /**
+     * Stream all rows in (created_at, id) order; must be consumed inside a transaction
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT e FROM #{#entityName} e ORDER BY e.createdAt ASC, e.id ASC")
+    Stream<T> streamAll();
+
+    /**
+     * Fetch one keyset page plus one extra row to detect whether more pages exist
+     *
+     * @param cursor   position after which to start (null for the first page)
+     * @param pageSize page size
+     */
+    default List<T> findKeysetPage(PageCursor cursor, int pageSize) {
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        return cursor == null
+                ? findFirstPage(limit)
+                : findPageAfter(cursor.createdAt(), cursor.id(), limit);
+    }
+}
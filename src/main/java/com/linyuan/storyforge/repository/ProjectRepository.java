@@ -2,16 +2,20 @@ package com.linyuan.storyforge.repository;
 
 import com.linyuan.storyforge.entity.Project;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * Repository for Project entity
  */
 @Repository
-public interface ProjectRepository extends JpaRepository<Project, UUID> {
+public interface ProjectRepository extends JpaRepository<Project, UUID>, KeysetPagingRepository<Project> {
 
     /**
      * Find projects by status
@@ -27,4 +31,10 @@ public interface ProjectRepository extends JpaRepository<Project, UUID> {
      * Find projects by name containing (case-insensitive search)
      */
     List<Project> findByNameContainingIgnoreCase(String name);
+
+    /**
+     * Find which of the given project IDs exist
+     */
+    @Query("SELECT p.id FROM Project p WHERE p.id IN :ids")
+    Set<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
 }
@@ -1,7 +1,10 @@
 package com.linyuan.storyforge.repository;
 
 import com.linyuan.storyforge.entity.PromptTemplate;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,7 +17,7 @@ import java.util.UUID;
  * Repository for PromptTemplate entity
  */
 @Repository
-public interface PromptTemplateRepository extends JpaRepository<PromptTemplate, UUID> {
+public interface PromptTemplateRepository extends JpaRepository<PromptTemplate, UUID>, KeysetPagingRepository<PromptTemplate> {
 
     /**
      * Find templates by category
@@ -24,16 +27,28 @@ public interface PromptTemplateRepository extends JpaRepository<PromptTemplate,
     /**
      * Find active templates
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<PromptTemplate> findByIsActiveTrue();
 
+    /**
+     * Find active templates, always reading from the database
+     * Used by the template registry when another instance reports a change, which this
+     * instance's query and entity caches cannot see; the fresh rows also refresh the entity cache
+     */
+    @Query("SELECT pt FROM PromptTemplate pt WHERE pt.isActive = true ORDER BY pt.name")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "REFRESH"))
+    List<PromptTemplate> findActiveFromDatabase();
+
     /**
      * Find active templates by category
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<PromptTemplate> findByCategoryAndIsActiveTrue(String category);
 
     /**
      * Find template by name
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<PromptTemplate> findByName(String name);
 
     /**
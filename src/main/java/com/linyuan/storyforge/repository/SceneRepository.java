@@ -11,7 +11,7 @@ import java.util.UUID;
  * Repository for Scene entity
  */
 @Repository
-public interface SceneRepository extends JpaRepository<Scene, UUID> {
+public interface SceneRepository extends JpaRepository<Scene, UUID>, KeysetPagingRepository<Scene> {
 
     /**
      * Find scenes by project ID
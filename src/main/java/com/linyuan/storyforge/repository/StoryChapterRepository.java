@@ -2,16 +2,32 @@ package com.linyuan.storyforge.repository;
 
 import com.linyuan.storyforge.entity.StoryChapter;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Repository for StoryChapter entity
  */
 @Repository
-public interface StoryChapterRepository extends JpaRepository<StoryChapter, UUID> {
+public interface StoryChapterRepository extends JpaRepository<StoryChapter, UUID>, KeysetPagingRepository<StoryChapter> {
+
+    /**
+     * Chapter row metadata without the generated content
+     */
+    interface VersionSummary {
+        UUID getId();
+        Integer getVersion();
+        String getTitle();
+        String getStatus();
+        Integer getContentLength();
+        LocalDateTime getCreatedAt();
+    }
 
     /**
      * Find chapters by project ID, ordered by chapter number
@@ -32,4 +48,25 @@ public interface StoryChapterRepository extends JpaRepository<StoryChapter, UUID
      * Find chapters by project ID and status
      */
     List<StoryChapter> findByProjectIdAndStatus(UUID projectId, String status);
+
+    /**
+     * Find the latest version row of a chapter
+     */
+    Optional<StoryChapter> findFirstByProjectIdAndChapterNumberOrderByVersionDesc(UUID projectId, Integer chapterNumber);
+
+    /**
+     * Find a specific version row of a chapter
+     */
+    Optional<StoryChapter> findFirstByProjectIdAndChapterNumberAndVersion(UUID projectId, Integer chapterNumber, Integer version);
+
+    /**
+     * Find version metadata of chapter rows, ordered by version
+     */
+    @Query("SELECT c.id AS id, c.version AS version, c.title AS title, c.status AS status, " +
+           "LENGTH(c.generatedContent) AS contentLength, c.createdAt AS createdAt " +
+           "FROM StoryChapter c WHERE c.project.id = :projectId AND c.chapterNumber = :chapterNumber " +
+           "ORDER BY c.version ASC")
+    List<VersionSummary> findVersionSummaries(
+            @Param("projectId") UUID projectId,
+            @Param("chapterNumber") Integer chapterNumber);
 }
@@ -14,7 +14,7 @@ import java.util.UUID;
  * Repository for Timeline entity
  */
 @Repository
-public interface TimelineRepository extends JpaRepository<Timeline, UUID> {
+public interface TimelineRepository extends JpaRepository<Timeline, UUID>, KeysetPagingRepository<Timeline> {
 
     /**
      * Find timelines by project ID
@@ -49,6 +49,31 @@ public interface TimelineRepository extends JpaRepository<Timeline, UUID> {
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime);
 
+    /**
+     * Find project timelines within a time range
+     */
+    @Query("SELECT t FROM Timeline t WHERE t.project.id = :projectId AND t.eventTime BETWEEN :startTime AND :endTime ORDER BY t.eventTime ASC")
+    List<Timeline> findByProjectIdAndEventTimeBetween(
+            @Param("projectId") UUID projectId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * Find project key events (importance >= threshold), ordered by event time
+     */
+    @Query("SELECT t FROM Timeline t WHERE t.project.id = :projectId AND t.memoryImportance >= :threshold ORDER BY t.eventTime ASC")
+    List<Timeline> findKeyEvents(
+            @Param("projectId") UUID projectId,
+            @Param("threshold") Integer threshold);
+
+    /**
+     * Find project events of a type (case-insensitive), ordered by event time
+     */
+    @Query("SELECT t FROM Timeline t WHERE t.project.id = :projectId AND LOWER(t.eventType) = LOWER(:eventType) ORDER BY t.eventTime ASC")
+    List<Timeline> findByProjectIdAndEventType(
+            @Param("projectId") UUID projectId,
+            @Param("eventType") String eventType);
+
     /**
      * Find important memories (importance >= threshold)
      */
@@ -66,4 +91,16 @@ public interface TimelineRepository extends JpaRepository<Timeline, UUID> {
      * Count timelines by project ID
      */
     long countByProjectId(UUID projectId);
+
+    /**
+     * Change marker of a project's timeline, used as the snapshot version
+     */
+    interface TimelineVersion {
+        LocalDateTime getLastUpdated();
+
+        long getEventCount();
+    }
+
+    @Query("SELECT MAX(t.updatedAt) AS lastUpdated, COUNT(t) AS eventCount FROM Timeline t WHERE t.project.id = :projectId")
+    TimelineVersion findVersionByProjectId(@Param("projectId") UUID projectId);
 }
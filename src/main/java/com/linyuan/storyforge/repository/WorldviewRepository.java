@@ -1,21 +1,29 @@
 package com.linyuan.storyforge.repository;
 
 import com.linyuan.storyforge.entity.Worldview;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Repository for Worldview entity
  */
 @Repository
-public interface WorldviewRepository extends JpaRepository<Worldview, UUID> {
+public interface WorldviewRepository extends JpaRepository<Worldview, UUID>, KeysetPagingRepository<Worldview> {
 
     /**
      * Find worldviews by project ID
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Worldview> findByProjectId(UUID projectId);
 
     /**
@@ -32,4 +40,10 @@ public interface WorldviewRepository extends JpaRepository<Worldview, UUID> {
      * Check if a worldview exists by name and project ID
      */
     boolean existsByNameAndProjectId(String name, UUID projectId);
+
+    /**
+     * Find the last update time of a worldview without loading the entity
+     */
+    @Query("SELECT w.updatedAt FROM Worldview w WHERE w.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") UUID id);
 }
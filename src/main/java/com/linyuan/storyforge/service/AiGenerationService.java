@@ -1,10 +1,13 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.enums.LlmPriority;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 /**
  * AI生成服务（代理层）
@@ -21,6 +24,7 @@ import java.util.Map;
 public class AiGenerationService {
 
     private final QianfanDirectService qianfanService;
+    private final GenerationHistoryEnhancedService historyService;
 
     /**
      * 根据模板生成内容
@@ -36,6 +40,27 @@ public class AiGenerationService {
         return qianfanService.generateWithTemplate(templateKey, variables);
     }
 
+    /**
+     * 根据模板生成内容，并记录生成历史
+     * 历史中记录实际使用的模板变体、耗时和 token 用量，用于比较 A/B 变体；用量按项目计入台账和预算
+     *
+     * @param templateKey 模板键名（变体组）
+     * @param variables 模板变量
+     * @param projectId 项目ID
+     * @param generationType 生成类型
+     * @return AI生成的内容
+     */
+    public String generateWithTemplate(String templateKey, Map<String, Object> variables,
+                                       UUID projectId, String generationType) {
+        log.debug("代理调用: generateWithTemplate(templateKey={}, projectId={})", templateKey, projectId);
+        try (LlmUsageScope ignored = LlmUsageScope.open(projectId, generationType)
+                .priority(LlmPriority.INTERACTIVE)) {
+            QianfanDirectService.TemplateCompletion completion = qianfanService.completeTemplate(templateKey, variables);
+            historyService.recordTemplateGeneration(completion, variables, projectId, generationType);
+            return completion.content();
+        }
+    }
+
     /**
      * 直接调用AI进行对话
      * 使用默认配置
@@ -63,6 +88,54 @@ public class AiGenerationService {
         return qianfanService.chatWithOptions(userMessage, temperature, maxTokens);
     }
 
+    /**
+     * 带系统提示调用AI
+     * 系统提示放稳定的设定内容，便于服务端前缀缓存命中
+     *
+     * @param userMessage 用户消息
+     * @param systemMessage 系统提示（可选）
+     * @param temperature 温度参数
+     * @param maxTokens 最大token数
+     * @return AI响应
+     */
+    public String chatWithOptions(String userMessage, String systemMessage, Double temperature, Integer maxTokens) {
+        log.debug("代理调用: chatWithOptions(system={}, temperature={}, maxTokens={})",
+            systemMessage != null, temperature, maxTokens);
+        return qianfanService.chatWithOptions(userMessage, systemMessage, temperature, maxTokens);
+    }
+
+    /**
+     * 流式调用AI，回调返回 false 时中止生成
+     *
+     * @param userMessage 用户消息
+     * @param temperature 温度参数
+     * @param maxTokens 最大token数
+     * @param onProgress 接收到目前为止的完整输出，返回 false 中止
+     * @return 流式生成结果（中止时为部分内容）
+     */
+    public QianfanDirectService.StreamedCompletion chatStream(String userMessage, Double temperature, Integer maxTokens,
+                                                             Predicate<CharSequence> onProgress) {
+        return chatStream(userMessage, null, temperature, maxTokens, onProgress);
+    }
+
+    /**
+     * 带系统提示的流式调用
+     *
+     * @param userMessage 用户消息
+     * @param systemMessage 系统提示（可选）
+     * @param temperature 温度参数
+     * @param maxTokens 最大token数
+     * @param onProgress 接收到目前为止的完整输出，返回 false 中止
+     * @return 流式生成结果（中止时为部分内容）
+     */
+    public QianfanDirectService.StreamedCompletion chatStream(String userMessage, String systemMessage,
+                                                             Double temperature, Integer maxTokens,
+                                                             Predicate<CharSequence> onProgress) {
+        log.debug("代理调用: chatStream(system={}, temperature={}, maxTokens={})",
+            systemMessage != null, temperature, maxTokens);
+        return qianfanService.chatStream(userMessage, systemMessage, temperature, maxTokens, onProgress);
+    }
+
     /**
      * 检查AI服务是否可用
      *
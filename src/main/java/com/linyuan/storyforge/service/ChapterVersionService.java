@@ -0,0 +1,252 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.common.DeltaCompression;
+import com.linyuan.storyforge.dto.ChapterVersionDTO;
+import com.linyuan.storyforge.dto.StoryChapterDTO;
+import com.linyuan.storyforge.entity.ChapterVersion;
+import com.linyuan.storyforge.entity.StoryChapter;
+import com.linyuan.storyforge.exception.ResourceNotFoundException;
+import com.linyuan.storyforge.repository.ChapterVersionRepository;
+import com.linyuan.storyforge.repository.StoryChapterRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * ChapterVersionService - 章节版本存储服务
+ * 最新版本完整保存在 story_chapters 中，历史版本以反向增量保存：
+ * 每个历史版本以其下一个版本的正文作为字典压缩，每隔若干版本保存一次完整快照，
+ * 保证重建任意版本时需要解码的增量链长度有上限
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChapterVersionService {
+
+    /**
+     * 两个完整快照之间最多允许的增量版本数 + 1
+     */
+    private static final int SNAPSHOT_INTERVAL = 8;
+
+    private final ChapterVersionRepository versionRepository;
+    private final StoryChapterRepository chapterRepository;
+
+    /**
+     * 归档即将被覆盖的当前版本
+     *
+     * @param current        当前（即将被覆盖的）章节
+     * @param newHeadContent 覆盖后的新正文，作为增量基准
+     * @param newHeadVersion 覆盖后的新版本号
+     * @return 归档记录
+     */
+    @Transactional
+    public ChapterVersion archive(StoryChapter current, String newHeadContent, int newHeadVersion) {
+        UUID projectId = current.getProject().getId();
+        Integer chapterNumber = current.getChapterNumber();
+
+        if (versionRepository.existsByProjectIdAndChapterNumberAndVersion(projectId, chapterNumber, current.getVersion())) {
+            throw new IllegalStateException(String.format("章节 %d 的版本 %d 已归档", chapterNumber, current.getVersion()));
+        }
+
+        boolean snapshot = newHeadContent == null || newHeadContent.isEmpty() ||
+                versionRepository.countDeltasSinceSnapshot(projectId, chapterNumber) >= SNAPSHOT_INTERVAL - 1;
+
+        String content = current.getGeneratedContent() != null ? current.getGeneratedContent() : "";
+        byte[] payload = DeltaCompression.compress(content, snapshot ? null : newHeadContent);
+
+        ChapterVersion version = ChapterVersion.builder()
+                .project(current.getProject())
+                .chapterNumber(chapterNumber)
+                .version(current.getVersion())
+                .title(current.getTitle())
+                .outline(current.getOutline())
+                .mainConflict(current.getMainConflict())
+                .targetWordCount(current.getTargetWordCount())
+                .tone(current.getTone())
+                .pacing(current.getPacing())
+                .status(current.getStatus())
+                .generationParams(current.getGenerationParams())
+                .encoding(snapshot ? ChapterVersion.ENCODING_FULL : ChapterVersion.ENCODING_DELTA)
+                .baseVersion(snapshot ? null : newHeadVersion)
+                .contentLength(content.length())
+                .contentChecksum(DeltaCompression.checksum(content))
+                .storedBytes(payload.length)
+                .contentPayload(payload)
+                .versionCreatedAt(current.getCreatedAt())
+                .build();
+
+        ChapterVersion saved = versionRepository.save(version);
+        log.info("归档章节 {} 版本 {} - 编码: {}, 原文 {} 字符, 存储 {} 字节",
+                chapterNumber, saved.getVersion(), saved.getEncoding(), content.length(), payload.length);
+        return saved;
+    }
+
+    /**
+     * 当前版本即将被修改或删除时，将依赖它的增量转换为完整快照
+     *
+     * @param head 当前版本章节（修改前的状态）
+     */
+    @Transactional
+    public void detachFromHead(StoryChapter head) {
+        ChapterVersion anchored = versionRepository.findFirstByProjectIdAndChapterNumberAndEncodingAndBaseVersion(
+                head.getProject().getId(), head.getChapterNumber(), ChapterVersion.ENCODING_DELTA, head.getVersion());
+        if (anchored == null) {
+            return;
+        }
+
+        String content = decode(anchored, head.getGeneratedContent());
+        byte[] payload = DeltaCompression.compress(content, null);
+        anchored.setEncoding(ChapterVersion.ENCODING_FULL);
+        anchored.setBaseVersion(null);
+        anchored.setContentPayload(payload);
+        anchored.setStoredBytes(payload.length);
+        versionRepository.save(anchored);
+        log.debug("章节 {} 版本 {} 已转换为完整快照", head.getChapterNumber(), anchored.getVersion());
+    }
+
+    /**
+     * 列出章节所有版本的元数据（不解压正文）
+     *
+     * @param projectId     项目ID
+     * @param chapterNumber 章节编号
+     * @return 版本元数据，按版本号升序
+     */
+    @Transactional(readOnly = true)
+    public List<ChapterVersionDTO> listVersions(UUID projectId, int chapterNumber) {
+        List<StoryChapterRepository.VersionSummary> liveRows =
+                chapterRepository.findVersionSummaries(projectId, chapterNumber);
+        Integer headVersion = liveRows.isEmpty() ? null : liveRows.get(liveRows.size() - 1).getVersion();
+
+        List<ChapterVersionDTO> versions = new ArrayList<>();
+        for (ChapterVersionRepository.VersionSummary summary : versionRepository.findSummaries(projectId, chapterNumber)) {
+            versions.add(ChapterVersionDTO.builder()
+                    .id(summary.getId())
+                    .projectId(projectId)
+                    .chapterNumber(chapterNumber)
+                    .version(summary.getVersion())
+                    .title(summary.getTitle())
+                    .status(summary.getStatus())
+                    .storage(summary.getEncoding().toLowerCase())
+                    .baseVersion(summary.getBaseVersion())
+                    .contentLength(summary.getContentLength())
+                    .storedBytes(summary.getStoredBytes())
+                    .current(false)
+                    .createdAt(summary.getVersionCreatedAt())
+                    .build());
+        }
+        for (StoryChapterRepository.VersionSummary row : liveRows) {
+            versions.add(ChapterVersionDTO.builder()
+                    .id(row.getId())
+                    .projectId(projectId)
+                    .chapterNumber(chapterNumber)
+                    .version(row.getVersion())
+                    .title(row.getTitle())
+                    .status(row.getStatus())
+                    .storage("live")
+                    .contentLength(row.getContentLength())
+                    .current(Objects.equals(row.getVersion(), headVersion))
+                    .createdAt(row.getCreatedAt())
+                    .build());
+        }
+
+        versions.sort(Comparator.comparing(ChapterVersionDTO::getVersion));
+        return versions;
+    }
+
+    /**
+     * 重建归档版本的正文
+     * 从目标版本沿增量链向上找到完整快照或当前版本，再逐级解码
+     *
+     * @param projectId     项目ID
+     * @param chapterNumber 章节编号
+     * @param version       版本号
+     * @return 重建出的章节（id 为版本记录ID）
+     */
+    @Transactional(readOnly = true)
+    public StoryChapterDTO reconstruct(UUID projectId, int chapterNumber, int version) {
+        Map<Integer, ChapterVersionRepository.VersionSummary> byVersion = versionRepository
+                .findSummaries(projectId, chapterNumber).stream()
+                .collect(Collectors.toMap(ChapterVersionRepository.VersionSummary::getVersion, Function.identity()));
+
+        ChapterVersionRepository.VersionSummary target = byVersion.get(version);
+        if (target == null) {
+            throw new ResourceNotFoundException("ChapterVersion", "version", version);
+        }
+
+        // 1. 收集增量链：目标版本 → ... → 完整快照 / 当前版本
+        List<ChapterVersionRepository.VersionSummary> chain = new ArrayList<>();
+        ChapterVersionRepository.VersionSummary cursor = target;
+        while (cursor != null) {
+            chain.add(cursor);
+            if (!ChapterVersion.ENCODING_DELTA.equals(cursor.getEncoding())) {
+                break;
+            }
+            cursor = byVersion.get(cursor.getBaseVersion());
+        }
+
+        // 2. 链顶为增量时，以当前版本正文作为基准
+        ChapterVersionRepository.VersionSummary top = chain.get(chain.size() - 1);
+        String content = null;
+        if (ChapterVersion.ENCODING_DELTA.equals(top.getEncoding())) {
+            StoryChapter head = chapterRepository
+                    .findFirstByProjectIdAndChapterNumberAndVersion(projectId, chapterNumber, top.getBaseVersion())
+                    .orElseThrow(() -> new IllegalStateException(
+                            String.format("章节 %d 版本 %d 的增量基准缺失", chapterNumber, top.getVersion())));
+            content = head.getGeneratedContent();
+        }
+
+        // 3. 自上而下逐级解码
+        Map<UUID, ChapterVersion> payloads = versionRepository.findAllById(
+                        chain.stream().map(ChapterVersionRepository.VersionSummary::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(ChapterVersion::getId, Function.identity()));
+
+        ChapterVersion record = null;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            record = payloads.get(chain.get(i).getId());
+            content = decode(record, content);
+        }
+
+        log.debug("重建章节 {} 版本 {}，解码 {} 级", chapterNumber, version, chain.size());
+        return StoryChapterDTO.builder()
+                .id(record.getId())
+                .projectId(projectId)
+                .chapterNumber(record.getChapterNumber())
+                .title(record.getTitle())
+                .outline(record.getOutline())
+                .mainConflict(record.getMainConflict())
+                .targetWordCount(record.getTargetWordCount())
+                .tone(record.getTone())
+                .pacing(record.getPacing())
+                .generatedContent(content)
+                .generationParams(record.getGenerationParams())
+                .version(record.getVersion())
+                .status(record.getStatus())
+                .createdAt(record.getVersionCreatedAt())
+                .updatedAt(record.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * 解码单个版本并校验
+     */
+    private String decode(ChapterVersion record, String baseContent) {
+        boolean delta = ChapterVersion.ENCODING_DELTA.equals(record.getEncoding());
+        String content = DeltaCompression.decompress(record.getContentPayload(), delta ? baseContent : null);
+
+        if (record.getContentChecksum() != null &&
+                DeltaCompression.checksum(content) != record.getContentChecksum()) {
+            throw new IllegalStateException(String.format("章节 %d 版本 %d 校验失败",
+                    record.getChapterNumber(), record.getVersion()));
+        }
+        return content;
+    }
+}
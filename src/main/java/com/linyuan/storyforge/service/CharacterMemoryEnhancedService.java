@@ -22,7 +22,13 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CharacterMemoryEnhancedService {
 
+    /**
+     * 参与检索的最低可访问性
+     */
+    private static final float ACCESSIBILITY_THRESHOLD = 0.3f;
+
     private final CharacterMemoryRepository memoryRepository;
+    private final MemoryDecayService memoryDecayService;
 
     /**
      * 智能记忆检索
@@ -44,46 +50,83 @@ public class CharacterMemoryEnhancedService {
         log.info("智能检索记忆 - 角色: {}, 场景: {}, 情绪: {}, 数量: {}",
                 characterId, sceneContext, currentEmotion, maxResults);
 
+        List<CharacterMemory> relevantMemories = rankRelevantMemories(
+                characterId, sceneContext, currentEmotion, maxResults);
+
+        // 更新被检索记忆的访问记录
+        relevantMemories.forEach(memory -> {
+            memory.recordAccess();
+            memoryRepository.save(memory);
+        });
+
+        log.info("成功检索到 {} 条相关记忆", relevantMemories.size());
+        return relevantMemories;
+    }
+
+    /**
+     * 只读记忆检索（用于提示词预览）
+     * 排序结果与 {@link #retrieveRelevantMemories} 一致，但不记录访问
+     *
+     * @param characterId    角色ID
+     * @param sceneContext   场景上下文描述
+     * @param currentEmotion 当前情绪状态
+     * @param maxResults     最大返回数量
+     * @return 相关记忆列表,按相关性排序
+     */
+    @Transactional(readOnly = true)
+    public List<CharacterMemory> previewRelevantMemories(
+            UUID characterId,
+            String sceneContext,
+            String currentEmotion,
+            int maxResults) {
+        return rankRelevantMemories(characterId, sceneContext, currentEmotion, maxResults);
+    }
+
+    /**
+     * 记录一批记忆被使用（复用预览时检索到的记忆时补记访问）
+     *
+     * @param memoryIds 记忆ID
+     */
+    @Transactional
+    public void recordAccess(Collection<UUID> memoryIds) {
+        if (memoryIds.isEmpty()) {
+            return;
+        }
+        memoryRepository.findAllById(memoryIds).forEach(CharacterMemory::recordAccess);
+    }
+
+    /**
+     * 按相关性为角色的可访问记忆排序
+     * 可访问性由 {@link MemoryDecayService} 定时衰减后存储，这里直接使用库中的值
+     */
+    private List<CharacterMemory> rankRelevantMemories(
+            UUID characterId,
+            String sceneContext,
+            String currentEmotion,
+            int maxResults) {
+
         // 1. 获取所有可访问的记忆 (可访问性 > 0.3)
         List<CharacterMemory> allMemories = memoryRepository
-                .findByCharacterId(characterId).stream()
-                .filter(m -> m.getAccessibility() != null && m.getAccessibility() > 0.3f)
-                .collect(Collectors.toList());
+                .findByCharacterIdAndAccessibilityAbove(characterId, ACCESSIBILITY_THRESHOLD);
 
         if (allMemories.isEmpty()) {
             log.warn("角色 {} 没有可访问的记忆", characterId);
             return Collections.emptyList();
         }
 
-        // 2. 更新所有记忆的遗忘曲线
-        allMemories.forEach(memory -> {
-            if (memory.getLastAccessed() != null) {
-                memory.updateAccessibility();
-            }
-        });
-
-        // 3. 计算每个记忆的相关性分数
+        // 2. 计算每个记忆的相关性分数
         Map<CharacterMemory, Double> relevanceScores = new HashMap<>();
         for (CharacterMemory memory : allMemories) {
             double score = calculateRelevanceScore(memory, sceneContext, currentEmotion);
             relevanceScores.put(memory, score);
         }
 
-        // 4. 按相关性排序并取前N个
-        List<CharacterMemory> relevantMemories = relevanceScores.entrySet().stream()
+        // 3. 按相关性排序并取前N个
+        return relevanceScores.entrySet().stream()
                 .sorted(Map.Entry.<CharacterMemory, Double>comparingByValue().reversed())
                 .limit(maxResults)
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toList());
-
-        // 5. 更新被检索记忆的访问记录
-        relevantMemories.forEach(memory -> {
-            memory.recordAccess();
-            memoryRepository.save(memory);
-        });
-
-        log.info("成功检索到 {} 条相关记忆", relevantMemories.size());
-        return relevantMemories;
     }
 
     /**
@@ -158,26 +201,19 @@ public class CharacterMemoryEnhancedService {
 
     /**
      * 批量更新角色所有记忆的可访问性
-     * 应用遗忘曲线算法
+     * 应用遗忘曲线算法，一条 UPDATE 完成，不逐条加载
      *
      * @param characterId 角色ID
-     * @return 更新的记忆数量
+     * @return 可访问性有变化的记忆数量
      */
     @Transactional
     public int updateMemoriesAccessibility(UUID characterId) {
         log.info("更新角色 {} 的所有记忆可访问性", characterId);
 
-        List<CharacterMemory> memories = memoryRepository.findByCharacterId(characterId);
-
-        memories.forEach(memory -> {
-            if (memory.getLastAccessed() != null) {
-                memory.updateAccessibility();
-                memoryRepository.save(memory);
-            }
-        });
+        int updated = memoryDecayService.decayCharacter(characterId);
 
-        log.info("成功更新 {} 条记忆", memories.size());
-        return memories.size();
+        log.info("成功更新 {} 条记忆", updated);
+        return updated;
     }
 
     /**
@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.CharacterMemoryDTO;
 import com.linyuan.storyforge.entity.Character;
 import com.linyuan.storyforge.entity.CharacterMemory;
@@ -10,9 +13,11 @@ import com.linyuan.storyforge.repository.CharacterRepository;
 import com.linyuan.storyforge.repository.TimelineRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -29,16 +34,24 @@ public class CharacterMemoryService {
     private final CharacterMemoryRepository memoryRepository;
     private final CharacterRepository characterRepository;
     private final TimelineRepository timelineRepository;
+    private final NdjsonExportService ndjsonExportService;
 
     /**
-     * Get all memories
+     * Get a page of memories in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<CharacterMemoryDTO> getAllMemories() {
-        log.debug("Fetching all character memories");
-        return memoryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterMemoryDTO> getMemoriesPage(String cursor, Integer size) {
+        log.debug("Fetching memories page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<CharacterMemory> rows = memoryRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
+    }
+
+    /**
+     * Stream all memories as NDJSON
+     */
+    public void exportMemories(OutputStream output) {
+        ndjsonExportService.write("memories", memoryRepository::streamAll, this::convertToDTO, output);
     }
 
     /**
@@ -53,71 +66,62 @@ public class CharacterMemoryService {
     }
 
     /**
-     * Get memories by character ID
+     * Get a page of a character's memories in creation order
      */
     @Transactional(readOnly = true)
-    public List<CharacterMemoryDTO> getMemoriesByCharacterId(UUID characterId) {
-        log.debug("Fetching memories for character: {}", characterId);
-        if (!characterRepository.existsById(characterId)) {
-            throw new ResourceNotFoundException("Character", "id", characterId);
-        }
-        return memoryRepository.findByCharacterId(characterId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterMemoryDTO> getMemoriesByCharacterId(UUID characterId, String cursor, Integer size) {
+        log.debug("Fetching memories page for character: {}", characterId);
+        requireCharacter(characterId);
+        int pageSize = PageCursor.pageSize(size);
+        List<CharacterMemory> rows = memoryRepository.findKeysetPageByCharacterId(characterId, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get memories by character ID and type
+     * Get a page of a character's memories of one type in creation order
      */
     @Transactional(readOnly = true)
-    public List<CharacterMemoryDTO> getMemoriesByCharacterIdAndType(UUID characterId, String memoryType) {
-        log.debug("Fetching {} memories for character: {}", memoryType, characterId);
-        if (!characterRepository.existsById(characterId)) {
-            throw new ResourceNotFoundException("Character", "id", characterId);
-        }
-        return memoryRepository.findByCharacterIdAndMemoryType(characterId, memoryType).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterMemoryDTO> getMemoriesByCharacterIdAndType(UUID characterId, String memoryType,
+                                                                         String cursor, Integer size) {
+        log.debug("Fetching {} memories page for character: {}", memoryType, characterId);
+        requireCharacter(characterId);
+        int pageSize = PageCursor.pageSize(size);
+        List<CharacterMemory> rows = memoryRepository.findKeysetPageByMemoryType(characterId, memoryType, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get accessible memories (above threshold)
+     * Get a page of accessible memories (at or above threshold) in creation order
      */
     @Transactional(readOnly = true)
-    public List<CharacterMemoryDTO> getAccessibleMemories(UUID characterId, Float threshold) {
-        log.debug("Fetching accessible memories for character: {} with threshold: {}", characterId, threshold);
-        if (!characterRepository.existsById(characterId)) {
-            throw new ResourceNotFoundException("Character", "id", characterId);
-        }
-        return memoryRepository.findAccessibleMemories(characterId, threshold).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterMemoryDTO> getAccessibleMemories(UUID characterId, Float threshold, String cursor, Integer size) {
+        log.debug("Fetching accessible memories page for character: {} with threshold: {}", characterId, threshold);
+        requireCharacter(characterId);
+        int pageSize = PageCursor.pageSize(size);
+        List<CharacterMemory> rows = memoryRepository.findKeysetPageAccessible(characterId, threshold, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get emotional memories (above threshold)
+     * Get a page of emotional memories (at or above threshold) in creation order
      */
     @Transactional(readOnly = true)
-    public List<CharacterMemoryDTO> getEmotionalMemories(UUID characterId, Float threshold) {
-        log.debug("Fetching emotional memories for character: {} with threshold: {}", characterId, threshold);
-        if (!characterRepository.existsById(characterId)) {
-            throw new ResourceNotFoundException("Character", "id", characterId);
-        }
-        return memoryRepository.findEmotionalMemories(characterId, threshold).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterMemoryDTO> getEmotionalMemories(UUID characterId, Float threshold, String cursor, Integer size) {
+        log.debug("Fetching emotional memories page for character: {} with threshold: {}", characterId, threshold);
+        requireCharacter(characterId);
+        int pageSize = PageCursor.pageSize(size);
+        List<CharacterMemory> rows = memoryRepository.findKeysetPageEmotional(characterId, threshold, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get most accessed memories
+     * Get the most accessed memories, at most one page
      */
     @Transactional(readOnly = true)
-    public List<CharacterMemoryDTO> getMostAccessedMemories(UUID characterId) {
+    public List<CharacterMemoryDTO> getMostAccessedMemories(UUID characterId, Integer size) {
         log.debug("Fetching most accessed memories for character: {}", characterId);
-        if (!characterRepository.existsById(characterId)) {
-            throw new ResourceNotFoundException("Character", "id", characterId);
-        }
-        return memoryRepository.findMostAccessedMemories(characterId).stream()
+        requireCharacter(characterId);
+        return memoryRepository.findMostAccessedMemories(characterId, PageRequest.ofSize(PageCursor.pageSize(size))).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -224,12 +228,18 @@ public class CharacterMemoryService {
         return memoryRepository.countByCharacterId(characterId);
     }
 
+    private void requireCharacter(UUID characterId) {
+        if (!characterRepository.existsById(characterId)) {
+            throw new ResourceNotFoundException("Character", "id", characterId);
+        }
+    }
+
     // Conversion methods
     private CharacterMemoryDTO convertToDTO(CharacterMemory memory) {
         CharacterMemoryDTO dto = new CharacterMemoryDTO();
         dto.setId(memory.getId());
-        dto.setCharacterId(memory.getCharacter().getId());
-        dto.setTimelineId(memory.getTimeline() != null ? memory.getTimeline().getId() : null);
+        dto.setCharacterId(EntityIds.idOf(memory.getCharacter()));
+        dto.setTimelineId(EntityIds.idOf(memory.getTimeline()));
         dto.setMemoryType(memory.getMemoryType());
         dto.setMemoryContent(memory.getMemoryContent());
         dto.setEmotionalWeight(memory.getEmotionalWeight());
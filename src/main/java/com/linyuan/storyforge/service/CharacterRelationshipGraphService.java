@@ -0,0 +1,735 @@
+package com.linyuan.storyforge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linyuan.storyforge.dto.RelationshipGraphDTO;
+import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.enums.RelationshipCategory;
+import com.linyuan.storyforge.repository.CharacterRelationshipRepository;
+import com.linyuan.storyforge.repository.CharacterRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * CharacterRelationshipGraphService - 角色关系图服务
+ * 每个项目在内存中维护一份紧凑的邻接结构（角色以 int 编号，关系类型以 byte 编号），
+ * 首次查询时从数据库构建，之后由 CharacterRelationshipService 的写操作增量更新；
+ * 缓存的项目数有上限，闲置或被淘汰的项目下次查询时重建
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CharacterRelationshipGraphService {
+
+    /**
+     * 邻域查询的最大跳数
+     */
+    public static final int MAX_HOPS = 4;
+
+    /**
+     * 注入提示词的关系条数上限
+     */
+    private static final int MAX_PROMPT_RELATIONSHIPS = 12;
+
+    /**
+     * 构建期间发生写入时的最大重建次数
+     */
+    private static final int MAX_BUILD_ATTEMPTS = 3;
+
+    /**
+     * 同时保留关系图的项目数上限，超出后淘汰最久未用的项目
+     */
+    private static final int MAX_CACHED_PROJECTS = 200;
+
+    /**
+     * 关系图闲置多久后释放
+     */
+    private static final Duration GRAPH_IDLE_TTL = Duration.ofHours(1);
+
+    private final CharacterRelationshipRepository relationshipRepository;
+    private final CharacterRepository characterRepository;
+
+    private final Cache<UUID, ProjectGraph> graphs = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_PROJECTS)
+            .expireAfterAccess(GRAPH_IDLE_TTL)
+            .build();
+
+    /**
+     * 关系写入计数，用于检测构建期间的并发修改
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    // ========== 查询 ==========
+
+    /**
+     * k 跳邻域
+     *
+     * @param projectId   项目ID
+     * @param characterId 起点角色
+     * @param hops        跳数（1 ~ MAX_HOPS）
+     * @param categories  只沿这些类别的关系扩展（空表示全部）
+     */
+    @Transactional(readOnly = true)
+    public RelationshipGraphDTO getNeighbourhood(UUID projectId, UUID characterId, int hops,
+                                                 Set<RelationshipCategory> categories) {
+        if (hops < 1 || hops > MAX_HOPS) {
+            throw new IllegalArgumentException("hops must be between 1 and " + MAX_HOPS);
+        }
+        ProjectGraph graph = getGraph(projectId);
+        ProjectGraph.Neighbourhood result = graph.neighbourhood(characterId, hops, categories);
+        Map<UUID, String> names = loadNames(result.distances().keySet());
+
+        List<RelationshipGraphDTO.Node> nodes = result.distances().entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .map(e -> node(e.getKey(), names, e.getValue()))
+                .collect(Collectors.toList());
+
+        return RelationshipGraphDTO.builder()
+                .projectId(projectId)
+                .sourceId(characterId)
+                .nodes(nodes)
+                .edges(result.edges())
+                .build();
+    }
+
+    /**
+     * 两个角色之间的最短关系路径
+     *
+     * @return 路径；不连通时 nodes 与 edges 为空列表
+     */
+    @Transactional(readOnly = true)
+    public RelationshipGraphDTO getShortestPath(UUID projectId, UUID fromId, UUID toId,
+                                                Set<RelationshipCategory> categories) {
+        ProjectGraph graph = getGraph(projectId);
+        List<RelationshipGraphDTO.Edge> path = graph.shortestPath(fromId, toId, categories);
+
+        List<UUID> order = new ArrayList<>();
+        if (path != null) {
+            order.add(fromId);
+            UUID current = fromId;
+            for (RelationshipGraphDTO.Edge edge : path) {
+                current = edge.getCharacterAId().equals(current) ? edge.getCharacterBId() : edge.getCharacterAId();
+                order.add(current);
+            }
+        }
+        Map<UUID, String> names = loadNames(order);
+        List<RelationshipGraphDTO.Node> nodes = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            nodes.add(node(order.get(i), names, i));
+        }
+
+        return RelationshipGraphDTO.builder()
+                .projectId(projectId)
+                .sourceId(fromId)
+                .targetId(toId)
+                .nodes(nodes)
+                .edges(path != null ? path : List.of())
+                .build();
+    }
+
+    /**
+     * 阵营划分：友好关系连通的角色归为一组，并列出跨阵营的敌对关系
+     */
+    @Transactional(readOnly = true)
+    public RelationshipGraphDTO getCommunities(UUID projectId) {
+        ProjectGraph graph = getGraph(projectId);
+        ProjectGraph.Communities result = graph.communities();
+
+        Set<UUID> members = result.groups().stream().flatMap(List::stream).collect(Collectors.toSet());
+        Map<UUID, String> names = loadNames(members);
+
+        List<RelationshipGraphDTO.Community> communities = new ArrayList<>();
+        for (int i = 0; i < result.groups().size(); i++) {
+            communities.add(RelationshipGraphDTO.Community.builder()
+                    .index(i)
+                    .members(result.groups().get(i).stream()
+                            .map(id -> node(id, names, null))
+                            .collect(Collectors.toList()))
+                    .internalEdges(result.internalEdges().get(i))
+                    .build());
+        }
+
+        return RelationshipGraphDTO.builder()
+                .projectId(projectId)
+                .communities(communities)
+                .hostileEdges(result.hostileEdges())
+                .build();
+    }
+
+    /**
+     * 为参与生成的角色挑选相关关系，格式化为提示词行
+     * 优先参与角色之间的关系，其次是参与角色与其他角色的直接关系
+     *
+     * @param projectId    项目ID
+     * @param characters   参与角色
+     * @return 关系描述行，如 "张三 —师徒— 李四"
+     */
+    @Transactional(readOnly = true)
+    public List<String> describeRelationships(UUID projectId, List<Character> characters) {
+        if (characters == null || characters.isEmpty()) {
+            return List.of();
+        }
+        Set<UUID> participants = characters.stream().map(Character::getId).collect(Collectors.toSet());
+        List<RelationshipGraphDTO.Edge> edges = getGraph(projectId).incidentEdges(participants);
+        if (edges.isEmpty()) {
+            return List.of();
+        }
+
+        // 参与角色之间的关系排在前面
+        edges.sort(Comparator.comparingInt((RelationshipGraphDTO.Edge e) ->
+                participants.contains(e.getCharacterAId()) && participants.contains(e.getCharacterBId()) ? 0 : 1));
+        List<RelationshipGraphDTO.Edge> selected = edges.subList(0, Math.min(edges.size(), MAX_PROMPT_RELATIONSHIPS));
+
+        Map<UUID, String> names = characters.stream()
+                .collect(Collectors.toMap(Character::getId, Character::getName, (a, b) -> a, HashMap::new));
+        Set<UUID> missing = new HashSet<>();
+        for (RelationshipGraphDTO.Edge edge : selected) {
+            if (!names.containsKey(edge.getCharacterAId())) missing.add(edge.getCharacterAId());
+            if (!names.containsKey(edge.getCharacterBId())) missing.add(edge.getCharacterBId());
+        }
+        names.putAll(loadNames(missing));
+
+        return selected.stream()
+                .map(e -> String.format("%s —%s— %s",
+                        names.getOrDefault(e.getCharacterAId(), "未知角色"),
+                        e.getRelationshipType(),
+                        names.getOrDefault(e.getCharacterBId(), "未知角色")))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 关系图统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Collection<ProjectGraph> loaded = graphs.asMap().values();
+        stats.put("loadedProjects", loaded.size());
+        stats.put("nodes", loaded.stream().mapToInt(ProjectGraph::nodeCount).sum());
+        stats.put("edges", loaded.stream().mapToInt(ProjectGraph::edgeCount).sum());
+        stats.put("modifications", modifications.get());
+        return stats;
+    }
+
+    // ========== 增量更新（写操作调用，事务提交后生效） ==========
+
+    /**
+     * 关系新建或更新
+     */
+    public void onRelationshipSaved(UUID projectId, UUID relationshipId, UUID characterAId, UUID characterBId,
+                                    String relationshipType) {
+        modifyAfterCommit(() -> {
+            ProjectGraph graph = graphs.getIfPresent(projectId);
+            if (graph != null) {
+                graph.putEdge(relationshipId, characterAId, characterBId, relationshipType);
+            }
+        });
+    }
+
+    /**
+     * 关系删除
+     */
+    public void onRelationshipDeleted(UUID relationshipId) {
+        modifyAfterCommit(() -> graphs.asMap().values().forEach(graph -> graph.removeEdge(relationshipId)));
+    }
+
+    /**
+     * 角色删除（其关系由数据库级联删除）
+     */
+    public void onCharacterDeleted(UUID characterId) {
+        modifyAfterCommit(() -> graphs.asMap().values().forEach(graph -> graph.removeNode(characterId)));
+    }
+
+    /**
+     * 丢弃项目的关系图，下次查询时重建
+     */
+    public void invalidate(UUID projectId) {
+        modifyAfterCommit(() -> graphs.invalidate(projectId));
+    }
+
+    // ========== 内部 ==========
+
+    /**
+     * 取项目的关系图，未加载时从数据库构建
+     * 查询在缓存的原子计算之外执行，并发的首次查询可能各自构建一次，只保留先放入的那份
+     */
+    private ProjectGraph getGraph(UUID projectId) {
+        ProjectGraph graph = graphs.getIfPresent(projectId);
+        if (graph != null) {
+            return graph;
+        }
+
+        long startTime = System.currentTimeMillis();
+        for (int attempt = 1; ; attempt++) {
+            long version = modifications.get();
+            ProjectGraph built = new ProjectGraph();
+            for (CharacterRelationshipRepository.RelationshipEdge edge : relationshipRepository.findEdgesByProjectId(projectId)) {
+                built.putEdge(edge.getId(), edge.getCharacterAId(), edge.getCharacterBId(), edge.getRelationshipType());
+            }
+            // 构建期间有写入则重建，避免漏掉尚未入图的增量
+            if (modifications.get() != version && attempt < MAX_BUILD_ATTEMPTS) {
+                continue;
+            }
+            ProjectGraph existing = graphs.asMap().putIfAbsent(projectId, built);
+            if (existing != null) {
+                return existing;
+            }
+            // 放入缓存前的写入没有应用到这份图上，丢弃缓存让下次查询重建
+            if (modifications.get() != version) {
+                graphs.asMap().remove(projectId, built);
+            }
+            log.info("构建关系图 - 项目: {}, 角色: {}, 关系: {}, 耗时: {}ms",
+                    projectId, built.nodeCount(), built.edgeCount(), System.currentTimeMillis() - startTime);
+            return built;
+        }
+    }
+
+    /**
+     * 事务提交后修改缓存的图，并递增修改计数让构建中的图得知有写入未应用
+     */
+    private void modifyAfterCommit(Runnable action) {
+        EntityCacheService.runAfterCommit(() -> {
+            modifications.incrementAndGet();
+            action.run();
+        });
+    }
+
+    private Map<UUID, String> loadNames(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return characterRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Character::getId, Character::getName));
+    }
+
+    private static RelationshipGraphDTO.Node node(UUID id, Map<UUID, String> names, Integer distance) {
+        return RelationshipGraphDTO.Node.builder()
+                .characterId(id)
+                .name(names.get(id))
+                .distance(distance)
+                .build();
+    }
+
+    /**
+     * 单个项目的关系图
+     * 角色映射为连续的 int 编号，邻接表为 int 数组；关系类型文本放入字典，边上只存 byte 编号
+     */
+    static final class ProjectGraph {
+
+        private static final int MAX_LABELS = 256;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // 角色
+        private final Map<UUID, Integer> nodeIndex = new HashMap<>();
+        private UUID[] nodeIds = new UUID[16];
+        private int[][] adjacency = new int[16][]; // 邻接的边编号
+        private int[] degree = new int[16];
+        private int nodeCount;
+
+        // 关系
+        private final Map<UUID, Integer> edgeIndex = new HashMap<>();
+        private UUID[] edgeIds = new UUID[16];
+        private int[] edgeA = new int[16];
+        private int[] edgeB = new int[16];
+        private byte[] edgeLabel = new byte[16];
+        private int edgeSlots;
+        private int[] freeEdges = new int[8];
+        private int freeCount;
+
+        // 关系类型字典
+        private final List<String> labels = new ArrayList<>();
+        private final List<RelationshipCategory> labelCategories = new ArrayList<>();
+        private final Map<String, Byte> labelIndex = new HashMap<>();
+
+        record Neighbourhood(Map<UUID, Integer> distances, List<RelationshipGraphDTO.Edge> edges) {
+        }
+
+        record Communities(List<List<UUID>> groups, List<Integer> internalEdges,
+                           List<RelationshipGraphDTO.Edge> hostileEdges) {
+        }
+
+        int nodeCount() {
+            lock.readLock().lock();
+            try {
+                return nodeCount;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int edgeCount() {
+            lock.readLock().lock();
+            try {
+                return edgeIndex.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void putEdge(UUID relationshipId, UUID characterAId, UUID characterBId, String relationshipType) {
+            lock.writeLock().lock();
+            try {
+                Integer existing = edgeIndex.get(relationshipId);
+                int a = node(characterAId);
+                int b = node(characterBId);
+                if (existing != null && edgeA[existing] == a && edgeB[existing] == b) {
+                    edgeLabel[existing] = label(relationshipType);
+                    return;
+                }
+                if (existing != null) {
+                    unlinkEdge(existing);
+                }
+
+                int slot = freeCount > 0 ? freeEdges[--freeCount] : edgeSlots++;
+                if (slot >= edgeIds.length) {
+                    int capacity = edgeIds.length * 2;
+                    edgeIds = Arrays.copyOf(edgeIds, capacity);
+                    edgeA = Arrays.copyOf(edgeA, capacity);
+                    edgeB = Arrays.copyOf(edgeB, capacity);
+                    edgeLabel = Arrays.copyOf(edgeLabel, capacity);
+                }
+                edgeIds[slot] = relationshipId;
+                edgeA[slot] = a;
+                edgeB[slot] = b;
+                edgeLabel[slot] = label(relationshipType);
+                edgeIndex.put(relationshipId, slot);
+                link(a, slot);
+                link(b, slot);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeEdge(UUID relationshipId) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = edgeIndex.get(relationshipId);
+                if (slot != null) {
+                    unlinkEdge(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeNode(UUID characterId) {
+            lock.writeLock().lock();
+            try {
+                Integer n = nodeIndex.get(characterId);
+                if (n == null) {
+                    return;
+                }
+                while (degree[n] > 0) {
+                    unlinkEdge(adjacency[n][degree[n] - 1]);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Neighbourhood neighbourhood(UUID characterId, int hops, Set<RelationshipCategory> categories) {
+            lock.readLock().lock();
+            try {
+                Integer source = nodeIndex.get(characterId);
+                Map<UUID, Integer> distances = new LinkedHashMap<>();
+                distances.put(characterId, 0);
+                if (source == null) {
+                    return new Neighbourhood(distances, List.of());
+                }
+
+                int[] dist = new int[nodeCount];
+                Arrays.fill(dist, -1);
+                int[] queue = new int[nodeCount];
+                int head = 0;
+                int tail = 0;
+                dist[source] = 0;
+                queue[tail++] = source;
+                while (head < tail) {
+                    int n = queue[head++];
+                    if (dist[n] == hops) {
+                        continue;
+                    }
+                    for (int i = 0; i < degree[n]; i++) {
+                        int e = adjacency[n][i];
+                        if (!matches(e, categories)) {
+                            continue;
+                        }
+                        int m = other(e, n);
+                        if (dist[m] < 0) {
+                            dist[m] = dist[n] + 1;
+                            distances.put(nodeIds[m], dist[m]);
+                            queue[tail++] = m;
+                        }
+                    }
+                }
+
+                // 邻域内所有（符合过滤条件的）关系
+                List<RelationshipGraphDTO.Edge> edges = new ArrayList<>();
+                for (int q = 0; q < tail; q++) {
+                    int n = queue[q];
+                    for (int i = 0; i < degree[n]; i++) {
+                        int e = adjacency[n][i];
+                        int m = other(e, n);
+                        if (edgeA[e] == n && dist[m] >= 0 && matches(e, categories)) {
+                            edges.add(toEdge(e));
+                        }
+                    }
+                }
+                return new Neighbourhood(distances, edges);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 广度优先搜索最短路径
+         *
+         * @return 路径上的关系；不连通时返回 null
+         */
+        List<RelationshipGraphDTO.Edge> shortestPath(UUID fromId, UUID toId, Set<RelationshipCategory> categories) {
+            lock.readLock().lock();
+            try {
+                Integer source = nodeIndex.get(fromId);
+                Integer target = nodeIndex.get(toId);
+                if (source == null || target == null) {
+                    return fromId.equals(toId) ? List.of() : null;
+                }
+
+                int[] parentEdge = new int[nodeCount];
+                Arrays.fill(parentEdge, -1);
+                boolean[] visited = new boolean[nodeCount];
+                int[] queue = new int[nodeCount];
+                int head = 0;
+                int tail = 0;
+                visited[source] = true;
+                queue[tail++] = source;
+                while (head < tail && !visited[target]) {
+                    int n = queue[head++];
+                    for (int i = 0; i < degree[n]; i++) {
+                        int e = adjacency[n][i];
+                        int m = other(e, n);
+                        if (!visited[m] && matches(e, categories)) {
+                            visited[m] = true;
+                            parentEdge[m] = e;
+                            queue[tail++] = m;
+                        }
+                    }
+                }
+                if (!visited[target]) {
+                    return null;
+                }
+
+                LinkedList<RelationshipGraphDTO.Edge> path = new LinkedList<>();
+                for (int n = target; n != source; n = other(parentEdge[n], n)) {
+                    path.addFirst(toEdge(parentEdge[n]));
+                }
+                return path;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 友好关系（polarity > 0）上的并查集连通分量，规模不小于 2 的作为阵营
+         */
+        Communities communities() {
+            lock.readLock().lock();
+            try {
+                int[] parent = new int[nodeCount];
+                for (int i = 0; i < nodeCount; i++) {
+                    parent[i] = i;
+                }
+                for (int e = 0; e < edgeSlots; e++) {
+                    if (edgeIds[e] != null && category(e).getPolarity() > 0) {
+                        parent[find(parent, edgeA[e])] = find(parent, edgeB[e]);
+                    }
+                }
+
+                Map<Integer, List<UUID>> byRoot = new LinkedHashMap<>();
+                for (int n = 0; n < nodeCount; n++) {
+                    if (degree[n] > 0) {
+                        byRoot.computeIfAbsent(find(parent, n), r -> new ArrayList<>()).add(nodeIds[n]);
+                    }
+                }
+                List<Integer> roots = byRoot.entrySet().stream()
+                        .filter(entry -> entry.getValue().size() >= 2)
+                        .sorted(Comparator.comparingInt((Map.Entry<Integer, List<UUID>> entry) -> -entry.getValue().size()))
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList());
+                Map<Integer, Integer> communityOf = new HashMap<>();
+                for (int i = 0; i < roots.size(); i++) {
+                    communityOf.put(roots.get(i), i);
+                }
+
+                int[] internal = new int[roots.size()];
+                List<RelationshipGraphDTO.Edge> hostile = new ArrayList<>();
+                for (int e = 0; e < edgeSlots; e++) {
+                    if (edgeIds[e] == null) {
+                        continue;
+                    }
+                    int ra = find(parent, edgeA[e]);
+                    int rb = find(parent, edgeB[e]);
+                    int polarity = category(e).getPolarity();
+                    if (polarity > 0 && ra == rb && communityOf.containsKey(ra)) {
+                        internal[communityOf.get(ra)]++;
+                    } else if (polarity < 0 && ra != rb) {
+                        hostile.add(toEdge(e));
+                    }
+                }
+
+                List<List<UUID>> groups = roots.stream().map(byRoot::get).collect(Collectors.toList());
+                List<Integer> internalEdges = Arrays.stream(internal).boxed().collect(Collectors.toList());
+                return new Communities(groups, internalEdges, hostile);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 与给定角色直接相连的关系（去重）
+         */
+        List<RelationshipGraphDTO.Edge> incidentEdges(Set<UUID> characterIds) {
+            lock.readLock().lock();
+            try {
+                Set<Integer> seen = new HashSet<>();
+                List<RelationshipGraphDTO.Edge> edges = new ArrayList<>();
+                for (UUID characterId : characterIds) {
+                    Integer n = nodeIndex.get(characterId);
+                    if (n == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < degree[n]; i++) {
+                        int e = adjacency[n][i];
+                        if (seen.add(e)) {
+                            edges.add(toEdge(e));
+                        }
+                    }
+                }
+                return edges;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int node(UUID characterId) {
+            Integer existing = nodeIndex.get(characterId);
+            if (existing != null) {
+                return existing;
+            }
+            if (nodeCount == nodeIds.length) {
+                int capacity = nodeIds.length * 2;
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+                adjacency = Arrays.copyOf(adjacency, capacity);
+                degree = Arrays.copyOf(degree, capacity);
+            }
+            int n = nodeCount++;
+            nodeIds[n] = characterId;
+            adjacency[n] = new int[4];
+            nodeIndex.put(characterId, n);
+            return n;
+        }
+
+        private byte label(String relationshipType) {
+            String text = relationshipType == null || relationshipType.isBlank() ? "未知" : relationshipType;
+            Byte existing = labelIndex.get(text);
+            if (existing != null) {
+                return existing;
+            }
+            if (labels.size() >= MAX_LABELS) {
+                // 字典已满，退化为类别名
+                RelationshipCategory category = RelationshipCategory.classify(text);
+                return labelIndex.containsKey(category.getDescription())
+                        ? labelIndex.get(category.getDescription())
+                        : labelIndex.get(labels.get(0));
+            }
+            byte id = (byte) labels.size();
+            labels.add(text);
+            labelCategories.add(RelationshipCategory.classify(text));
+            labelIndex.put(text, id);
+            return id;
+        }
+
+        private void link(int n, int edge) {
+            if (degree[n] == adjacency[n].length) {
+                adjacency[n] = Arrays.copyOf(adjacency[n], adjacency[n].length * 2);
+            }
+            adjacency[n][degree[n]++] = edge;
+        }
+
+        private void unlink(int n, int edge) {
+            int[] list = adjacency[n];
+            for (int i = 0; i < degree[n]; i++) {
+                if (list[i] == edge) {
+                    list[i] = list[--degree[n]];
+                    return;
+                }
+            }
+        }
+
+        private void unlinkEdge(int slot) {
+            unlink(edgeA[slot], slot);
+            unlink(edgeB[slot], slot);
+            edgeIndex.remove(edgeIds[slot]);
+            edgeIds[slot] = null;
+            if (freeCount == freeEdges.length) {
+                freeEdges = Arrays.copyOf(freeEdges, freeEdges.length * 2);
+            }
+            freeEdges[freeCount++] = slot;
+        }
+
+        private int other(int edge, int n) {
+            return edgeA[edge] == n ? edgeB[edge] : edgeA[edge];
+        }
+
+        private RelationshipCategory category(int edge) {
+            return labelCategories.get(edgeLabel[edge] & 0xFF);
+        }
+
+        private boolean matches(int edge, Set<RelationshipCategory> categories) {
+            return categories == null || categories.isEmpty() || categories.contains(category(edge));
+        }
+
+        private RelationshipGraphDTO.Edge toEdge(int edge) {
+            return RelationshipGraphDTO.Edge.builder()
+                    .relationshipId(edgeIds[edge])
+                    .characterAId(nodeIds[edgeA[edge]])
+                    .characterBId(nodeIds[edgeB[edge]])
+                    .relationshipType(labels.get(edgeLabel[edge] & 0xFF))
+                    .category(category(edge).getCode())
+                    .build();
+        }
+
+        private static int find(int[] parent, int n) {
+            while (parent[n] != n) {
+                parent[n] = parent[parent[n]];
+                n = parent[n];
+            }
+            return n;
+        }
+    }
+
+    /**
+     * 解析类别过滤参数（逗号分隔的 code）
+     */
+    public static Set<RelationshipCategory> parseCategories(String categories) {
+        if (categories == null || categories.isBlank()) {
+            return EnumSet.noneOf(RelationshipCategory.class);
+        }
+        return Arrays.stream(categories.split(","))
+                .map(String::trim)
+                .filter(code -> !code.isEmpty())
+                .map(RelationshipCategory::fromCode)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(RelationshipCategory.class)));
+    }
+}
@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.CharacterRelationshipDTO;
 import com.linyuan.storyforge.entity.Character;
 import com.linyuan.storyforge.entity.CharacterRelationship;
@@ -25,16 +28,17 @@ public class CharacterRelationshipService {
 
     private final CharacterRelationshipRepository relationshipRepository;
     private final CharacterRepository characterRepository;
+    private final CharacterRelationshipGraphService graphService;
 
     /**
-     * Get all relationships
+     * Get a page of relationships in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<CharacterRelationshipDTO> getAllRelationships() {
-        log.debug("Fetching all character relationships");
-        return relationshipRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterRelationshipDTO> getRelationshipsPage(String cursor, Integer size) {
+        log.debug("Fetching relationships page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<CharacterRelationship> rows = relationshipRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -101,6 +105,7 @@ public class CharacterRelationshipService {
         relationship.setCharacterA(characterA);
         relationship.setCharacterB(characterB);
         CharacterRelationship savedRelationship = relationshipRepository.save(relationship);
+        notifyGraph(savedRelationship);
         return convertToDTO(savedRelationship);
     }
 
@@ -121,6 +126,7 @@ public class CharacterRelationshipService {
         existingRelationship.setDynamicState(relationshipDTO.getDynamicState());
 
         CharacterRelationship updatedRelationship = relationshipRepository.save(existingRelationship);
+        notifyGraph(updatedRelationship);
         return convertToDTO(updatedRelationship);
     }
 
@@ -134,14 +140,26 @@ public class CharacterRelationshipService {
             throw new ResourceNotFoundException("CharacterRelationship", "id", id);
         }
         relationshipRepository.deleteById(id);
+        graphService.onRelationshipDeleted(id);
+    }
+
+    /**
+     * Propagate a saved relationship to the in-memory relationship graph
+     */
+    private void notifyGraph(CharacterRelationship relationship) {
+        graphService.onRelationshipSaved(relationship.getCharacterA().getProject().getId(),
+                relationship.getId(),
+                relationship.getCharacterA().getId(),
+                relationship.getCharacterB().getId(),
+                relationship.getRelationshipType());
     }
 
     // Conversion methods
     private CharacterRelationshipDTO convertToDTO(CharacterRelationship relationship) {
         CharacterRelationshipDTO dto = new CharacterRelationshipDTO();
         dto.setId(relationship.getId());
-        dto.setCharacterAId(relationship.getCharacterA().getId());
-        dto.setCharacterBId(relationship.getCharacterB().getId());
+        dto.setCharacterAId(EntityIds.idOf(relationship.getCharacterA()));
+        dto.setCharacterBId(EntityIds.idOf(relationship.getCharacterB()));
         dto.setRelationshipType(relationship.getRelationshipType());
         dto.setRelationshipDescription(relationship.getRelationshipDescription());
         dto.setTensionPoints(relationship.getTensionPoints());
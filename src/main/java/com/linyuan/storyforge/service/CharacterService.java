@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.CharacterDTO;
 import com.linyuan.storyforge.entity.Character;
 import com.linyuan.storyforge.entity.Project;
@@ -8,13 +11,13 @@ import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.repository.CharacterRepository;
 import com.linyuan.storyforge.repository.ProjectRepository;
 import com.linyuan.storyforge.repository.WorldviewRepository;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -30,17 +33,52 @@ public class CharacterService {
     private final ProjectRepository projectRepository;
     private final WorldviewRepository worldviewRepository;
     private final AiGenerationService aiGenerationService;
+    private final EntityCacheService entityCacheService;
+    private final CharacterRelationshipGraphService relationshipGraphService;
+    private final TimelineSnapshotService timelineSnapshotService;
+    private final NdjsonExportService ndjsonExportService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
-     * Get all characters
+     * 角色 JSON 输出的字段绑定（模型可能使用中英文不同的字段名）
+     */
+    private static final StructuredOutputParser<CharacterDTO> CHARACTER_PARSER = StructuredOutputParser.<CharacterDTO>builder()
+            .field(List.of("basicInfo.name", "basicInfo.姓名"), String.class, CharacterDTO::setName)
+            .field(List.of("basicInfo.age", "basicInfo.年龄"), Integer.class, CharacterDTO::setAge)
+            .field(List.of("basicInfo.appearance", "basicInfo.外貌特征", "basicInfo.外貌"), String.class, CharacterDTO::setAppearance)
+            .field(List.of("basicInfo.occupation", "basicInfo.职业"), String.class, CharacterDTO::setOccupation)
+            .field(List.of("personality.traits", "personality.核心性格", "personality.性格特征"),
+                    StructuredOutputParser.STRING_LIST, CharacterDTO::setPersonalityTraits)
+            .field(List.of("backstory", "background_story", "backgroundStory", "背景故事"), String.class, CharacterDTO::setBackgroundStory)
+            .field(List.of("childhood", "childhood_experience", "童年经历"), String.class, CharacterDTO::setChildhoodExperience)
+            .field(List.of("values", "valuesBeliefs", "价值观"), String.class, CharacterDTO::setValuesBeliefs)
+            .field(List.of("fears", "恐惧", "内心恐惧"), StructuredOutputParser.STRING_LIST, CharacterDTO::setFears)
+            .field(List.of("desires", "欲望", "欲望动机"), StructuredOutputParser.STRING_LIST, CharacterDTO::setDesires)
+            .field(List.of("goals", "目标", "人生目标"), StructuredOutputParser.STRING_LIST, CharacterDTO::setGoals)
+            .field(List.of("behaviorPatterns.speech", "behaviorPatterns.speechPattern", "behaviorPatterns.说话方式"),
+                    String.class, CharacterDTO::setSpeechPattern)
+            .field(List.of("behaviorPatterns.catchphrases", "behaviorPatterns.口癖"),
+                    StructuredOutputParser.STRING_LIST, CharacterDTO::setCatchphrases)
+            .field(List.of("behaviorPatterns.habits", "behaviorPatterns.behavioralHabits", "behaviorPatterns.行为习惯"),
+                    StructuredOutputParser.STRING_LIST, CharacterDTO::setBehavioralHabits)
+            .build();
+
+    /**
+     * Get a page of characters in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<CharacterDTO> getAllCharacters() {
-        log.debug("Fetching all characters");
-        return characterRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<CharacterDTO> getCharactersPage(String cursor, Integer size) {
+        log.debug("Fetching characters page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<Character> rows = characterRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
+    }
+
+    /**
+     * Stream all characters as NDJSON
+     */
+    public void exportCharacters(OutputStream output) {
+        ndjsonExportService.write("characters", characterRepository::streamAll, this::convertToDTO, output);
     }
 
     /**
@@ -129,6 +167,7 @@ public class CharacterService {
         }
 
         Character updatedCharacter = characterRepository.save(existingCharacter);
+        entityCacheService.evictAfterCommit(Character.class, id);
         return convertToDTO(updatedCharacter);
     }
 
@@ -138,10 +177,13 @@ public class CharacterService {
     @Transactional
     public void deleteCharacter(UUID id) {
         log.info("Deleting character with id: {}", id);
-        if (!characterRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Character", "id", id);
-        }
-        characterRepository.deleteById(id);
+        Character character = characterRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Character", "id", id));
+        UUID projectId = character.getProject().getId();
+        characterRepository.delete(character);
+        entityCacheService.evictAfterCommit(Character.class, id);
+        relationshipGraphService.onCharacterDeleted(id);
+        timelineSnapshotService.invalidate(projectId);
     }
 
     /**
@@ -181,7 +223,9 @@ public class CharacterService {
             // 调用AI生成
             String aiResponse = aiGenerationService.generateWithTemplate(
                     "character-creation",
-                    variables
+                    variables,
+                    projectId,
+                    "character"
             );
 
             log.debug("AI生成的角色内容: {}", aiResponse);
@@ -208,51 +252,17 @@ public class CharacterService {
             throw new IllegalArgumentException("AI响应为空");
         }
 
-        // 清理Markdown代码块标记
-        String cleanJson = aiResponse.trim();
-        if (cleanJson.startsWith("```")) {
-            cleanJson = cleanJson.replaceAll("```json\\s*", "")
-                    .replaceAll("```\\s*$", "")
-                    .trim();
-        }
-
         try {
-            JsonNode rootNode = objectMapper.readTree(cleanJson);
-
-            // 构建CharacterDTO
-            CharacterDTO dto = new CharacterDTO();
-
-            // 基础信息
-            if (rootNode.has("basicInfo")) {
-                JsonNode basicInfo = rootNode.get("basicInfo");
-                dto.setName(getTextValue(basicInfo, "name", "姓名"));
-                dto.setAge(getIntValue(basicInfo, "age", "年龄"));
-                dto.setAppearance(getTextValue(basicInfo, "appearance", "外貌特征", "外貌"));
-                dto.setOccupation(getTextValue(basicInfo, "occupation", "职业"));
+            // 跳过代码块标记等 JSON 之外的文本，直接绑定字段
+            CharacterDTO dto = CHARACTER_PARSER.parse(objectMapper, aiResponse, CharacterDTO::new);
+            if (dto.getFears() == null) {
+                dto.setFears(new ArrayList<>());
             }
-
-            // 性格特征
-            if (rootNode.has("personality")) {
-                JsonNode personality = rootNode.get("personality");
-                dto.setPersonalityTraits(getListValue(personality, "traits", "核心性格", "性格特征"));
+            if (dto.getDesires() == null) {
+                dto.setDesires(new ArrayList<>());
             }
-
-            // 背景故事
-            dto.setBackgroundStory(getTextValue(rootNode, "backstory", "background_story", "backgroundStory", "背景故事"));
-            dto.setChildhoodExperience(getTextValue(rootNode, "childhood", "childhood_experience", "童年经历"));
-
-            // 深层设定
-            dto.setValuesBeliefs(getTextValue(rootNode, "values", "valuesBeliefs", "价值观"));
-            dto.setFears(getListValue(rootNode, "fears", "恐惧", "内心恐惧"));
-            dto.setDesires(getListValue(rootNode, "desires", "欲望", "欲望动机"));
-            dto.setGoals(getListValue(rootNode, "goals", "目标", "人生目标"));
-
-            // 行为特征
-            if (rootNode.has("behaviorPatterns")) {
-                JsonNode behavior = rootNode.get("behaviorPatterns");
-                dto.setSpeechPattern(getTextValue(behavior, "speech", "speechPattern", "说话方式"));
-                dto.setCatchphrases(getListValue(behavior, "catchphrases", "口癖"));
-                dto.setBehavioralHabits(getListValue(behavior, "habits", "behavioralHabits", "行为习惯"));
+            if (dto.getGoals() == null) {
+                dto.setGoals(new ArrayList<>());
             }
 
             // 生成角色概要
@@ -266,49 +276,11 @@ public class CharacterService {
             return dto;
 
         } catch (Exception e) {
-            log.error("解析AI响应失败，响应内容: {}", cleanJson);
+            log.error("解析AI响应失败，响应内容: {}", aiResponse);
             throw new RuntimeException("解析AI生成的角色数据失败: " + e.getMessage(), e);
         }
     }
 
-    /**
-     * Helper: 从JsonNode中获取文本值，支持多个可能的字段名
-     */
-    private String getTextValue(JsonNode node, String... fieldNames) {
-        for (String fieldName : fieldNames) {
-            if (node.has(fieldName) && !node.get(fieldName).isNull()) {
-                return node.get(fieldName).asText();
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Helper: 从JsonNode中获取整数值
-     */
-    private Integer getIntValue(JsonNode node, String... fieldNames) {
-        for (String fieldName : fieldNames) {
-            if (node.has(fieldName) && !node.get(fieldName).isNull()) {
-                return node.get(fieldName).asInt();
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Helper: 从JsonNode中获取列表值
-     */
-    private List<String> getListValue(JsonNode node, String... fieldNames) {
-        for (String fieldName : fieldNames) {
-            if (node.has(fieldName) && node.get(fieldName).isArray()) {
-                List<String> result = new ArrayList<>();
-                node.get(fieldName).forEach(item -> result.add(item.asText()));
-                return result;
-            }
-        }
-        return new ArrayList<>();
-    }
-
     /**
      * 生成角色概要（用于AI prompt）
      */
@@ -335,8 +307,8 @@ public class CharacterService {
     private CharacterDTO convertToDTO(Character character) {
         return CharacterDTO.builder()
                 .id(character.getId())
-                .projectId(character.getProject().getId())
-                .worldviewId(character.getWorldview() != null ? character.getWorldview().getId() : null)
+                .projectId(EntityIds.idOf(character.getProject()))
+                .worldviewId(EntityIds.idOf(character.getWorldview()))
                 .name(character.getName())
                 .age(character.getAge())
                 .appearance(character.getAppearance())
@@ -0,0 +1,224 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.validator.StreamingConsistencyChecker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ContentRepairService - 段落级定向修正
+ * 验证失败时根据硬性规则的命中位置定位违规段落，只让模型改写这些段落（附带上下文），
+ * 改写结果保留原段落的缩进拼回原文，避免长章节整段重新生成；
+ * 这里只用硬性规则快速检查改写过的段落，完整验证由调用方对拼接后的全文重新执行
+ * <p>
+ * 只有当本次验证的所有违规都能定位到段落，且违规段落占比不超过上限时才修正；
+ * 任一段落改写结果为空时视为修正失败。两种情况都返回 null，由调用方回退为整段重新生成
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ContentRepairService {
+
+    private static final Pattern PARAGRAPH = Pattern.compile("[^\\n]+");
+
+    private final AiGenerationService aiService;
+    private final boolean enabled;
+    private final double maxParagraphRatio;
+
+    public ContentRepairService(AiGenerationService aiService,
+                                @Value("${storyforge.generation.repair.enabled:true}") boolean enabled,
+                                @Value("${storyforge.generation.repair.max-paragraph-ratio:0.4}") double maxParagraphRatio) {
+        this.aiService = aiService;
+        this.enabled = enabled;
+        this.maxParagraphRatio = maxParagraphRatio;
+    }
+
+    /**
+     * 修正结果
+     *
+     * @param content             拼接后的完整内容
+     * @param repairedParagraphs  改写的段落数
+     * @param totalParagraphs     总段落数
+     * @param remainingViolations 改写段落按硬性规则检查后仍存在的违规（为空表示通过）
+     */
+    public record RepairOutcome(String content, int repairedParagraphs, int totalParagraphs,
+                                List<String> remainingViolations) {
+
+        public boolean passed() {
+            return remainingViolations.isEmpty();
+        }
+    }
+
+    /**
+     * 尝试段落级修正
+     *
+     * @param content     验证未通过的完整内容
+     * @param rules       硬性规则（用于定位违规段落和重新验证）
+     * @param violations  本次验证报告的违规描述
+     * @param temperature 改写温度
+     * @param maxTokens   生成请求的最大 token 数（单段改写不超过此值）
+     * @return 修正结果；无法定位全部违规、违规段落过多或改写结果为空时返回 null
+     */
+    public RepairOutcome repair(String content,
+                                List<StreamingConsistencyChecker.Rule> rules,
+                                Collection<String> violations,
+                                Double temperature,
+                                Integer maxTokens) {
+        if (!enabled || content == null || content.isBlank() || rules.isEmpty() || violations.isEmpty()) {
+            return null;
+        }
+
+        List<int[]> paragraphs = splitParagraphs(content);
+        List<Integer> offending = new ArrayList<>();
+        Set<String> located = new LinkedHashSet<>();
+        for (int i = 0; i < paragraphs.size(); i++) {
+            List<String> matched = match(rules, slice(content, paragraphs.get(i)));
+            if (!matched.isEmpty()) {
+                offending.add(i);
+                located.addAll(matched);
+            }
+        }
+
+        if (offending.isEmpty() || !located.containsAll(violations)) {
+            log.debug("违规无法全部定位到段落（已定位 {}/{}），回退整段重新生成", located.size(), violations.size());
+            return null;
+        }
+        if (offending.size() > paragraphs.size() * maxParagraphRatio) {
+            log.debug("违规段落过多 ({}/{})，回退整段重新生成", offending.size(), paragraphs.size());
+            return null;
+        }
+
+        log.info("段落级修正: 改写 {}/{} 个段落", offending.size(), paragraphs.size());
+
+        // 逐段改写（从后往前拼接，前面段落的位置不受影响）
+        StringBuilder repaired = new StringBuilder(content);
+        List<String> remaining = new ArrayList<>();
+        for (int k = offending.size() - 1; k >= 0; k--) {
+            int index = offending.get(k);
+            int[] span = paragraphs.get(index);
+            String original = slice(content, span);
+            String previous = index > 0 ? slice(content, paragraphs.get(index - 1)) : "";
+            String next = index < paragraphs.size() - 1 ? slice(content, paragraphs.get(index + 1)) : "";
+
+            List<String> paragraphViolations = match(rules, original);
+            String rewritten = rewriteParagraph(original, previous, next, paragraphViolations, temperature, maxTokens);
+            if (rewritten == null) {
+                log.warn("第 {} 段改写结果为空，段落级修正失败", index + 1);
+                return null;
+            }
+            repaired.replace(span[0], span[1], rewritten);
+
+            // 用硬性规则快速检查改写过的段落
+            remaining.addAll(match(rules, rewritten));
+        }
+
+        return new RepairOutcome(repaired.toString(), offending.size(), paragraphs.size(), remaining);
+    }
+
+    /**
+     * 让模型改写单个段落
+     *
+     * @return 改写后的段落（保留原段落的行首缩进）；模型返回空内容时为 null
+     */
+    private String rewriteParagraph(String paragraph, String previous, String next,
+                                    List<String> violations, Double temperature, Integer maxTokens) {
+        StringBuilder issues = new StringBuilder();
+        for (int i = 0; i < violations.size(); i++) {
+            issues.append(String.format("%d. %s\n", i + 1, violations.get(i)));
+        }
+
+        String prompt = String.format("""
+                        # 段落修正任务
+
+                        下面的段落违反了设定，请只改写这一段，修正以下问题。
+                        保持情节走向、人物、叙述视角和文风不变，并与上下文自然衔接。
+
+                        ## 需要修正的问题
+                        %s
+                        ## 上文
+                        %s
+
+                        ## 待修改段落
+                        %s
+
+                        ## 下文
+                        %s
+
+                        请直接输出修改后的段落，不要添加任何说明。
+                        """,
+                issues,
+                previous.isEmpty() ? "（无）" : previous,
+                paragraph,
+                next.isEmpty() ? "（无）" : next
+        );
+
+        // 单段改写的输出长度与原段落相当，按原段落长度给出 token 上限
+        int tokens = Math.max(200, paragraph.length() * 2);
+        if (maxTokens != null) {
+            tokens = Math.min(tokens, maxTokens);
+        }
+
+        int repairTokens = tokens;
+        String rewritten = LlmUsageScope.within("repair",
+                () -> aiService.chatWithOptions(prompt, temperature, repairTokens));
+        if (rewritten == null || rewritten.isBlank()) {
+            return null;
+        }
+        // 段落内不允许换行，否则会改变段落结构；行首缩进（如全角空格）沿用原段落
+        return leadingWhitespace(paragraph) + rewritten.strip().replaceAll("\\s*\\n+\\s*", "");
+    }
+
+    /**
+     * 段落开头的空白（含全角空格缩进）
+     */
+    private String leadingWhitespace(String paragraph) {
+        int end = 0;
+        while (end < paragraph.length() && Character.isWhitespace(paragraph.charAt(end))) {
+            end++;
+        }
+        return paragraph.substring(0, end);
+    }
+
+    /**
+     * 命中的规则违规描述（按规则顺序去重）
+     */
+    private List<String> match(List<StreamingConsistencyChecker.Rule> rules, String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> matched = new LinkedHashSet<>();
+        for (StreamingConsistencyChecker.Rule rule : rules) {
+            if (lower.contains(rule.term())) {
+                matched.add(rule.violation());
+            }
+        }
+        return new ArrayList<>(matched);
+    }
+
+    /**
+     * 按行切分段落，返回每个非空段落的 [start, end) 位置
+     */
+    private List<int[]> splitParagraphs(String content) {
+        List<int[]> paragraphs = new ArrayList<>();
+        Matcher matcher = PARAGRAPH.matcher(content);
+        while (matcher.find()) {
+            if (!matcher.group().isBlank()) {
+                paragraphs.add(new int[]{matcher.start(), matcher.end()});
+            }
+        }
+        return paragraphs;
+    }
+
+    private String slice(String content, int[] span) {
+        return content.substring(span[0], span[1]);
+    }
+}
@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.DialogueDTO;
 import com.linyuan.storyforge.entity.Character;
 import com.linyuan.storyforge.entity.Dialogue;
@@ -15,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -31,16 +35,24 @@ public class DialogueService {
     private final StoryChapterRepository chapterRepository;
     private final SceneRepository sceneRepository;
     private final CharacterRepository characterRepository;
+    private final NdjsonExportService ndjsonExportService;
 
     /**
-     * Get all dialogues
+     * Get a page of dialogues in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<DialogueDTO> getAllDialogues() {
-        log.debug("Fetching all dialogues");
-        return dialogueRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<DialogueDTO> getDialoguesPage(String cursor, Integer size) {
+        log.debug("Fetching dialogues page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<Dialogue> rows = dialogueRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
+    }
+
+    /**
+     * Stream all dialogues as NDJSON
+     */
+    public void exportDialogues(OutputStream output) {
+        ndjsonExportService.write("dialogues", dialogueRepository::streamAll, this::convertToDTO, output);
     }
 
     /**
@@ -199,9 +211,9 @@ public class DialogueService {
     private DialogueDTO convertToDTO(Dialogue dialogue) {
         DialogueDTO dto = new DialogueDTO();
         dto.setId(dialogue.getId());
-        dto.setChapterId(dialogue.getChapter().getId());
-        dto.setSceneId(dialogue.getScene() != null ? dialogue.getScene().getId() : null);
-        dto.setSpeakerId(dialogue.getSpeaker().getId());
+        dto.setChapterId(EntityIds.idOf(dialogue.getChapter()));
+        dto.setSceneId(EntityIds.idOf(dialogue.getScene()));
+        dto.setSpeakerId(EntityIds.idOf(dialogue.getSpeaker()));
         dto.setListenerIds(dialogue.getListenerIds());
         dto.setDialogueText(dialogue.getDialogueText());
         dto.setTone(dialogue.getTone());
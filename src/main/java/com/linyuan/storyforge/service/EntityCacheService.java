@@ -0,0 +1,138 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.entity.Project;
+import com.linyuan.storyforge.entity.PromptTemplate;
+import com.linyuan.storyforge.entity.Worldview;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * EntityCacheService - 二级缓存管理服务
+ * Project、Worldview、Character、PromptTemplate 使用 Hibernate 二级缓存（JCache/Caffeine）。
+ * 经实体会话的修改由 READ_WRITE 策略自动维护，这里负责数据库级联删除等绕过会话的写入，
+ * 以及命中率统计
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class EntityCacheService {
+
+    private static final List<Class<?>> CACHED_ENTITIES =
+            List.of(Project.class, Worldview.class, Character.class, PromptTemplate.class);
+
+    private final SessionFactory sessionFactory;
+
+    public EntityCacheService(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * 事务提交后驱逐单个实体（无事务时立即驱逐）
+     *
+     * @param entityClass 实体类型
+     * @param id          实体ID
+     */
+    public void evictAfterCommit(Class<?> entityClass, UUID id) {
+        runAfterCommit(() -> {
+            sessionFactory.getCache().evictEntityData(entityClass, id);
+            log.debug("已驱逐二级缓存: {}#{}", entityClass.getSimpleName(), id);
+        });
+    }
+
+    /**
+     * 删除项目后驱逐相关缓存
+     * 项目下的世界观和角色由数据库 ON DELETE CASCADE 删除，Hibernate 无法感知，
+     * 因此整体驱逐这两个区域及查询缓存
+     *
+     * @param projectId 项目ID
+     */
+    public void evictProjectAfterCommit(UUID projectId) {
+        runAfterCommit(() -> {
+            sessionFactory.getCache().evictEntityData(Project.class, projectId);
+            sessionFactory.getCache().evictEntityData(Worldview.class);
+            sessionFactory.getCache().evictEntityData(Character.class);
+            sessionFactory.getCache().evictQueryRegions();
+            log.info("项目 {} 已删除，已驱逐世界观/角色二级缓存", projectId);
+        });
+    }
+
+    /**
+     * 清空全部二级缓存
+     */
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+        log.info("已清空全部二级缓存");
+    }
+
+    /**
+     * 获取二级缓存与查询缓存的命中统计
+     */
+    public Map<String, Object> getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (Class<?> entityClass : CACHED_ENTITIES) {
+            String regionName = entityClass.getName();
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            Map<String, Object> regionStats = new LinkedHashMap<>();
+            regionStats.put("hits", region.getHitCount());
+            regionStats.put("misses", region.getMissCount());
+            regionStats.put("puts", region.getPutCount());
+            regionStats.put("hitRatio", hitRatio(region.getHitCount(), region.getMissCount()));
+            regionStats.put("elementsInMemory", region.getElementCountInMemory());
+            regions.put(entityClass.getSimpleName(), regionStats);
+        }
+
+        Map<String, Object> queryCache = new LinkedHashMap<>();
+        queryCache.put("hits", statistics.getQueryCacheHitCount());
+        queryCache.put("misses", statistics.getQueryCacheMissCount());
+        queryCache.put("puts", statistics.getQueryCachePutCount());
+        queryCache.put("hitRatio", hitRatio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        stats.put("hits", statistics.getSecondLevelCacheHitCount());
+        stats.put("misses", statistics.getSecondLevelCacheMissCount());
+        stats.put("puts", statistics.getSecondLevelCachePutCount());
+        stats.put("hitRatio", hitRatio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()));
+        stats.put("entityLoads", statistics.getEntityLoadCount());
+        stats.put("regions", regions);
+        stats.put("queryCache", queryCache);
+        return stats;
+    }
+
+    private static double hitRatio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : Math.round(hits * 1000.0 / total) / 1000.0;
+    }
+
+    static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -3,17 +3,17 @@ package com.linyuan.storyforge.service;
 import com.linyuan.storyforge.dto.GenerationRequest;
 import com.linyuan.storyforge.dto.GenerationResult;
 import com.linyuan.storyforge.entity.GenerationHistory;
-import com.linyuan.storyforge.entity.Project;
+import com.linyuan.storyforge.entity.GenerationStats;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.repository.GenerationHistoryRepository;
-import com.linyuan.storyforge.repository.ProjectRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * GenerationHistoryEnhancedService - 增强的生成历史服务
@@ -28,10 +28,16 @@ import java.util.stream.Collectors;
 public class GenerationHistoryEnhancedService {
 
     private final GenerationHistoryRepository historyRepository;
-    private final ProjectRepository projectRepository;
+    private final GenerationHistoryWriter historyWriter;
+    private final GenerationStatsService statsService;
+
+    @Value("${ai.openai.model:deepseek-v3.1-250821}")
+    private String defaultModel;
 
     /**
      * 记录生成历史（从 GenerationResult）
+     * 记录由 GenerationHistoryWriter 异步批量写入，调用方事务提交后才入队；
+     * 返回的ID预先分配，写入完成前按ID查询可能暂时查不到
      *
      * @param result          生成结果
      * @param request         生成请求
@@ -40,7 +46,6 @@ public class GenerationHistoryEnhancedService {
      * @param generationType  生成类型
      * @return 生成历史ID
      */
-    @Transactional
     public UUID recordGeneration(
             GenerationResult result,
             GenerationRequest request,
@@ -50,9 +55,6 @@ public class GenerationHistoryEnhancedService {
 
         log.info("记录生成历史 - 类型: {}, 目标: {}", generationType, targetId);
 
-        Project project = projectRepository.findById(request.getProjectId())
-                .orElseThrow(() -> new ResourceNotFoundException("Project", "id", request.getProjectId()));
-
         Map<String, Object> modelParameters = new HashMap<>();
         modelParameters.put("temperature", request.getTemperature());
         modelParameters.put("maxTokens", request.getMaxTokens());
@@ -70,24 +72,73 @@ public class GenerationHistoryEnhancedService {
 
         Float qualityScore = calculateQualityScore(result);
 
-        GenerationHistory history = GenerationHistory.builder()
-                .project(project)
+        UUID historyId = UUID.randomUUID();
+        historyWriter.submit(GenerationHistoryWriter.PendingHistory.builder()
+                .id(historyId)
+                .projectId(request.getProjectId())
                 .generationType(generationType)
                 .targetId(targetId)
                 .promptTemplate("built-in")
                 .promptVariables(promptVariables)
                 .fullPrompt(buildPromptSummary(request))
-                .modelName("ERNIE-Speed-128K")
+                .modelName(result.getModelName() != null ? result.getModelName() : defaultModel)
                 .modelParameters(modelParameters)
                 .generatedResult(generatedContent != null && generatedContent.length() > 500 ?
                         generatedContent.substring(0, 500) + "..." : generatedContent)
                 .qualityScore(qualityScore)
-                .build();
+                .latencyMs(result.getDurationMs() != null ? result.getDurationMs().intValue() : null)
+                .promptTokens(result.getPromptTokens())
+                .completionTokens(result.getCompletionTokens())
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.info("生成历史已提交写入: {} (质量得分: {})", historyId, qualityScore);
+
+        return historyId;
+    }
 
-        GenerationHistory saved = historyRepository.save(history);
-        log.info("生成历史记录成功: {} (质量得分: {})", saved.getId(), qualityScore);
+    /**
+     * 记录模板生成历史
+     * prompt_template 记录实际使用的模板变体，耗时与 token 用量一并写入，用于按变体比较成本和质量
+     *
+     * @param completion     模板生成结果
+     * @param variables      模板变量
+     * @param projectId      项目ID
+     * @param generationType 生成类型
+     * @return 生成历史ID
+     */
+    public UUID recordTemplateGeneration(
+            QianfanDirectService.TemplateCompletion completion,
+            Map<String, Object> variables,
+            UUID projectId,
+            String generationType) {
 
-        return saved.getId();
+        Map<String, Object> modelParameters = new HashMap<>();
+        modelParameters.put("temperature", completion.temperature());
+        modelParameters.put("maxTokens", completion.maxTokens());
+        modelParameters.put("templateKey", completion.templateKey());
+
+        String content = completion.content();
+        UUID historyId = UUID.randomUUID();
+        historyWriter.submit(GenerationHistoryWriter.PendingHistory.builder()
+                .id(historyId)
+                .projectId(projectId)
+                .generationType(generationType)
+                .promptTemplate(completion.variant())
+                .promptVariables(variables)
+                .fullPrompt(completion.prompt())
+                .modelName(completion.model())
+                .modelParameters(modelParameters)
+                .generatedResult(content != null && content.length() > 500 ?
+                        content.substring(0, 500) + "..." : content)
+                .latencyMs((int) completion.latencyMs())
+                .promptTokens(completion.promptTokens())
+                .completionTokens(completion.completionTokens())
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.info("模板生成历史已提交写入: {} (模板: {}, 变体: {}, 耗时: {}ms)",
+                historyId, completion.templateKey(), completion.variant(), completion.latencyMs());
+
+        return historyId;
     }
 
     /**
@@ -110,77 +161,65 @@ public class GenerationHistoryEnhancedService {
 
     /**
      * 分析最佳参数
+     * 基于 generation_stats 中质量最高的 K 条记录的参数聚合结果
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public Map<String, Object> analyzeOptimalParameters(UUID projectId, String generationType) {
         log.info("分析最佳参数 - 项目: {}, 类型: {}", projectId, generationType);
 
-        List<GenerationHistory> allHistories = historyRepository.findByProjectIdOrderByCreatedAtDesc(projectId);
-        List<GenerationHistory> histories = allHistories.stream()
-                .filter(h -> h.getGenerationType().equals(generationType))
-                .collect(Collectors.toList());
-
-        if (histories.isEmpty()) {
+        Optional<GenerationStats> stats = statsService.getTypeStats(projectId, generationType);
+        if (stats.isEmpty() || stats.get().getTopKSampleSize() == null || stats.get().getTopKSampleSize() == 0) {
             return getDefaultParameters();
         }
 
-        List<GenerationHistory> sortedByQuality = histories.stream()
-                .filter(h -> h.getQualityScore() != null && h.getQualityScore() > 0)
-                .sorted(Comparator.comparing(GenerationHistory::getQualityScore).reversed())
-                .limit(10)
-                .collect(Collectors.toList());
-
-        if (sortedByQuality.isEmpty()) {
-            return getDefaultParameters();
-        }
+        GenerationStats topK = stats.get();
+        double avgTemperature = topK.getTopKAvgTemperature() != null ? topK.getTopKAvgTemperature() : 0.8;
+        double avgMaxTokens = topK.getTopKAvgMaxTokens() != null ? topK.getTopKAvgMaxTokens() : 2000.0;
 
         Map<String, Object> optimalParams = new HashMap<>();
-        double avgTemperature = sortedByQuality.stream()
-                .map(h -> h.getModelParameters().get("temperature"))
-                .filter(Objects::nonNull)
-                .mapToDouble(t -> ((Number) t).doubleValue())
-                .average()
-                .orElse(0.8);
-
-        double avgMaxTokens = sortedByQuality.stream()
-                .map(h -> h.getModelParameters().get("maxTokens"))
-                .filter(Objects::nonNull)
-                .mapToDouble(t -> ((Number) t).doubleValue())
-                .average()
-                .orElse(2000.0);
-
         optimalParams.put("temperature", Math.round(avgTemperature * 100.0) / 100.0);
         optimalParams.put("maxTokens", (int) avgMaxTokens);
-        optimalParams.put("sampleSize", sortedByQuality.size());
-        optimalParams.put("avgQualityScore", Math.round(sortedByQuality.stream()
-                .mapToDouble(GenerationHistory::getQualityScore)
-                .average()
-                .orElse(0.0) * 100.0) / 100.0);
+        optimalParams.put("medianTemperature", topK.getTopKMedianTemperature() != null ?
+                Math.round(topK.getTopKMedianTemperature() * 100.0) / 100.0 : null);
+        optimalParams.put("medianMaxTokens", topK.getTopKMedianMaxTokens() != null ?
+                topK.getTopKMedianMaxTokens().intValue() : null);
+        optimalParams.put("sampleSize", topK.getTopKSampleSize());
+        optimalParams.put("avgQualityScore", Math.round(topK.getTopKAvgQuality() * 100.0) / 100.0);
+        optimalParams.put("refreshedAt", topK.getRefreshedAt());
 
         return optimalParams;
     }
 
     /**
      * 获取统计信息
+     * 由各类型的聚合结果合并得到，平均分按有评分的记录数加权
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public Map<String, Object> getProjectStatistics(UUID projectId) {
-        List<GenerationHistory> histories = historyRepository.findByProjectIdOrderByCreatedAtDesc(projectId);
-
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalGenerations", histories.size());
-        stats.put("byType", histories.stream()
-                .collect(Collectors.groupingBy(GenerationHistory::getGenerationType, Collectors.counting())));
-        stats.put("avgQualityScore", Math.round(histories.stream()
-                .filter(h -> h.getQualityScore() != null)
-                .mapToDouble(GenerationHistory::getQualityScore)
-                .average()
-                .orElse(0.0) * 100.0) / 100.0);
-        stats.put("feedbackCount", histories.stream()
-                .filter(h -> h.getUserFeedback() != null && !h.getUserFeedback().isEmpty())
-                .count());
-
-        return stats;
+        List<GenerationStats> byType = statsService.getProjectStats(projectId);
+
+        long total = 0;
+        long scored = 0;
+        long feedback = 0;
+        double qualitySum = 0.0;
+        Map<String, Long> counts = new HashMap<>();
+        for (GenerationStats stats : byType) {
+            total += stats.getTotalCount();
+            feedback += stats.getFeedbackCount();
+            counts.put(stats.getGenerationType(), stats.getTotalCount());
+            if (stats.getAvgQuality() != null) {
+                scored += stats.getScoredCount();
+                qualitySum += stats.getAvgQuality() * stats.getScoredCount();
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalGenerations", total);
+        result.put("byType", counts);
+        result.put("avgQualityScore", scored == 0 ? 0.0 : Math.round(qualitySum / scored * 100.0) / 100.0);
+        result.put("feedbackCount", feedback);
+
+        return result;
     }
 
     // 辅助方法
@@ -0,0 +1,253 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linyuan.storyforge.common.DeltaCompression;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GenerationHistoryPartitionService - 生成历史分区维护服务
+ * generation_history 按月范围分区：定时预建未来月份的分区，
+ * 并将超过保留期的分区压缩归档到 generation_history_archive 后删除
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class GenerationHistoryPartitionService {
+
+    /**
+     * 分区维护任务的 advisory lock 键，保证多实例下只有一个实例执行
+     */
+    private static final long MAINTENANCE_LOCK_KEY = 0x5F_4748_5041_5254L;
+
+    private static final String PARTITION_PREFIX = "generation_history_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "(\\d{6})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = 'generation_history'
+            """;
+
+    private static final String ARCHIVE_SQL = """
+            INSERT INTO generation_history_archive (id, project_id, generation_type, target_id, model_name,
+                quality_score, created_at, payload_bytes, payload)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final int archiveBatchSize;
+
+    public GenerationHistoryPartitionService(DataSource dataSource,
+                                             PlatformTransactionManager transactionManager,
+                                             ObjectMapper objectMapper,
+                                             @Value("${storyforge.generation-history.partition-months-ahead:3}") int monthsAhead,
+                                             @Value("${storyforge.generation-history.retention-months:6}") int retentionMonths,
+                                             @Value("${storyforge.generation-history.archive-batch-size:500}") int archiveBatchSize) {
+        // 归档时以游标读取整个分区，fetchSize 只在事务内生效
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(archiveBatchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveBatchSize = archiveBatchSize;
+    }
+
+    /**
+     * 每日维护：预建分区并归档过期分区
+     */
+    @Scheduled(cron = "${storyforge.generation-history.maintenance-cron:0 30 3 * * *}")
+    public void runMaintenance() {
+        log.info("开始生成历史分区维护");
+        int created = ensurePartitions();
+        int archived = archiveExpiredPartitions();
+        log.info("生成历史分区维护完成 - 新建分区: {}, 归档分区: {}", created, archived);
+    }
+
+    /**
+     * 确保当前月份及之后若干月份的分区存在
+     *
+     * @return 新建的分区数
+     */
+    public int ensurePartitions() {
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class));
+        YearMonth current = YearMonth.now();
+        int created = 0;
+
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            if (existing.contains(name)) {
+                continue;
+            }
+            try {
+                Boolean done = transactionTemplate.execute(tx -> {
+                    if (!tryLock()) {
+                        return false;
+                    }
+                    jdbcTemplate.execute(String.format(
+                            "CREATE TABLE IF NOT EXISTS %s PARTITION OF generation_history FOR VALUES FROM ('%s') TO ('%s')",
+                            name, month.atDay(1), month.plusMonths(1).atDay(1)));
+                    return true;
+                });
+                if (Boolean.TRUE.equals(done)) {
+                    created++;
+                    log.info("已创建生成历史分区: {}", name);
+                }
+            } catch (DataAccessException e) {
+                // 通常是默认分区中已有该月份的数据
+                log.warn("创建生成历史分区 {} 失败: {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+        return created;
+    }
+
+    /**
+     * 归档超过保留期的分区
+     *
+     * @return 归档的分区数
+     */
+    public int archiveExpiredPartitions() {
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        List<String> expired = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class)) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches() && YearMonth.parse(matcher.group(1), PARTITION_SUFFIX).isBefore(cutoff)) {
+                expired.add(name);
+            }
+        }
+        Collections.sort(expired);
+
+        int archived = 0;
+        for (String name : expired) {
+            try {
+                long rows = archivePartition(name);
+                if (rows >= 0) {
+                    archived++;
+                    log.info("已归档生成历史分区 {} - {} 条记录", name, rows);
+                }
+            } catch (DataAccessException e) {
+                log.error("归档生成历史分区 {} 失败: {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * 在单个事务中归档分区：逐批压缩复制到归档表，再分离并删除分区
+     * 排他锁只在最后的 DETACH/DROP 阶段持有
+     *
+     * @return 归档的记录数；未获得锁时返回 -1
+     */
+    private long archivePartition(String name) {
+        Long result = transactionTemplate.execute(tx -> {
+            if (!tryLock()) {
+                return -1L;
+            }
+
+            List<Object[]> buffer = new ArrayList<>(archiveBatchSize);
+            long[] total = {0};
+            jdbcTemplate.query("SELECT * FROM " + name, rs -> {
+                buffer.add(toArchiveRow(rs));
+                if (buffer.size() >= archiveBatchSize) {
+                    jdbcTemplate.batchUpdate(ARCHIVE_SQL, buffer);
+                    total[0] += buffer.size();
+                    buffer.clear();
+                }
+            });
+            if (!buffer.isEmpty()) {
+                jdbcTemplate.batchUpdate(ARCHIVE_SQL, buffer);
+                total[0] += buffer.size();
+            }
+
+            // 分区删除不触发行级触发器，手动记下受影响的统计分组
+            jdbcTemplate.update("INSERT INTO generation_stats_dirty (project_id, generation_type) "
+                    + "SELECT DISTINCT project_id, COALESCE(generation_type, 'unknown') FROM " + name
+                    + " WHERE project_id IS NOT NULL ON CONFLICT DO NOTHING");
+            jdbcTemplate.execute("ALTER TABLE generation_history DETACH PARTITION " + name);
+            jdbcTemplate.execute("DROP TABLE " + name);
+            return total[0];
+        });
+        return result != null ? result : -1L;
+    }
+
+    /**
+     * 元数据列保持可查询，正文类字段合并为 JSON 后压缩存储
+     */
+    private Object[] toArchiveRow(ResultSet rs) throws SQLException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("promptTemplate", rs.getString("prompt_template"));
+        payload.put("promptVariables", readJson(rs.getString("prompt_variables")));
+        payload.put("fullPrompt", rs.getString("full_prompt"));
+        payload.put("modelParameters", readJson(rs.getString("model_parameters")));
+        payload.put("generatedResult", rs.getString("generated_result"));
+        payload.put("userFeedback", rs.getString("user_feedback"));
+
+        byte[] compressed;
+        try {
+            compressed = DeltaCompression.compress(objectMapper.writeValueAsString(payload), null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("无法序列化归档记录: " + rs.getObject("id"), e);
+        }
+
+        Object qualityScore = rs.getObject("quality_score");
+        return new Object[]{
+                rs.getObject("id"),
+                rs.getObject("project_id"),
+                rs.getString("generation_type"),
+                rs.getObject("target_id"),
+                rs.getString("model_name"),
+                qualityScore,
+                rs.getTimestamp("created_at"),
+                compressed.length,
+                compressed
+        };
+    }
+
+    private Object readJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            return json;
+        }
+    }
+
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_KEY));
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+}
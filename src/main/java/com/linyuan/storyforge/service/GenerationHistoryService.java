@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.GenerationHistoryDTO;
 import com.linyuan.storyforge.entity.GenerationHistory;
 import com.linyuan.storyforge.entity.Project;
@@ -11,9 +14,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Service for managing generation history
@@ -25,16 +28,24 @@ public class GenerationHistoryService {
 
     private final GenerationHistoryRepository historyRepository;
     private final ProjectRepository projectRepository;
+    private final NdjsonExportService ndjsonExportService;
 
     /**
-     * Get all generation history
+     * Get a page of history newest first (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<GenerationHistoryDTO> getAllHistory() {
-        log.debug("Fetching all generation history");
-        return historyRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<GenerationHistoryDTO> getHistoryPage(String cursor, Integer size) {
+        log.debug("Fetching history page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<GenerationHistory> rows = historyRepository.findLatestPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
+    }
+
+    /**
+     * Stream all history as NDJSON
+     */
+    public void exportHistory(OutputStream output) {
+        ndjsonExportService.write("history", historyRepository::streamAll, this::convertToDTO, output);
     }
 
     /**
@@ -49,61 +60,61 @@ public class GenerationHistoryService {
     }
 
     /**
-     * Get history by project ID
+     * Get a page of a project's history newest first
      */
     @Transactional(readOnly = true)
-    public List<GenerationHistoryDTO> getHistoryByProjectId(UUID projectId) {
-        log.debug("Fetching generation history for project: {}", projectId);
+    public CursorPage<GenerationHistoryDTO> getHistoryByProjectId(UUID projectId, String cursor, Integer size) {
+        log.debug("Fetching generation history page for project: {}", projectId);
         if (!projectRepository.existsById(projectId)) {
             throw new ResourceNotFoundException("Project", "id", projectId);
         }
-        return historyRepository.findByProjectIdOrderByCreatedAtDesc(projectId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        int pageSize = PageCursor.pageSize(size);
+        List<GenerationHistory> rows = historyRepository.findLatestPageByProjectId(projectId, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get history by generation type
+     * Get a page of history of one generation type newest first
      */
     @Transactional(readOnly = true)
-    public List<GenerationHistoryDTO> getHistoryByGenerationType(String generationType) {
-        log.debug("Fetching generation history with type: {}", generationType);
-        return historyRepository.findByGenerationTypeOrderByCreatedAtDesc(generationType).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<GenerationHistoryDTO> getHistoryByGenerationType(String generationType, String cursor, Integer size) {
+        log.debug("Fetching generation history page with type: {}", generationType);
+        int pageSize = PageCursor.pageSize(size);
+        List<GenerationHistory> rows = historyRepository.findLatestPageByGenerationType(generationType, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get history by target ID
+     * Get a page of a target's history newest first
      */
     @Transactional(readOnly = true)
-    public List<GenerationHistoryDTO> getHistoryByTargetId(UUID targetId) {
-        log.debug("Fetching generation history for target: {}", targetId);
-        return historyRepository.findByTargetIdOrderByCreatedAtDesc(targetId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<GenerationHistoryDTO> getHistoryByTargetId(UUID targetId, String cursor, Integer size) {
+        log.debug("Fetching generation history page for target: {}", targetId);
+        int pageSize = PageCursor.pageSize(size);
+        List<GenerationHistory> rows = historyRepository.findLatestPageByTargetId(targetId, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get high-quality generations
+     * Get a page of high-quality generations newest first
      */
     @Transactional(readOnly = true)
-    public List<GenerationHistoryDTO> getHighQualityGenerations(Float threshold) {
-        log.debug("Fetching high-quality generations with threshold: {}", threshold);
-        return historyRepository.findHighQualityGenerations(threshold).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<GenerationHistoryDTO> getHighQualityGenerations(Float threshold, String cursor, Integer size) {
+        log.debug("Fetching high-quality generations page with threshold: {}", threshold);
+        int pageSize = PageCursor.pageSize(size);
+        List<GenerationHistory> rows = historyRepository.findLatestPageHighQuality(threshold, PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
-     * Get generations with user feedback
+     * Get a page of generations with user feedback newest first
      */
     @Transactional(readOnly = true)
-    public List<GenerationHistoryDTO> getGenerationsWithFeedback() {
-        log.debug("Fetching generations with user feedback");
-        return historyRepository.findGenerationsWithFeedback().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<GenerationHistoryDTO> getGenerationsWithFeedback(String cursor, Integer size) {
+        log.debug("Fetching generations with user feedback page");
+        int pageSize = PageCursor.pageSize(size);
+        List<GenerationHistory> rows = historyRepository.findLatestPageWithFeedback(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -182,7 +193,7 @@ public class GenerationHistoryService {
     private GenerationHistoryDTO convertToDTO(GenerationHistory history) {
         GenerationHistoryDTO dto = new GenerationHistoryDTO();
         dto.setId(history.getId());
-        dto.setProjectId(history.getProject().getId());
+        dto.setProjectId(EntityIds.idOf(history.getProject()));
         dto.setGenerationType(history.getGenerationType());
         dto.setTargetId(history.getTargetId());
         dto.setPromptTemplate(history.getPromptTemplate());
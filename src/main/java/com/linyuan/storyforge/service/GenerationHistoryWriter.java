@@ -0,0 +1,252 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GenerationHistoryWriter - 生成历史异步批量写入器
+ * 生成请求只负责把记录放入有界队列，由后台线程合并为批量 INSERT 写入，
+ * 历史记录不再占用生成请求的事务和响应时间
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class GenerationHistoryWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO generation_history (id, project_id, generation_type, target_id, prompt_template,
+                prompt_variables, full_prompt, model_name, model_parameters, generated_result, quality_score,
+                latency_ms, prompt_tokens, completion_tokens, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<PendingHistory> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    // 统计
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong inlineWrites = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public GenerationHistoryWriter(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   @Value("${storyforge.generation-history.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${storyforge.generation-history.batch-size:200}") int batchSize,
+                                   @Value("${storyforge.generation-history.flush-interval-ms:500}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 队列满时在 afterCommit 回调中直接写入，此时已提交事务的连接仍绑定在线程上，
+        // 必须开启新事务取得新连接，否则写入既不在事务中也可能不被提交
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("generation-history-writer").start(this::drainLoop);
+        log.info("生成历史写入器已启动 - 队列容量: {}, 批大小: {}", queue.remainingCapacity(), batchSize);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+
+        // 写出停机时仍在队列中的记录
+        List<PendingHistory> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            writeBatch(remaining.subList(i, Math.min(i + batchSize, remaining.size())));
+        }
+        log.info("生成历史写入器已停止 - 累计写入: {}", written.get());
+    }
+
+    /**
+     * 提交一条生成历史
+     * 在事务中调用时，等事务提交后才入队，避免回滚的生成留下历史记录
+     *
+     * @param entry 待写入记录（ID 已预先分配）
+     */
+    public void submit(PendingHistory entry) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(entry);
+                }
+            });
+        } else {
+            enqueue(entry);
+        }
+    }
+
+    /**
+     * 获取写入器统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("remainingCapacity", queue.remainingCapacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("avgBatchSize", batches.get() == 0 ? 0 : Math.round(written.get() * 10.0 / batches.get()) / 10.0);
+        stats.put("inlineWrites", inlineWrites.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private void enqueue(PendingHistory entry) {
+        if (queue.offer(entry)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+        // 队列已满：由调用线程直接写入，形成背压而不是丢弃记录
+        inlineWrites.incrementAndGet();
+        log.warn("生成历史队列已满，直接写入: {}", entry.id());
+        writeBatch(List.of(entry));
+    }
+
+    private void drainLoop() {
+        List<PendingHistory> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingHistory first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("生成历史写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在独立事务中批量写入；整批失败时逐条重试，只丢弃真正写不进去的记录
+     */
+    private void writeBatch(List<PendingHistory> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind));
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+            log.debug("批量写入生成历史 {} 条", batch.size());
+        } catch (DataAccessException | IllegalArgumentException e) {
+            if (batch.size() == 1) {
+                failed.incrementAndGet();
+                log.warn("生成历史写入失败: {} - {}", batch.get(0).id(), e.getMessage());
+                return;
+            }
+            log.warn("批量写入生成历史失败，逐条重试: {}", e.getMessage());
+            for (PendingHistory entry : batch) {
+                writeBatch(List.of(entry));
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, PendingHistory entry) throws SQLException {
+        Timestamp createdAt = Timestamp.valueOf(entry.createdAt());
+        ps.setObject(1, entry.id());
+        ps.setObject(2, entry.projectId());
+        ps.setString(3, entry.generationType());
+        ps.setObject(4, entry.targetId());
+        ps.setString(5, entry.promptTemplate());
+        ps.setString(6, toJson(entry.promptVariables()));
+        ps.setString(7, entry.fullPrompt());
+        ps.setString(8, entry.modelName());
+        ps.setString(9, toJson(entry.modelParameters()));
+        ps.setString(10, entry.generatedResult());
+        if (entry.qualityScore() != null) {
+            ps.setFloat(11, entry.qualityScore());
+        } else {
+            ps.setNull(11, Types.REAL);
+        }
+        ps.setObject(12, entry.latencyMs(), Types.INTEGER);
+        ps.setObject(13, entry.promptTokens(), Types.INTEGER);
+        ps.setObject(14, entry.completionTokens(), Types.INTEGER);
+        ps.setTimestamp(15, createdAt);
+        ps.setTimestamp(16, createdAt);
+    }
+
+    private String toJson(Map<String, Object> value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化生成历史字段", e);
+        }
+    }
+
+    /**
+     * 待写入的生成历史记录
+     */
+    @Builder
+    public record PendingHistory(
+            UUID id,
+            UUID projectId,
+            String generationType,
+            UUID targetId,
+            String promptTemplate,
+            Map<String, Object> promptVariables,
+            String fullPrompt,
+            String modelName,
+            Map<String, Object> modelParameters,
+            String generatedResult,
+            Float qualityScore,
+            Integer latencyMs,
+            Integer promptTokens,
+            Integer completionTokens,
+            LocalDateTime createdAt) {
+    }
+}
@@ -5,21 +5,40 @@ import com.linyuan.storyforge.dto.GenerationRequest;
 import com.linyuan.storyforge.dto.GenerationResult;
 import com.linyuan.storyforge.entity.Character;
 import com.linyuan.storyforge.enums.ContentType;
+import com.linyuan.storyforge.enums.LlmPriority;
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
 import com.linyuan.storyforge.validator.CharacterConsistencyValidator;
 import com.linyuan.storyforge.validator.ConsistencyResult;
+import com.linyuan.storyforge.validator.StreamingConsistencyChecker;
 import com.linyuan.storyforge.validator.WorldviewConsistencyValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
  * GenerationPipeline - 统一的生成管道
  * 实现：生成 → 角色一致性验证 → 世界观一致性验证 → 修正（重试）→ 记忆创建
+ * 还有重试机会时以流式方式生成，并在 token 流上增量执行验证器编译出的硬性规则，
+ * 命中即中止当前生成并带着反馈立即重试，不必为注定失败的内容等待和付费；
+ * 完整验证失败且违规能定位到段落时，只改写违规段落而不是整段重新生成，修正后的全文重新完整验证
+ * <p>
+ * 请求指定 candidateCount &gt; 1 时改为 Best-of-N 模式：并发生成多个候选（温度错开），
+ * 每个候选完成即验证，得分达到提前接受阈值的候选立即返回并取消其余候选；
+ * 没有可用候选时带着候选命中的违规回退为顺序生成
  *
  * @author StoryForge Team
  * @since 1.0.0
@@ -29,10 +48,28 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class GenerationPipeline {
 
+    /**
+     * 请求未指定提前接受阈值时使用的默认值（与 GenerationRequest 的默认值一致）
+     */
+    private static final double DEFAULT_EARLY_ACCEPT_SCORE = 0.9;
+
     private final MemoryIntegrationService memoryService;
     private final AiGenerationService aiService;
     private final CharacterConsistencyValidator characterValidator;
     private final WorldviewConsistencyValidator worldviewValidator;
+    private final ContentRepairService repairService;
+
+    @Value("${storyforge.generation.incremental-validation.enabled:true}")
+    private boolean incrementalValidationEnabled;
+
+    @Value("${storyforge.generation.incremental-validation.check-interval-chars:48}")
+    private int incrementalCheckInterval;
+
+    @Value("${storyforge.generation.best-of-n.max-candidates:5}")
+    private int maxCandidates;
+
+    @Value("${storyforge.generation.best-of-n.temperature-step:0.1}")
+    private double candidateTemperatureStep;
 
     /**
      * 执行完整的生成流程
@@ -60,6 +97,10 @@ public class GenerationPipeline {
         GenerationResult result = GenerationResult.builder().build();
         result.addLog("开始生成流程");
 
+        // 本次请求内的所有模型调用（含候选、修正、记忆提取）按项目计入用量台账和预算
+        LlmUsageScope usage = LlmUsageScope.open(request.getProjectId(),
+                request.getContentType() != null ? request.getContentType().getCode() : null)
+                .priority(LlmPriority.INTERACTIVE);
         try {
             // 1. 构建生成上下文（包含记忆检索）
             result.addLog("步骤1: 构建生成上下文");
@@ -78,24 +119,79 @@ public class GenerationPipeline {
             String generatedContent = null;
             boolean passed = false;
             int retryCount = 0;
+            List<StreamingConsistencyChecker.Rule> hardRules = request.isEnableConsistencyCheck()
+                    ? compileHardRules(context)
+                    : List.of();
+
+            boolean bestOfN = request.getCandidateCount() != null && request.getCandidateCount() > 1;
+            if (bestOfN) {
+                // Best-of-N：并发候选代替顺序重试
+                Candidate best = generateBestOfN(request, context, result, hardRules);
+                if (best != null) {
+                    generatedContent = best.content();
+                    passed = best.passed();
+                    result.setGeneratedContent(generatedContent);
+                    mergeCandidateResult(best, result);
+                    retryCount = 1;
+                } else {
+                    // 没有可用候选（全部失败或违反硬性规则）：带着候选命中的违规回退为顺序重试和段落修正
+                    result.addLog("所有候选均生成失败或违反硬性规则，回退为顺序生成");
+                    injectValidationFeedback(request, context, result);
+                    bestOfN = false;
+                }
+            }
 
-            while (retryCount <= request.getMaxRetries() && !passed) {
+            while (!bestOfN && retryCount <= request.getMaxRetries() && !passed) {
                 if (retryCount > 0) {
                     result.addLog(String.format("第 %d 次重试生成", retryCount));
                 }
 
-                // 2.1 生成内容
-                generatedContent = generateContent(request, context, result);
+                // 2.1 生成内容（还有重试机会时在流上增量验证，命中硬性违规即中止）
+                boolean canRetry = retryCount < request.getMaxRetries();
+                StreamingConsistencyChecker checker = request.isEnableConsistencyCheck() && canRetry
+                        && incrementalValidationEnabled
+                        ? new StreamingConsistencyChecker(hardRules, incrementalCheckInterval)
+                        : null;
+                generatedContent = generateContent(request, context, result, checker);
                 result.setGeneratedContent(generatedContent);
 
                 // 2.2 一致性验证（如果启用）
-                if (request.isEnableConsistencyCheck()) {
+                if (checker != null && checker.getViolated() != null) {
+                    recordEarlyAbort(checker, result);
+                    passed = false;
+                    injectValidationFeedback(request, context, result);
+                } else if (request.isEnableConsistencyCheck()) {
                     result.addLog("步骤3: 执行一致性验证");
-                    passed = performConsistencyCheck(generatedContent, context, result);
+                    int attemptResultsFrom = result.getCharacterConsistencyResults().size();
+                    List<String> attemptViolations = new ArrayList<>();
+                    passed = performConsistencyCheck(generatedContent, context, result, attemptViolations);
+
+                    if (!passed && canRetry) {
+                        // 违规能定位到段落时只改写违规段落，消耗一次重试机会
+                        ContentRepairService.RepairOutcome repair = repairService.repair(
+                                generatedContent, hardRules, attemptViolations,
+                                request.getTemperature(), request.getMaxTokens());
+                        if (repair != null) {
+                            generatedContent = repair.content();
+                            result.setGeneratedContent(generatedContent);
+                            result.setRepairCount(result.getRepairCount() + 1);
+
+                            // 修正只检查了改写段落的硬性规则，对拼接后的全文重新完整验证，
+                            // 结果替换本次验证失败的结果
+                            result.getCharacterConsistencyResults()
+                                    .subList(attemptResultsFrom, result.getCharacterConsistencyResults().size())
+                                    .clear();
+                            attemptViolations.clear();
+                            passed = performConsistencyCheck(generatedContent, context, result, attemptViolations);
+                            result.addLog(String.format("段落级修正: 改写 %d/%d 个段落，%s",
+                                    repair.repairedParagraphs(), repair.totalParagraphs(),
+                                    passed ? "修正后完整验证通过" : "修正后仍未通过完整验证"));
+                        }
+                    }
 
-                    if (!passed && retryCount < request.getMaxRetries()) {
+                    if (!passed && canRetry) {
                         // 将验证失败信息注入到上下文，用于下次生成
-                        injectValidationFeedback(context, result);
+                        injectValidationFeedback(request, context, result);
                     }
                 } else {
                     passed = true; // 不验证则直接通过
@@ -124,6 +220,8 @@ public class GenerationPipeline {
                     );
                     result.setNewMemoryIds(newMemoryIds);
                     result.addLog(String.format("成功创建 %d 条新记忆", newMemoryIds.size()));
+                } catch (BudgetExceededException | LlmOverloadedException e) {
+                    throw e;
                 } catch (Exception e) {
                     log.error("创建记忆失败", e);
                     result.addLog("警告: 记忆创建失败 - " + e.getMessage());
@@ -132,20 +230,30 @@ public class GenerationPipeline {
 
             result.setSuccess(true);
 
+        } catch (BudgetExceededException | LlmOverloadedException e) {
+            // 预算超限和排队超时不算生成失败，交给 GlobalExceptionHandler 返回 429 / 503
+            log.warn("生成流程中止: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("生成流程失败", e);
             result.setSuccess(false);
             result.setErrorMessage(e.getMessage());
             result.addLog("错误: " + e.getMessage());
+        } finally {
+            usage.close();
         }
 
         long duration = System.currentTimeMillis() - startTime;
         result.setDurationMs(duration);
+        result.setModelName(usage.getModel());
+        result.setPromptTokens((int) usage.getPromptTokens());
+        result.setCompletionTokens((int) usage.getCompletionTokens());
+        result.setTokensUsed((int) usage.getTotalTokens());
         result.addLog(String.format("生成流程完成，总耗时: %dms", duration));
 
         log.info("========== 生成流程结束 ==========");
-        log.info("成功: {}, 耗时: {}ms, 重试次数: {}",
-                result.isSuccess(), duration, result.getRetryCount());
+        log.info("成功: {}, 耗时: {}ms, 重试次数: {}, 模型调用: {} 次, token: {}",
+                result.isSuccess(), duration, result.getRetryCount(), usage.getCalls(), result.getTokensUsed());
 
         return result;
     }
@@ -156,35 +264,309 @@ public class GenerationPipeline {
      * @param request 请求
      * @param context 上下文
      * @param result  结果（用于记录日志）
-     * @return 生成的内容
+     * @param checker 流式增量验证（为 null 或没有规则时走普通调用）
+     * @return 生成的内容（被增量验证中止时为部分内容）
      */
     private String generateContent(
             GenerationRequest request,
             GenerationContext context,
-            GenerationResult result) {
+            GenerationResult result,
+            StreamingConsistencyChecker checker) {
 
         log.info("开始AI生成，内容类型: {}", request.getContentType());
 
+        PromptAssembler.AssembledPrompt prompt = buildPrompt(request, context, result);
+
+        // 调用AI生成（稳定前缀走系统消息）
+        String generated;
+        if (checker != null && !checker.isEmpty()) {
+            QianfanDirectService.StreamedCompletion completion = aiService.chatStream(
+                    prompt.userMessage(),
+                    prompt.systemMessage(),
+                    request.getTemperature(),
+                    request.getMaxTokens(),
+                    checker::accept
+            );
+            generated = completion.content();
+            if (!completion.aborted()) {
+                // 流结束时补查最后不足一个检查间隔的内容
+                checker.finish(generated);
+            }
+        } else {
+            generated = aiService.chatWithOptions(
+                    prompt.userMessage(),
+                    prompt.systemMessage(),
+                    request.getTemperature(),
+                    request.getMaxTokens()
+            );
+        }
+
+        log.info("AI生成完成，内容长度: {} 字符", generated.length());
+        result.addLog(String.format("生成内容长度: %d 字符", generated.length()));
+
+        return generated;
+    }
+
+    /**
+     * 构建完整提示词（基础提示词 + 记忆等上下文）
+     * 世界观和角色设定作为稳定前缀放入系统消息，其余放入用户消息
+     *
+     * @param request 请求
+     * @param context 上下文
+     * @param result  结果（用于记录日志）
+     * @return 提示词
+     */
+    private PromptAssembler.AssembledPrompt buildPrompt(GenerationRequest request, GenerationContext context,
+                                                        GenerationResult result) {
         // 构建基础提示词
-        String basePrompt = buildBasePrompt(request);
+        String basePrompt = buildBasePrompt(request, context);
 
         // 增强提示词（注入记忆等信息）
-        String enhancedPrompt = memoryService.buildEnhancedPrompt(basePrompt, context);
+        PromptAssembler.AssembledPrompt prompt = memoryService.buildPromptMessages(basePrompt, context);
 
-        log.debug("提示词长度: {} 字符", enhancedPrompt.length());
-        result.addLog(String.format("提示词长度: %d 字符", enhancedPrompt.length()));
+        log.debug("提示词长度: {} 字符（稳定前缀 {} 字符）", prompt.length(),
+                prompt.systemMessage() != null ? prompt.systemMessage().length() : 0);
+        result.addLog(String.format("提示词长度: %d 字符", prompt.length()));
+        return prompt;
+    }
 
-        // 调用AI生成
-        String generated = aiService.chatWithOptions(
-                enhancedPrompt,
-                request.getTemperature(),
-                request.getMaxTokens()
-        );
+    /**
+     * Best-of-N 候选
+     *
+     * @param index         候选序号
+     * @param temperature   候选使用的温度
+     * @param content       生成内容（被丢弃时可能为部分内容）
+     * @param validation    候选自己的验证结果（线程封闭，不与主结果共享）
+     * @param passed        是否通过所有验证
+     * @param score         最低一致性得分
+     * @param discardReason 丢弃原因，为 null 表示有效候选
+     * @param violated      因违反硬性规则被丢弃时命中的规则
+     */
+    private record Candidate(int index, double temperature, String content, GenerationResult validation,
+                             boolean passed, double score, String discardReason,
+                             StreamingConsistencyChecker.Rule violated) {
 
-        log.info("AI生成完成，内容长度: {} 字符", generated.length());
-        result.addLog(String.format("生成内容长度: %d 字符", generated.length()));
+        boolean valid() {
+            return discardReason == null;
+        }
 
-        return generated;
+        /**
+         * 是否优于另一个候选：通过验证优先，其次比较得分
+         */
+        boolean betterThan(Candidate other) {
+            if (other == null) {
+                return true;
+            }
+            if (passed != other.passed) {
+                return passed;
+            }
+            return score > other.score;
+        }
+    }
+
+    /**
+     * Best-of-N 并发生成
+     * 候选在虚拟线程上以流式方式生成，各自做增量硬性规则检查和完整验证；
+     * 一旦出现通过验证且得分不低于提前接受阈值的候选就立即返回，其余候选的流在下一个 token 处中止，
+     * 阻塞在网络读取上的线程通过中断关闭连接
+     *
+     * @param request   请求
+     * @param context   上下文
+     * @param result    结果（记录日志）
+     * @param hardRules 硬性规则
+     * @return 最佳候选（没有通过验证的候选时为得分最高者）；所有候选都失败或违反硬性规则时为 null
+     */
+    private Candidate generateBestOfN(GenerationRequest request, GenerationContext context,
+                                      GenerationResult result, List<StreamingConsistencyChecker.Rule> hardRules)
+            throws InterruptedException {
+        int candidates = resolveCandidateCount(request);
+        double acceptScore = request.getEarlyAcceptScore() != null
+                ? request.getEarlyAcceptScore()
+                : DEFAULT_EARLY_ACCEPT_SCORE;
+        result.setCandidateCount(candidates);
+        result.addLog(String.format("Best-of-N 模式: 并发生成 %d 个候选，提前接受阈值 %.2f", candidates, acceptScore));
+
+        PromptAssembler.AssembledPrompt prompt = buildPrompt(request, context, result);
+        AtomicBoolean settled = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        CompletionService<Candidate> completion = new ExecutorCompletionService<>(executor);
+
+        Candidate best = null;
+        try {
+            for (int i = 0; i < candidates; i++) {
+                int index = i;
+                double temperature = candidateTemperature(request.getTemperature(), i, candidates);
+                completion.submit(LlmUsageScope.propagate(
+                        () -> runCandidate(index, temperature, prompt, request, context, hardRules, settled)));
+            }
+
+            for (int received = 0; received < candidates; received++) {
+                Candidate candidate;
+                try {
+                    candidate = completion.take().get();
+                } catch (ExecutionException e) {
+                    log.warn("候选生成失败: {}", e.getCause().getMessage());
+                    result.addLog("候选生成失败: " + e.getCause().getMessage());
+                    continue;
+                }
+
+                if (!candidate.valid()) {
+                    result.addLog(String.format("候选 #%d (温度 %.2f) 已丢弃: %s",
+                            candidate.index() + 1, candidate.temperature(), candidate.discardReason()));
+                    if (candidate.violated() != null) {
+                        // 记下命中的硬性规则，所有候选都不可用时作为回退生成的反馈
+                        recordHardViolation(candidate.violated(), result);
+                    }
+                    continue;
+                }
+
+                result.addLog(String.format("候选 #%d (温度 %.2f) 完成: %s, 得分 %.2f",
+                        candidate.index() + 1, candidate.temperature(),
+                        candidate.passed() ? "通过" : "未通过", candidate.score()));
+                if (candidate.betterThan(best)) {
+                    best = candidate;
+                }
+                if (candidate.passed() && candidate.score() >= acceptScore) {
+                    result.addLog(String.format("候选 #%d 达到提前接受阈值，取消其余候选", candidate.index() + 1));
+                    break;
+                }
+            }
+        } finally {
+            settled.set(true);
+            executor.shutdownNow();
+        }
+
+        if (best == null) {
+            log.warn("Best-of-N 的 {} 个候选均生成失败或违反硬性规则", candidates);
+            return null;
+        }
+        log.info("Best-of-N 选中候选 #{}，通过: {}, 得分: {}", best.index() + 1, best.passed(), best.score());
+        return best;
+    }
+
+    /**
+     * 生成并验证单个候选（在虚拟线程上执行）
+     */
+    private Candidate runCandidate(int index, double temperature, PromptAssembler.AssembledPrompt prompt,
+                                   GenerationRequest request,
+                                   GenerationContext context, List<StreamingConsistencyChecker.Rule> hardRules,
+                                   AtomicBoolean settled) {
+        StreamingConsistencyChecker checker = new StreamingConsistencyChecker(hardRules, incrementalCheckInterval);
+        QianfanDirectService.StreamedCompletion completion = aiService.chatStream(
+                prompt.userMessage(), prompt.systemMessage(), temperature, request.getMaxTokens(),
+                text -> !settled.get() && checker.accept(text));
+        String content = completion.content();
+
+        if (completion.aborted() && checker.getViolated() == null) {
+            return new Candidate(index, temperature, content, null, false, 0.0, "已有候选被接受", null);
+        }
+        if (checker.getViolated() != null || !checker.finish(content)) {
+            return new Candidate(index, temperature, content, null, false, 0.0,
+                    "违反硬性规则: " + checker.getViolated().violation(), checker.getViolated());
+        }
+        if (!request.isEnableConsistencyCheck()) {
+            return new Candidate(index, temperature, content, null, true, 1.0, null, null);
+        }
+
+        GenerationResult validation = GenerationResult.builder().build();
+        boolean passed = performConsistencyCheck(content, context, validation, new ArrayList<>());
+        return new Candidate(index, temperature, content, validation, passed,
+                validation.getLowestConsistencyScore(), null, null);
+    }
+
+    /**
+     * 按请求、成本预算和配置上限确定候选数
+     * 成本预算按每个候选最多消耗 maxTokens 计算
+     */
+    private int resolveCandidateCount(GenerationRequest request) {
+        int candidates = Math.min(request.getCandidateCount(), maxCandidates);
+        Integer budget = request.getCandidateTokenBudget();
+        if (budget != null && request.getMaxTokens() != null && request.getMaxTokens() > 0) {
+            candidates = Math.min(candidates, budget / request.getMaxTokens());
+        }
+        return Math.max(1, candidates);
+    }
+
+    /**
+     * 候选温度：以请求温度为中心按步长错开
+     */
+    private double candidateTemperature(Double base, int index, int candidates) {
+        double center = base != null ? base : 0.8;
+        double temperature = center + (index - (candidates - 1) / 2.0) * candidateTemperatureStep;
+        return Math.max(0.1, Math.min(1.0, temperature));
+    }
+
+    /**
+     * 把选中候选的验证结果并入主结果
+     */
+    private void mergeCandidateResult(Candidate best, GenerationResult result) {
+        GenerationResult validation = best.validation();
+        if (validation == null) {
+            return;
+        }
+        validation.getCharacterConsistencyResults().forEach(result::addCharacterConsistencyResult);
+        result.setWorldviewConsistencyResult(validation.getWorldviewConsistencyResult());
+        validation.getLogs().forEach(result.getLogs()::add);
+    }
+
+    /**
+     * 从上下文中的角色和世界观编译硬性规则
+     * 用于流式增量验证和段落级修正的违规定位，每次生成流程编译一次
+     *
+     * @param context 生成上下文
+     * @return 规则列表
+     */
+    private List<StreamingConsistencyChecker.Rule> compileHardRules(GenerationContext context) {
+        List<StreamingConsistencyChecker.Rule> rules = new ArrayList<>();
+        if (context.getCharacters() != null) {
+            for (Character character : context.getCharacters()) {
+                rules.addAll(characterValidator.compileStreamingRules(character));
+            }
+        }
+        if (context.hasWorldview()) {
+            rules.addAll(worldviewValidator.compileStreamingRules(context.getWorldview()));
+        }
+
+        log.debug("编译硬性验证规则 {} 条", rules.size());
+        return rules;
+    }
+
+    /**
+     * 记录流式增量验证命中的硬性违规
+     * 违规写入对应的一致性结果，由 injectValidationFeedback 注入下次生成
+     *
+     * @param checker 命中违规的检查器
+     * @param result  结果对象
+     */
+    private void recordEarlyAbort(StreamingConsistencyChecker checker, GenerationResult result) {
+        StreamingConsistencyChecker.Rule rule = checker.getViolated();
+        recordHardViolation(rule, result);
+
+        log.warn("流式验证命中硬性违规 ({}: {})，已在第 {} 字符处中止生成",
+                rule.source(), rule.violation(), checker.getScannedLength());
+        result.addLog(String.format("增量验证在第 %d 字符处发现违规，中止本次生成: %s",
+                checker.getScannedLength(), rule.violation()));
+    }
+
+    /**
+     * 把命中的硬性规则写入对应的一致性结果并计入提前中止次数
+     *
+     * @param rule   命中的规则
+     * @param result 结果对象
+     */
+    private void recordHardViolation(StreamingConsistencyChecker.Rule rule, GenerationResult result) {
+        ConsistencyResult violation = ConsistencyResult.builder()
+                .violations(new ArrayList<>())
+                .details("流式增量验证提前中止")
+                .build();
+        violation.addViolation(rule.violation());
+
+        if (rule.scope() == StreamingConsistencyChecker.Scope.WORLDVIEW) {
+            result.setWorldviewConsistencyResult(violation);
+        } else {
+            result.addCharacterConsistencyResult(violation);
+        }
+        result.setEarlyAbortCount(result.getEarlyAbortCount() + 1);
     }
 
     /**
@@ -193,12 +575,14 @@ public class GenerationPipeline {
      * @param content 生成的内容
      * @param context 生成上下文
      * @param result  结果对象
+     * @param attemptViolations 收集本次验证的违规描述
      * @return true如果通过所有验证
      */
     private boolean performConsistencyCheck(
             String content,
             GenerationContext context,
-            GenerationResult result) {
+            GenerationResult result,
+            List<String> attemptViolations) {
 
         log.info("开始一致性验证");
         boolean allPassed = true;
@@ -215,6 +599,7 @@ public class GenerationPipeline {
                 );
 
                 result.addCharacterConsistencyResult(charResult);
+                attemptViolations.addAll(charResult.getViolations());
 
                 if (!charResult.getPassed()) {
                     allPassed = false;
@@ -242,6 +627,7 @@ public class GenerationPipeline {
             );
 
             result.setWorldviewConsistencyResult(worldResult);
+            attemptViolations.addAll(worldResult.getViolations());
 
             if (!worldResult.getPassed()) {
                 allPassed = false;
@@ -262,15 +648,18 @@ public class GenerationPipeline {
 
     /**
      * 将验证失败信息注入到上下文
-     * 用于下次生成时作为参考
+     * 生成目标重置为请求中的原始目标加上迄今为止的违规清单（去重），下次生成的基础提示词会带上它
      *
+     * @param request 请求（提供原始生成目标）
      * @param context 生成上下文
      * @param result  当前结果
      */
-    private void injectValidationFeedback(GenerationContext context, GenerationResult result) {
+    private void injectValidationFeedback(GenerationRequest request, GenerationContext context, GenerationResult result) {
         log.info("注入验证反馈到上下文");
 
-        List<String> allViolations = result.getAllViolations();
+        List<String> allViolations = result.getAllViolations().stream()
+                .distinct()
+                .collect(Collectors.toList());
         if (allViolations.isEmpty()) {
             return;
         }
@@ -281,22 +670,23 @@ public class GenerationPipeline {
             feedback.append(String.format("%d. %s\n", i + 1, allViolations.get(i)));
         }
 
-        // 将反馈添加到生成目标中
-        String currentGoal = context.getGenerationGoal() != null ?
-                context.getGenerationGoal() : "";
-        context.setGenerationGoal(currentGoal + feedback.toString());
+        // 以原始目标为基础，避免多次重试时反馈重复叠加
+        String originalGoal = request.getGenerationGoal() != null ? request.getGenerationGoal() : "";
+        context.setGenerationGoal(originalGoal + feedback);
 
         log.debug("已添加 {} 条验证反馈", allViolations.size());
     }
 
     /**
      * 构建基础提示词
-     * 根据不同的内容类型构建不同的提示词
+     * 根据不同的内容类型构建不同的提示词；生成目标取自上下文（含重试时注入的验证反馈），
+     * 上下文中没有时使用请求中的目标
      *
      * @param request 请求
+     * @param context 上下文
      * @return 基础提示词
      */
-    private String buildBasePrompt(GenerationRequest request) {
+    private String buildBasePrompt(GenerationRequest request, GenerationContext context) {
         ContentType contentType = request.getContentType();
 
         String basePrompt = switch (contentType) {
@@ -308,8 +698,9 @@ public class GenerationPipeline {
         };
 
         // 添加生成目标
-        if (request.getGenerationGoal() != null && !request.getGenerationGoal().isEmpty()) {
-            basePrompt += "\n\n## 生成要求\n" + request.getGenerationGoal();
+        String goal = context.getGenerationGoal() != null ? context.getGenerationGoal() : request.getGenerationGoal();
+        if (goal != null && !goal.isBlank()) {
+            basePrompt += "\n\n## 生成要求\n" + goal.strip();
         }
 
         return basePrompt;
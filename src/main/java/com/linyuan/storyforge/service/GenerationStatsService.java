@@ -0,0 +1,225 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.entity.GenerationStats;
+import com.linyuan.storyforge.repository.GenerationStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * GenerationStatsService - 生成统计聚合服务
+ * 统计与参数分析全部在数据库中聚合（窗口函数 + percentile_cont），结果写入 generation_stats。
+ * 定时任务只重算自上次刷新以来有新增或变更记录的 项目/类型 分组，以及触发器记下的有记录被删除的分组，
+ * 接口直接读取聚合结果。刷新水位线保存在 generation_stats_state 中，重启和多实例之间延续
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class GenerationStatsService {
+
+    /**
+     * 统计刷新任务的 advisory lock 键
+     */
+    private static final long REFRESH_LOCK_KEY = 0x5F_4753_5441_5453L;
+
+    /**
+     * 未分类的生成类型
+     */
+    public static final String UNKNOWN_TYPE = "unknown";
+
+    /**
+     * 重算脏分组：tombstones 为触发器记下的有记录被删除的分组（读取即消费），
+     * dirty 为需要重算的 项目/类型，emptied 删除记录已全部删除的分组，totals 为整体统计，
+     * ranked/top_k 为按质量排名前 K 条记录的参数分布。
+     * %1$s 为墓碑的项目条件，%2$s 为历史记录的项目条件
+     */
+    private static final String REFRESH_SQL = """
+            WITH tombstones AS (
+                DELETE FROM generation_stats_dirty
+                %1$s
+                RETURNING project_id, generation_type
+            ),
+            dirty AS (
+                SELECT DISTINCT project_id, COALESCE(generation_type, 'unknown') AS generation_type
+                FROM generation_history
+                WHERE updated_at > ? %2$s
+                UNION
+                SELECT project_id, generation_type FROM tombstones
+            ),
+            emptied AS (
+                DELETE FROM generation_stats s
+                USING tombstones t
+                WHERE s.project_id = t.project_id
+                  AND s.generation_type = t.generation_type
+                  AND NOT EXISTS (SELECT 1 FROM generation_history h
+                                  WHERE h.project_id = t.project_id
+                                    AND COALESCE(h.generation_type, 'unknown') = t.generation_type)
+            ),
+            scoped AS (
+                SELECT h.project_id,
+                       d.generation_type,
+                       h.quality_score,
+                       h.user_feedback,
+                       h.created_at,
+                       CASE WHEN jsonb_typeof(h.model_parameters -> 'temperature') = 'number'
+                            THEN (h.model_parameters ->> 'temperature')::float8 END AS temperature,
+                       CASE WHEN jsonb_typeof(h.model_parameters -> 'maxTokens') = 'number'
+                            THEN (h.model_parameters ->> 'maxTokens')::float8 END AS max_tokens
+                FROM generation_history h
+                JOIN dirty d ON d.project_id = h.project_id
+                            AND d.generation_type = COALESCE(h.generation_type, 'unknown')
+            ),
+            totals AS (
+                SELECT project_id, generation_type,
+                       COUNT(*) AS total_count,
+                       COUNT(quality_score) AS scored_count,
+                       AVG(quality_score) AS avg_quality,
+                       percentile_cont(0.9) WITHIN GROUP (ORDER BY quality_score) AS p90_quality,
+                       COUNT(*) FILTER (WHERE user_feedback IS NOT NULL AND user_feedback <> '') AS feedback_count,
+                       MAX(created_at) AS last_generated_at
+                FROM scoped
+                GROUP BY project_id, generation_type
+            ),
+            ranked AS (
+                SELECT project_id, generation_type, quality_score, temperature, max_tokens,
+                       ROW_NUMBER() OVER (PARTITION BY project_id, generation_type
+                                          ORDER BY quality_score DESC, created_at DESC) AS quality_rank
+                FROM scoped
+                WHERE quality_score > 0
+            ),
+            top_k AS (
+                SELECT project_id, generation_type,
+                       COUNT(*) AS sample_size,
+                       AVG(quality_score) AS avg_quality,
+                       AVG(temperature) AS avg_temperature,
+                       percentile_cont(0.5) WITHIN GROUP (ORDER BY temperature) AS median_temperature,
+                       AVG(max_tokens) AS avg_max_tokens,
+                       percentile_cont(0.5) WITHIN GROUP (ORDER BY max_tokens) AS median_max_tokens
+                FROM ranked
+                WHERE quality_rank <= ?
+                GROUP BY project_id, generation_type
+            )
+            INSERT INTO generation_stats (project_id, generation_type, total_count, scored_count, avg_quality,
+                p90_quality, feedback_count, top_k_sample_size, top_k_avg_quality, top_k_avg_temperature,
+                top_k_median_temperature, top_k_avg_max_tokens, top_k_median_max_tokens, last_generated_at,
+                refreshed_at, created_at, updated_at)
+            SELECT t.project_id, t.generation_type, t.total_count, t.scored_count, t.avg_quality,
+                   t.p90_quality, t.feedback_count, COALESCE(k.sample_size, 0), k.avg_quality, k.avg_temperature,
+                   k.median_temperature, k.avg_max_tokens, k.median_max_tokens, t.last_generated_at,
+                   now(), now(), now()
+            FROM totals t
+            LEFT JOIN top_k k ON k.project_id = t.project_id AND k.generation_type = t.generation_type
+            ON CONFLICT (project_id, generation_type) DO UPDATE SET
+                total_count = EXCLUDED.total_count,
+                scored_count = EXCLUDED.scored_count,
+                avg_quality = EXCLUDED.avg_quality,
+                p90_quality = EXCLUDED.p90_quality,
+                feedback_count = EXCLUDED.feedback_count,
+                top_k_sample_size = EXCLUDED.top_k_sample_size,
+                top_k_avg_quality = EXCLUDED.top_k_avg_quality,
+                top_k_avg_temperature = EXCLUDED.top_k_avg_temperature,
+                top_k_median_temperature = EXCLUDED.top_k_median_temperature,
+                top_k_avg_max_tokens = EXCLUDED.top_k_avg_max_tokens,
+                top_k_median_max_tokens = EXCLUDED.top_k_median_max_tokens,
+                last_generated_at = EXCLUDED.last_generated_at,
+                refreshed_at = EXCLUDED.refreshed_at,
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    private final GenerationStatsRepository statsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int topK;
+    private final Duration refreshLag;
+
+    public GenerationStatsService(GenerationStatsRepository statsRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${storyforge.generation-stats.top-k:10}") int topK,
+                                  @Value("${storyforge.generation-stats.refresh-lag-seconds:300}") long refreshLagSeconds) {
+        this.statsRepository = statsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topK = topK;
+        this.refreshLag = Duration.ofSeconds(refreshLagSeconds);
+    }
+
+    /**
+     * 定时增量刷新
+     * 水位线为上次刷新的起始时间，回退 refreshLag，覆盖异步写入器在提交时间之后才落库的记录；
+     * 水位线与聚合结果在同一事务中更新
+     */
+    @Scheduled(fixedDelayString = "${storyforge.generation-stats.refresh-interval-ms:60000}")
+    public void refreshDirtyGroups() {
+        LocalDateTime startedAt = LocalDateTime.now();
+
+        Integer refreshed = transactionTemplate.execute(tx -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, REFRESH_LOCK_KEY))) {
+                return null;
+            }
+            Timestamp watermark = jdbcTemplate.queryForObject(
+                    "SELECT watermark FROM generation_stats_state WHERE id = 1", Timestamp.class);
+            LocalDateTime since = watermark.toLocalDateTime().minus(refreshLag);
+
+            int groups = jdbcTemplate.update(String.format(REFRESH_SQL, "", ""), Timestamp.valueOf(since), topK);
+            jdbcTemplate.update("UPDATE generation_stats_state SET watermark = ? WHERE id = 1",
+                    Timestamp.valueOf(startedAt));
+            return groups;
+        });
+
+        if (refreshed != null && refreshed > 0) {
+            log.debug("生成统计增量刷新 - 分组数: {}", refreshed);
+        }
+    }
+
+    /**
+     * 全量重算单个项目的统计
+     *
+     * @param projectId 项目ID
+     * @return 重算的分组数
+     */
+    @Transactional
+    public int refreshProject(UUID projectId) {
+        int refreshed = jdbcTemplate.update(String.format(REFRESH_SQL, "WHERE project_id = ?", "AND project_id = ?"),
+                projectId, Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0)), projectId, topK);
+        log.info("重算项目生成统计 - 项目: {}, 分组数: {}", projectId, refreshed);
+        return refreshed;
+    }
+
+    /**
+     * 获取项目各类型统计；项目从未聚合过时先同步聚合一次
+     */
+    @Transactional
+    public List<GenerationStats> getProjectStats(UUID projectId) {
+        if (!statsRepository.existsByProjectId(projectId)) {
+            refreshProject(projectId);
+        }
+        return statsRepository.findByProjectId(projectId);
+    }
+
+    /**
+     * 获取项目单个类型的统计
+     */
+    @Transactional
+    public Optional<GenerationStats> getTypeStats(UUID projectId, String generationType) {
+        if (!statsRepository.existsByProjectId(projectId)) {
+            refreshProject(projectId);
+        }
+        return statsRepository.findByProjectIdAndGenerationType(projectId, generationType);
+    }
+}
@@ -0,0 +1,147 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LlmBudgetService - 项目每日 token 预算
+ * <p>
+ * 每次模型调用前按当前 {@link LlmUsageScope} 的项目检查当日用量：
+ * <ul>
+ *   <li>超过软限制：放行，每个项目每天告警一次</li>
+ *   <li>超过硬限制：按配置拒绝（{@link BudgetExceededException}）或降级为更便宜的模型、更小的输出上限</li>
+ * </ul>
+ * 未归属项目的调用不受预算限制；限制为 0 表示不限
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class LlmBudgetService {
+
+    private final LlmUsageLedger usageLedger;
+    private final long softLimit;
+    private final long hardLimit;
+    private final boolean downgradeOnHardLimit;
+    private final String downgradeModel;
+    private final int downgradeMaxTokens;
+
+    /**
+     * 已告警的项目 → 告警日期
+     */
+    private final Map<UUID, LocalDate> warned = new ConcurrentHashMap<>();
+
+    // 统计
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong warnings = new AtomicLong();
+    private final AtomicLong downgrades = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public LlmBudgetService(LlmUsageLedger usageLedger,
+                            @Value("${storyforge.llm.budget.daily-token-soft-limit:0}") long softLimit,
+                            @Value("${storyforge.llm.budget.daily-token-hard-limit:0}") long hardLimit,
+                            @Value("${storyforge.llm.budget.hard-limit-action:reject}") String hardLimitAction,
+                            @Value("${storyforge.llm.budget.downgrade-model:}") String downgradeModel,
+                            @Value("${storyforge.llm.budget.downgrade-max-tokens:1000}") int downgradeMaxTokens) {
+        this.usageLedger = usageLedger;
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+        this.downgradeOnHardLimit = "downgrade".equalsIgnoreCase(hardLimitAction);
+        this.downgradeModel = downgradeModel;
+        this.downgradeMaxTokens = downgradeMaxTokens;
+    }
+
+    /**
+     * 调用参数（降级时为降级后的模型和输出上限）
+     *
+     * @param model      模型
+     * @param maxTokens  最大输出 token 数
+     * @param downgraded 是否因超出硬限制而降级
+     */
+    public record CallPlan(String model, Integer maxTokens, boolean downgraded) {
+    }
+
+    /**
+     * 模型调用前检查当前项目的预算
+     *
+     * @param model     请求的模型
+     * @param maxTokens 请求的最大输出 token 数
+     * @return 实际使用的调用参数
+     * @throws BudgetExceededException 超出硬限制且配置为拒绝
+     */
+    public CallPlan admit(String model, Integer maxTokens) {
+        LlmUsageScope scope = LlmUsageScope.current();
+        UUID projectId = scope != null ? scope.getProjectId() : null;
+        if (projectId == null || (softLimit <= 0 && hardLimit <= 0)) {
+            return new CallPlan(model, maxTokens, false);
+        }
+        checks.incrementAndGet();
+        long used = usageLedger.getTodayTokens(projectId);
+
+        if (hardLimit > 0 && used >= hardLimit) {
+            if (!downgradeOnHardLimit) {
+                rejections.incrementAndGet();
+                log.warn("项目 {} 当日 token 用量 {} 已达硬限制 {}，拒绝调用", projectId, used, hardLimit);
+                throw new BudgetExceededException(projectId, used, hardLimit);
+            }
+            downgrades.incrementAndGet();
+            String cheaper = downgradeModel.isBlank() ? model : downgradeModel;
+            int cappedTokens = maxTokens != null ? Math.min(maxTokens, downgradeMaxTokens) : downgradeMaxTokens;
+            log.warn("项目 {} 当日 token 用量 {} 已达硬限制 {}，降级调用 - 模型: {}, 最大输出: {}",
+                    projectId, used, hardLimit, cheaper, cappedTokens);
+            return new CallPlan(cheaper, cappedTokens, true);
+        }
+
+        if (softLimit > 0 && used >= softLimit) {
+            LocalDate today = LocalDate.now();
+            if (!today.equals(warned.put(projectId, today))) {
+                warnings.incrementAndGet();
+                log.warn("项目 {} 当日 token 用量 {} 已超过软限制 {}", projectId, used, softLimit);
+            }
+        }
+        return new CallPlan(model, maxTokens, false);
+    }
+
+    /**
+     * 项目当日预算状态
+     */
+    public Map<String, Object> getStatus(UUID projectId) {
+        long used = usageLedger.getTodayTokens(projectId);
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("projectId", projectId);
+        status.put("date", LocalDate.now());
+        status.put("usedTokens", used);
+        status.put("softLimit", softLimit > 0 ? softLimit : null);
+        status.put("hardLimit", hardLimit > 0 ? hardLimit : null);
+        status.put("hardLimitAction", downgradeOnHardLimit ? "downgrade" : "reject");
+        status.put("state", hardLimit > 0 && used >= hardLimit
+                ? (downgradeOnHardLimit ? "DOWNGRADED" : "BLOCKED")
+                : softLimit > 0 && used >= softLimit ? "WARNING" : "OK");
+        return status;
+    }
+
+    /**
+     * 获取预算检查统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("softLimit", softLimit);
+        stats.put("hardLimit", hardLimit);
+        stats.put("hardLimitAction", downgradeOnHardLimit ? "downgrade" : "reject");
+        stats.put("checks", checks.get());
+        stats.put("warnings", warnings.get());
+        stats.put("downgrades", downgrades.get());
+        stats.put("rejections", rejections.get());
+        return stats;
+    }
+}
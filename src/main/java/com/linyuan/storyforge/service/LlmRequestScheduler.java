@@ -0,0 +1,330 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.LlmSchedulerProperties;
+import com.linyuan.storyforge.enums.LlmPriority;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LlmRequestScheduler - 模型调用调度
+ * <p>
+ * QianfanDirectService 发出的每次模型请求先在这里取得一个并发名额（降级和重试各自重新取得，
+ * 重试前的退避等待不占名额），名额总数固定，用完时按优先级排队：
+ * <ul>
+ *   <li>优先级之间按权重分配空出的名额（stride 调度），批量、后台优先级另有名额上限，
+ *       交互请求始终有空余名额可用</li>
+ *   <li>同一优先级内按项目做加权公平排队（按开始时间标签，开销为 maxTokens），
+ *       单个项目的大量请求不会让其他项目一直等待</li>
+ *   <li>排队超过优先级的最长等待时间、客户端已离开或线程被中断时放弃该请求</li>
+ * </ul>
+ * 优先级取自当前 {@link LlmUsageScope}：入口声明的优先级，其次是来源映射，最后是默认优先级
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class LlmRequestScheduler {
+
+    /**
+     * 排队时检查客户端是否离开的间隔
+     */
+    private static final long CANCEL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * 每个优先级保留的最近排队耗时样本数
+     */
+    private static final int WAIT_WINDOW = 512;
+
+    /**
+     * 项目完成标签表的清理阈值
+     */
+    private static final int MAX_TRACKED_PROJECTS = 10_000;
+
+    private final LlmSchedulerProperties properties;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<LlmPriority, PriorityQueueState> classes = new EnumMap<>(LlmPriority.class);
+
+    // 以下字段由 lock 保护
+    private int inFlight;
+    private double globalPass;
+    private long sequence;
+
+    public LlmRequestScheduler(LlmSchedulerProperties properties) {
+        this.properties = properties;
+        for (LlmPriority priority : LlmPriority.values()) {
+            classes.put(priority, new PriorityQueueState(priority));
+        }
+    }
+
+    /**
+     * 取得一个并发名额，名额用完时排队等待
+     *
+     * @param cost 本次调用的开销（maxTokens），用于同一优先级内的公平排队
+     * @return 名额，调用结束后关闭
+     * @throws LlmOverloadedException 排队超时或客户端已离开
+     */
+    public Permit acquire(int cost) {
+        LlmUsageScope scope = LlmUsageScope.current();
+        PriorityQueueState queue = classes.get(resolvePriority(scope));
+        UUID projectId = scope != null && scope.getProjectId() != null
+                ? scope.getProjectId() : LlmUsageLedger.UNATTRIBUTED;
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(settings(queue).getMaxWaitMs());
+
+        lock.lock();
+        try {
+            Ticket ticket = queue.enqueue(projectId, Math.max(cost, 1));
+            dispatch();
+            long deadline = ticket.enqueuedAt + maxWaitNanos;
+            while (!ticket.granted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    queue.remove(ticket);
+                    queue.expired++;
+                    log.warn("模型调用排队超时 ({}): 已等待 {} ms, 排队 {}",
+                            queue.priority.getCode(), settings(queue).getMaxWaitMs(), queue.waiting.size());
+                    throw new LlmOverloadedException("Model call queue is full: waited "
+                            + settings(queue).getMaxWaitMs() + " ms for a " + queue.priority.getCode() + " slot");
+                }
+                if (scope != null && scope.isCancelled()) {
+                    queue.remove(ticket);
+                    queue.abandoned++;
+                    log.debug("客户端已离开，放弃排队中的模型调用 ({})", queue.priority.getCode());
+                    throw new LlmOverloadedException("Model call abandoned: client disconnected");
+                }
+                try {
+                    ticket.ready.awaitNanos(Math.min(remaining, CANCEL_CHECK_NANOS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (ticket.granted) {
+                        release(queue);
+                    } else {
+                        queue.remove(ticket);
+                    }
+                    queue.interrupted++;
+                    throw new RuntimeException("模型调用排队时被取消", e);
+                }
+            }
+            return new Permit(queue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取调度统计信息：每个优先级的排队数、占用名额和排队耗时分位数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("maxConcurrency", properties.getMaxConcurrency());
+            stats.put("inFlight", inFlight);
+            Map<String, Object> byPriority = new LinkedHashMap<>();
+            for (PriorityQueueState queue : classes.values()) {
+                LlmSchedulerProperties.PriorityClass settings = settings(queue);
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("weight", settings.getWeight());
+                item.put("maxInFlight", queue.cap());
+                item.put("queueDepth", queue.waiting.size());
+                item.put("inFlight", queue.inFlight);
+                item.put("granted", queue.granted);
+                item.put("queued", queue.queued);
+                item.put("expired", queue.expired);
+                item.put("abandoned", queue.abandoned);
+                item.put("interrupted", queue.interrupted);
+                item.put("waitP50Ms", queue.waitPercentile(0.5));
+                item.put("waitP95Ms", queue.waitPercentile(0.95));
+                item.put("waitMaxMs", queue.waitPercentile(1.0));
+                byPriority.put(queue.priority.getCode(), item);
+            }
+            stats.put("priorities", byPriority);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("sources", properties.getSources());
+        return stats;
+    }
+
+    private LlmPriority resolvePriority(LlmUsageScope scope) {
+        if (scope != null) {
+            if (scope.getPriority() != null) {
+                return scope.getPriority();
+            }
+            LlmPriority mapped = scope.getSource() != null ? properties.getSources().get(scope.getSource()) : null;
+            if (mapped != null) {
+                return mapped;
+            }
+        }
+        return properties.getDefaultPriority();
+    }
+
+    private LlmSchedulerProperties.PriorityClass settings(PriorityQueueState queue) {
+        return properties.classFor(queue.priority);
+    }
+
+    /**
+     * 把空出的名额分给排队的请求：在未达名额上限的优先级中选 pass 最小的，
+     * 再从该优先级中选开始标签最小的请求（调用方持有 lock）
+     */
+    private void dispatch() {
+        while (inFlight < properties.getMaxConcurrency()) {
+            PriorityQueueState next = null;
+            for (PriorityQueueState queue : classes.values()) {
+                if (queue.waiting.isEmpty() || queue.inFlight >= queue.cap()) {
+                    continue;
+                }
+                if (next == null || queue.pass < next.pass) {
+                    next = queue;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Ticket ticket = next.poll();
+            globalPass = next.pass;
+            next.pass += 1.0 / Math.max(settings(next).getWeight(), 1);
+            next.inFlight++;
+            next.granted++;
+            inFlight++;
+            next.recordWait((System.nanoTime() - ticket.enqueuedAt) / 1_000_000);
+            ticket.granted = true;
+            ticket.ready.signal();
+        }
+    }
+
+    private void release(PriorityQueueState queue) {
+        lock.lock();
+        try {
+            queue.inFlight--;
+            inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 并发名额，关闭时归还
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final PriorityQueueState queue;
+        private boolean released;
+
+        private Permit(PriorityQueueState queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(queue);
+            }
+        }
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static final class Ticket {
+
+        private final double startTag;
+        private final long sequence;
+        private final long enqueuedAt = System.nanoTime();
+        private final Condition ready;
+        private boolean granted;
+
+        Ticket(double startTag, long sequence, Condition ready) {
+            this.startTag = startTag;
+            this.sequence = sequence;
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * 单个优先级的排队状态（所有字段由外层 lock 保护）
+     */
+    private final class PriorityQueueState {
+
+        private final LlmPriority priority;
+        private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+                Comparator.comparingDouble((Ticket t) -> t.startTag).thenComparingLong(t -> t.sequence));
+
+        /**
+         * 项目 → 该项目最后一个请求的完成标签
+         */
+        private final Map<UUID, Double> lastFinish = new HashMap<>();
+        private double virtualTime;
+        private double pass;
+        private int inFlight;
+
+        private long queued;
+        private long granted;
+        private long expired;
+        private long abandoned;
+        private long interrupted;
+
+        private final long[] waits = new long[WAIT_WINDOW];
+        private int nextWait;
+        private int waitCount;
+
+        PriorityQueueState(LlmPriority priority) {
+            this.priority = priority;
+        }
+
+        int cap() {
+            int max = properties.getMaxConcurrency();
+            return Math.max(1, Math.min(max, (int) Math.floor(max * settings(this).getMaxShare())));
+        }
+
+        Ticket enqueue(UUID projectId, int cost) {
+            if (waiting.isEmpty()) {
+                // 空闲后重新排队的优先级不能带着过去的积欠抢占名额
+                pass = Math.max(pass, globalPass);
+            }
+            if (lastFinish.size() > MAX_TRACKED_PROJECTS) {
+                lastFinish.values().removeIf(finish -> finish <= virtualTime);
+            }
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(projectId, 0.0));
+            lastFinish.put(projectId, start + cost);
+            Ticket ticket = new Ticket(start, sequence++, lock.newCondition());
+            waiting.add(ticket);
+            queued++;
+            return ticket;
+        }
+
+        Ticket poll() {
+            Ticket ticket = waiting.poll();
+            virtualTime = Math.max(virtualTime, ticket.startTag);
+            return ticket;
+        }
+
+        void remove(Ticket ticket) {
+            waiting.remove(ticket);
+        }
+
+        void recordWait(long waitMs) {
+            waits[nextWait] = waitMs;
+            nextWait = (nextWait + 1) % waits.length;
+            waitCount = Math.min(waitCount + 1, waits.length);
+        }
+
+        long waitPercentile(double quantile) {
+            if (waitCount == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(waits, waitCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(quantile * waitCount) - 1;
+            return sorted[Math.min(Math.max(index, 0), waitCount - 1)];
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.linyuan.storyforge.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LlmUsageLedger - 模型调用用量台账
+ * <p>
+ * 每次模型调用的 usage（输入/输出/缓存命中 token）、耗时和实际模型名称放入有界队列，
+ * 后台线程在同一事务中批量写入 llm_usage_ledger，并把该批次按 项目/日期/来源/模板/模型
+ * 汇总后累加到 llm_usage_daily，报表和预算只读汇总表
+ * <p>
+ * 项目当日用量在内存中维护：已落库部分定期从汇总表重新读取（包含其他实例的用量），
+ * 再加上本实例尚未落库的部分
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class LlmUsageLedger {
+
+    /**
+     * 汇总表中未归属项目的用量使用的项目ID
+     */
+    public static final UUID UNATTRIBUTED = new UUID(0L, 0L);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO llm_usage_ledger (project_id, source, prompt_template, model_name, prompt_tokens,
+                completion_tokens, cached_tokens, total_tokens, latency_ms, streamed, estimated, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String ROLLUP_SQL = """
+            INSERT INTO llm_usage_daily (project_id, usage_date, source, prompt_template, model_name, calls,
+                prompt_tokens, completion_tokens, cached_tokens, total_tokens, latency_ms, estimated_calls, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now())
+            ON CONFLICT (project_id, usage_date, source, prompt_template, model_name) DO UPDATE SET
+                calls = llm_usage_daily.calls + EXCLUDED.calls,
+                prompt_tokens = llm_usage_daily.prompt_tokens + EXCLUDED.prompt_tokens,
+                completion_tokens = llm_usage_daily.completion_tokens + EXCLUDED.completion_tokens,
+                cached_tokens = llm_usage_daily.cached_tokens + EXCLUDED.cached_tokens,
+                total_tokens = llm_usage_daily.total_tokens + EXCLUDED.total_tokens,
+                latency_ms = llm_usage_daily.latency_ms + EXCLUDED.latency_ms,
+                estimated_calls = llm_usage_daily.estimated_calls + EXCLUDED.estimated_calls,
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    private static final String PROJECT_DAY_TOTAL_SQL = """
+            SELECT COALESCE(SUM(total_tokens), 0) FROM llm_usage_daily WHERE project_id = ? AND usage_date = ?
+            """;
+
+    private static final String DAILY_USAGE_SQL = """
+            SELECT usage_date, model_name, SUM(calls) AS calls, SUM(prompt_tokens) AS prompt_tokens,
+                   SUM(completion_tokens) AS completion_tokens, SUM(cached_tokens) AS cached_tokens,
+                   SUM(total_tokens) AS total_tokens, SUM(latency_ms) AS latency_ms,
+                   SUM(estimated_calls) AS estimated_calls
+            FROM llm_usage_daily
+            WHERE project_id = ? AND usage_date >= ?
+            GROUP BY usage_date, model_name
+            ORDER BY usage_date DESC, model_name
+            """;
+
+    private static final String BREAKDOWN_SQL = """
+            SELECT source, prompt_template, model_name, SUM(calls) AS calls, SUM(prompt_tokens) AS prompt_tokens,
+                   SUM(completion_tokens) AS completion_tokens, SUM(cached_tokens) AS cached_tokens,
+                   SUM(total_tokens) AS total_tokens, SUM(latency_ms) AS latency_ms,
+                   SUM(estimated_calls) AS estimated_calls
+            FROM llm_usage_daily
+            WHERE project_id = ? AND usage_date >= ?
+            GROUP BY source, prompt_template, model_name
+            ORDER BY total_tokens DESC
+            """;
+
+    private static final String PROJECT_TOTALS_SQL = """
+            SELECT project_id, model_name, SUM(calls) AS calls, SUM(prompt_tokens) AS prompt_tokens,
+                   SUM(completion_tokens) AS completion_tokens, SUM(cached_tokens) AS cached_tokens,
+                   SUM(total_tokens) AS total_tokens, SUM(latency_ms) AS latency_ms,
+                   SUM(estimated_calls) AS estimated_calls
+            FROM llm_usage_daily
+            WHERE usage_date >= ?
+            GROUP BY project_id, model_name
+            ORDER BY total_tokens DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<UsageEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long totalsRefreshMs;
+    private final double inputPricePerMillion;
+    private final double cachedInputPricePerMillion;
+    private final double outputPricePerMillion;
+
+    /**
+     * 项目当日已落库的用量（从汇总表读取，加上本实例之后写入的部分）
+     */
+    private final Map<UUID, PersistedTotal> persisted = new ConcurrentHashMap<>();
+
+    /**
+     * 项目已记录但尚未落库的用量
+     */
+    private final Map<UUID, AtomicLong> unflushed = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    // 统计
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong inlineWrites = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong estimatedEntries = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong cachedTokens = new AtomicLong();
+
+    public LlmUsageLedger(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${storyforge.llm.usage.queue-capacity:10000}") int queueCapacity,
+                          @Value("${storyforge.llm.usage.batch-size:200}") int batchSize,
+                          @Value("${storyforge.llm.usage.flush-interval-ms:1000}") long flushIntervalMs,
+                          @Value("${storyforge.llm.usage.totals-refresh-ms:60000}") long totalsRefreshMs,
+                          @Value("${storyforge.llm.pricing.input-per-million:0}") double inputPricePerMillion,
+                          @Value("${storyforge.llm.pricing.cached-input-per-million:0}") double cachedInputPricePerMillion,
+                          @Value("${storyforge.llm.pricing.output-per-million:0}") double outputPricePerMillion) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 队列满时在调用方线程直接写入，调用方可能处于生成事务中：用独立事务提交，
+        // 生成回滚时已发生的用量仍然计入预算
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.totalsRefreshMs = totalsRefreshMs;
+        this.inputPricePerMillion = inputPricePerMillion;
+        this.cachedInputPricePerMillion = cachedInputPricePerMillion;
+        this.outputPricePerMillion = outputPricePerMillion;
+    }
+
+    /**
+     * 一次模型调用的用量
+     *
+     * @param projectId        项目ID（未归属时为 null）
+     * @param source           来源（生成类型等）
+     * @param promptTemplate   提示词模板（变体）名称
+     * @param modelName        实际使用的模型
+     * @param promptTokens     输入 token 数
+     * @param completionTokens 输出 token 数
+     * @param cachedTokens     输入中命中服务端前缀缓存的 token 数
+     * @param latencyMs        调用耗时
+     * @param streamed         是否流式调用
+     * @param estimated        响应中没有 usage（如流式调用被提前中止）时按本地估算记录
+     * @param createdAt        调用完成时间
+     */
+    @Builder
+    public record UsageEntry(
+            UUID projectId,
+            String source,
+            String promptTemplate,
+            String modelName,
+            int promptTokens,
+            int completionTokens,
+            int cachedTokens,
+            int latencyMs,
+            boolean streamed,
+            boolean estimated,
+            LocalDateTime createdAt) {
+
+        int totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    /**
+     * 已落库的项目当日用量
+     */
+    private record PersistedTotal(LocalDate date, long tokens, long loadedAt) {
+    }
+
+    /**
+     * 汇总键
+     */
+    private record RollupKey(UUID projectId, LocalDate date, String source, String template, String model) {
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("llm-usage-ledger").start(this::drainLoop);
+        log.info("模型用量台账写入器已启动 - 队列容量: {}, 批大小: {}", queue.remainingCapacity(), batchSize);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+
+        List<UsageEntry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            writeBatch(remaining.subList(i, Math.min(i + batchSize, remaining.size())));
+        }
+        log.info("模型用量台账写入器已停止 - 累计写入: {}", written.get());
+    }
+
+    /**
+     * 记录一次模型调用的用量
+     * 用量已经产生，与调用方事务是否提交无关，直接入队
+     *
+     * @param entry 用量
+     */
+    public void record(UsageEntry entry) {
+        promptTokens.addAndGet(entry.promptTokens());
+        completionTokens.addAndGet(entry.completionTokens());
+        cachedTokens.addAndGet(entry.cachedTokens());
+        if (entry.estimated()) {
+            estimatedEntries.incrementAndGet();
+        }
+        if (entry.projectId() != null) {
+            unflushed.computeIfAbsent(entry.projectId(), id -> new AtomicLong()).addAndGet(entry.totalTokens());
+        }
+
+        if (queue.offer(entry)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+        // 队列已满：由调用线程直接写入，形成背压而不是丢弃记录
+        inlineWrites.incrementAndGet();
+        log.warn("模型用量队列已满，直接写入");
+        writeBatch(List.of(entry));
+    }
+
+    /**
+     * 项目当日的 token 用量（近似值：其他实例的用量在下次重新读取汇总表后计入）
+     *
+     * @param projectId 项目ID
+     * @return 当日 token 总数
+     */
+    public long getTodayTokens(UUID projectId) {
+        LocalDate today = LocalDate.now();
+        PersistedTotal total = persisted.get(projectId);
+        if (total == null || !total.date().equals(today)
+                || System.currentTimeMillis() - total.loadedAt() > totalsRefreshMs) {
+            Long tokens = jdbcTemplate.queryForObject(PROJECT_DAY_TOTAL_SQL, Long.class, projectId, Date.valueOf(today));
+            total = new PersistedTotal(today, tokens != null ? tokens : 0L, System.currentTimeMillis());
+            persisted.put(projectId, total);
+        }
+        AtomicLong pending = unflushed.get(projectId);
+        return total.tokens() + (pending != null ? pending.get() : 0L);
+    }
+
+    /**
+     * 项目最近若干天按日期、模型汇总的用量
+     */
+    public List<Map<String, Object>> getDailyUsage(UUID projectId, int days) {
+        return jdbcTemplate.query(DAILY_USAGE_SQL, (rs, rowNum) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("date", rs.getDate("usage_date").toLocalDate());
+            row.put("model", rs.getString("model_name"));
+            putUsage(row, rs);
+            return row;
+        }, projectId, Date.valueOf(LocalDate.now().minusDays(days - 1L)));
+    }
+
+    /**
+     * 项目最近若干天按来源、模板、模型汇总的用量
+     */
+    public List<Map<String, Object>> getBreakdown(UUID projectId, int days) {
+        return jdbcTemplate.query(BREAKDOWN_SQL, (rs, rowNum) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("source", rs.getString("source"));
+            row.put("template", emptyToNull(rs.getString("prompt_template")));
+            row.put("model", rs.getString("model_name"));
+            putUsage(row, rs);
+            return row;
+        }, projectId, Date.valueOf(LocalDate.now().minusDays(days - 1L)));
+    }
+
+    /**
+     * 最近若干天用量最高的项目
+     */
+    public List<Map<String, Object>> getProjectTotals(int days, int limit) {
+        return jdbcTemplate.query(PROJECT_TOTALS_SQL, (rs, rowNum) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            UUID projectId = rs.getObject("project_id", UUID.class);
+            row.put("projectId", UNATTRIBUTED.equals(projectId) ? null : projectId);
+            row.put("model", rs.getString("model_name"));
+            putUsage(row, rs);
+            return row;
+        }, Date.valueOf(LocalDate.now().minusDays(days - 1L)), limit);
+    }
+
+    /**
+     * 获取台账统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("remainingCapacity", queue.remainingCapacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("avgBatchSize", batches.get() == 0 ? 0 : Math.round(written.get() * 10.0 / batches.get()) / 10.0);
+        stats.put("inlineWrites", inlineWrites.get());
+        stats.put("failed", failed.get());
+        stats.put("estimatedEntries", estimatedEntries.get());
+        stats.put("promptTokens", promptTokens.get());
+        stats.put("completionTokens", completionTokens.get());
+        stats.put("cachedTokens", cachedTokens.get());
+        stats.put("estimatedCost", cost(promptTokens.get(), cachedTokens.get(), completionTokens.get()));
+        return stats;
+    }
+
+    private void drainLoop() {
+        List<UsageEntry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                UsageEntry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("模型用量写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 明细与汇总在同一事务中写入；整批失败时逐条重试，只丢弃真正写不进去的记录
+     */
+    private void writeBatch(List<UsageEntry> batch) {
+        List<Map.Entry<RollupKey, long[]>> rollup = aggregate(batch);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bindEntry);
+                jdbcTemplate.batchUpdate(ROLLUP_SQL, rollup, rollup.size(), this::bindRollup);
+            });
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+            log.debug("批量写入模型用量 {} 条，汇总 {} 行", batch.size(), rollup.size());
+        } catch (DataAccessException e) {
+            if (batch.size() > 1) {
+                log.warn("批量写入模型用量失败，逐条重试: {}", e.getMessage());
+                for (UsageEntry entry : batch) {
+                    writeBatch(List.of(entry));
+                }
+                return;
+            }
+            failed.incrementAndGet();
+            log.warn("模型用量写入失败: {}", e.getMessage());
+            markFlushed(batch, false);
+            return;
+        }
+        markFlushed(batch, true);
+    }
+
+    /**
+     * 按汇总键合并批次；按键排序，多个实例并发累加同一批汇总行时加锁顺序一致
+     */
+    private List<Map.Entry<RollupKey, long[]>> aggregate(List<UsageEntry> batch) {
+        Map<RollupKey, long[]> totals = new HashMap<>();
+        for (UsageEntry entry : batch) {
+            RollupKey key = new RollupKey(
+                    entry.projectId() != null ? entry.projectId() : UNATTRIBUTED,
+                    entry.createdAt().toLocalDate(),
+                    entry.source() != null ? entry.source() : "",
+                    entry.promptTemplate() != null ? entry.promptTemplate() : "",
+                    entry.modelName());
+            long[] sums = totals.computeIfAbsent(key, k -> new long[7]);
+            sums[0]++;
+            sums[1] += entry.promptTokens();
+            sums[2] += entry.completionTokens();
+            sums[3] += entry.cachedTokens();
+            sums[4] += entry.totalTokens();
+            sums[5] += entry.latencyMs();
+            sums[6] += entry.estimated() ? 1 : 0;
+        }
+        List<Map.Entry<RollupKey, long[]>> sorted = new ArrayList<>(totals.entrySet());
+        sorted.sort(Comparator.comparing((Map.Entry<RollupKey, long[]> e) -> e.getKey().projectId())
+                .thenComparing(e -> e.getKey().date())
+                .thenComparing(e -> e.getKey().source())
+                .thenComparing(e -> e.getKey().template())
+                .thenComparing(e -> e.getKey().model()));
+        return sorted;
+    }
+
+    /**
+     * 批次已落库（或写入失败已放弃）：从未落库用量中扣除，落库时当日部分计入已落库用量
+     */
+    private void markFlushed(List<UsageEntry> batch, boolean persistedToDatabase) {
+        LocalDate today = LocalDate.now();
+        for (UsageEntry entry : batch) {
+            if (entry.projectId() == null) {
+                continue;
+            }
+            AtomicLong pending = unflushed.get(entry.projectId());
+            if (pending != null) {
+                pending.addAndGet(-entry.totalTokens());
+            }
+            if (persistedToDatabase && entry.createdAt().toLocalDate().equals(today)) {
+                persisted.computeIfPresent(entry.projectId(), (id, total) -> total.date().equals(today)
+                        ? new PersistedTotal(today, total.tokens() + entry.totalTokens(), total.loadedAt())
+                        : total);
+            }
+        }
+    }
+
+    private void bindEntry(PreparedStatement ps, UsageEntry entry) throws SQLException {
+        ps.setObject(1, entry.projectId());
+        ps.setString(2, entry.source());
+        ps.setString(3, entry.promptTemplate());
+        ps.setString(4, entry.modelName());
+        ps.setInt(5, entry.promptTokens());
+        ps.setInt(6, entry.completionTokens());
+        ps.setInt(7, entry.cachedTokens());
+        ps.setInt(8, entry.totalTokens());
+        ps.setObject(9, entry.latencyMs(), Types.INTEGER);
+        ps.setBoolean(10, entry.streamed());
+        ps.setBoolean(11, entry.estimated());
+        ps.setTimestamp(12, Timestamp.valueOf(entry.createdAt()));
+    }
+
+    private void bindRollup(PreparedStatement ps, Map.Entry<RollupKey, long[]> row) throws SQLException {
+        RollupKey key = row.getKey();
+        long[] sums = row.getValue();
+        ps.setObject(1, key.projectId());
+        ps.setDate(2, Date.valueOf(key.date()));
+        ps.setString(3, key.source());
+        ps.setString(4, key.template());
+        ps.setString(5, key.model());
+        for (int i = 0; i < sums.length; i++) {
+            ps.setLong(6 + i, sums[i]);
+        }
+    }
+
+    private void putUsage(Map<String, Object> row, ResultSet rs) throws SQLException {
+        long prompt = rs.getLong("prompt_tokens");
+        long completion = rs.getLong("completion_tokens");
+        long cached = rs.getLong("cached_tokens");
+        long calls = rs.getLong("calls");
+        row.put("calls", calls);
+        row.put("promptTokens", prompt);
+        row.put("completionTokens", completion);
+        row.put("cachedTokens", cached);
+        row.put("totalTokens", rs.getLong("total_tokens"));
+        row.put("avgLatencyMs", calls == 0 ? 0 : rs.getLong("latency_ms") / calls);
+        row.put("estimatedCalls", rs.getLong("estimated_calls"));
+        row.put("estimatedCost", cost(prompt, cached, completion));
+    }
+
+    /**
+     * 按配置的单价估算费用（每百万 token）
+     */
+    private double cost(long prompt, long cached, long completion) {
+        double cost = (Math.max(prompt - cached, 0) * inputPricePerMillion
+                + cached * cachedInputPricePerMillion
+                + completion * outputPricePerMillion) / 1_000_000;
+        return Math.round(cost * 10000.0) / 10000.0;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,249 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.enums.LlmPriority;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * LlmUsageScope - 模型调用的用量归属范围
+ * <p>
+ * 生成入口（生成管道、场景/世界观生成、模板生成）打开范围并声明项目和来源，
+ * 范围内的每次模型调用都按该项目计入用量台账和预算，同时累加到范围自身，
+ * 调用方结束后可读出本次请求实际使用的模型和 token 数
+ * <p>
+ * 来源同时是 ModelRouter 选择模型档位的调用点；生成流程内部的辅助调用（记忆提取、AI 验证、段落修正）
+ * 用 {@link #within} 声明自己的来源
+ * <p>
+ * 范围绑定在当前线程上；嵌套打开时未指定的项目、来源沿用外层，用量同时累加到外层。
+ * 提交到其他线程执行的任务需要用 {@link #propagate} 包装
+ * <p>
+ * 入口还可以声明调用优先级和客户端是否已离开，供 LlmRequestScheduler 排队时使用；
+ * 外层已声明的优先级优先，批量入口内部调用单个生成入口时仍按批量排队
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public final class LlmUsageScope implements AutoCloseable {
+
+    private static final ThreadLocal<LlmUsageScope> CURRENT = new ThreadLocal<>();
+
+    private final LlmUsageScope parent;
+    private final UUID projectId;
+    private final String source;
+    private volatile String template;
+    private volatile LlmPriority priority;
+    private volatile BooleanSupplier cancelled;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong latencyMs = new AtomicLong();
+    private volatile String model;
+
+    private LlmUsageScope(LlmUsageScope parent, UUID projectId, String source) {
+        this.parent = parent;
+        this.projectId = projectId != null || parent == null ? projectId : parent.projectId;
+        this.source = source != null || parent == null ? source : parent.source;
+        this.template = parent != null ? parent.template : null;
+        this.priority = parent != null ? parent.priority : null;
+    }
+
+    /**
+     * 在当前线程上打开用量范围
+     *
+     * @param projectId 项目ID（为 null 时沿用外层）
+     * @param source    来源，如生成类型（为 null 时沿用外层）
+     * @return 范围，使用 try-with-resources 关闭
+     */
+    public static LlmUsageScope open(UUID projectId, String source) {
+        LlmUsageScope scope = new LlmUsageScope(CURRENT.get(), projectId, source);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 当前线程的用量范围
+     *
+     * @return 范围，未打开时为 null
+     */
+    public static LlmUsageScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以指定来源（调用点）执行一次调用，用量归属和模型路由都按该来源
+     *
+     * @param source 来源，如 memory-extraction
+     * @param call   模型调用
+     * @return 调用结果
+     */
+    public static <V> V within(String source, Supplier<V> call) {
+        try (LlmUsageScope ignored = open(null, source)) {
+            return call.get();
+        }
+    }
+
+    /**
+     * 让任务在提交线程的用量范围内执行
+     *
+     * @param task 任务
+     * @return 包装后的任务
+     */
+    public static <V> Callable<V> propagate(Callable<V> task) {
+        LlmUsageScope captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            LlmUsageScope previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 累加一次模型调用的用量（同时累加到外层范围）
+     * 模型只记到来源相同的范围，辅助调用使用的模型不会覆盖外层主调用的模型
+     */
+    void record(String model, int promptTokens, int completionTokens, long latencyMs) {
+        for (LlmUsageScope scope = this; scope != null; scope = scope.parent) {
+            scope.calls.incrementAndGet();
+            scope.promptTokens.addAndGet(promptTokens);
+            scope.completionTokens.addAndGet(completionTokens);
+            scope.latencyMs.addAndGet(latencyMs);
+            if (Objects.equals(scope.source, source)) {
+                scope.model = model;
+            }
+        }
+    }
+
+    /**
+     * 记录一次合并到进行中相同请求上的调用：不计调用次数和用量（由发起方计入），只记录实际使用的模型
+     */
+    void recordCoalesced(String model) {
+        if (model == null) {
+            return;
+        }
+        for (LlmUsageScope scope = this; scope != null; scope = scope.parent) {
+            if (Objects.equals(scope.source, source)) {
+                scope.model = model;
+            }
+        }
+    }
+
+    /**
+     * 设置本范围内调用使用的提示词模板（变体）名称
+     */
+    public void setTemplate(String template) {
+        this.template = template;
+    }
+
+    /**
+     * 声明本范围内调用的优先级，外层已声明时沿用外层
+     *
+     * @return 本范围
+     */
+    public LlmUsageScope priority(LlmPriority priority) {
+        if (this.priority == null) {
+            this.priority = priority;
+        }
+        return this;
+    }
+
+    /**
+     * 声明客户端是否已离开，离开后本范围内仍在排队的调用直接放弃
+     *
+     * @return 本范围
+     */
+    public LlmUsageScope cancelWhen(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    /**
+     * 本范围或任一外层的客户端是否已离开
+     */
+    public boolean isCancelled() {
+        for (LlmUsageScope scope = this; scope != null; scope = scope.parent) {
+            BooleanSupplier check = scope.cancelled;
+            if (check != null && check.getAsBoolean()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 声明的优先级，未声明时为 null
+     */
+    public LlmPriority getPriority() {
+        return priority;
+    }
+
+    public UUID getProjectId() {
+        return projectId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.get();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.get();
+    }
+
+    public long getTotalTokens() {
+        return promptTokens.get() + completionTokens.get();
+    }
+
+    /**
+     * 范围内模型调用的累计耗时（并发调用时大于墙钟时间）
+     */
+    public long getLatencyMs() {
+        return latencyMs.get();
+    }
+
+    /**
+     * 本范围来源的调用最近一次实际使用的模型
+     */
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            restore(parent);
+        }
+    }
+
+    private static void restore(LlmUsageScope scope) {
+        if (scope == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(scope);
+        }
+    }
+}
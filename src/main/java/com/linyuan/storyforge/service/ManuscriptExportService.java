@@ -0,0 +1,359 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.entity.Project;
+import com.linyuan.storyforge.enums.ExportFormat;
+import com.linyuan.storyforge.exception.ResourceNotFoundException;
+import com.linyuan.storyforge.repository.ProjectRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ManuscriptExportService - 书稿导出服务
+ * 通过 JDBC 游标按章节顺序逐行读取正文并直接写入输出流，
+ * 内存占用与书稿长度无关
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ManuscriptExportService {
+
+    /**
+     * 游标每次抓取的行数（每行是一整章正文）
+     */
+    private static final int FETCH_SIZE = 8;
+
+    /**
+     * 每个章节号只取最新版本；PostgreSQL 只有在事务内设置 fetchSize 时才使用游标
+     */
+    private static final String CHAPTER_QUERY = """
+            SELECT DISTINCT ON (chapter_number) chapter_number, title, generated_content
+            FROM story_chapters
+            WHERE project_id = ?
+            ORDER BY chapter_number ASC, version DESC
+            """;
+
+    private static final String CHAPTER_QUERY_BY_STATUS = """
+            SELECT DISTINCT ON (chapter_number) chapter_number, title, generated_content
+            FROM story_chapters
+            WHERE project_id = ? AND status = ?
+            ORDER BY chapter_number ASC, version DESC
+            """;
+
+    private final ProjectRepository projectRepository;
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ManuscriptExportService(ProjectRepository projectRepository,
+                                   DataSource dataSource,
+                                   PlatformTransactionManager transactionManager) {
+        this.projectRepository = projectRepository;
+
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(FETCH_SIZE);
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 获取待导出项目的名称（在开始写响应前校验项目是否存在）
+     *
+     * @param projectId 项目ID
+     * @return 项目名称
+     */
+    @Transactional(readOnly = true)
+    public String getProjectName(UUID projectId) {
+        return projectRepository.findById(projectId)
+                .map(Project::getName)
+                .orElseThrow(() -> new ResourceNotFoundException("Project", "id", projectId));
+    }
+
+    /**
+     * 将项目书稿流式写入输出流
+     *
+     * @param projectId   项目ID
+     * @param projectName 项目名称（书名）
+     * @param format      导出格式
+     * @param status      章节状态过滤（null 表示每章取最新版本）
+     * @param out         输出流
+     */
+    public void exportManuscript(UUID projectId, String projectName, ExportFormat format,
+                                 String status, OutputStream out) throws IOException {
+        log.info("导出书稿 - 项目: {}, 格式: {}, 状态: {}", projectId, format, status != null ? status : "最新版本");
+        long startTime = System.currentTimeMillis();
+
+        ManuscriptWriter writer = switch (format) {
+            case TXT -> new TextWriter(out, false);
+            case MARKDOWN -> new TextWriter(out, true);
+            case EPUB -> new EpubWriter(out, projectId);
+        };
+
+        writer.begin(projectName);
+
+        int[] chapterCount = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(tx -> {
+                Object[] args = status != null ? new Object[]{projectId, status} : new Object[]{projectId};
+                cursorJdbcTemplate.query(status != null ? CHAPTER_QUERY_BY_STATUS : CHAPTER_QUERY, rs -> {
+                    try {
+                        writer.chapter(rs.getInt("chapter_number"), rs.getString("title"),
+                                rs.getString("generated_content"));
+                        chapterCount[0]++;
+                    } catch (IOException e) {
+                        // 客户端断开连接：抛出后游标随事务关闭
+                        throw new UncheckedIOException(e);
+                    }
+                }, args);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.finish();
+
+        log.info("书稿导出完成 - 项目: {}, 章节数: {}, 耗时: {}ms",
+                projectId, chapterCount[0], System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 章节标题（无标题时使用"第N章"）
+     */
+    private static String chapterHeading(int number, String title) {
+        String prefix = "第" + number + "章";
+        if (title == null || title.isBlank()) {
+            return prefix;
+        }
+        return title.startsWith(prefix) ? title : prefix + " " + title;
+    }
+
+    // ========== 格式写入器 ==========
+
+    private interface ManuscriptWriter {
+
+        void begin(String projectName) throws IOException;
+
+        void chapter(int number, String title, String content) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * TXT / Markdown 写入器
+     */
+    private static final class TextWriter implements ManuscriptWriter {
+
+        private final Writer writer;
+        private final boolean markdown;
+
+        private TextWriter(OutputStream out, boolean markdown) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.markdown = markdown;
+        }
+
+        @Override
+        public void begin(String projectName) throws IOException {
+            writer.write(markdown ? "# " + projectName : projectName);
+            writer.write("\n\n");
+            writer.flush();
+        }
+
+        @Override
+        public void chapter(int number, String title, String content) throws IOException {
+            if (markdown) {
+                writer.write("## ");
+            }
+            writer.write(chapterHeading(number, title));
+            writer.write("\n\n");
+            if (content != null) {
+                writer.write(content);
+            }
+            writer.write("\n\n");
+            // 每章刷新一次，保证首字节尽早到达客户端
+            writer.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * EPUB 写入器
+     * 章节 XHTML 随读随写入 zip，目录与 OPF 清单只保留章节号和标题，在结尾写出
+     */
+    private static final class EpubWriter implements ManuscriptWriter {
+
+        private static final String MIMETYPE = "application/epub+zip";
+
+        private final ZipOutputStream zip;
+        private final Writer writer;
+        private final UUID projectId;
+        private final List<String[]> toc = new ArrayList<>();
+        private String projectName;
+
+        private EpubWriter(OutputStream out, UUID projectId) {
+            this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            this.writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+            this.projectId = projectId;
+        }
+
+        @Override
+        public void begin(String projectName) throws IOException {
+            this.projectName = projectName;
+
+            // mimetype 必须是第一个且不压缩的条目
+            byte[] mimetype = MIMETYPE.getBytes(StandardCharsets.US_ASCII);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            mimetypeEntry.setCompressedSize(mimetype.length);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+            zip.closeEntry();
+
+            writeEntry("META-INF/container.xml", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+                      <rootfiles>
+                        <rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/>
+                      </rootfiles>
+                    </container>
+                    """);
+            zip.flush();
+        }
+
+        @Override
+        public void chapter(int number, String title, String content) throws IOException {
+            String fileName = String.format("chapter-%04d.xhtml", number);
+            String heading = chapterHeading(number, title);
+            toc.add(new String[]{fileName, heading});
+
+            zip.putNextEntry(new ZipEntry("OEBPS/" + fileName));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<html xmlns=\"http://www.w3.org/1999/xhtml\" xml:lang=\"zh\">\n<head><title>");
+            writer.write(escapeXml(heading));
+            writer.write("</title></head>\n<body>\n<h2>");
+            writer.write(escapeXml(heading));
+            writer.write("</h2>\n");
+            writeParagraphs(content);
+            writer.write("</body>\n</html>\n");
+            writer.flush();
+            zip.closeEntry();
+            zip.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            StringBuilder nav = new StringBuilder("""
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops" xml:lang="zh">
+                    <head><title>目录</title></head>
+                    <body>
+                    <nav epub:type="toc"><ol>
+                    """);
+            StringBuilder manifest = new StringBuilder();
+            StringBuilder spine = new StringBuilder();
+            for (int i = 0; i < toc.size(); i++) {
+                String fileName = toc.get(i)[0];
+                nav.append("<li><a href=\"").append(fileName).append("\">")
+                        .append(escapeXml(toc.get(i)[1])).append("</a></li>\n");
+                manifest.append("    <item id=\"c").append(i).append("\" href=\"").append(fileName)
+                        .append("\" media-type=\"application/xhtml+xml\"/>\n");
+                spine.append("    <itemref idref=\"c").append(i).append("\"/>\n");
+            }
+            nav.append("</ol></nav>\n</body>\n</html>\n");
+            writeEntry("OEBPS/nav.xhtml", nav.toString());
+
+            String modified = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+            writeEntry("OEBPS/content.opf", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <package xmlns="http://www.idpf.org/2007/opf" version="3.0" unique-identifier="book-id">
+                      <metadata xmlns:dc="http://purl.org/dc/elements/1.1/">
+                        <dc:identifier id="book-id">urn:uuid:%s</dc:identifier>
+                        <dc:title>%s</dc:title>
+                        <dc:language>zh</dc:language>
+                        <meta property="dcterms:modified">%s</meta>
+                      </metadata>
+                      <manifest>
+                        <item id="nav" href="nav.xhtml" media-type="application/xhtml+xml" properties="nav"/>
+                    %s  </manifest>
+                      <spine>
+                    %s  </spine>
+                    </package>
+                    """.formatted(projectId, escapeXml(projectName), modified, manifest, spine));
+
+            zip.finish();
+            zip.flush();
+        }
+
+        private void writeEntry(String name, String content) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            writer.write(content);
+            writer.flush();
+            zip.closeEntry();
+        }
+
+        /**
+         * 按行拆分段落，逐段转义写出
+         */
+        private void writeParagraphs(String content) throws IOException {
+            if (content == null) {
+                return;
+            }
+            int start = 0;
+            while (start <= content.length()) {
+                int end = content.indexOf('\n', start);
+                if (end < 0) {
+                    end = content.length();
+                }
+                String line = content.substring(start, end).strip();
+                if (!line.isEmpty()) {
+                    writer.write("<p>");
+                    writer.write(escapeXml(line));
+                    writer.write("</p>\n");
+                }
+                start = end + 1;
+            }
+        }
+
+        private static String escapeXml(String text) {
+            if (text == null) {
+                return "";
+            }
+            StringBuilder escaped = new StringBuilder(text.length() + 16);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&' -> escaped.append("&amp;");
+                    case '<' -> escaped.append("&lt;");
+                    case '>' -> escaped.append("&gt;");
+                    case '"' -> escaped.append("&quot;");
+                    default -> escaped.append(c);
+                }
+            }
+            return escaped.toString();
+        }
+    }
+}
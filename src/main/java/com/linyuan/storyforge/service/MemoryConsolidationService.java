@@ -0,0 +1,540 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.MemoryConsolidationProperties;
+import com.linyuan.storyforge.entity.CharacterMemory;
+import com.linyuan.storyforge.enums.LlmPriority;
+import com.linyuan.storyforge.enums.MemoryType;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
+import com.linyuan.storyforge.exception.ResourceNotFoundException;
+import com.linyuan.storyforge.repository.CharacterMemoryRepository;
+import com.linyuan.storyforge.repository.CharacterRepository;
+import com.linyuan.storyforge.repository.TimelineRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * MemoryConsolidationService - 记忆整合任务
+ * 角色的记忆随每次生成不断增加，这里定时把长期不用的记忆压缩掉，让每个角色的在线记忆数保持在上限附近：
+ * <ol>
+ *   <li>候选记忆：可访问性不高于陈旧阈值的记忆，以及在线记忆数超过上限时可访问性最低的超出部分；
+ *       核心记忆不参与，概括记忆在可访问性降到陈旧阈值以下后才再次参与</li>
+ *   <li>按关键词聚类：记忆的关键词大部分出现在某个聚类中就归入该聚类</li>
+ *   <li>每个聚类用一次便宜的模型调用概括为一条语义记忆（来源 memory-consolidation，后台优先级）</li>
+ *   <li>同一事务内写入概括记忆，原记忆移入 character_memories_archive 并从在线表删除</li>
+ * </ol>
+ * 在线记忆数仍超过上限时，凑不成聚类的剩余记忆按时间顺序分组概括；模型调用失败时用原文拼接代替概括，
+ * 排队超时则留到下次执行。多实例下只有取得 advisory lock 的实例执行
+ * <p>
+ * 每次执行后角色的在线记忆数不超过 workingSetSize + 核心记忆数 + 尚未陈旧的概括记忆数。
+ * 概括记忆随遗忘曲线衰减到陈旧阈值以下后会被再次整合，所以这个上界不会随运行时间增长；
+ * 超出上限但没有可整合记忆的角色不会被选中
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class MemoryConsolidationService {
+
+    /**
+     * 整合任务的 advisory lock 键
+     */
+    private static final long CONSOLIDATION_LOCK_KEY = 0x5F_4D45_4D43_4F4EL;
+
+    private static final String USAGE_SOURCE = "memory-consolidation";
+
+    /**
+     * 不参与整合的记忆类型（核心记忆）
+     */
+    private static final String CONSOLIDATABLE = "COALESCE(m.memory_type, '') NOT IN ('核心记忆', 'core', 'CORE')";
+
+    /**
+     * 本次可参与整合的记忆：整合生成的概括记忆要等可访问性降到陈旧阈值（参数）以下才再次参与，
+     * 刚写入的概括不会在下一次执行时又被概括
+     */
+    private static final String ELIGIBLE = CONSOLIDATABLE + " AND (m.accessibility <= ?"
+            + " OR NOT EXISTS (SELECT 1 FROM character_memories_archive a WHERE a.consolidated_into = m.id))";
+
+    private static final int SUMMARY_KEYWORDS = 8;
+
+    private static final int FALLBACK_SUMMARY_CHARS = 200;
+
+    private static final String CANDIDATE_CHARACTERS_SQL = """
+            SELECT m.character_id, c.project_id, c.name,
+                   count(*) AS total,
+                   count(*) FILTER (WHERE m.accessibility <= ? AND %1$s) AS stale,
+                   count(*) FILTER (WHERE %2$s) AS eligible
+            FROM character_memories m
+            JOIN characters c ON c.id = m.character_id
+            %3$s
+            GROUP BY m.character_id, c.project_id, c.name
+            HAVING count(*) FILTER (WHERE m.accessibility <= ? AND %1$s) >= ?
+                OR (count(*) > ? AND count(*) FILTER (WHERE %2$s) >= ?)
+            ORDER BY stale DESC, total DESC
+            LIMIT ?
+            """;
+
+    private static final String CANDIDATE_MEMORIES_SQL = """
+            SELECT m.id, m.timeline_id, m.memory_type, m.memory_content, m.emotional_weight, m.keywords,
+                   m.related_characters, m.related_locations, m.accessibility, m.last_accessed, m.access_count
+            FROM character_memories m
+            WHERE m.character_id = ? AND %s
+            ORDER BY m.accessibility ASC NULLS FIRST, m.last_accessed ASC NULLS FIRST
+            LIMIT ?
+            """;
+
+    private static final String ARCHIVE_SQL = """
+            INSERT INTO character_memories_archive (
+                id, character_id, timeline_id, memory_type, memory_content, emotional_weight, keywords,
+                related_characters, related_locations, accessibility, last_accessed, access_count,
+                created_at, consolidated_into)
+            SELECT id, character_id, timeline_id, memory_type, memory_content, emotional_weight, keywords,
+                   related_characters, related_locations, accessibility, last_accessed, access_count,
+                   created_at, ?
+            FROM character_memories
+            WHERE id = ANY(?)
+            """;
+
+    private static final String DELETE_SQL = "DELETE FROM character_memories WHERE id = ANY(?)";
+
+    private final MemoryConsolidationProperties properties;
+    private final CharacterMemoryRepository memoryRepository;
+    private final CharacterRepository characterRepository;
+    private final TimelineRepository timelineRepository;
+    private final AiGenerationService aiService;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // 统计
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+    private final AtomicLong charactersConsolidated = new AtomicLong();
+    private final AtomicLong clustersSummarized = new AtomicLong();
+    private final AtomicLong memoriesArchived = new AtomicLong();
+    private final AtomicLong fallbackSummaries = new AtomicLong();
+    private final AtomicLong deferredClusters = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunArchived;
+    private volatile long lastRunDurationMs;
+
+    public MemoryConsolidationService(MemoryConsolidationProperties properties,
+                                      CharacterMemoryRepository memoryRepository,
+                                      CharacterRepository characterRepository,
+                                      TimelineRepository timelineRepository,
+                                      AiGenerationService aiService,
+                                      DataSource dataSource,
+                                      JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.memoryRepository = memoryRepository;
+        this.characterRepository = characterRepository;
+        this.timelineRepository = timelineRepository;
+        this.aiService = aiService;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 定时整合所有角色；其他实例正在执行时跳过
+     */
+    @Scheduled(cron = "${storyforge.memory.consolidation.cron:0 45 4 * * *}")
+    public void runScheduledConsolidation() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!advisoryLock(lockConnection, "pg_try_advisory_lock")) {
+                skippedRuns.incrementAndGet();
+                log.debug("其他实例正在执行记忆整合，本次跳过");
+                return;
+            }
+            try {
+                consolidateAll();
+            } finally {
+                advisoryLock(lockConnection, "pg_advisory_unlock");
+            }
+        } catch (SQLException e) {
+            log.warn("记忆整合任务获取锁失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 整合陈旧记忆最多的一批角色
+     *
+     * @return 归档的记忆数
+     */
+    public long consolidateAll() {
+        long start = System.currentTimeMillis();
+        List<CandidateCharacter> characters = findCandidateCharacters(null);
+
+        long archived = 0;
+        for (CandidateCharacter character : characters) {
+            try {
+                archived += consolidate(character);
+            } catch (LlmOverloadedException e) {
+                // 后台名额已满，剩下的角色留到下次
+                log.info("模型调用繁忙，记忆整合提前结束: {}", e.getMessage());
+                break;
+            } catch (Exception e) {
+                log.error("整合角色 {} 的记忆失败", character.characterId(), e);
+            }
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        runs.incrementAndGet();
+        lastRunAt = LocalDateTime.now();
+        lastRunArchived = archived;
+        lastRunDurationMs = duration;
+        log.info("记忆整合完成 - 角色: {}, 归档: {}, 耗时: {}ms", characters.size(), archived, duration);
+        return archived;
+    }
+
+    /**
+     * 整合单个角色的记忆（未达到整合条件时不做任何事）
+     *
+     * @param characterId 角色ID
+     * @return 归档的记忆数
+     */
+    public long consolidateCharacter(UUID characterId) {
+        if (!characterRepository.existsById(characterId)) {
+            throw new ResourceNotFoundException("Character", "id", characterId);
+        }
+        List<CandidateCharacter> candidates = findCandidateCharacters(characterId);
+        return candidates.isEmpty() ? 0 : consolidate(candidates.get(0));
+    }
+
+    /**
+     * 获取整合任务统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("workingSetSize", properties.getWorkingSetSize());
+        stats.put("runs", runs.get());
+        stats.put("skippedRuns", skippedRuns.get());
+        stats.put("charactersConsolidated", charactersConsolidated.get());
+        stats.put("clustersSummarized", clustersSummarized.get());
+        stats.put("memoriesArchived", memoriesArchived.get());
+        stats.put("fallbackSummaries", fallbackSummaries.get());
+        stats.put("deferredClusters", deferredClusters.get());
+        stats.put("conflicts", conflicts.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunArchived", lastRunArchived);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        return stats;
+    }
+
+    private List<CandidateCharacter> findCandidateCharacters(UUID characterId) {
+        float stale = properties.getStaleThreshold();
+        List<Object> args = new ArrayList<>(List.of(stale, stale));
+        if (characterId != null) {
+            args.add(characterId);
+        }
+        args.addAll(List.of(stale, properties.getMinClusterSize(), properties.getWorkingSetSize(),
+                stale, properties.getMinClusterSize(), properties.getMaxCharactersPerRun()));
+        String sql = String.format(CANDIDATE_CHARACTERS_SQL, CONSOLIDATABLE, ELIGIBLE,
+                characterId != null ? "WHERE m.character_id = ?" : "");
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new CandidateCharacter(
+                rs.getObject("character_id", UUID.class),
+                rs.getObject("project_id", UUID.class),
+                rs.getString("name"),
+                rs.getLong("total"),
+                rs.getLong("stale"),
+                rs.getLong("eligible")), args.toArray());
+    }
+
+    /**
+     * 整合一个角色：选出候选记忆、聚类、逐个聚类概括并归档
+     */
+    private long consolidate(CandidateCharacter character) {
+        // 超出上限的部分只能从可参与整合的记忆中压缩
+        long overflow = Math.min(character.total() - properties.getWorkingSetSize(), character.eligible());
+        int limit = (int) Math.min(Math.max(character.stale(), overflow), properties.getMaxMemoriesPerCharacter());
+        if (limit < properties.getMinClusterSize()) {
+            return 0;
+        }
+
+        List<StaleMemory> candidates = jdbcTemplate.query(String.format(CANDIDATE_MEMORIES_SQL, ELIGIBLE),
+                (rs, rowNum) -> mapMemory(rs), character.characterId(), properties.getStaleThreshold(), limit);
+        List<List<StaleMemory>> clusters = cluster(candidates, overflow);
+        if (clusters.isEmpty()) {
+            return 0;
+        }
+
+        long archived = 0;
+        try (LlmUsageScope ignored = LlmUsageScope.open(character.projectId(), USAGE_SOURCE)
+                .priority(LlmPriority.BACKGROUND)) {
+            for (int i = 0; i < clusters.size(); i++) {
+                String summary;
+                try {
+                    summary = summarize(character, clusters.get(i));
+                } catch (LlmOverloadedException e) {
+                    deferredClusters.addAndGet(clusters.size() - i);
+                    throw e;
+                }
+                archived += archive(character, clusters.get(i), summary);
+            }
+        }
+
+        if (archived > 0) {
+            charactersConsolidated.incrementAndGet();
+            log.info("角色 {} 记忆整合 - 在线: {}, 归档: {}, 聚类: {}",
+                    character.name(), character.total(), archived, clusters.size());
+        }
+        return archived;
+    }
+
+    /**
+     * 按关键词贪心聚类：记忆的关键词中至少 keywordOverlap 比例出现在某个聚类的关键词集合里就归入该聚类。
+     * 小于 minClusterSize 的聚类和没有关键词的记忆作为剩余记忆，只有在线记忆数仍超过上限时才按顺序分组
+     */
+    private List<List<StaleMemory>> cluster(List<StaleMemory> candidates, long overflow) {
+        int maxSize = Math.max(properties.getMaxClusterSize(), 2);
+        List<List<StaleMemory>> clusters = new ArrayList<>();
+        List<Set<String>> clusterKeywords = new ArrayList<>();
+        List<StaleMemory> remainder = new ArrayList<>();
+
+        for (StaleMemory memory : candidates) {
+            if (memory.keywords().isEmpty()) {
+                remainder.add(memory);
+                continue;
+            }
+            int best = -1;
+            double bestOverlap = 0;
+            for (int i = 0; i < clusters.size(); i++) {
+                if (clusters.get(i).size() >= maxSize) {
+                    continue;
+                }
+                Set<String> keywords = clusterKeywords.get(i);
+                long shared = memory.keywords().stream().filter(keywords::contains).count();
+                double overlap = (double) shared / memory.keywords().size();
+                if (overlap >= properties.getKeywordOverlap() && overlap > bestOverlap) {
+                    best = i;
+                    bestOverlap = overlap;
+                }
+            }
+            if (best < 0) {
+                clusters.add(new ArrayList<>(List.of(memory)));
+                clusterKeywords.add(new HashSet<>(memory.keywords()));
+            } else {
+                clusters.get(best).add(memory);
+                clusterKeywords.get(best).addAll(memory.keywords());
+            }
+        }
+
+        List<List<StaleMemory>> result = new ArrayList<>();
+        long reduction = 0;
+        for (List<StaleMemory> cluster : clusters) {
+            if (cluster.size() >= properties.getMinClusterSize()) {
+                result.add(cluster);
+                reduction += cluster.size() - 1;
+            } else {
+                remainder.addAll(cluster);
+            }
+        }
+
+        // 在线记忆数仍超过上限：剩余记忆按最后访问时间排序后分组，保证在线记忆数收敛
+        if (reduction < overflow && remainder.size() >= 2) {
+            remainder.sort(Comparator.comparing(StaleMemory::lastAccessed,
+                    Comparator.nullsFirst(Comparator.naturalOrder())));
+            for (int from = 0; from + 1 < remainder.size() && reduction < overflow; from += maxSize) {
+                List<StaleMemory> group = remainder.subList(from, Math.min(from + maxSize, remainder.size()));
+                result.add(new ArrayList<>(group));
+                reduction += group.size() - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 概括一个聚类
+     *
+     * @return 概括内容
+     * @throws LlmOverloadedException 模型调用排队超时，聚类留到下次执行
+     */
+    private String summarize(CandidateCharacter character, List<StaleMemory> cluster) {
+        String prompt = buildSummaryPrompt(character.name(), cluster);
+        try {
+            String summary = aiService.chatWithOptions(prompt, 0.3, properties.getSummaryMaxTokens());
+            if (summary != null && !summary.isBlank()) {
+                return summary.strip();
+            }
+            log.warn("记忆概括结果为空，使用原文拼接 - 角色: {}", character.name());
+        } catch (LlmOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("记忆概括失败，使用原文拼接 - 角色: {}, 原因: {}", character.name(), e.getMessage());
+        }
+        fallbackSummaries.incrementAndGet();
+        String joined = cluster.stream()
+                .map(StaleMemory::content)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining("；"));
+        return joined.length() > FALLBACK_SUMMARY_CHARS ? joined.substring(0, FALLBACK_SUMMARY_CHARS) + "…" : joined;
+    }
+
+    private String buildSummaryPrompt(String characterName, List<StaleMemory> cluster) {
+        StringBuilder memories = new StringBuilder();
+        for (int i = 0; i < cluster.size(); i++) {
+            StaleMemory memory = cluster.get(i);
+            memories.append(i + 1).append(". ");
+            if (memory.memoryType() != null) {
+                memories.append('[').append(memory.memoryType()).append("] ");
+            }
+            memories.append(memory.content() != null ? memory.content() : "").append('\n');
+        }
+
+        return String.format("""
+                以下是角色「%s」的若干条旧记忆。请把它们概括为一条记忆（不超过120字），
+                保留关键事实、涉及的人物关系和情感倾向，用第三人称陈述。
+
+                %s
+                请直接输出概括内容，不要分条，不要解释。
+                """, characterName, memories);
+    }
+
+    /**
+     * 写入概括记忆并归档原记忆（单个事务）；原记忆已被其他整合处理时回滚
+     */
+    private long archive(CandidateCharacter character, List<StaleMemory> cluster, String summary) {
+        Long archived = transactionTemplate.execute(status -> {
+            CharacterMemory saved = memoryRepository.saveAndFlush(buildSummaryMemory(character, cluster, summary));
+            UUID[] ids = cluster.stream().map(StaleMemory::id).toArray(UUID[]::new);
+
+            int copied = jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(ARCHIVE_SQL);
+                ps.setObject(1, saved.getId());
+                ps.setArray(2, connection.createArrayOf("uuid", ids));
+                return ps;
+            });
+            int deleted = jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(DELETE_SQL);
+                ps.setArray(1, connection.createArrayOf("uuid", ids));
+                return ps;
+            });
+            if (copied != ids.length || deleted != ids.length) {
+                status.setRollbackOnly();
+                return 0L;
+            }
+            return (long) deleted;
+        });
+
+        if (archived == null || archived == 0) {
+            conflicts.incrementAndGet();
+            log.debug("聚类中的记忆已变化，跳过 - 角色: {}", character.name());
+            return 0;
+        }
+        clustersSummarized.incrementAndGet();
+        memoriesArchived.addAndGet(archived);
+        return archived;
+    }
+
+    /**
+     * 概括记忆：情感权重取聚类中的最大值，访问次数累加，关键词取出现最多的几个，
+     * 所有记忆属于同一时间线时保留时间线；可访问性和最近访问时间重置，概括记忆能被检索到，
+     * 不会因继承原记忆的低可访问性而立刻沉底
+     */
+    private CharacterMemory buildSummaryMemory(CandidateCharacter character, List<StaleMemory> cluster, String summary) {
+        Map<String, Long> keywordCounts = cluster.stream()
+                .flatMap(memory -> memory.keywords().stream())
+                .collect(Collectors.groupingBy(keyword -> keyword, LinkedHashMap::new, Collectors.counting()));
+        List<String> keywords = keywordCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(SUMMARY_KEYWORDS)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        Set<UUID> timelines = cluster.stream().map(StaleMemory::timelineId).collect(Collectors.toSet());
+        UUID timelineId = timelines.size() == 1 ? timelines.iterator().next() : null;
+
+        return CharacterMemory.builder()
+                .character(characterRepository.getReferenceById(character.characterId()))
+                .timeline(timelineId != null ? timelineRepository.getReferenceById(timelineId) : null)
+                .memoryType(MemoryType.SEMANTIC.getDescription())
+                .memoryContent(summary)
+                .emotionalWeight((float) cluster.stream()
+                        .mapToDouble(memory -> memory.emotionalWeight() != null ? memory.emotionalWeight() : 0.5f)
+                        .max().orElse(0.5))
+                .keywords(keywords)
+                .relatedCharacters(cluster.stream().flatMap(memory -> memory.relatedCharacters().stream())
+                        .distinct().collect(Collectors.toList()))
+                .relatedLocations(cluster.stream().flatMap(memory -> memory.relatedLocations().stream())
+                        .distinct().collect(Collectors.toList()))
+                .accessibility(1.0f)
+                .lastAccessed(LocalDateTime.now())
+                .accessCount(cluster.stream().mapToInt(StaleMemory::accessCount).sum())
+                .build();
+    }
+
+    private static StaleMemory mapMemory(ResultSet rs) throws SQLException {
+        Timestamp lastAccessed = rs.getTimestamp("last_accessed");
+        List<String> keywords = new ArrayList<>();
+        for (String keyword : arrayOf(rs.getArray("keywords"), String.class)) {
+            if (keyword != null && !keyword.isBlank()) {
+                keywords.add(keyword.trim().toLowerCase());
+            }
+        }
+        return new StaleMemory(
+                rs.getObject("id", UUID.class),
+                rs.getObject("timeline_id", UUID.class),
+                rs.getString("memory_type"),
+                rs.getString("memory_content"),
+                rs.getObject("emotional_weight", Float.class),
+                keywords.stream().distinct().collect(Collectors.toList()),
+                arrayOf(rs.getArray("related_characters"), UUID.class),
+                arrayOf(rs.getArray("related_locations"), UUID.class),
+                rs.getObject("accessibility", Float.class),
+                lastAccessed != null ? lastAccessed.toLocalDateTime() : null,
+                rs.getInt("access_count"));
+    }
+
+    private static <T> List<T> arrayOf(Array array, Class<T> type) throws SQLException {
+        if (array == null) {
+            return List.of();
+        }
+        List<T> values = new ArrayList<>();
+        for (Object value : (Object[]) array.getArray()) {
+            if (value != null) {
+                values.add(type.cast(value));
+            }
+        }
+        return values;
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, CONSOLIDATION_LOCK_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private record CandidateCharacter(UUID characterId, UUID projectId, String name, long total, long stale,
+                                      long eligible) {
+    }
+
+    private record StaleMemory(UUID id, UUID timelineId, String memoryType, String content, Float emotionalWeight,
+                               List<String> keywords, List<UUID> relatedCharacters, List<UUID> relatedLocations,
+                               Float accessibility, LocalDateTime lastAccessed, int accessCount) {
+    }
+}
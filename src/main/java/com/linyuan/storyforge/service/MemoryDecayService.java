@@ -0,0 +1,201 @@
+package com.linyuan.storyforge.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MemoryDecayService - 记忆遗忘曲线衰减任务
+ * 定时用集合式 UPDATE 重算所有记忆的可访问性，检索时直接使用库中的值，不再逐条计算、逐条保存
+ * <p>
+ * 公式与 CharacterMemory.updateAccessibility 一致：
+ * accessibility = exp(-days / strength) * weight，strength = 7 + ln(1 + access_count) * 3，
+ * days 为距上次访问的整天数，当天访问过或从未访问过的记忆不变。结果只取决于访问记录，重复执行无副作用
+ * <p>
+ * 按主键分块，每块一个短事务，避免长时间锁住大量行；
+ * 整次执行持有会话级 advisory lock，多实例下只有一个实例执行
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class MemoryDecayService {
+
+    /**
+     * 衰减任务的 advisory lock 键
+     */
+    private static final long DECAY_LOCK_KEY = 0x5F_4D45_4D44_4543L;
+
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    /**
+     * %s 为附加的行范围条件
+     */
+    private static final String DECAY_SQL = """
+            UPDATE character_memories m
+            SET accessibility = d.value
+            FROM (
+                SELECT id,
+                       CAST(LEAST(1.0, GREATEST(0.0,
+                           EXP(-FLOOR(EXTRACT(EPOCH FROM (CAST(? AS TIMESTAMP) - last_accessed)) / 86400)
+                               / (7.0 + LN(1 + COALESCE(access_count, 0)) * 3.0))
+                           * COALESCE(emotional_weight, 0.5))) AS REAL) AS value
+                FROM character_memories
+                WHERE last_accessed <= ? %s
+            ) d
+            WHERE m.id = d.id
+              AND m.accessibility IS DISTINCT FROM d.value
+            """;
+
+    private static final String CHUNK_UPPER_BOUND_SQL =
+            "SELECT id FROM character_memories WHERE id > ? ORDER BY id OFFSET ? LIMIT 1";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+
+    // 统计
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+    private final AtomicLong updatedRows = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunUpdated;
+    private volatile long lastRunChunks;
+    private volatile long lastRunDurationMs;
+
+    public MemoryDecayService(DataSource dataSource,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${storyforge.memory.decay.enabled:true}") boolean enabled,
+                              @Value("${storyforge.memory.decay.chunk-size:5000}") int chunkSize) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    /**
+     * 定时衰减全部记忆；其他实例正在执行时跳过
+     */
+    @Scheduled(cron = "${storyforge.memory.decay.cron:0 15 * * * *}")
+    public void runScheduledDecay() {
+        if (!enabled) {
+            return;
+        }
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!advisoryLock(lockConnection, "pg_try_advisory_lock")) {
+                skippedRuns.incrementAndGet();
+                log.debug("其他实例正在执行记忆衰减，本次跳过");
+                return;
+            }
+            try {
+                decayAll();
+            } finally {
+                advisoryLock(lockConnection, "pg_advisory_unlock");
+            }
+        } catch (SQLException e) {
+            log.warn("记忆衰减任务获取锁失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 分块衰减全部记忆
+     *
+     * @return 可访问性有变化的记忆数
+     */
+    public long decayAll() {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        long updated = 0;
+        long chunks = 0;
+        UUID lowerBound = MIN_ID;
+
+        while (lowerBound != null) {
+            UUID from = lowerBound;
+            List<UUID> upper = jdbcTemplate.queryForList(CHUNK_UPPER_BOUND_SQL, UUID.class, from, chunkSize - 1);
+            UUID to = upper.isEmpty() ? null : upper.get(0);
+
+            Integer chunkUpdated = transactionTemplate.execute(tx -> to != null
+                    ? jdbcTemplate.update(String.format(DECAY_SQL, "AND id > ? AND id <= ?"),
+                            Timestamp.valueOf(now), Timestamp.valueOf(now.minusDays(1)), from, to)
+                    : jdbcTemplate.update(String.format(DECAY_SQL, "AND id > ?"),
+                            Timestamp.valueOf(now), Timestamp.valueOf(now.minusDays(1)), from));
+            updated += chunkUpdated != null ? chunkUpdated : 0;
+            chunks++;
+            lowerBound = to;
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        runs.incrementAndGet();
+        updatedRows.addAndGet(updated);
+        lastRunAt = now;
+        lastRunUpdated = updated;
+        lastRunChunks = chunks;
+        lastRunDurationMs = duration;
+        log.info("记忆衰减完成 - 更新: {}, 分块: {}, 耗时: {}ms", updated, chunks, duration);
+        return updated;
+    }
+
+    /**
+     * 衰减单个角色的记忆
+     *
+     * @param characterId 角色ID
+     * @return 可访问性有变化的记忆数
+     */
+    @Transactional
+    public int decayCharacter(UUID characterId) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = jdbcTemplate.update(String.format(DECAY_SQL, "AND character_id = ?"),
+                Timestamp.valueOf(now), Timestamp.valueOf(now.minusDays(1)), characterId);
+        updatedRows.addAndGet(updated);
+        return updated;
+    }
+
+    /**
+     * 获取衰减任务统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("chunkSize", chunkSize);
+        stats.put("runs", runs.get());
+        stats.put("skippedRuns", skippedRuns.get());
+        stats.put("updatedRows", updatedRows.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunUpdated", lastRunUpdated);
+        stats.put("lastRunChunks", lastRunChunks);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        return stats;
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, DECAY_LOCK_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.SingleFlight;
 import com.linyuan.storyforge.dto.GenerationContext;
 import com.linyuan.storyforge.dto.GenerationRequest;
 import com.linyuan.storyforge.entity.*;
 import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.enums.ContentType;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -34,16 +36,54 @@ public class MemoryIntegrationService {
     private final WorldviewRepository worldviewRepository;
     private final TimelineRepository timelineRepository;
     private final AiGenerationService aiService;
+    private final CharacterRelationshipGraphService relationshipGraphService;
+    private final PromptAssembler promptAssembler;
+
+    /**
+     * 进行中的上下文构建，相同请求共享一次构建
+     */
+    private final SingleFlight<ContextKey, GenerationContext> contextFlight = new SingleFlight<>();
 
     /**
      * 构建完整的生成上下文
      * 包含项目、角色、世界观、记忆等所有信息
+     * <p>
+     * 相同请求（如多人同时打开同一项目、前端重试）正在构建时等待并共享它的结果，
+     * 记忆只检索一次、访问次数也只记一次；每个调用方拿到各自的浅拷贝，可以修改生成目标等字段
      *
      * @param request 生成请求
      * @return 完整的生成上下文
      */
     @Transactional(readOnly = true)
     public GenerationContext buildGenerationContext(GenerationRequest request) {
+        ContextKey key = new ContextKey(request.getProjectId(), request.getWorldviewId(),
+                request.getCharacterIds(), request.getContentType(),
+                request.getSceneContext(), request.getEmotionalTone(), request.getPreviousContent(),
+                request.getGenerationGoal(), request.getAdditionalParams(),
+                request.isEnableMemory(), request.getMemoryCount(),
+                request.isEnableConsistencyCheck(), request.getMaxRetries());
+        // 共享的上下文本身不交给任何调用方，避免一方修改影响其他调用方
+        return contextFlight.execute(key, () -> doBuildGenerationContext(request)).toBuilder().build();
+    }
+
+    /**
+     * 获取上下文构建合并统计信息
+     */
+    public Map<String, Object> getContextCoalescingStatistics() {
+        return contextFlight.getStatistics();
+    }
+
+    /**
+     * 上下文构建的请求指纹：只包含构建时用到的请求字段
+     */
+    private record ContextKey(UUID projectId, UUID worldviewId, List<UUID> characterIds, ContentType contentType,
+                              String sceneContext, String emotionalTone, String previousContent,
+                              String generationGoal, Map<String, Object> additionalParams,
+                              boolean enableMemory, int memoryCount,
+                              boolean enableConsistencyCheck, int maxRetries) {
+    }
+
+    private GenerationContext doBuildGenerationContext(GenerationRequest request) {
         log.info("构建生成上下文 - 项目: {}, 角色数: {}",
                 request.getProjectId(), request.getCharacterIds().size());
 
@@ -61,9 +101,11 @@ public class MemoryIntegrationService {
             log.debug("加载世界观: {}", worldview != null ? worldview.getName() : "无");
         }
 
-        // 3. 加载角色
+        // 3. 加载角色（一次 IN 查询，按请求顺序排列）
+        Map<UUID, Character> loadedCharacters = characterRepository.findAllById(request.getCharacterIds()).stream()
+                .collect(Collectors.toMap(Character::getId, c -> c));
         List<Character> characters = request.getCharacterIds().stream()
-                .map(id -> characterRepository.findById(id)
+                .map(id -> Optional.ofNullable(loadedCharacters.get(id))
                         .orElseThrow(() -> new ResourceNotFoundException("Character", "id", id)))
                 .collect(Collectors.toList());
         log.debug("加载角色: {}", characters.stream()
@@ -86,12 +128,16 @@ public class MemoryIntegrationService {
             }
         }
 
-        // 5. 构建上下文对象
+        // 5. 从关系图提取相关关系
+        List<String> relationships = relationshipGraphService.describeRelationships(project.getId(), characters);
+
+        // 6. 构建上下文对象
         GenerationContext context = GenerationContext.builder()
                 .project(project)
                 .worldview(worldview)
                 .characters(characters)
                 .characterMemories(characterMemories)
+                .relationships(relationships)
                 .sceneContext(request.getSceneContext())
                 .emotionalTone(request.getEmotionalTone())
                 .previousContent(request.getPreviousContent())
@@ -99,6 +145,7 @@ public class MemoryIntegrationService {
                 .additionalParams(request.getAdditionalParams())
                 .requireConsistencyCheck(request.isEnableConsistencyCheck())
                 .maxRetries(request.getMaxRetries())
+                .maxContextTokens(promptAssembler.contextBudget(request.getContentType()))
                 .build();
 
         long duration = System.currentTimeMillis() - startTime;
@@ -118,79 +165,22 @@ public class MemoryIntegrationService {
     public String buildEnhancedPrompt(String basePrompt, GenerationContext context) {
         log.debug("构建增强提示词，包含记忆信息");
 
-        StringBuilder enhancedPrompt = new StringBuilder(basePrompt);
-
-        // 添加世界观信息
-        if (context.hasWorldview()) {
-            Worldview worldview = context.getWorldview();
-            enhancedPrompt.append("\n\n## 世界观设定\n");
-            enhancedPrompt.append("- 名称: ").append(worldview.getName()).append("\n");
-            if (worldview.getSummary() != null) {
-                enhancedPrompt.append("- 概述: ").append(worldview.getSummary()).append("\n");
-            }
-            if (worldview.getRules() != null && !worldview.getRules().isEmpty()) {
-                enhancedPrompt.append("- 核心规则: ")
-                        .append(String.join("; ", worldview.getRules()))
-                        .append("\n");
-            }
-        }
-
-        // 添加角色及其记忆信息
-        if (context.getCharacters() != null && !context.getCharacters().isEmpty()) {
-            enhancedPrompt.append("\n## 角色信息\n");
-
-            for (Character character : context.getCharacters()) {
-                enhancedPrompt.append("\n### ").append(character.getName()).append("\n");
-
-                // 基础信息
-                if (character.getCharacterSummary() != null) {
-                    enhancedPrompt.append("概述: ").append(character.getCharacterSummary()).append("\n");
-                } else {
-                    enhancedPrompt.append("年龄: ").append(character.getAge()).append("\n");
-                    enhancedPrompt.append("性格: ")
-                            .append(character.getPersonalityTraits() != null ?
-                                    String.join("、", character.getPersonalityTraits()) : "无")
-                            .append("\n");
-                }
-
-                // 说话方式
-                if (character.getSpeechPattern() != null) {
-                    enhancedPrompt.append("说话方式: ").append(character.getSpeechPattern()).append("\n");
-                }
-
-                // 添加记忆
-                if (context.hasMemories()) {
-                    String memoryContext = context.buildMemoryContext(character.getId());
-                    enhancedPrompt.append("\n").append(memoryContext);
-                }
-            }
-        }
-
-        // 添加场景上下文
-        if (context.getSceneContext() != null && !context.getSceneContext().isEmpty()) {
-            enhancedPrompt.append("\n## 当前场景\n");
-            enhancedPrompt.append(context.getSceneContext()).append("\n");
-        }
-
-        // 添加情感基调
-        if (context.getEmotionalTone() != null && !context.getEmotionalTone().isEmpty()) {
-            enhancedPrompt.append("\n## 情感基调\n");
-            enhancedPrompt.append(context.getEmotionalTone()).append("\n");
-        }
-
-        // 添加前文内容
-        if (context.getPreviousContent() != null && !context.getPreviousContent().isEmpty()) {
-            enhancedPrompt.append("\n## 前文内容\n");
-            // 限制前文长度，避免token过多
-            String prevContent = context.getPreviousContent();
-            if (prevContent.length() > 1000) {
-                prevContent = "..." + prevContent.substring(prevContent.length() - 1000);
-            }
-            enhancedPrompt.append(prevContent).append("\n");
-        }
+        String enhancedPrompt = promptAssembler.assemble(basePrompt, context);
 
         log.debug("增强提示词构建完成，总长度: {} 字符", enhancedPrompt.length());
-        return enhancedPrompt.toString();
+        return enhancedPrompt;
+    }
+
+    /**
+     * 构建增强提示词，拆分为稳定前缀（系统消息）和可变内容（用户消息）
+     * 同一项目版本的前缀逐字节一致，便于服务端前缀缓存命中
+     *
+     * @param basePrompt 基础提示词
+     * @param context    生成上下文
+     * @return 组装结果
+     */
+    public PromptAssembler.AssembledPrompt buildPromptMessages(String basePrompt, GenerationContext context) {
+        return promptAssembler.assembleMessages(basePrompt, context);
     }
 
     /**
@@ -225,7 +215,8 @@ public class MemoryIntegrationService {
         try {
             // 使用AI提取关键事件
             String extractionPrompt = buildMemoryExtractionPrompt(generatedContent, context);
-            String extractionResult = aiService.chatWithOptions(extractionPrompt, 0.3, 500);
+            String extractionResult = LlmUsageScope.within("memory-extraction",
+                    () -> aiService.chatWithOptions(extractionPrompt, 0.3, 500));
 
             log.debug("AI提取结果: {}", extractionResult);
 
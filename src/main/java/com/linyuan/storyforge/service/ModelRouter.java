@@ -0,0 +1,261 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.ModelRoutingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ModelRouter - 模型路由
+ * <p>
+ * 按当前 {@link LlmUsageScope} 的模板名称或来源（调用点）选出模型档位，
+ * 档位配置一条降级链：前一个模型出错或超时后由 QianfanDirectService 依次尝试下一个
+ * <p>
+ * 自适应调整：每个 档位/模型 保留最近的耗时样本，耗时分位数超过档位阈值的模型降到链尾，
+ * 连续失败的模型在冷却期内排在最后；被降级的模型仍按一定比例优先尝试，恢复后回到原位置
+ * <p>
+ * 没有配置档位时所有调用使用 ai.openai.model
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ModelRouter {
+
+    private final ModelRoutingProperties properties;
+    private final String defaultModel;
+
+    /**
+     * 档位/模型 → 健康状态
+     */
+    private final Map<String, ModelHealth> health = new ConcurrentHashMap<>();
+
+    // 统计
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong reordered = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ModelRouter(ModelRoutingProperties properties,
+                       @Value("${ai.openai.model:deepseek-v3.1-250821}") String defaultModel) {
+        this.properties = properties;
+        this.defaultModel = defaultModel;
+    }
+
+    /**
+     * 路由结果
+     *
+     * @param tier      档位
+     * @param models    本次调用的降级链
+     * @param timeoutMs 链上非最后一个模型的读取超时（0 为默认超时）
+     */
+    public record Route(String tier, List<String> models, long timeoutMs) {
+    }
+
+    /**
+     * 为当前调用选出档位和降级链
+     */
+    public Route route() {
+        routed.incrementAndGet();
+        String tierName = resolveTier(LlmUsageScope.current());
+        ModelRoutingProperties.Tier tier = properties.getTiers().get(tierName);
+        if (tier == null || tier.getModels().isEmpty()) {
+            return new Route(tierName, List.of(defaultModel), 0);
+        }
+        List<String> configured = tier.getModels();
+        if (configured.size() == 1) {
+            return new Route(tierName, configured, tier.getTimeoutMs());
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> healthy = new ArrayList<>(configured.size());
+        List<String> slow = new ArrayList<>();
+        List<String> cooling = new ArrayList<>();
+        for (String model : configured) {
+            ModelHealth state = health.get(key(tierName, model));
+            if (state == null) {
+                healthy.add(model);
+            } else if (state.isCooling(now)) {
+                cooling.add(model);
+            } else if (isSlow(state, tier)) {
+                slow.add(model);
+            } else {
+                healthy.add(model);
+            }
+        }
+        if (slow.isEmpty() && cooling.isEmpty()) {
+            return new Route(tierName, configured, tier.getTimeoutMs());
+        }
+        if (ThreadLocalRandom.current().nextDouble() < properties.getProbeRatio()) {
+            // 按配置顺序探测被降级的模型是否已恢复
+            probes.incrementAndGet();
+            return new Route(tierName, configured, tier.getTimeoutMs());
+        }
+
+        List<String> ordered = new ArrayList<>(configured.size());
+        ordered.addAll(healthy);
+        ordered.addAll(slow);
+        ordered.addAll(cooling);
+        if (!ordered.equals(configured)) {
+            reordered.incrementAndGet();
+            log.debug("档位 {} 调整模型顺序: {} -> {}", tierName, configured, ordered);
+        }
+        return new Route(tierName, List.copyOf(ordered), tier.getTimeoutMs());
+    }
+
+    /**
+     * 记录一次成功调用的耗时
+     */
+    public void recordSuccess(String tier, String model, long latencyMs) {
+        health.computeIfAbsent(key(tier, model), k -> new ModelHealth(properties.getLatencyWindow()))
+                .success(latencyMs);
+    }
+
+    /**
+     * 记录一次失败调用（出错或超时）
+     */
+    public void recordFailure(String tier, String model) {
+        health.computeIfAbsent(key(tier, model), k -> new ModelHealth(properties.getLatencyWindow()))
+                .failure(properties.getFailureThreshold(), properties.getCooldownMs());
+    }
+
+    /**
+     * 记录一次切换到降级链下一个模型
+     */
+    public void recordFallback() {
+        fallbacks.incrementAndGet();
+    }
+
+    /**
+     * 获取路由统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("defaultTier", properties.getDefaultTier());
+        stats.put("routes", properties.getRoutes());
+        stats.put("routed", routed.get());
+        stats.put("reordered", reordered.get());
+        stats.put("probes", probes.get());
+        stats.put("fallbacks", fallbacks.get());
+
+        long now = System.currentTimeMillis();
+        String percentileName = "p" + Math.round(properties.getLatencyPercentile() * 100) + "LatencyMs";
+        Map<String, Object> models = new TreeMap<>();
+        health.forEach((key, state) -> {
+            Map<String, Object> model = new LinkedHashMap<>();
+            model.put("samples", state.sampleCount());
+            model.put(percentileName, state.percentile(properties.getLatencyPercentile()));
+            model.put("successes", state.successes());
+            model.put("failures", state.failures());
+            model.put("consecutiveFailures", state.consecutiveFailures());
+            model.put("cooling", state.isCooling(now));
+            models.put(key, model);
+        });
+        stats.put("models", models);
+        return stats;
+    }
+
+    private String resolveTier(LlmUsageScope scope) {
+        Map<String, String> routes = properties.getRoutes();
+        if (scope != null) {
+            if (scope.getTemplate() != null && routes.containsKey(scope.getTemplate())) {
+                return routes.get(scope.getTemplate());
+            }
+            if (scope.getSource() != null && routes.containsKey(scope.getSource())) {
+                return routes.get(scope.getSource());
+            }
+        }
+        return properties.getDefaultTier();
+    }
+
+    private boolean isSlow(ModelHealth state, ModelRoutingProperties.Tier tier) {
+        return tier.getSlowThresholdMs() > 0
+                && state.sampleCount() >= properties.getMinSamples()
+                && state.percentile(properties.getLatencyPercentile()) > tier.getSlowThresholdMs();
+    }
+
+    private static String key(String tier, String model) {
+        return tier + "/" + model;
+    }
+
+    /**
+     * 单个 档位/模型 的最近耗时和失败情况
+     */
+    private static final class ModelHealth {
+
+        private final long[] samples;
+        private int next;
+        private int count;
+        private long successes;
+        private long failures;
+        private int consecutiveFailures;
+        private long coolingUntil;
+
+        /**
+         * 分位数缓存，新样本到达后失效
+         */
+        private double cachedQuantile = -1;
+        private long cachedPercentile;
+
+        ModelHealth(int window) {
+            this.samples = new long[Math.max(window, 1)];
+        }
+
+        synchronized void success(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            successes++;
+            consecutiveFailures = 0;
+            coolingUntil = 0;
+            cachedQuantile = -1;
+        }
+
+        synchronized void failure(int threshold, long cooldownMs) {
+            failures++;
+            if (++consecutiveFailures >= threshold) {
+                coolingUntil = System.currentTimeMillis() + cooldownMs;
+            }
+        }
+
+        synchronized boolean isCooling(long now) {
+            return coolingUntil > now;
+        }
+
+        synchronized int sampleCount() {
+            return count;
+        }
+
+        synchronized long successes() {
+            return successes;
+        }
+
+        synchronized long failures() {
+            return failures;
+        }
+
+        synchronized int consecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        synchronized long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (cachedQuantile != quantile) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(quantile * count) - 1;
+                cachedPercentile = sorted[Math.min(Math.max(index, 0), count - 1)];
+                cachedQuantile = quantile;
+            }
+            return cachedPercentile;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * NdjsonExportService - 列表数据的 NDJSON 流式导出
+ * 在只读事务中消费 Spring Data Stream 查询，逐行转换为 DTO 写出（每行一个 JSON 对象），
+ * 写出后立即从持久化上下文中分离实体，内存占用与表大小无关
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class NdjsonExportService {
+
+    /**
+     * 每写出多少行刷新一次输出流
+     */
+    private static final int FLUSH_EVERY = 200;
+
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public NdjsonExportService(ObjectMapper objectMapper,
+                               EntityManager entityManager,
+                               PlatformTransactionManager transactionManager) {
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 在只读事务中把 Stream 查询结果逐行写为 NDJSON
+     *
+     * @param name   导出名称（用于日志）
+     * @param query  Stream 查询
+     * @param mapper 实体到 DTO 的转换
+     * @param output 输出流
+     * @return 写出的行数
+     */
+    public <E, T> long write(String name, Supplier<Stream<E>> query, Function<E, T> mapper, OutputStream output) {
+        long startTime = System.currentTimeMillis();
+        Long rows = readOnlyTransaction.execute(tx -> {
+            long count = 0;
+            try (Stream<E> stream = query.get()) {
+                Iterator<E> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    E entity = iterator.next();
+                    output.write(objectMapper.writeValueAsBytes(mapper.apply(entity)));
+                    output.write(NEWLINE);
+                    entityManager.detach(entity);
+                    if (++count % FLUSH_EVERY == 0) {
+                        output.flush();
+                    }
+                }
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        });
+        log.info("NDJSON 导出完成 - {}: {} 行, 耗时: {}ms", name, rows, System.currentTimeMillis() - startTime);
+        return rows != null ? rows : 0;
+    }
+}
@@ -1,5 +1,7 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.ProjectDTO;
 import com.linyuan.storyforge.entity.Project;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
@@ -22,16 +24,19 @@ import java.util.stream.Collectors;
 public class ProjectService {
 
     private final ProjectRepository projectRepository;
+    private final EntityCacheService entityCacheService;
+    private final CharacterRelationshipGraphService relationshipGraphService;
+    private final TimelineSnapshotService timelineSnapshotService;
 
     /**
-     * Get all projects
+     * Get a page of projects in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<ProjectDTO> getAllProjects() {
-        log.debug("Fetching all projects");
-        return projectRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<ProjectDTO> getProjectsPage(String cursor, Integer size) {
+        log.debug("Fetching projects page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<Project> rows = projectRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -74,6 +79,7 @@ public class ProjectService {
         existingProject.setStatus(projectDTO.getStatus());
 
         Project updatedProject = projectRepository.save(existingProject);
+        entityCacheService.evictAfterCommit(Project.class, id);
         return convertToDTO(updatedProject);
     }
 
@@ -87,6 +93,9 @@ public class ProjectService {
             throw new ResourceNotFoundException("Project", "id", id);
         }
         projectRepository.deleteById(id);
+        entityCacheService.evictProjectAfterCommit(id);
+        relationshipGraphService.invalidate(id);
+        timelineSnapshotService.invalidate(id);
     }
 
     /**
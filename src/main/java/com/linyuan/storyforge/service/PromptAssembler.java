@@ -0,0 +1,418 @@
+package com.linyuan.storyforge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linyuan.storyforge.config.PromptConfiguration;
+import com.linyuan.storyforge.dto.GenerationContext;
+import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.entity.CharacterMemory;
+import com.linyuan.storyforge.entity.Worldview;
+import com.linyuan.storyforge.enums.ContentType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * PromptAssembler - 按 token 预算组装增强提示词
+ * <p>
+ * 提示词分为两部分，便于服务端前缀缓存命中：
+ * <ul>
+ *   <li>系统消息：稳定的项目设定（世界观 + 按角色 ID 排序的角色概况），只取决于这些实体及其更新时间，
+ *   按指纹缓存，同一项目版本下逐字节一致；世界观在最前，不同出场角色的请求也能共享世界观前缀</li>
+ *   <li>用户消息：每次请求不同的内容（任务说明、记忆、关系、场景、情感基调、前文）</li>
+ * </ul>
+ * 预算来自 PromptSettings.maxContextTokens（按内容类型选择配置），扣除前缀和任务说明后依次分配给：
+ * 场景与情感基调 → 前文（保留结尾）→ 角色关系 → 记忆（按相关性排名裁剪）
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class PromptAssembler {
+
+    /**
+     * 前缀内世界观的预算上限（占前缀上限的比例），其余平分给角色概况
+     */
+    private static final double PREFIX_WORLDVIEW_SHARE = 0.4;
+
+    /**
+     * 可变部分各段预算上限（占总预算的比例）
+     */
+    private static final double SCENE_SHARE = 0.2;
+    private static final double PREVIOUS_CONTENT_SHARE = 0.25;
+    private static final double RELATIONSHIP_SHARE = 0.1;
+
+    private static final String PREFIX_HEADER = "# 作品设定\n以下是本作品的固定设定，所有生成内容都必须与之保持一致。\n";
+
+    private final TokenCounter tokenCounter;
+    private final PromptConfiguration promptConfig;
+    private final PromptCacheStats cacheStats;
+    private final int prefixMaxTokens;
+    private final Cache<String, Section> sectionCache = Caffeine.newBuilder()
+            .maximumSize(2000)
+            .build();
+    private final Cache<String, Section> prefixCache = Caffeine.newBuilder()
+            .maximumSize(500)
+            .build();
+
+    public PromptAssembler(TokenCounter tokenCounter,
+                           PromptConfiguration promptConfig,
+                           PromptCacheStats cacheStats,
+                           @Value("${storyforge.prompt.prefix-max-tokens:1500}") int prefixMaxTokens) {
+        this.tokenCounter = tokenCounter;
+        this.promptConfig = promptConfig;
+        this.cacheStats = cacheStats;
+        this.prefixMaxTokens = prefixMaxTokens;
+    }
+
+    /**
+     * 渲染好的提示词段落
+     *
+     * @param text   文本
+     * @param tokens token 数
+     */
+    private record Section(String text, int tokens) {
+    }
+
+    /**
+     * 组装结果
+     *
+     * @param systemMessage 稳定前缀（作为系统消息发送），没有项目设定时为 null
+     * @param userMessage   可变内容
+     */
+    public record AssembledPrompt(String systemMessage, String userMessage) {
+
+        /**
+         * 合并为单条提示词（兼容只接受一条消息的调用方）
+         */
+        public String combined() {
+            return systemMessage == null ? userMessage : systemMessage + "\n" + userMessage;
+        }
+
+        public int length() {
+            return (systemMessage == null ? 0 : systemMessage.length()) + userMessage.length();
+        }
+    }
+
+    /**
+     * 内容类型对应的上下文 token 预算
+     *
+     * @param contentType 内容类型
+     * @return maxContextTokens
+     */
+    public int contextBudget(ContentType contentType) {
+        String settingsKey = switch (contentType) {
+            case CHAPTER, NARRATIVE, ACTION -> "chapter-generation";
+            case SCENE -> "scene-generation";
+            case DIALOGUE, INNER_MONOLOGUE -> "dialogue-generation";
+            case CHARACTER -> "character-creation";
+            case WORLDVIEW -> "worldview-creation";
+        };
+        return promptConfig.getSettingsOrDefault(settingsKey).getMaxContextTokens();
+    }
+
+    /**
+     * 在预算内组装为单条提示词
+     *
+     * @param basePrompt 基础提示词
+     * @param context    生成上下文
+     * @return 增强后的提示词
+     */
+    public String assemble(String basePrompt, GenerationContext context) {
+        return assembleMessages(basePrompt, context).combined();
+    }
+
+    /**
+     * 在预算内组装为系统消息（稳定前缀）+ 用户消息（可变内容）
+     *
+     * @param basePrompt 基础提示词（任务说明）
+     * @param context    生成上下文
+     * @return 组装结果
+     */
+    public AssembledPrompt assembleMessages(String basePrompt, GenerationContext context) {
+        int budget = context.getMaxContextTokens() != null
+                ? context.getMaxContextTokens()
+                : new PromptConfiguration.PromptSettings().getMaxContextTokens();
+        List<Character> characters = context.getCharacters() != null ? context.getCharacters() : List.of();
+
+        // 1. 稳定前缀
+        Section prefix = stablePrefix(context.getWorldview(), characters);
+        Budget remaining = new Budget(budget - tokenCounter.count(basePrompt) - (prefix != null ? prefix.tokens() : 0));
+
+        // 2. 场景与情感基调
+        String scene = null;
+        if (context.getSceneContext() != null && !context.getSceneContext().isEmpty()) {
+            scene = fit(section("\n## 当前场景\n" + context.getSceneContext() + "\n"), share(budget, SCENE_SHARE), remaining);
+        }
+        String tone = null;
+        if (context.getEmotionalTone() != null && !context.getEmotionalTone().isEmpty()) {
+            tone = fit(section("\n## 情感基调\n" + context.getEmotionalTone() + "\n"), share(budget, SCENE_SHARE), remaining);
+        }
+
+        // 3. 前文（保留最近的内容）
+        String previous = null;
+        if (context.getPreviousContent() != null && !context.getPreviousContent().isEmpty()) {
+            String header = "\n## 前文内容\n";
+            int cap = Math.min(share(budget, PREVIOUS_CONTENT_SHARE), remaining.tokens) - tokenCounter.count(header);
+            if (cap > 0) {
+                String content = context.getPreviousContent();
+                String kept = tokenCounter.truncateTail(content, cap);
+                if (kept.length() < content.length()) {
+                    kept = "..." + kept;
+                }
+                previous = header + kept + "\n";
+                remaining.spend(tokenCounter.count(previous));
+            }
+        }
+
+        // 4. 角色关系（整行保留）
+        List<String> relationships = new ArrayList<>();
+        if (context.getRelationships() != null && !context.getRelationships().isEmpty()) {
+            int cap = Math.min(share(budget, RELATIONSHIP_SHARE), remaining.tokens);
+            int used = tokenCounter.count("\n## 角色关系\n");
+            for (String relationship : context.getRelationships()) {
+                int tokens = tokenCounter.count(relationship) + 1;
+                if (used + tokens > cap) {
+                    break;
+                }
+                relationships.add(relationship);
+                used += tokens;
+            }
+            if (!relationships.isEmpty()) {
+                remaining.spend(used);
+            }
+        }
+
+        // 5. 记忆（剩余预算，按排名裁剪）
+        Map<UUID, List<CharacterMemory>> memories = selectMemories(context, characters, remaining);
+
+        // 可变部分：任务说明在前，其余按原有顺序
+        StringBuilder user = new StringBuilder(basePrompt);
+        if (!characters.isEmpty()) {
+            user.append("\n\n## 出场角色\n");
+            user.append(characters.stream().map(Character::getName).collect(Collectors.joining("、"))).append("\n");
+            if (context.hasMemories()) {
+                for (Character character : characters) {
+                    user.append("\n### ").append(character.getName()).append("\n");
+                    user.append(renderMemories(memories.get(character.getId())));
+                }
+            }
+        }
+        if (!relationships.isEmpty()) {
+            user.append("\n## 角色关系\n");
+            relationships.forEach(relationship -> user.append("- ").append(relationship).append("\n"));
+        }
+        if (scene != null) {
+            user.append(scene);
+        }
+        if (tone != null) {
+            user.append(tone);
+        }
+        if (previous != null) {
+            user.append(previous);
+        }
+
+        int totalMemories = context.hasMemories()
+                ? context.getCharacterMemories().values().stream().mapToInt(List::size).sum()
+                : 0;
+        int keptMemories = memories.values().stream().mapToInt(List::size).sum();
+        log.debug("提示词组装完成: 预算 {} tokens, 前缀 {} tokens, 剩余 {} tokens, 记忆 {}/{} 条",
+                budget, prefix != null ? prefix.tokens() : 0, remaining.tokens, keptMemories, totalMemories);
+        return new AssembledPrompt(prefix != null ? prefix.text() : null, user.toString());
+    }
+
+    /**
+     * 稳定前缀：世界观 + 按 ID 排序的角色概况
+     * 按实体 ID 与更新时间组成的指纹缓存，同一版本的设定始终得到相同的字节序列；
+     * 截断只取决于固定的前缀上限，与本次请求的其他内容无关
+     */
+    private Section stablePrefix(Worldview worldview, List<Character> characters) {
+        if (worldview == null && characters.isEmpty()) {
+            return null;
+        }
+
+        List<Character> sorted = characters.stream()
+                .sorted(Comparator.comparing(Character::getId))
+                .toList();
+        StringBuilder fingerprint = new StringBuilder("prefix");
+        if (worldview != null) {
+            fingerprint.append('|').append(cacheKey("worldview", worldview.getId(), worldview.getUpdatedAt()));
+        }
+        sorted.forEach(character -> fingerprint.append('|')
+                .append(cacheKey("character", character.getId(), character.getUpdatedAt())));
+
+        Section cached = prefixCache.getIfPresent(fingerprint.toString());
+        if (cached != null) {
+            cacheStats.recordPrefix(true, cached.tokens());
+            return cached;
+        }
+
+        Budget remaining = new Budget(prefixMaxTokens - tokenCounter.count(PREFIX_HEADER));
+        StringBuilder text = new StringBuilder(PREFIX_HEADER);
+        if (worldview != null) {
+            text.append(fit(worldviewSection(worldview), share(prefixMaxTokens, PREFIX_WORLDVIEW_SHARE), remaining));
+        }
+        if (!sorted.isEmpty()) {
+            text.append("\n## 角色信息\n");
+            int perCharacter = Math.max(0, remaining.tokens) / sorted.size();
+            for (Character character : sorted) {
+                String profile = fit(characterSection(character), perCharacter, remaining);
+                // 预算耗尽时至少保留角色名
+                text.append(profile.isEmpty() ? "\n### " + character.getName() + "\n" : profile);
+            }
+        }
+
+        Section prefix = section(text.toString());
+        prefixCache.put(fingerprint.toString(), prefix);
+        cacheStats.recordPrefix(false, prefix.tokens());
+        return prefix;
+    }
+
+    /**
+     * 按排名选取记忆：各角色轮流取排名靠前的记忆（同名次按情感权重），放不下的跳过
+     */
+    private Map<UUID, List<CharacterMemory>> selectMemories(GenerationContext context, List<Character> characters,
+                                                            Budget remaining) {
+        Map<UUID, List<CharacterMemory>> selected = new HashMap<>();
+        if (!context.hasMemories()) {
+            return selected;
+        }
+
+        record Ranked(UUID characterId, int rank, CharacterMemory memory) {
+        }
+        List<Ranked> ranked = new ArrayList<>();
+        for (Character character : characters) {
+            List<CharacterMemory> memories = context.getCharacterMemories().getOrDefault(character.getId(), List.of());
+            for (int i = 0; i < memories.size(); i++) {
+                ranked.add(new Ranked(character.getId(), i, memories.get(i)));
+            }
+        }
+        ranked.sort(Comparator.comparingInt(Ranked::rank)
+                .thenComparing(r -> r.memory().getEmotionalWeight() != null ? r.memory().getEmotionalWeight() : 0f,
+                        Comparator.reverseOrder()));
+
+        Set<CharacterMemory> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Ranked candidate : ranked) {
+            int tokens = tokenCounter.count(memoryLine(0, candidate.memory()));
+            if (tokens <= remaining.tokens) {
+                kept.add(candidate.memory());
+                remaining.spend(tokens);
+            }
+        }
+
+        // 保持每个角色内部的相关性顺序
+        for (Character character : characters) {
+            selected.put(character.getId(), context.getCharacterMemories().getOrDefault(character.getId(), List.of())
+                    .stream()
+                    .filter(kept::contains)
+                    .toList());
+        }
+        return selected;
+    }
+
+    private String renderMemories(List<CharacterMemory> memories) {
+        if (memories == null || memories.isEmpty()) {
+            return "暂无相关记忆";
+        }
+        StringBuilder text = new StringBuilder("相关记忆：\n");
+        for (int i = 0; i < memories.size(); i++) {
+            text.append(memoryLine(i + 1, memories.get(i)));
+        }
+        return text.toString();
+    }
+
+    private String memoryLine(int index, CharacterMemory memory) {
+        return String.format("%d. [%s] %s\n",
+                index,
+                memory.getMemoryType() != null ? memory.getMemoryType() : "记忆",
+                memory.getMemoryContent());
+    }
+
+    /**
+     * 世界观段落（按 ID + 更新时间缓存）
+     */
+    private Section worldviewSection(Worldview worldview) {
+        return sectionCache.get(cacheKey("worldview", worldview.getId(), worldview.getUpdatedAt()), key -> {
+            StringBuilder text = new StringBuilder("\n## 世界观设定\n");
+            text.append("- 名称: ").append(worldview.getName()).append("\n");
+            if (worldview.getSummary() != null) {
+                text.append("- 概述: ").append(worldview.getSummary()).append("\n");
+            }
+            if (worldview.getRules() != null && !worldview.getRules().isEmpty()) {
+                text.append("- 核心规则: ").append(String.join("; ", worldview.getRules())).append("\n");
+            }
+            return section(text.toString());
+        });
+    }
+
+    /**
+     * 角色概况段落（按 ID + 更新时间缓存）
+     */
+    private Section characterSection(Character character) {
+        return sectionCache.get(cacheKey("character", character.getId(), character.getUpdatedAt()), key -> {
+            StringBuilder text = new StringBuilder("\n### ").append(character.getName()).append("\n");
+            if (character.getCharacterSummary() != null) {
+                text.append("概述: ").append(character.getCharacterSummary()).append("\n");
+            } else {
+                text.append("年龄: ").append(character.getAge()).append("\n");
+                text.append("性格: ")
+                        .append(character.getPersonalityTraits() != null ?
+                                String.join("、", character.getPersonalityTraits()) : "无")
+                        .append("\n");
+            }
+            if (character.getSpeechPattern() != null) {
+                text.append("说话方式: ").append(character.getSpeechPattern()).append("\n");
+            }
+            return section(text.toString());
+        });
+    }
+
+    private String cacheKey(String type, UUID id, Object version) {
+        return type + ":" + id + ":" + version;
+    }
+
+    private Section section(String text) {
+        return new Section(text, tokenCounter.count(text));
+    }
+
+    /**
+     * 把段落截断到 min(上限, 剩余预算) 并扣减预算
+     */
+    private String fit(Section section, int cap, Budget remaining) {
+        int limit = Math.max(0, Math.min(cap, remaining.tokens));
+        if (limit == 0) {
+            return "";
+        }
+        if (section.tokens() <= limit) {
+            remaining.spend(section.tokens());
+            return section.text();
+        }
+        String truncated = tokenCounter.truncateHead(section.text(), limit);
+        remaining.spend(tokenCounter.count(truncated));
+        return truncated.endsWith("\n") ? truncated : truncated + "...\n";
+    }
+
+    private int share(int budget, double share) {
+        return (int) (budget * share);
+    }
+
+    /**
+     * 剩余预算
+     */
+    private static final class Budget {
+
+        private int tokens;
+
+        private Budget(int tokens) {
+            this.tokens = tokens;
+        }
+
+        private void spend(int used) {
+            tokens -= used;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PromptCacheStats - 提示词前缀缓存统计
+ * 本地：稳定前缀的复用次数（同一项目版本的前缀直接取缓存，保证逐字节一致）；
+ * 服务端：API usage 中报告的命中缓存的输入 token 数
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Component
+public class PromptCacheStats {
+
+    private final AtomicLong prefixReused = new AtomicLong();
+    private final AtomicLong prefixBuilt = new AtomicLong();
+    private final AtomicLong prefixTokens = new AtomicLong();
+
+    private final AtomicLong usageReports = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong cachedPromptTokens = new AtomicLong();
+    private final AtomicLong cacheHitCalls = new AtomicLong();
+
+    /**
+     * 记录一次前缀组装
+     *
+     * @param reused 是否复用了缓存的前缀
+     * @param tokens 前缀 token 数
+     */
+    public void recordPrefix(boolean reused, int tokens) {
+        (reused ? prefixReused : prefixBuilt).incrementAndGet();
+        prefixTokens.addAndGet(tokens);
+    }
+
+    /**
+     * 记录 API 返回的 usage
+     * 兼容 OpenAI 风格的 prompt_tokens_details.cached_tokens 与 DeepSeek 的 prompt_cache_hit_tokens
+     *
+     * @param usage usage 节点
+     */
+    public void recordUsage(JsonNode usage) {
+        if (usage == null || usage.isNull() || usage.isMissingNode()) {
+            return;
+        }
+        usageReports.incrementAndGet();
+        promptTokens.addAndGet(usage.path("prompt_tokens").asLong());
+
+        long cached = cachedTokens(usage);
+        if (cached > 0) {
+            cachedPromptTokens.addAndGet(cached);
+            cacheHitCalls.incrementAndGet();
+        }
+    }
+
+    /**
+     * 响应 usage 中命中服务端前缀缓存的输入 token 数
+     */
+    static int cachedTokens(JsonNode usage) {
+        int cached = usage.path("prompt_tokens_details").path("cached_tokens").asInt(0);
+        return cached != 0 ? cached : usage.path("prompt_cache_hit_tokens").asInt(0);
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long reused = prefixReused.get();
+        long built = prefixBuilt.get();
+        long prompt = promptTokens.get();
+        long cached = cachedPromptTokens.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("prefixReused", reused);
+        stats.put("prefixBuilt", built);
+        stats.put("prefixReuseRate", reused + built == 0 ? 0.0 : (double) reused / (reused + built));
+        stats.put("avgPrefixTokens", reused + built == 0 ? 0 : prefixTokens.get() / (reused + built));
+        stats.put("usageReports", usageReports.get());
+        stats.put("cacheHitCalls", cacheHitCalls.get());
+        stats.put("promptTokens", prompt);
+        stats.put("cachedPromptTokens", cached);
+        stats.put("cachedTokenRatio", prompt == 0 ? 0.0 : (double) cached / prompt);
+        return stats;
+    }
+}
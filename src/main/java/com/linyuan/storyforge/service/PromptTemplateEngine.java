@@ -0,0 +1,238 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.PromptConfiguration;
+import com.linyuan.storyforge.entity.PromptTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PromptTemplateEngine - 预编译提示词模板
+ * <p>
+ * 模板只解析一次，编译为字面量与变量交替的片段，渲染时一次遍历写入预估好容量的 StringBuilder；
+ * 必需变量在渲染前统一校验
+ * <p>
+ * 模板来源：
+ * <ul>
+ *   <li>数据库 prompt_templates（{{variable}} 占位符，启用状态下优先），由 PromptTemplateRegistry
+ *   维护内存快照并在变体之间按权重路由</li>
+ *   <li>application.yml 的 ai.prompt.templates（{variable} 占位符），模板内容变化时重新编译</li>
+ * </ul>
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PromptTemplateEngine {
+
+    private static final Syntax DATABASE_SYNTAX = new Syntax("{{", "}}");
+    private static final Syntax CONFIG_SYNTAX = new Syntax("{", "}");
+
+    private final PromptConfiguration promptConfig;
+    private final PromptTemplateRegistry templateRegistry;
+    private final Map<String, CompiledTemplate> configTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * 占位符语法
+     */
+    private record Syntax(String open, String close) {
+    }
+
+    /**
+     * 编译后的模板
+     *
+     * @param name          模板名称
+     * @param version       模板版本（数据库模板为 updated_at，配置模板为模板原文）
+     * @param literals      字面量片段（比变量多一个，依次与变量交替）
+     * @param variables     变量片段
+     * @param literalLength 字面量总长度
+     * @param required      必需变量
+     * @param optional      可选变量（缺失时不告警）
+     */
+    public record CompiledTemplate(String name, Object version, String[] literals, String[] variables,
+                                   int literalLength, Set<String> required, Set<String> optional) {
+
+        /**
+         * 渲染模板
+         *
+         * @param values 变量值（null 值视为缺失）
+         * @return 渲染结果
+         * @throws IllegalArgumentException 缺少必需变量
+         */
+        public String render(Map<String, Object> values) {
+            Map<String, Object> provided = values != null ? values : Map.of();
+
+            List<String> missingRequired = required.stream()
+                    .filter(variable -> provided.get(variable) == null)
+                    .sorted()
+                    .toList();
+            if (!missingRequired.isEmpty()) {
+                throw new IllegalArgumentException(
+                        String.format("模板 '%s' 缺少必需变量: %s", name, missingRequired));
+            }
+
+            String[] rendered = new String[variables.length];
+            int length = literalLength;
+            Set<String> unresolved = null;
+            for (int i = 0; i < variables.length; i++) {
+                Object value = provided.get(variables[i]);
+                if (value == null) {
+                    rendered[i] = "";
+                    if (!optional.contains(variables[i])) {
+                        if (unresolved == null) {
+                            unresolved = new TreeSet<>();
+                        }
+                        unresolved.add(variables[i]);
+                    }
+                } else {
+                    rendered[i] = value.toString();
+                    length += rendered[i].length();
+                }
+            }
+            if (unresolved != null) {
+                log.warn("模板 '{}' 未提供变量 {}，已按空值渲染", name, unresolved);
+            }
+
+            StringBuilder result = new StringBuilder(length);
+            for (int i = 0; i < variables.length; i++) {
+                result.append(literals[i]).append(rendered[i]);
+            }
+            return result.append(literals[variables.length]).toString();
+        }
+
+        /**
+         * 模板中出现的全部变量
+         */
+        public Set<String> variableNames() {
+            return new LinkedHashSet<>(Arrays.asList(variables));
+        }
+    }
+
+    /**
+     * 按名称渲染模板（数据库中启用的模板优先于配置文件，有多个变体时按权重选择）
+     *
+     * @param name      模板名称
+     * @param variables 变量值
+     * @return 渲染结果
+     * @throws IllegalArgumentException 模板不存在或缺少必需变量
+     */
+    public String render(String name, Map<String, Object> variables) {
+        return getTemplate(name)
+                .orElseThrow(() -> new IllegalArgumentException("模板不存在: " + name))
+                .render(variables);
+    }
+
+    /**
+     * 获取编译后的模板
+     *
+     * @param name 模板名称或变体组
+     * @return 编译后的模板（数据库变体组按权重选出其中一个），两处都不存在时为空
+     */
+    public Optional<CompiledTemplate> getTemplate(String name) {
+        Optional<CompiledTemplate> database = templateRegistry.route(name);
+        return database.isPresent() ? database : configTemplate(name);
+    }
+
+    /**
+     * 清空已编译的配置文件模板
+     */
+    public void clear() {
+        configTemplates.clear();
+    }
+
+    private Optional<CompiledTemplate> configTemplate(String name) {
+        String text = promptConfig.getTemplate(name);
+        if (text == null) {
+            return Optional.empty();
+        }
+        // 配置刷新后模板原文是新的对象，按引用比较即可发现变化
+        CompiledTemplate compiled = configTemplates.get(name);
+        if (compiled == null || compiled.version() != text) {
+            compiled = compile(name, text, text, CONFIG_SYNTAX, Set.of(), Set.of());
+            configTemplates.put(name, compiled);
+        }
+        return Optional.of(compiled);
+    }
+
+    /**
+     * 编译数据库模板（版本为 updated_at）
+     */
+    static CompiledTemplate compile(PromptTemplate template) {
+        LocalDateTime version = template.getUpdatedAt();
+        CompiledTemplate compiled = compile(template.getName(), version, template.getTemplateContent(), DATABASE_SYNTAX,
+                toSet(template.getRequiredVariables()), toSet(template.getOptionalVariables()));
+
+        Set<String> undeclared = new TreeSet<>(compiled.required());
+        undeclared.removeAll(compiled.variableNames());
+        if (!undeclared.isEmpty()) {
+            log.warn("模板 '{}' 的必需变量 {} 未出现在模板内容中", template.getName(), undeclared);
+        }
+        return compiled;
+    }
+
+    /**
+     * 把模板解析为字面量与变量交替的片段
+     * 只有分隔符之间是合法变量名（字母、数字、_、-、.，两侧可有空格）时才视为占位符，
+     * 模板中的 JSON 示例等其他花括号原样保留
+     */
+    private static CompiledTemplate compile(String name, Object version, String text, Syntax syntax,
+                                            Set<String> required, Set<String> optional) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+
+        int position = 0;
+        while (position < text.length()) {
+            int open = text.indexOf(syntax.open(), position);
+            if (open < 0) {
+                break;
+            }
+            int start = open + syntax.open().length();
+            int close = text.indexOf(syntax.close(), start);
+            String variable = close < 0 ? null : variableName(text, start, close);
+            if (variable == null) {
+                literal.append(text, position, start);
+                position = start;
+                continue;
+            }
+            literal.append(text, position, open);
+            literals.add(literal.toString());
+            literalLength += literal.length();
+            literal.setLength(0);
+            variables.add(variable);
+            position = close + syntax.close().length();
+        }
+        literal.append(text, position, text.length());
+        literals.add(literal.toString());
+        literalLength += literal.length();
+
+        log.debug("已编译提示词模板 '{}': {} 个变量", name, variables.size());
+        return new CompiledTemplate(name, version, literals.toArray(String[]::new), variables.toArray(String[]::new),
+                literalLength, required, optional);
+    }
+
+    private static String variableName(String text, int start, int end) {
+        String candidate = text.substring(start, end).strip();
+        if (candidate.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            char c = candidate.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                return null;
+            }
+        }
+        return candidate;
+    }
+
+    private static Set<String> toSet(List<String> variables) {
+        return variables == null ? Set.of() : Set.copyOf(variables);
+    }
+}
@@ -0,0 +1,329 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.entity.PromptTemplate;
+import com.linyuan.storyforge.repository.PromptTemplateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PromptTemplateRegistry - 运行时提示词模板注册表
+ * <p>
+ * 启用的 prompt_templates 编译后保存在不可变的内存快照中，生成时不查库；
+ * 同一 variant_group 的模板互为 A/B 变体，按 traffic_weight 加权随机路由
+ * <p>
+ * 快照刷新：
+ * <ul>
+ *   <li>本实例经 PromptTemplateService 修改后，在事务提交时重新加载</li>
+ *   <li>后台线程 LISTEN prompt_templates_changed（表上的语句级触发器发出 NOTIFY），
+ *   其他实例或直接修改数据库时也能在提交后重新加载，无需重启；断线重连后补一次全量加载</li>
+ * </ul>
+ * 重新加载时 updated_at 未变化的模板沿用已编译结果
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class PromptTemplateRegistry {
+
+    private static final String CHANNEL = "prompt_templates_changed";
+
+    /**
+     * 等待通知的超时，决定停机时监听线程的最长退出时间
+     */
+    private static final int POLL_TIMEOUT_MS = 5000;
+
+    /**
+     * 按变体聚合生成历史中的耗时、token 和质量得分
+     */
+    private static final String VARIANT_METRICS_SQL = """
+            SELECT prompt_template,
+                   COUNT(*) AS generations,
+                   AVG(latency_ms) AS avg_latency_ms,
+                   percentile_cont(0.9) WITHIN GROUP (ORDER BY latency_ms) AS p90_latency_ms,
+                   AVG(prompt_tokens) AS avg_prompt_tokens,
+                   AVG(completion_tokens) AS avg_completion_tokens,
+                   COUNT(quality_score) AS scored_generations,
+                   AVG(quality_score) AS avg_quality_score
+            FROM generation_history
+            WHERE prompt_template = ANY (?) AND created_at >= ?
+            GROUP BY prompt_template
+            """;
+
+    private final PromptTemplateRepository templateRepository;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean listenEnabled;
+    private final long reconnectDelayMs;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread listener;
+
+    // 统计
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong routed = new AtomicLong();
+
+    public PromptTemplateRegistry(PromptTemplateRepository templateRepository,
+                                  DataSource dataSource,
+                                  JdbcTemplate jdbcTemplate,
+                                  @Value("${storyforge.prompt.registry.listen-enabled:true}") boolean listenEnabled,
+                                  @Value("${storyforge.prompt.registry.reconnect-delay-ms:5000}") long reconnectDelayMs) {
+        this.templateRepository = templateRepository;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.listenEnabled = listenEnabled;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    /**
+     * 模板变体
+     *
+     * @param template 编译后的模板
+     * @param weight   流量权重
+     */
+    public record Variant(PromptTemplateEngine.CompiledTemplate template, int weight) {
+    }
+
+    /**
+     * 不可变快照
+     *
+     * @param groups   变体组 → 权重大于 0 的变体
+     * @param byName   模板名称 → 编译后的模板（可按名称直接指定某个变体）
+     * @param loadedAt 加载时间
+     */
+    private record Snapshot(Map<String, List<Variant>> groups,
+                            Map<String, PromptTemplateEngine.CompiledTemplate> byName,
+                            LocalDateTime loadedAt) {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), null);
+    }
+
+    @PostConstruct
+    void start() {
+        reload();
+        if (!listenEnabled) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().daemon().name("prompt-template-listener").start(this::listenLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.join(POLL_TIMEOUT_MS * 2L);
+        }
+    }
+
+    /**
+     * 按变体组（或模板名称）选出一个模板
+     * 组内有多个变体时按权重随机选择
+     *
+     * @param key 变体组或模板名称
+     * @return 选中的模板，注册表中没有时为空
+     */
+    public Optional<PromptTemplateEngine.CompiledTemplate> route(String key) {
+        Snapshot current = snapshot;
+        List<Variant> variants = current.groups().get(key);
+        if (variants == null) {
+            return Optional.ofNullable(current.byName().get(key));
+        }
+        routed.incrementAndGet();
+        if (variants.size() == 1) {
+            return Optional.of(variants.get(0).template());
+        }
+
+        int total = variants.stream().mapToInt(Variant::weight).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Variant variant : variants) {
+            pick -= variant.weight();
+            if (pick < 0) {
+                return Optional.of(variant.template());
+            }
+        }
+        return Optional.of(variants.get(variants.size() - 1).template());
+    }
+
+    /**
+     * 变体组当前的变体
+     *
+     * @param group 变体组
+     * @return 变体列表（按名称排序）
+     */
+    public List<Variant> getVariants(String group) {
+        return snapshot.groups().getOrDefault(group, List.of());
+    }
+
+    /**
+     * 当前事务提交后重新加载快照
+     */
+    public void reloadAfterCommit() {
+        EntityCacheService.runAfterCommit(this::reload);
+    }
+
+    /**
+     * 从数据库重新加载全部启用的模板
+     */
+    public synchronized void reload() {
+        Snapshot previous = snapshot;
+        List<PromptTemplate> templates = templateRepository.findActiveFromDatabase();
+
+        Map<String, PromptTemplateEngine.CompiledTemplate> byName = new HashMap<>();
+        Map<String, List<Variant>> groups = new HashMap<>();
+        for (PromptTemplate template : templates) {
+            if (template.getTemplateContent() == null) {
+                continue;
+            }
+            PromptTemplateEngine.CompiledTemplate compiled = previous.byName().get(template.getName());
+            if (compiled == null || !Objects.equals(compiled.version(), template.getUpdatedAt())) {
+                compiled = PromptTemplateEngine.compile(template);
+            }
+            byName.put(template.getName(), compiled);
+
+            int weight = template.getTrafficWeight() != null ? template.getTrafficWeight() : 0;
+            if (weight > 0) {
+                String group = template.getVariantGroup() != null ? template.getVariantGroup() : template.getName();
+                groups.computeIfAbsent(group, key -> new ArrayList<>()).add(new Variant(compiled, weight));
+            }
+        }
+        groups.replaceAll((group, variants) -> List.copyOf(variants));
+
+        snapshot = new Snapshot(Map.copyOf(groups), Map.copyOf(byName), LocalDateTime.now());
+        reloads.incrementAndGet();
+        log.info("提示词模板注册表已加载 - 模板: {}, 变体组: {}", byName.size(), groups.size());
+    }
+
+    /**
+     * 按变体汇总生成历史中的耗时、token 用量和质量得分
+     *
+     * @param group 变体组
+     * @param days  统计最近多少天
+     * @return 每个变体一行
+     */
+    public List<Map<String, Object>> getVariantMetrics(String group, int days) {
+        List<Variant> variants = getVariants(group);
+        if (variants.isEmpty()) {
+            return List.of();
+        }
+        int totalWeight = variants.stream().mapToInt(Variant::weight).sum();
+        String[] names = variants.stream().map(variant -> variant.template().name()).toArray(String[]::new);
+
+        Map<String, Map<String, Object>> aggregated = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            var ps = connection.prepareStatement(VARIANT_METRICS_SQL);
+            ps.setArray(1, connection.createArrayOf("text", names));
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now().minusDays(days)));
+            return ps;
+        }, rs -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("generations", rs.getLong("generations"));
+            row.put("avgLatencyMs", round(rs.getObject("avg_latency_ms")));
+            row.put("p90LatencyMs", round(rs.getObject("p90_latency_ms")));
+            row.put("avgPromptTokens", round(rs.getObject("avg_prompt_tokens")));
+            row.put("avgCompletionTokens", round(rs.getObject("avg_completion_tokens")));
+            row.put("scoredGenerations", rs.getLong("scored_generations"));
+            row.put("avgQualityScore", round(rs.getObject("avg_quality_score")));
+            aggregated.put(rs.getString("prompt_template"), row);
+        });
+
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        for (Variant variant : variants) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("variant", variant.template().name());
+            row.put("trafficWeight", variant.weight());
+            row.put("trafficShare", Math.round(variant.weight() * 1000.0 / totalWeight) / 1000.0);
+            row.put("version", variant.template().version());
+            row.putAll(aggregated.getOrDefault(variant.template().name(), Map.of("generations", 0L)));
+            metrics.add(row);
+        }
+        return metrics;
+    }
+
+    /**
+     * 获取注册表统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("templates", current.byName().size());
+        stats.put("variantGroups", current.groups().size());
+        stats.put("loadedAt", current.loadedAt());
+        stats.put("listening", listening);
+        stats.put("reloads", reloads.get());
+        stats.put("notifications", notifications.get());
+        stats.put("routed", routed.get());
+        return stats;
+    }
+
+    /**
+     * 监听变更通知；连接断开后等待一段时间重连
+     */
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.isWrapperFor(PGConnection.class)) {
+                    log.info("数据源不是 PostgreSQL，模板注册表只在本实例修改时刷新");
+                    return;
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                listening = true;
+                log.info("开始监听提示词模板变更通知");
+                // 未监听期间的修改没有收到通知
+                reload();
+
+                while (running) {
+                    PGNotification[] received = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (received != null && received.length > 0) {
+                        notifications.addAndGet(received.length);
+                        reload();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("提示词模板变更监听中断，{}ms 后重连: {}", reconnectDelayMs, e.getMessage());
+                sleepBeforeReconnect();
+            } finally {
+                listening = false;
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(reconnectDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static Double round(Object value) {
+        return value == null ? null : Math.round(((Number) value).doubleValue() * 100.0) / 100.0;
+    }
+}
@@ -1,5 +1,7 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.PromptTemplateDTO;
 import com.linyuan.storyforge.entity.PromptTemplate;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
@@ -22,16 +24,18 @@ import java.util.stream.Collectors;
 public class PromptTemplateService {
 
     private final PromptTemplateRepository templateRepository;
+    private final EntityCacheService entityCacheService;
+    private final PromptTemplateRegistry templateRegistry;
 
     /**
-     * Get all templates
+     * Get a page of templates in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<PromptTemplateDTO> getAllTemplates() {
-        log.debug("Fetching all prompt templates");
-        return templateRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<PromptTemplateDTO> getTemplatesPage(String cursor, Integer size) {
+        log.debug("Fetching templates page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<PromptTemplate> rows = templateRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -119,6 +123,7 @@ public class PromptTemplateService {
 
         PromptTemplate template = convertToEntity(templateDTO);
         PromptTemplate savedTemplate = templateRepository.save(template);
+        templateRegistry.reloadAfterCommit();
         return convertToDTO(savedTemplate);
     }
 
@@ -147,8 +152,12 @@ public class PromptTemplateService {
         existingTemplate.setExampleUsage(templateDTO.getExampleUsage());
         existingTemplate.setEffectivenessScore(templateDTO.getEffectivenessScore());
         existingTemplate.setIsActive(templateDTO.getIsActive());
+        existingTemplate.setVariantGroup(templateDTO.getVariantGroup());
+        existingTemplate.setTrafficWeight(resolveTrafficWeight(templateDTO.getTrafficWeight()));
 
         PromptTemplate updatedTemplate = templateRepository.save(existingTemplate);
+        entityCacheService.evictAfterCommit(PromptTemplate.class, id);
+        templateRegistry.reloadAfterCommit();
         return convertToDTO(updatedTemplate);
     }
 
@@ -158,10 +167,11 @@ public class PromptTemplateService {
     @Transactional
     public void deleteTemplate(UUID id) {
         log.info("Deleting template with id: {}", id);
-        if (!templateRepository.existsById(id)) {
-            throw new ResourceNotFoundException("PromptTemplate", "id", id);
-        }
-        templateRepository.deleteById(id);
+        PromptTemplate template = templateRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("PromptTemplate", "id", id));
+        templateRepository.delete(template);
+        entityCacheService.evictAfterCommit(PromptTemplate.class, id);
+        templateRegistry.reloadAfterCommit();
     }
 
     /**
@@ -174,6 +184,8 @@ public class PromptTemplateService {
                 .orElseThrow(() -> new ResourceNotFoundException("PromptTemplate", "id", id));
         template.setIsActive(true);
         PromptTemplate updatedTemplate = templateRepository.save(template);
+        entityCacheService.evictAfterCommit(PromptTemplate.class, id);
+        templateRegistry.reloadAfterCommit();
         return convertToDTO(updatedTemplate);
     }
 
@@ -187,6 +199,8 @@ public class PromptTemplateService {
                 .orElseThrow(() -> new ResourceNotFoundException("PromptTemplate", "id", id));
         template.setIsActive(false);
         PromptTemplate updatedTemplate = templateRepository.save(template);
+        entityCacheService.evictAfterCommit(PromptTemplate.class, id);
+        templateRegistry.reloadAfterCommit();
         return convertToDTO(updatedTemplate);
     }
 
@@ -211,6 +225,8 @@ public class PromptTemplateService {
         dto.setExampleUsage(template.getExampleUsage());
         dto.setEffectivenessScore(template.getEffectivenessScore());
         dto.setIsActive(template.getIsActive());
+        dto.setVariantGroup(template.getVariantGroup());
+        dto.setTrafficWeight(template.getTrafficWeight());
         dto.setCreatedAt(template.getCreatedAt());
         dto.setUpdatedAt(template.getUpdatedAt());
         return dto;
@@ -226,6 +242,18 @@ public class PromptTemplateService {
                 .exampleUsage(dto.getExampleUsage())
                 .effectivenessScore(dto.getEffectivenessScore())
                 .isActive(dto.getIsActive() != null ? dto.getIsActive() : true)
+                .variantGroup(dto.getVariantGroup())
+                .trafficWeight(resolveTrafficWeight(dto.getTrafficWeight()))
                 .build();
     }
+
+    private Integer resolveTrafficWeight(Integer trafficWeight) {
+        if (trafficWeight == null) {
+            return 100;
+        }
+        if (trafficWeight < 0) {
+            throw new IllegalArgumentException("Traffic weight must not be negative");
+        }
+        return trafficWeight;
+    }
 }
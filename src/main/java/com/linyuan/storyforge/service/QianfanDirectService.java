@@ -4,7 +4,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.linyuan.storyforge.common.SingleFlight;
 import com.linyuan.storyforge.config.PromptConfiguration;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
@@ -15,7 +17,15 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * 直接调用百度千帆 API 的服务
@@ -23,10 +33,13 @@ import java.util.Map;
  *
  * 功能特性：
  * - 自动重试机制（可配置）
+ * - 按调用点路由到模型档位，出错或超时沿降级链切换模型
  * - 超时控制
  * - 详细的错误处理和日志
  * - 支持模板化生成
- * - Token 使用统计
+ * - Token 用量记入台账，调用前检查项目预算
+ * - 调用前在 LlmRequestScheduler 取得并发名额，按优先级和项目公平排队
+ * - 同时发起的相同请求合并为一次调用，共享结果
  *
  * @author StoryForge Team
  */
@@ -35,8 +48,21 @@ import java.util.Map;
 public class QianfanDirectService {
 
     private final RestTemplate restTemplate;
+    private final Map<Long, RestTemplate> timeoutRestTemplates = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper;
     private final PromptConfiguration promptConfig;
+    private final TokenCounter tokenCounter;
+    private final PromptCacheStats promptCacheStats;
+    private final PromptTemplateEngine templateEngine;
+    private final LlmUsageLedger usageLedger;
+    private final LlmBudgetService budgetService;
+    private final ModelRouter modelRouter;
+    private final LlmRequestScheduler scheduler;
+
+    /**
+     * 进行中的非流式调用，相同请求共享一次调用
+     */
+    private final SingleFlight<ChatKey, SharedChat> chatFlight = new SingleFlight<>();
 
     @Value("${ai.qianfan.api-key}")
     private String apiKey;
@@ -56,19 +82,67 @@ public class QianfanDirectService {
     @Value("${ai.qianfan.timeout-seconds:60}")
     private Integer timeoutSeconds;
 
+    @Value("${storyforge.llm.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
     // 百度千帆 V2 API 完整 URL
     private static final String QIANFAN_API_URL = "https://qianfan.baidubce.com/v2/chat/completions";
 
-    public QianfanDirectService(PromptConfiguration promptConfig) {
+    public QianfanDirectService(PromptConfiguration promptConfig, TokenCounter tokenCounter,
+                                PromptCacheStats promptCacheStats, PromptTemplateEngine templateEngine,
+                                LlmUsageLedger usageLedger, LlmBudgetService budgetService,
+                                ModelRouter modelRouter, LlmRequestScheduler scheduler) {
         this.promptConfig = promptConfig;
+        this.tokenCounter = tokenCounter;
+        this.promptCacheStats = promptCacheStats;
+        this.templateEngine = templateEngine;
+        this.usageLedger = usageLedger;
+        this.budgetService = budgetService;
+        this.modelRouter = modelRouter;
+        this.scheduler = scheduler;
         this.objectMapper = new ObjectMapper();
 
-        // 配置 RestTemplate 超时
+        // 读取超时 60 秒（默认）
+        this.restTemplate = createRestTemplate(60000);
+    }
+
+    /**
+     * 创建指定读取超时的 RestTemplate
+     */
+    private static RestTemplate createRestTemplate(int readTimeoutMs) {
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(10000); // 连接超时 10 秒
-        factory.setReadTimeout(60000);    // 读取超时 60 秒（默认）
+        factory.setReadTimeout(readTimeoutMs);
+        return new RestTemplate(factory);
+    }
 
-        this.restTemplate = new RestTemplate(factory);
+    /**
+     * 降级链上非最后一个模型使用档位配置的较短读取超时，超时即切换模型
+     */
+    private RestTemplate restTemplateFor(long timeoutMs) {
+        if (timeoutMs <= 0) {
+            return restTemplate;
+        }
+        return timeoutRestTemplates.computeIfAbsent(timeoutMs, ms -> createRestTemplate((int) ms.longValue()));
+    }
+
+    /**
+     * 模板生成结果
+     *
+     * @param templateKey      模板键名（变体组）
+     * @param variant          实际使用的模板（变体）名称
+     * @param prompt           渲染后的提示词
+     * @param content          生成内容
+     * @param model            实际使用的模型名称
+     * @param temperature      温度参数
+     * @param maxTokens        最大token数
+     * @param latencyMs        模型调用耗时（含重试）
+     * @param promptTokens     输入 token 数（响应 usage）
+     * @param completionTokens 输出 token 数（响应 usage）
+     */
+    public record TemplateCompletion(String templateKey, String variant, String prompt, String content,
+                                     String model, Double temperature, Integer maxTokens,
+                                     long latencyMs, int promptTokens, int completionTokens) {
     }
 
     /**
@@ -79,30 +153,46 @@ public class QianfanDirectService {
      * @return AI 生成的内容
      */
     public String generateWithTemplate(String templateKey, Map<String, Object> variables) {
-        log.info("使用模板 '{}' 生成内容", templateKey);
+        return completeTemplate(templateKey, variables).content();
+    }
 
-        // 获取模板
-        String template = promptConfig.getTemplate(templateKey);
-        if (template == null) {
-            throw new IllegalArgumentException("模板不存在: " + templateKey);
-        }
+    /**
+     * 使用模板生成内容，并返回所用变体、耗时和 token 用量
+     *
+     * @param templateKey 模板键名（变体组）
+     * @param variables 模板变量
+     * @return 生成结果
+     */
+    public TemplateCompletion completeTemplate(String templateKey, Map<String, Object> variables) {
+        // 选择模板（数据库中启用的变体按权重路由，否则使用配置文件模板）
+        PromptTemplateEngine.CompiledTemplate template = templateEngine.getTemplate(templateKey)
+                .orElseThrow(() -> new IllegalArgumentException("模板不存在: " + templateKey));
+        log.info("使用模板 '{}' 生成内容（变体: {}）", templateKey, template.name());
 
-        // 替换模板变量
-        String prompt = replaceVariables(template, variables);
+        String prompt = template.render(variables);
         log.debug("生成的 prompt 长度: {} 字符", prompt.length());
 
         // 获取模板配置
         PromptConfiguration.PromptSettings settings =
                 promptConfig.getSettingsOrDefault(templateKey);
 
-        // 使用模板配置调用 API
-        return chatWithOptions(
-            prompt,
-            null, // systemMessage
-            settings.getTemperature(),
-            settings.getMaxTokens(),
-            settings.getRetryCount()
-        );
+        // 使用模板配置调用 API，用量按所用变体记入台账
+        try (LlmUsageScope scope = LlmUsageScope.open(null, null)) {
+            scope.setTemplate(template.name());
+            long startTime = System.currentTimeMillis();
+            String content = chatWithOptions(
+                prompt,
+                null, // systemMessage
+                settings.getTemperature(),
+                settings.getMaxTokens(),
+                settings.getRetryCount()
+            );
+            long latencyMs = System.currentTimeMillis() - startTime;
+
+            return new TemplateCompletion(templateKey, template.name(), prompt, content,
+                    scope.getModel(), settings.getTemperature(), settings.getMaxTokens(),
+                    latencyMs, (int) scope.getPromptTokens(), (int) scope.getCompletionTokens());
+        }
     }
 
     /**
@@ -126,8 +216,20 @@ public class QianfanDirectService {
         return chatWithOptions(userMessage, null, temperature, maxTokens, retryCount);
     }
 
+    /**
+     * 带系统提示的自定义参数对话
+     */
+    public String chatWithOptions(String userMessage, String systemMessage, Double temperature, Integer maxTokens) {
+        return chatWithOptions(userMessage, systemMessage, temperature, maxTokens, retryCount);
+    }
+
     /**
      * 完整参数对话（带重试）
+     * 模型由 ModelRouter 按调用点选出；降级链上前面的模型只尝试一次，出错或超时立即切换，
+     * 最后一个模型按 maxRetries 重试；每次请求各自取得调度名额，重试前的退避等待不占名额
+     * <p>
+     * 项目、调用点、提示词和参数都相同的请求正在进行时不再发起新调用，等待并共享它的结果；
+     * 共享的调用只计入发起方的用量，等待方的用量范围只记录实际使用的模型
      *
      * @param userMessage 用户消息
      * @param systemMessage 系统提示（可选）
@@ -138,7 +240,94 @@ public class QianfanDirectService {
      */
     public String chatWithOptions(String userMessage, String systemMessage,
                                    Double temperature, Integer maxTokens, Integer maxRetries) {
+        if (!coalescingEnabled) {
+            return dispatchChat(userMessage, systemMessage, temperature, maxTokens, maxRetries);
+        }
+
+        LlmUsageScope current = LlmUsageScope.current();
+        ChatKey key = new ChatKey(
+                current != null ? current.getProjectId() : null,
+                current != null ? current.getSource() : null,
+                current != null ? current.getTemplate() : null,
+                systemMessage, userMessage, temperature, maxTokens);
+        boolean[] executed = {false};
+        SharedChat shared;
+        try {
+            shared = chatFlight.execute(key, () -> {
+                executed[0] = true;
+                try (LlmUsageScope scope = LlmUsageScope.open(null, null)) {
+                    String content = dispatchChat(userMessage, systemMessage, temperature, maxTokens, maxRetries);
+                    return new SharedChat(content, scope.getModel());
+                }
+            });
+        } catch (LlmOverloadedException e) {
+            if (executed[0]) {
+                throw e;
+            }
+            // 发起方排队超时或客户端已离开，不代表等待方的请求也应放弃
+            return dispatchChat(userMessage, systemMessage, temperature, maxTokens, maxRetries);
+        }
+
+        if (!executed[0]) {
+            log.debug("合并到进行中的相同请求 (来源: {})", key.source());
+            if (current != null) {
+                current.recordCoalesced(shared.model());
+            }
+        }
+        return shared.content();
+    }
+
+    /**
+     * 获取相同请求合并统计信息
+     */
+    public Map<String, Object> getCoalescingStatistics() {
+        return chatFlight.getStatistics();
+    }
+
+    /**
+     * 请求指纹：用量归属、路由依据和请求内容都相同才合并
+     */
+    private record ChatKey(UUID projectId, String source, String template, String systemMessage,
+                           String userMessage, Double temperature, Integer maxTokens) {
+    }
+
+    /**
+     * 共享的调用结果
+     */
+    private record SharedChat(String content, String model) {
+    }
 
+    /**
+     * 路由、预算检查后沿降级链发起调用（每次请求在 callModel 中取得调度名额）
+     */
+    private String dispatchChat(String userMessage, String systemMessage,
+                                Double temperature, Integer maxTokens, Integer maxRetries) {
+        ModelRouter.Route route = modelRouter.route();
+        LlmBudgetService.CallPlan plan = budgetService.admit(route.models().get(0), maxTokens);
+        return callChain(userMessage, systemMessage, temperature, maxRetries, route, plan);
+    }
+
+    /**
+     * 沿降级链调用，最后一个模型按 maxRetries 重试
+     */
+    private String callChain(String userMessage, String systemMessage, Double temperature, Integer maxRetries,
+                             ModelRouter.Route route, LlmBudgetService.CallPlan plan) {
+        List<String> chain = plan.downgraded() ? List.of(plan.model()) : route.models();
+
+        for (int i = 0; i < chain.size() - 1; i++) {
+            try {
+                return callModel(userMessage, systemMessage, temperature, plan.maxTokens(),
+                        route, chain.get(i), route.timeoutMs());
+            } catch (LlmOverloadedException e) {
+                // 排队超时或客户端已离开，换模型也要重新排队
+                throw e;
+            } catch (Exception e) {
+                modelRouter.recordFallback();
+                log.warn("⚠️ 模型 {} 调用失败，切换到 {}: {}", chain.get(i), chain.get(i + 1), e.getMessage());
+            }
+        }
+
+        String model = chain.get(chain.size() - 1);
         int attempt = 0;
         Exception lastException = null;
 
@@ -148,7 +337,8 @@ public class QianfanDirectService {
             try {
                 log.debug("尝试调用 API (第 {}/{} 次)", attempt, maxRetries);
 
-                String response = callQianfanApi(userMessage, systemMessage, temperature, maxTokens);
+                String response = callModel(userMessage, systemMessage, temperature, plan.maxTokens(),
+                        route, model, 0);
 
                 if (attempt > 1) {
                     log.info("✅ API 调用成功（重试 {} 次后成功）", attempt - 1);
@@ -156,6 +346,9 @@ public class QianfanDirectService {
 
                 return response;
 
+            } catch (LlmOverloadedException e) {
+                throw e;
+
             } catch (HttpClientErrorException e) {
                 // 4xx 错误通常不需要重试
                 log.error("❌ 客户端错误 ({}): {}", e.getStatusCode(), e.getResponseBodyAsString());
@@ -204,15 +397,33 @@ public class QianfanDirectService {
         throw new RuntimeException(errorMsg);
     }
 
+    /**
+     * 取得调度名额后调用指定模型一次，并把耗时或失败记入路由统计
+     */
+    private String callModel(String userMessage, String systemMessage, Double temperature, Integer maxTokens,
+                             ModelRouter.Route route, String model, long timeoutMs) throws Exception {
+        try (LlmRequestScheduler.Permit ignored = scheduler.acquire(schedulingCost(maxTokens))) {
+            long startTime = System.currentTimeMillis();
+            try {
+                String response = callQianfanApi(userMessage, systemMessage, temperature, maxTokens, model, timeoutMs);
+                modelRouter.recordSuccess(route.tier(), model, System.currentTimeMillis() - startTime);
+                return response;
+            } catch (Exception e) {
+                modelRouter.recordFailure(route.tier(), model);
+                throw e;
+            }
+        }
+    }
+
     /**
      * 实际调用百度千帆 API
      */
-    private String callQianfanApi(String userMessage, String systemMessage,
-                                   Double temperature, Integer maxTokens) throws Exception {
+    private String callQianfanApi(String userMessage, String systemMessage, Double temperature,
+                                  Integer maxTokens, String model, long timeoutMs) throws Exception {
 
         log.debug("调用百度千帆 API");
         log.debug("- URL: {}", QIANFAN_API_URL);
-        log.debug("- Model: {}", defaultModel);
+        log.debug("- Model: {}", model);
         log.debug("- Temperature: {}, MaxTokens: {}", temperature, maxTokens);
 
         // 构建请求头
@@ -221,29 +432,7 @@ public class QianfanDirectService {
         headers.set("Authorization", "Bearer " + apiKey);
 
         // 构建请求体
-        ObjectNode requestBody = objectMapper.createObjectNode();
-        requestBody.put("model", defaultModel);
-        requestBody.put("temperature", temperature);
-        requestBody.put("max_tokens", maxTokens);
-
-        // 构建 messages 数组
-        ArrayNode messages = objectMapper.createArrayNode();
-
-        // 添加系统消息（如果有）
-        if (systemMessage != null && !systemMessage.trim().isEmpty()) {
-            ObjectNode systemMsg = objectMapper.createObjectNode();
-            systemMsg.put("role", "system");
-            systemMsg.put("content", systemMessage);
-            messages.add(systemMsg);
-        }
-
-        // 添加用户消息
-        ObjectNode userMsg = objectMapper.createObjectNode();
-        userMsg.put("role", "user");
-        userMsg.put("content", userMessage);
-        messages.add(userMsg);
-
-        requestBody.set("messages", messages);
+        ObjectNode requestBody = buildRequestBody(userMessage, systemMessage, temperature, maxTokens, model, false);
 
         // 序列化请求
         String requestJson = objectMapper.writeValueAsString(requestBody);
@@ -256,7 +445,7 @@ public class QianfanDirectService {
         HttpEntity<String> entity = new HttpEntity<>(requestJson, headers);
 
         long startTime = System.currentTimeMillis();
-        ResponseEntity<String> response = restTemplate.exchange(
+        ResponseEntity<String> response = restTemplateFor(timeoutMs).exchange(
                 QIANFAN_API_URL,
                 HttpMethod.POST,
                 entity,
@@ -276,9 +465,12 @@ public class QianfanDirectService {
             log.trace("响应体:\n{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(responseJson));
         }
 
+        String content = responseJson.path("choices").path(0).path("message").path("content").asText(null);
+        String respondedModel = responseJson.path("model").asText(model);
+
         // 记录 token 使用情况
-        if (responseJson.has("usage")) {
-            JsonNode usage = responseJson.get("usage");
+        JsonNode usage = responseJson.get("usage");
+        if (usage != null && !usage.isNull()) {
             log.info("Token 使用: 输入={}, 输出={}, 总计={}, 耗时={}ms",
                     usage.path("prompt_tokens").asInt(),
                     usage.path("completion_tokens").asInt(),
@@ -287,18 +479,12 @@ public class QianfanDirectService {
         } else {
             log.info("✅ API 调用成功，耗时: {}ms", (endTime - startTime));
         }
+        recordUsage(userMessage, systemMessage, content, usage, respondedModel, endTime - startTime, false);
 
         // 提取 AI 生成的内容
-        if (responseJson.has("choices") && responseJson.get("choices").isArray()) {
-            JsonNode firstChoice = responseJson.get("choices").get(0);
-            if (firstChoice.has("message")) {
-                JsonNode message = firstChoice.get("message");
-                if (message.has("content")) {
-                    String content = message.get("content").asText();
-                    log.debug("成功获取 AI 响应，长度: {} 字符", content.length());
-                    return content;
-                }
-            }
+        if (content != null) {
+            log.debug("成功获取 AI 响应，长度: {} 字符", content.length());
+            return content;
         }
 
         // 如果无法提取内容，抛出异常
@@ -306,46 +492,306 @@ public class QianfanDirectService {
     }
 
     /**
-     * 重试前的等待（指数退避）
+     * 流式对话（SSE），每收到一段增量内容就回调一次，回调返回 false 时立即中止
+     * 中止时关闭响应流（断开连接），服务端不再继续生成剩余 token
+     * 只在尚未收到任何内容时对 5xx/网络错误重试，或切换到降级链上的下一个模型
+     *
+     * @param userMessage   用户消息
+     * @param systemMessage 系统提示（可选）
+     * @param temperature   温度参数
+     * @param maxTokens     最大 token 数
+     * @param onProgress    接收到目前为止的完整输出，返回 false 中止生成
+     * @return 流式生成结果
      */
-    private void sleepBeforeRetry(int attempt) {
-        try {
-            // 指数退避: 1s, 2s, 4s, 8s...
-            long sleepTime = (long) Math.pow(2, attempt - 1) * 1000;
-            sleepTime = Math.min(sleepTime, 10000); // 最多等待 10 秒
+    public StreamedCompletion chatStream(String userMessage, String systemMessage,
+                                         Double temperature, Integer maxTokens,
+                                         Predicate<CharSequence> onProgress) {
+        ModelRouter.Route route = modelRouter.route();
+        LlmBudgetService.CallPlan plan = budgetService.admit(route.models().get(0), maxTokens);
+        return streamChain(userMessage, systemMessage, temperature, route, plan, onProgress);
+    }
 
-            log.debug("等待 {}ms 后重试...", sleepTime);
-            Thread.sleep(sleepTime);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            log.warn("等待重试时被中断");
+    /**
+     * 沿降级链流式调用，只在尚未输出内容时切换模型或重试
+     */
+    private StreamedCompletion streamChain(String userMessage, String systemMessage, Double temperature,
+                                           ModelRouter.Route route, LlmBudgetService.CallPlan plan,
+                                           Predicate<CharSequence> onProgress) {
+        List<String> chain = plan.downgraded() ? List.of(plan.model()) : route.models();
+
+        for (int i = 0; i < chain.size() - 1; i++) {
+            StringBuilder content = new StringBuilder();
+            try {
+                return streamModel(userMessage, systemMessage, temperature, plan.maxTokens(),
+                        route, chain.get(i), route.timeoutMs(), content, onProgress);
+            } catch (LlmOverloadedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (content.length() > 0) {
+                    // 已经输出过内容，换模型会让调用方看到重复内容
+                    throw new RuntimeException("流式 API 调用中断: " + e.getMessage(), e);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RuntimeException("流式 API 调用已取消");
+                }
+                modelRouter.recordFallback();
+                log.warn("⚠️ 模型 {} 流式调用失败，切换到 {}: {}", chain.get(i), chain.get(i + 1), e.getMessage());
+            }
+        }
+
+        String model = chain.get(chain.size() - 1);
+        int attempt = 0;
+        Exception lastException = null;
+
+        while (attempt < retryCount) {
+            if (Thread.currentThread().isInterrupted()) {
+                // 调用方已取消（如 Best-of-N 已选出候选），不再重试
+                throw new RuntimeException("流式 API 调用已取消");
+            }
+            attempt++;
+            StringBuilder content = new StringBuilder();
+
+            try {
+                log.debug("尝试流式调用 API (第 {}/{} 次)", attempt, retryCount);
+                return streamModel(userMessage, systemMessage, temperature, plan.maxTokens(),
+                        route, model, 0, content, onProgress);
+
+            } catch (LlmOverloadedException e) {
+                throw e;
+
+            } catch (HttpClientErrorException e) {
+                log.error("❌ 客户端错误 ({}): {}", e.getStatusCode(), e.getResponseBodyAsString());
+                throw new RuntimeException("API 调用失败: " + e.getStatusCode() + " - " + e.getResponseBodyAsString(), e);
+
+            } catch (Exception e) {
+                if (content.length() > 0) {
+                    // 已经输出过内容，重试会让调用方看到重复内容
+                    throw new RuntimeException("流式 API 调用中断: " + e.getMessage(), e);
+                }
+                lastException = e;
+                log.warn("⚠️ 流式调用失败, 尝试 {}/{}. 错误: {}", attempt, retryCount, e.getMessage());
+                if (attempt < retryCount) {
+                    sleepBeforeRetry(attempt);
+                }
+            }
+        }
+
+        String errorMsg = "API 调用失败（已重试 " + retryCount + " 次）";
+        if (lastException != null) {
+            throw new RuntimeException(errorMsg + ": " + lastException.getMessage(), lastException);
         }
+        throw new RuntimeException(errorMsg);
     }
 
     /**
-     * 替换模板中的变量
+     * 调度开销按本次调用允许生成的 token 数计
      */
-    private String replaceVariables(String template, Map<String, Object> variables) {
-        if (template == null) {
-            return "";
+    private int schedulingCost(Integer maxTokens) {
+        Integer tokens = maxTokens != null ? maxTokens : defaultMaxTokens;
+        return tokens != null ? tokens : 1;
+    }
+
+    /**
+     * 取得调度名额后流式调用指定模型一次，并把耗时或失败记入路由统计（提前中止的调用耗时不计入）
+     */
+    private StreamedCompletion streamModel(String userMessage, String systemMessage, Double temperature,
+                                           Integer maxTokens, ModelRouter.Route route, String model, long timeoutMs,
+                                           StringBuilder content, Predicate<CharSequence> onProgress) {
+        try (LlmRequestScheduler.Permit ignored = scheduler.acquire(schedulingCost(maxTokens))) {
+            long startTime = System.currentTimeMillis();
+            try {
+                StreamedCompletion completion = callQianfanStream(userMessage, systemMessage, temperature, maxTokens,
+                        model, timeoutMs, content, onProgress);
+                if (!completion.aborted()) {
+                    modelRouter.recordSuccess(route.tier(), model, System.currentTimeMillis() - startTime);
+                }
+                return completion;
+            } catch (RuntimeException e) {
+                modelRouter.recordFailure(route.tier(), model);
+                throw e;
+            }
         }
+    }
 
-        String result = template;
+    /**
+     * 实际发起流式请求并逐行解析 SSE
+     */
+    private StreamedCompletion callQianfanStream(String userMessage, String systemMessage,
+                                                 Double temperature, Integer maxTokens, String model,
+                                                 long timeoutMs, StringBuilder content,
+                                                 Predicate<CharSequence> onProgress) {
+        log.debug("流式调用百度千帆 API - Model: {}, Temperature: {}, MaxTokens: {}",
+                model, temperature, maxTokens);
+
+        ObjectNode requestBody = buildRequestBody(userMessage, systemMessage, temperature, maxTokens, model, true);
+        long startTime = System.currentTimeMillis();
+        // 最后一个分块携带 usage；提前中止时收不到
+        JsonNode[] usageHolder = new JsonNode[1];
+        String[] modelHolder = {model};
+
+        Boolean aborted = restTemplateFor(timeoutMs).execute(QIANFAN_API_URL, HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    request.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                    request.getHeaders().set("Authorization", "Bearer " + apiKey);
+                    objectMapper.writeValue(request.getBody(), requestBody);
+                },
+                response -> {
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        String data = line.substring(5).trim();
+                        if (data.isEmpty()) {
+                            continue;
+                        }
+                        if ("[DONE]".equals(data)) {
+                            break;
+                        }
+
+                        JsonNode chunk = objectMapper.readTree(data);
+                        if (chunk.hasNonNull("model")) {
+                            modelHolder[0] = chunk.get("model").asText();
+                        }
+                        if (chunk.has("usage") && !chunk.get("usage").isNull()) {
+                            JsonNode usage = chunk.get("usage");
+                            log.info("Token 使用: 输入={}, 输出={}, 总计={}, 耗时={}ms",
+                                    usage.path("prompt_tokens").asInt(),
+                                    usage.path("completion_tokens").asInt(),
+                                    usage.path("total_tokens").asInt(),
+                                    System.currentTimeMillis() - startTime);
+                            usageHolder[0] = usage;
+                        }
+
+                        String delta = chunk.path("choices").path(0).path("delta").path("content").asText("");
+                        if (delta.isEmpty()) {
+                            continue;
+                        }
+                        content.append(delta);
+                        if (!onProgress.test(content)) {
+                            // 先直接关闭响应流：RestTemplate 关闭响应时会把剩余内容读完以复用连接，
+                            // 而未读完的分块流被关闭时会断开连接，服务端随之停止生成
+                            reader.close();
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+
+        boolean wasAborted = Boolean.TRUE.equals(aborted);
+        long latencyMs = System.currentTimeMillis() - startTime;
+        log.info("✅ 流式调用结束，{}，长度: {} 字符，耗时: {}ms",
+                wasAborted ? "已提前中止" : "完整输出", content.length(), latencyMs);
+        String text = content.toString();
+        recordUsage(userMessage, systemMessage, text, usageHolder[0], modelHolder[0], latencyMs, true);
+        return new StreamedCompletion(text, wasAborted);
+    }
 
-        if (variables != null && !variables.isEmpty()) {
-            for (Map.Entry<String, Object> entry : variables.entrySet()) {
-                String placeholder = "{" + entry.getKey() + "}";
-                String value = entry.getValue() != null ? entry.getValue().toString() : "";
-                result = result.replace(placeholder, value);
-            }
+    /**
+     * 流式生成结果
+     *
+     * @param content 收到的内容（中止时为部分内容）
+     * @param aborted 是否被回调提前中止
+     */
+    public record StreamedCompletion(String content, boolean aborted) {
+    }
+
+    /**
+     * 记录一次调用的用量：写入台账、累加到当前用量范围；
+     * 有 usage 时用实际输入 token 数校准提示词 token 估算，并记录服务端前缀缓存命中，
+     * 没有 usage（如流式调用被提前中止）时按本地估算记录
+     */
+    private void recordUsage(String userMessage, String systemMessage, String content,
+                             JsonNode usage, String model, long latencyMs, boolean streamed) {
+        String prompt = systemMessage != null ? systemMessage + userMessage : userMessage;
+        boolean estimated = usage == null || usage.isNull();
+        int promptTokens;
+        int completionTokens;
+        int cachedTokens = 0;
+        if (estimated) {
+            promptTokens = tokenCounter.count(model, prompt);
+            completionTokens = content != null ? tokenCounter.count(model, content) : 0;
+        } else {
+            promptTokens = usage.path("prompt_tokens").asInt();
+            completionTokens = usage.path("completion_tokens").asInt();
+            cachedTokens = PromptCacheStats.cachedTokens(usage);
+            tokenCounter.calibrate(model, prompt, promptTokens);
+            promptCacheStats.recordUsage(usage);
         }
 
-        // 记录未替换的占位符
-        if (result.contains("{") && result.contains("}")) {
-            log.warn("模板中存在未替换的占位符，请检查 variables 参数");
+        LlmUsageScope scope = LlmUsageScope.current();
+        if (scope != null) {
+            scope.record(model, promptTokens, completionTokens, latencyMs);
         }
+        usageLedger.record(LlmUsageLedger.UsageEntry.builder()
+                .projectId(scope != null ? scope.getProjectId() : null)
+                .source(scope != null && scope.getSource() != null ? scope.getSource() : "unattributed")
+                .promptTemplate(scope != null ? scope.getTemplate() : null)
+                .modelName(model)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .cachedTokens(cachedTokens)
+                .latencyMs((int) latencyMs)
+                .streamed(streamed)
+                .estimated(estimated)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
 
-        return result;
+    /**
+     * 构建请求体
+     */
+    private ObjectNode buildRequestBody(String userMessage, String systemMessage,
+                                        Double temperature, Integer maxTokens, String model, boolean stream) {
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        requestBody.put("model", model);
+        requestBody.put("temperature", temperature);
+        requestBody.put("max_tokens", maxTokens);
+        if (stream) {
+            requestBody.put("stream", true);
+            // 流式响应默认不返回 usage，需显式要求在最后一个分块中携带
+            requestBody.putObject("stream_options").put("include_usage", true);
+        }
+
+        // 构建 messages 数组
+        ArrayNode messages = objectMapper.createArrayNode();
+
+        // 添加系统消息（如果有）
+        if (systemMessage != null && !systemMessage.trim().isEmpty()) {
+            ObjectNode systemMsg = objectMapper.createObjectNode();
+            systemMsg.put("role", "system");
+            systemMsg.put("content", systemMessage);
+            messages.add(systemMsg);
+        }
+
+        // 添加用户消息
+        ObjectNode userMsg = objectMapper.createObjectNode();
+        userMsg.put("role", "user");
+        userMsg.put("content", userMessage);
+        messages.add(userMsg);
+
+        requestBody.set("messages", messages);
+        return requestBody;
+    }
+
+    /**
+     * 重试前的等待（指数退避）
+     */
+    private void sleepBeforeRetry(int attempt) {
+        try {
+            // 指数退避: 1s, 2s, 4s, 8s...
+            long sleepTime = (long) Math.pow(2, attempt - 1) * 1000;
+            sleepTime = Math.min(sleepTime, 10000); // 最多等待 10 秒
+
+            log.debug("等待 {}ms 后重试...", sleepTime);
+            Thread.sleep(sleepTime);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.warn("等待重试时被中断");
+        }
     }
 
     /**
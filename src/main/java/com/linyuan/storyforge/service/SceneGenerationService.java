@@ -1,19 +1,31 @@
 package com.linyuan.storyforge.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.linyuan.storyforge.dto.*;
 import com.linyuan.storyforge.entity.*;
+import com.linyuan.storyforge.enums.LlmPriority;
 import com.linyuan.storyforge.enums.SceneType;
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import com.linyuan.storyforge.exception.LlmOverloadedException;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
+import com.linyuan.storyforge.repository.CharacterRepository;
 import com.linyuan.storyforge.repository.ProjectRepository;
 import com.linyuan.storyforge.repository.SceneRepository;
+import com.linyuan.storyforge.repository.WorldviewRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +40,38 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SceneGenerationService {
 
+    /**
+     * 场景 JSON 输出的字段绑定
+     */
+    private static final StructuredOutputParser<SceneDTO> SCENE_PARSER = StructuredOutputParser.<SceneDTO>builder()
+            .field("name", String.class, SceneDTO::setName)
+            .field("locationType", String.class, SceneDTO::setLocationType)
+            .field("physicalDescription", String.class, SceneDTO::setPhysicalDescription)
+            .field("timeSetting", String.class, SceneDTO::setTimeSetting)
+            .field("atmosphere", String.class, SceneDTO::setAtmosphere)
+            .field("weather", String.class, SceneDTO::setWeather)
+            .field("lighting", String.class, SceneDTO::setLighting)
+            .field("availableProps", StructuredOutputParser.OBJECT_MAP, SceneDTO::setAvailableProps)
+            .field("environmentalElements", StructuredOutputParser.STRING_LIST, SceneDTO::setEnvironmentalElements)
+            .field("sensoryDetails", StructuredOutputParser.OBJECT_MAP, SceneDTO::setSensoryDetails)
+            .field("sceneSummary", String.class, SceneDTO::setSceneSummary)
+            .field("moodKeywords", StructuredOutputParser.STRING_LIST, SceneDTO::setMoodKeywords)
+            .build();
+
+    /**
+     * 只取决于场景类型的提示词片段，类加载时渲染
+     */
+    private static final Map<SceneType, String> SCENE_TYPE_FRAGMENTS = new EnumMap<>(SceneType.class);
+    private static final Map<SceneType, String> SENSORY_GUIDANCE_FRAGMENTS = new EnumMap<>(SceneType.class);
+    private static final String OUTPUT_FORMAT_FRAGMENT = renderOutputFormatFragment();
+
+    static {
+        for (SceneType sceneType : SceneType.values()) {
+            SCENE_TYPE_FRAGMENTS.put(sceneType, renderSceneTypeFragment(sceneType));
+            SENSORY_GUIDANCE_FRAGMENTS.put(sceneType, renderSensoryGuidanceFragment(sceneType));
+        }
+    }
+
     private final AiGenerationService aiService;
     private final SceneService sceneService;
     private final WorldviewService worldviewService;
@@ -36,8 +80,39 @@ public class SceneGenerationService {
     private final TimelineService timelineService;
     private final ProjectRepository projectRepository;
     private final SceneRepository sceneRepository;
+    private final WorldviewRepository worldviewRepository;
+    private final CharacterRepository characterRepository;
     private final ObjectMapper objectMapper;
 
+    /**
+     * 世界观背景片段、角色行，按 ID:更新时间 缓存，实体更新后自然失效
+     */
+    private final Cache<String, String> worldviewFragments = Caffeine.newBuilder()
+            .maximumSize(500)
+            .build();
+    private final Cache<String, String> characterLines = Caffeine.newBuilder()
+            .maximumSize(2000)
+            .build();
+
+    /**
+     * 预览时组装的上下文，有效期内提交的相同生成请求复用一次
+     */
+    private Cache<SceneContextKey, GenerationContext> previewContexts;
+
+    @Value("${storyforge.generation.scene-preview.context-ttl-seconds:300}")
+    private long previewContextTtlSeconds;
+
+    private final AtomicLong previewsBuilt = new AtomicLong();
+    private final AtomicLong previewContextsReused = new AtomicLong();
+
+    @PostConstruct
+    void initPreviewContextCache() {
+        previewContexts = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(previewContextTtlSeconds))
+                .build();
+    }
+
     /**
      * 生成单个场景
      *
@@ -46,6 +121,19 @@ public class SceneGenerationService {
      */
     @Transactional
     public SceneDTO generateScene(SceneGenerationRequest request) {
+        return generateScene(request, null);
+    }
+
+    /**
+     * 流式生成单个场景
+     * 边生成边解析 JSON，每个字段解析完成时回调，便于前端逐步渲染
+     *
+     * @param request 场景生成请求
+     * @param onField 字段解析完成时的回调（字段名, 值），为 null 时走普通调用
+     * @return 生成的场景DTO
+     */
+    @Transactional
+    public SceneDTO generateScene(SceneGenerationRequest request, BiConsumer<String, Object> onField) {
         log.info("开始生成场景 - {}", request.getSimpleDescription());
 
         // 1. 验证请求
@@ -58,8 +146,11 @@ public class SceneGenerationService {
         Project project = projectRepository.findById(request.getProjectId())
                 .orElseThrow(() -> new ResourceNotFoundException("Project", "id", request.getProjectId()));
 
-        // 3. 加载上下文数据
-        GenerationContext context = buildGenerationContext(request);
+        // 3. 加载上下文数据（有效期内预览过的请求复用预览时的上下文）
+        GenerationContext context = reusePreviewedContext(request);
+        if (context == null) {
+            context = buildGenerationContext(request, false);
+        }
 
         // 4. 构建提示词
         String prompt = buildScenePrompt(request, context);
@@ -68,11 +159,19 @@ public class SceneGenerationService {
         // 5. 调用AI生成
         double temperature = (request.getCreativity() != null) ? request.getCreativity() : 0.75;
         int maxTokens = calculateMaxTokens(request.getTargetWordCount());
-        String aiResponse = aiService.chatWithOptions(prompt, temperature, maxTokens);
+        // 6. 解析响应（流式时边生成边解析，JSON 结束后不再接收多余输出）
+        StructuredOutputParser.Session<SceneDTO> session = SCENE_PARSER.open(objectMapper, new SceneDTO(), onField);
+        String aiResponse;
+        try (LlmUsageScope ignored = LlmUsageScope.open(request.getProjectId(), "scene")
+                .priority(LlmPriority.INTERACTIVE)) {
+            if (onField != null) {
+                aiResponse = aiService.chatStream(prompt, temperature, maxTokens, session::accept).content();
+            } else {
+                aiResponse = aiService.chatWithOptions(prompt, temperature, maxTokens);
+            }
+        }
         log.debug("AI响应长度: {} 字符", aiResponse.length());
-
-        // 6. 解析响应
-        SceneDTO sceneDTO = parseSceneResponse(aiResponse, request);
+        SceneDTO sceneDTO = parseSceneResponse(session, aiResponse, request);
 
         // 7. 补充必要字段
         sceneDTO.setProjectId(request.getProjectId());
@@ -111,18 +210,29 @@ public class SceneGenerationService {
         }
 
         List<SceneDTO> scenes = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            // 每次调整创意度，生成不同版本
-            SceneGenerationRequest variantRequest = request.toBuilder()
-                    .creativity(Math.min(1.0, request.getCreativity() + i * 0.05))
-                    .build();
+        // 多个方案按批量优先级排队，不挤占交互请求的调用名额
+        try (LlmUsageScope ignored = LlmUsageScope.open(request.getProjectId(), "scene")
+                .priority(LlmPriority.BATCH)) {
+            for (int i = 0; i < count; i++) {
+                // 每次调整创意度，生成不同版本
+                SceneGenerationRequest variantRequest = request.toBuilder()
+                        .creativity(Math.min(1.0, request.getCreativity() + i * 0.05))
+                        .build();
 
-            try {
-                SceneDTO scene = generateScene(variantRequest);
-                scenes.add(scene);
-            } catch (Exception e) {
-                log.error("生成第{}个场景方案失败", i + 1, e);
-                // 继续生成其他方案
+                try {
+                    SceneDTO scene = generateScene(variantRequest);
+                    scenes.add(scene);
+                } catch (BudgetExceededException | LlmOverloadedException e) {
+                    // 预算用完或排队超时，后续方案也不会成功：已有方案时返回已有的，否则交给调用方
+                    if (scenes.isEmpty()) {
+                        throw e;
+                    }
+                    log.warn("停止批量生成第{}个及之后的场景方案: {}", i + 1, e.getMessage());
+                    break;
+                } catch (Exception e) {
+                    log.error("生成第{}个场景方案失败", i + 1, e);
+                    // 继续生成其他方案
+                }
             }
         }
 
@@ -148,7 +258,11 @@ public class SceneGenerationService {
 
         double temperature = 0.7;
         int maxTokens = calculateMaxTokens(additionalWords);
-        String expansion = aiService.chatWithOptions(prompt, temperature, maxTokens);
+        String expansion;
+        try (LlmUsageScope ignored = LlmUsageScope.open(existingScene.getProjectId(), "scene-expansion")
+                .priority(LlmPriority.INTERACTIVE)) {
+            expansion = aiService.chatWithOptions(prompt, temperature, maxTokens);
+        }
 
         // 将扩展内容添加到物理描述
         String expandedDescription = existingScene.getPhysicalDescription() + "\n\n" + expansion;
@@ -164,10 +278,118 @@ public class SceneGenerationService {
         return existingScene;
     }
 
+    /**
+     * 预览场景提示词
+     * 只读：记忆检索不写回遗忘曲线、不记录访问；组装好的上下文在有效期内供随后提交的第一个相同生成请求复用，
+     * 预览后生成只组装一次上下文
+     *
+     * @param request 场景生成请求（已由调用方校验）
+     * @return 提示词预览
+     */
+    @Transactional(readOnly = true)
+    public ScenePromptPreview previewScenePrompt(SceneGenerationRequest request) {
+        GenerationContext context = buildGenerationContext(request, true);
+        previewContexts.put(SceneContextKey.of(request), context);
+        previewsBuilt.incrementAndGet();
+
+        String prompt = buildScenePrompt(request, context);
+        return new ScenePromptPreview(prompt, calculateMaxTokens(request.getTargetWordCount()),
+                previewContextTtlSeconds);
+    }
+
+    /**
+     * 提示词预览结果
+     *
+     * @param prompt            将发送给模型的提示词
+     * @param maxTokens         生成时的最大 token 数
+     * @param contextTtlSeconds 上下文可被生成请求复用的时长（秒）
+     */
+    public record ScenePromptPreview(String prompt, int maxTokens, long contextTtlSeconds) {
+    }
+
+    /**
+     * 获取预览上下文复用统计
+     */
+    public Map<String, Object> getPreviewStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("previewsBuilt", previewsBuilt.get());
+        stats.put("contextsReused", previewContextsReused.get());
+        stats.put("cachedContexts", previewContexts.estimatedSize());
+        stats.put("contextTtlSeconds", previewContextTtlSeconds);
+        stats.put("cachedWorldviewFragments", worldviewFragments.estimatedSize());
+        stats.put("cachedCharacterLines", characterLines.estimatedSize());
+        return stats;
+    }
+
+    /**
+     * 取出预览时组装的上下文，并补记预览时没有记录的记忆访问
+     * 上下文取出即移除，同一次预览只被第一个生成请求使用，记忆访问不会重复记录
+     *
+     * @return 上下文，没有预览过、已过期或世界观、角色在预览后有改动时为 null
+     */
+    private GenerationContext reusePreviewedContext(SceneGenerationRequest request) {
+        GenerationContext context = previewContexts.asMap().remove(SceneContextKey.of(request));
+        if (context == null) {
+            return null;
+        }
+        if (!isPreviewCurrent(request, context)) {
+            log.debug("预览后世界观或角色已更新，重新组装场景上下文 - {}", request.getSimpleDescription());
+            return null;
+        }
+        previewContextsReused.incrementAndGet();
+        log.debug("复用预览时组装的场景上下文 - {}", request.getSimpleDescription());
+        if (context.getCharacterMemories() != null) {
+            memoryService.recordAccess(context.getCharacterMemories().values().stream()
+                    .flatMap(List::stream)
+                    .map(CharacterMemory::getId)
+                    .toList());
+        }
+        return context;
+    }
+
+    /**
+     * 预览上下文中的世界观、角色与当前版本（更新时间）一致
+     */
+    private boolean isPreviewCurrent(SceneGenerationRequest request, GenerationContext context) {
+        if (request.getWorldviewId() != null) {
+            LocalDateTime previewed = context.getWorldview() != null ? context.getWorldview().getUpdatedAt() : null;
+            LocalDateTime current = worldviewRepository.findUpdatedAtById(request.getWorldviewId()).orElse(null);
+            if (!Objects.equals(previewed, current)) {
+                return false;
+            }
+        }
+        if (request.getCharacterIds() == null || request.getCharacterIds().isEmpty()) {
+            return true;
+        }
+        Map<UUID, LocalDateTime> previewed = new HashMap<>();
+        if (context.getCharacters() != null) {
+            context.getCharacters().forEach(character -> previewed.put(character.getId(), character.getUpdatedAt()));
+        }
+        Map<UUID, LocalDateTime> current = new HashMap<>();
+        characterRepository.findVersionRefsByIdIn(request.getCharacterIds())
+                .forEach(ref -> current.put(ref.getId(), ref.getUpdatedAt()));
+        return previewed.equals(current);
+    }
+
+    /**
+     * 上下文只取决于这些请求字段，创意度、字数等改动后仍可复用预览的上下文
+     */
+    private record SceneContextKey(UUID projectId, UUID worldviewId, List<UUID> characterIds,
+                                   UUID previousSceneId, String location, String mood, String plotContext) {
+
+        static SceneContextKey of(SceneGenerationRequest request) {
+            return new SceneContextKey(request.getProjectId(), request.getWorldviewId(), request.getCharacterIds(),
+                    request.getPreviousSceneId(), request.getLocation(), request.getMood(),
+                    request.getPlotContext());
+        }
+    }
+
     /**
      * 构建生成上下文
+     *
+     * @param readOnly 只读检索记忆（预览），不写回遗忘曲线、不记录访问
      */
-    private GenerationContext buildGenerationContext(SceneGenerationRequest request) {
+    private GenerationContext buildGenerationContext(SceneGenerationRequest request, boolean readOnly) {
         GenerationContext context = new GenerationContext();
 
         // 加载世界观
@@ -184,20 +406,17 @@ public class SceneGenerationService {
         if (request.getCharacterIds() != null && !request.getCharacterIds().isEmpty()) {
             List<CharacterDTO> characters = new ArrayList<>();
             Map<UUID, List<CharacterMemory>> memoriesMap = new HashMap<>();
+            String sceneContext = buildSceneContext(request);
 
             for (UUID characterId : request.getCharacterIds()) {
                 try {
                     CharacterDTO character = characterService.getCharacterById(characterId);
                     characters.add(character);
 
-                    // 检索相关记忆
-                    String sceneContext = buildSceneContext(request);
-                    List<CharacterMemory> memories = memoryService.retrieveRelevantMemories(
-                            characterId,
-                            sceneContext,
-                            request.getMood(),
-                            3  // 每个角色最多3条记忆
-                    );
+                    // 检索相关记忆（每个角色最多3条）
+                    List<CharacterMemory> memories = readOnly
+                            ? memoryService.previewRelevantMemories(characterId, sceneContext, request.getMood(), 3)
+                            : memoryService.retrieveRelevantMemories(characterId, sceneContext, request.getMood(), 3);
                     memoriesMap.put(characterId, memories);
                 } catch (ResourceNotFoundException e) {
                     log.warn("角色不存在: {}", characterId);
@@ -224,90 +443,61 @@ public class SceneGenerationService {
     /**
      * 构建场景生成提示词
      * 核心方法，集成SceneType指导、角色记忆、世界观等信息
+     * 只取决于场景类型、世界观、角色的片段已预先渲染或按版本缓存，这里只拼接请求相关的部分
      */
     private String buildScenePrompt(SceneGenerationRequest request, GenerationContext context) {
         SceneType sceneType = request.getSceneType();
-        StringBuilder prompt = new StringBuilder();
-
-        // ========== 1. 角色定位 ==========
-        prompt.append("# 角色定位\n");
-        prompt.append("你是一位专业的场景设计师，擅长通过细腻的感官描写营造氛围，")
-                .append("创造出立体、真实、引人入胜的场景环境。\n\n");
-
-        // ========== 2. 任务说明 ==========
-        prompt.append("# 任务\n");
-        prompt.append(String.format("请设计一个%s类型的场景。\n\n", sceneType.getDisplayName()));
-
-        // ========== 3. 场景类型指导 ==========
-        prompt.append("# 场景类型特征\n");
-        prompt.append(String.format("**核心特征**: %s\n", sceneType.getFeatures()));
-        prompt.append(String.format("**氛围关键词**: %s\n", sceneType.getAtmosphereKeywords()));
-        prompt.append(String.format("**感官侧重**: %s\n\n", sceneType.getSensoryFocus()));
+        StringBuilder prompt = new StringBuilder(4096);
 
-        prompt.append("## 设计要求\n");
-        prompt.append(sceneType.getGenerationRequirements()).append("\n");
+        // ========== 1-3. 角色定位、任务说明、场景类型指导 ==========
+        prompt.append(SCENE_TYPE_FRAGMENTS.get(sceneType));
 
         // ========== 4. 世界观背景 ==========
         if (context.getWorldview() != null) {
-            prompt.append("# 世界观背景\n");
-            WorldviewDTO worldview = context.getWorldview();
-            prompt.append(String.format("**世界观**: %s\n", worldview.getName()));
-            if (worldview.getSummary() != null) {
-                prompt.append(String.format("**概要**: %s\n", worldview.getSummary()));
-            }
-            if (worldview.getRules() != null && !worldview.getRules().isEmpty()) {
-                prompt.append("\n**必须遵守的规则**:\n");
-                worldview.getRules().forEach(rule -> prompt.append(String.format("- %s\n", rule)));
-            }
-            prompt.append("\n");
+            prompt.append(worldviewFragment(context.getWorldview()));
         }
 
         // ========== 5. 场景基本信息 ==========
         prompt.append("# 场景基本设定\n");
-        prompt.append(String.format("- **地点**: %s\n", request.getLocation()));
+        prompt.append("- **地点**: ").append(request.getLocation()).append('\n');
         if (request.getTimeOfDay() != null) {
-            prompt.append(String.format("- **时间**: %s\n", request.getTimeOfDay()));
+            prompt.append("- **时间**: ").append(request.getTimeOfDay()).append('\n');
         }
         if (request.getWeather() != null) {
-            prompt.append(String.format("- **天气**: %s\n", request.getWeather()));
+            prompt.append("- **天气**: ").append(request.getWeather()).append('\n');
         }
         if (request.getSeason() != null) {
-            prompt.append(String.format("- **季节**: %s\n", request.getSeason()));
+            prompt.append("- **季节**: ").append(request.getSeason()).append('\n');
         }
-        prompt.append(String.format("- **情绪基调**: %s\n", request.getMood()));
+        prompt.append("- **情绪基调**: ").append(request.getMood()).append('\n');
         if (request.getAtmosphere() != null) {
-            prompt.append(String.format("- **氛围**: %s\n", request.getAtmosphere()));
+            prompt.append("- **氛围**: ").append(request.getAtmosphere()).append('\n');
         }
-        prompt.append("\n");
+        prompt.append('\n');
 
         // ========== 6. 参与角色信息 ==========
         if (context.getCharacters() != null && !context.getCharacters().isEmpty()) {
             prompt.append("# 可能出现的角色\n");
             for (CharacterDTO character : context.getCharacters()) {
-                prompt.append(String.format("- %s", character.getName()));
-                if (character.getPersonalityTraits() != null && !character.getPersonalityTraits().isEmpty()) {
-                    prompt.append(String.format(" (%s)", String.join("、", character.getPersonalityTraits())));
-                }
-                prompt.append("\n");
+                prompt.append(characterLine(character));
             }
-            prompt.append("\n");
+            prompt.append('\n');
         }
 
         // ========== 7. 情节上下文 ==========
         if (request.getPlotContext() != null || request.getScenePurpose() != null) {
             prompt.append("# 情节背景\n");
             if (request.getScenePurpose() != null) {
-                prompt.append(String.format("**用途**: %s\n", request.getScenePurpose()));
+                prompt.append("**用途**: ").append(request.getScenePurpose()).append('\n');
             }
             if (request.getPlotContext() != null) {
-                prompt.append(String.format("**背景**: %s\n", request.getPlotContext()));
+                prompt.append("**背景**: ").append(request.getPlotContext()).append('\n');
             }
-            prompt.append("\n");
+            prompt.append('\n');
         }
 
         // ========== 8. 感官描写要求 ==========
-        prompt.append("# 感官描写指导\n");
-        prompt.append(sceneType.getSensoryGuidance()).append("\n");
+        prompt.append(SENSORY_GUIDANCE_FRAGMENTS.get(sceneType));
 
         List<String> sensoryRequirements = new ArrayList<>();
         if (Boolean.TRUE.equals(request.getIncludeVisualDetails())) {
@@ -327,7 +517,7 @@ public class SceneGenerationService {
         }
 
         if (!sensoryRequirements.isEmpty()) {
-            prompt.append(String.format("\n**重点感官**: %s\n\n", String.join("、", sensoryRequirements)));
+            prompt.append("\n**重点感官**: ").append(String.join("、", sensoryRequirements)).append("\n\n");
         }
 
         // ========== 9. 约束条件 ==========
@@ -337,54 +527,19 @@ public class SceneGenerationService {
 
             if (request.getMustInclude() != null && !request.getMustInclude().isEmpty()) {
                 prompt.append("**必须包含的元素**:\n");
-                request.getMustInclude().forEach(item -> prompt.append(String.format("- %s\n", item)));
-                prompt.append("\n");
+                request.getMustInclude().forEach(item -> prompt.append("- ").append(item).append('\n'));
+                prompt.append('\n');
             }
 
             if (request.getMustAvoid() != null && !request.getMustAvoid().isEmpty()) {
                 prompt.append("**必须避免**:\n");
-                request.getMustAvoid().forEach(item -> prompt.append(String.format("- %s\n", item)));
-                prompt.append("\n");
+                request.getMustAvoid().forEach(item -> prompt.append("- ").append(item).append('\n'));
+                prompt.append('\n');
             }
         }
 
-        // ========== 10. 输出格式 ==========
-        prompt.append("# 输出格式\n");
-        prompt.append("请以JSON格式输出场景设定，包含以下字段：\n\n");
-        prompt.append("```json\n");
-        prompt.append("{\n");
-        prompt.append("  \"name\": \"场景名称（简洁，5-15字）\",\n");
-        prompt.append("  \"locationType\": \"室内/室外/虚拟空间/混合\",\n");
-        prompt.append("  \"physicalDescription\": \"详细的物理环境描写（300-800字），包括空间布局、建筑结构、物品摆设、环境特征等\",\n");
-        prompt.append("  \"timeSetting\": \"具体时间设定（如'深夜23:00'、'黎明时分'）\",\n");
-        prompt.append("  \"atmosphere\": \"氛围和情绪基调的详细描述（100-200字）\",\n");
-        prompt.append("  \"weather\": \"天气状况（如'暴雨'、'晴朗'、'阴天'）\",\n");
-        prompt.append("  \"lighting\": \"光线情况（如'昏暗'、'明亮'、'忽明忽暗'）\",\n");
-        prompt.append("  \"availableProps\": {\n");
-        prompt.append("    \"道具名称1\": \"道具描述和用途\",\n");
-        prompt.append("    \"道具名称2\": \"道具描述和用途\"\n");
-        prompt.append("  },\n");
-        prompt.append("  \"environmentalElements\": [\"环境元素1\", \"环境元素2\", \"环境元素3\"],\n");
-        prompt.append("  \"sensoryDetails\": {\n");
-        prompt.append("    \"visual\": [\"视觉细节1\", \"视觉细节2\"],\n");
-        prompt.append("    \"auditory\": [\"听觉细节1\", \"听觉细节2\"],\n");
-        prompt.append("    \"olfactory\": [\"嗅觉细节\"],\n");
-        prompt.append("    \"tactile\": [\"触觉细节\"],\n");
-        prompt.append("    \"taste\": [\"味觉细节（如适用）\"]\n");
-        prompt.append("  },\n");
-        prompt.append("  \"sceneSummary\": \"场景概要（50-100字简述）\",\n");
-        prompt.append("  \"moodKeywords\": [\"情绪关键词1\", \"情绪关键词2\", \"情绪关键词3\"]\n");
-        prompt.append("}\n");
-        prompt.append("```\n\n");
-
-        // ========== 11. 质量要求 ==========
-        prompt.append("# 质量标准\n");
-        prompt.append("1. **细节真实**: 物理描写要具体可感，避免空洞抽象\n");
-        prompt.append("2. **氛围连贯**: 各要素相互呼应，营造统一氛围\n");
-        prompt.append("3. **感官丰富**: 充分调动多种感官描写\n");
-        prompt.append("4. **道具合理**: 可用道具符合场景设定和时代背景\n");
-        prompt.append("5. **可用性强**: 环境元素可以用于故事情节展开\n");
-
+        // ========== 10-11. 输出格式、质量要求 ==========
+        prompt.append(OUTPUT_FORMAT_FRAGMENT);
         if (context.getWorldview() != null) {
             prompt.append("6. **世界观一致**: 严格遵守世界观规则\n");
         }
@@ -393,103 +548,163 @@ public class SceneGenerationService {
     }
 
     /**
-     * 解析AI响应
+     * 世界观背景片段，按 世界观ID:更新时间 缓存
      */
-    private SceneDTO parseSceneResponse(String aiResponse, SceneGenerationRequest request) {
-        try {
-            // 清理Markdown代码块标记
-            String cleanJson = aiResponse
-                    .replaceAll("```json\\s*", "")
-                    .replaceAll("```\\s*$", "")
-                    .trim();
-
-            JsonNode root = objectMapper.readTree(cleanJson);
-
-            SceneDTO sceneDTO = new SceneDTO();
-
-            // 基础字段
-            if (root.has("name")) {
-                sceneDTO.setName(root.get("name").asText());
-            } else {
-                sceneDTO.setName(generateDefaultName(request));
-            }
-
-            if (root.has("locationType")) {
-                sceneDTO.setLocationType(root.get("locationType").asText());
-            }
+    private String worldviewFragment(WorldviewDTO worldview) {
+        if (worldview.getId() == null) {
+            return renderWorldviewFragment(worldview);
+        }
+        return worldviewFragments.get(worldview.getId() + ":" + worldview.getUpdatedAt(),
+                key -> renderWorldviewFragment(worldview));
+    }
 
-            // 场景设定
-            if (root.has("physicalDescription")) {
-                sceneDTO.setPhysicalDescription(root.get("physicalDescription").asText());
-            }
+    private static String renderWorldviewFragment(WorldviewDTO worldview) {
+        StringBuilder fragment = new StringBuilder();
+        fragment.append("# 世界观背景\n");
+        fragment.append(String.format("**世界观**: %s\n", worldview.getName()));
+        if (worldview.getSummary() != null) {
+            fragment.append(String.format("**概要**: %s\n", worldview.getSummary()));
+        }
+        if (worldview.getRules() != null && !worldview.getRules().isEmpty()) {
+            fragment.append("\n**必须遵守的规则**:\n");
+            worldview.getRules().forEach(rule -> fragment.append(String.format("- %s\n", rule)));
+        }
+        fragment.append("\n");
+        return fragment.toString();
+    }
 
-            if (root.has("timeSetting")) {
-                sceneDTO.setTimeSetting(root.get("timeSetting").asText());
-            } else if (request.getTimeOfDay() != null) {
-                sceneDTO.setTimeSetting(request.getTimeOfDay());
-            }
+    /**
+     * 角色列表中的一行，按 角色ID:更新时间 缓存
+     */
+    private String characterLine(CharacterDTO character) {
+        if (character.getId() == null) {
+            return renderCharacterLine(character);
+        }
+        return characterLines.get(character.getId() + ":" + character.getUpdatedAt(),
+                key -> renderCharacterLine(character));
+    }
 
-            if (root.has("atmosphere")) {
-                sceneDTO.setAtmosphere(root.get("atmosphere").asText());
-            } else if (request.getAtmosphere() != null) {
-                sceneDTO.setAtmosphere(request.getAtmosphere());
-            }
+    private static String renderCharacterLine(CharacterDTO character) {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("- %s", character.getName()));
+        if (character.getPersonalityTraits() != null && !character.getPersonalityTraits().isEmpty()) {
+            line.append(String.format(" (%s)", String.join("、", character.getPersonalityTraits())));
+        }
+        line.append("\n");
+        return line.toString();
+    }
 
-            if (root.has("weather")) {
-                sceneDTO.setWeather(root.get("weather").asText());
-            } else if (request.getWeather() != null) {
-                sceneDTO.setWeather(request.getWeather());
-            }
+    /**
+     * 渲染提示词开头：角色定位、任务说明、场景类型特征与设计要求
+     */
+    private static String renderSceneTypeFragment(SceneType sceneType) {
+        StringBuilder fragment = new StringBuilder();
 
-            if (root.has("lighting")) {
-                sceneDTO.setLighting(root.get("lighting").asText());
-            }
+        // ========== 1. 角色定位 ==========
+        fragment.append("# 角色定位\n");
+        fragment.append("你是一位专业的场景设计师，擅长通过细腻的感官描写营造氛围，")
+                .append("创造出立体、真实、引人入胜的场景环境。\n\n");
 
-            // 环境元素
-            if (root.has("availableProps")) {
-                Map<String, Object> props = objectMapper.convertValue(
-                        root.get("availableProps"),
-                        objectMapper.getTypeFactory().constructMapType(Map.class, String.class, Object.class)
-                );
-                sceneDTO.setAvailableProps(props);
-            }
+        // ========== 2. 任务说明 ==========
+        fragment.append("# 任务\n");
+        fragment.append(String.format("请设计一个%s类型的场景。\n\n", sceneType.getDisplayName()));
 
-            if (root.has("environmentalElements")) {
-                List<String> elements = objectMapper.convertValue(
-                        root.get("environmentalElements"),
-                        objectMapper.getTypeFactory().constructCollectionType(List.class, String.class)
-                );
-                sceneDTO.setEnvironmentalElements(elements);
-            }
+        // ========== 3. 场景类型指导 ==========
+        fragment.append("# 场景类型特征\n");
+        fragment.append(String.format("**核心特征**: %s\n", sceneType.getFeatures()));
+        fragment.append(String.format("**氛围关键词**: %s\n", sceneType.getAtmosphereKeywords()));
+        fragment.append(String.format("**感官侧重**: %s\n\n", sceneType.getSensoryFocus()));
+
+        fragment.append("## 设计要求\n");
+        fragment.append(sceneType.getGenerationRequirements()).append("\n");
+        return fragment.toString();
+    }
 
-            if (root.has("sensoryDetails")) {
-                Map<String, Object> sensory = objectMapper.convertValue(
-                        root.get("sensoryDetails"),
-                        objectMapper.getTypeFactory().constructMapType(Map.class, String.class, Object.class)
-                );
-                sceneDTO.setSensoryDetails(sensory);
-            }
+    /**
+     * 渲染感官描写指导的固定部分
+     */
+    private static String renderSensoryGuidanceFragment(SceneType sceneType) {
+        return "# 感官描写指导\n" + sceneType.getSensoryGuidance() + "\n";
+    }
 
-            // AI辅助
-            if (root.has("sceneSummary")) {
-                sceneDTO.setSceneSummary(root.get("sceneSummary").asText());
-            }
+    /**
+     * 渲染输出格式说明和质量标准（世界观一致性一条按需追加）
+     */
+    private static String renderOutputFormatFragment() {
+        StringBuilder fragment = new StringBuilder();
 
-            if (root.has("moodKeywords")) {
-                List<String> keywords = objectMapper.convertValue(
-                        root.get("moodKeywords"),
-                        objectMapper.getTypeFactory().constructCollectionType(List.class, String.class)
-                );
-                sceneDTO.setMoodKeywords(keywords);
-            }
+        // ========== 10. 输出格式 ==========
+        fragment.append("# 输出格式\n");
+        fragment.append("请以JSON格式输出场景设定，包含以下字段：\n\n");
+        fragment.append("```json\n");
+        fragment.append("{\n");
+        fragment.append("  \"name\": \"场景名称（简洁，5-15字）\",\n");
+        fragment.append("  \"locationType\": \"室内/室外/虚拟空间/混合\",\n");
+        fragment.append("  \"physicalDescription\": \"详细的物理环境描写（300-800字），包括空间布局、建筑结构、物品摆设、环境特征等\",\n");
+        fragment.append("  \"timeSetting\": \"具体时间设定（如'深夜23:00'、'黎明时分'）\",\n");
+        fragment.append("  \"atmosphere\": \"氛围和情绪基调的详细描述（100-200字）\",\n");
+        fragment.append("  \"weather\": \"天气状况（如'暴雨'、'晴朗'、'阴天'）\",\n");
+        fragment.append("  \"lighting\": \"光线情况（如'昏暗'、'明亮'、'忽明忽暗'）\",\n");
+        fragment.append("  \"availableProps\": {\n");
+        fragment.append("    \"道具名称1\": \"道具描述和用途\",\n");
+        fragment.append("    \"道具名称2\": \"道具描述和用途\"\n");
+        fragment.append("  },\n");
+        fragment.append("  \"environmentalElements\": [\"环境元素1\", \"环境元素2\", \"环境元素3\"],\n");
+        fragment.append("  \"sensoryDetails\": {\n");
+        fragment.append("    \"visual\": [\"视觉细节1\", \"视觉细节2\"],\n");
+        fragment.append("    \"auditory\": [\"听觉细节1\", \"听觉细节2\"],\n");
+        fragment.append("    \"olfactory\": [\"嗅觉细节\"],\n");
+        fragment.append("    \"tactile\": [\"触觉细节\"],\n");
+        fragment.append("    \"taste\": [\"味觉细节（如适用）\"]\n");
+        fragment.append("  },\n");
+        fragment.append("  \"sceneSummary\": \"场景概要（50-100字简述）\",\n");
+        fragment.append("  \"moodKeywords\": [\"情绪关键词1\", \"情绪关键词2\", \"情绪关键词3\"]\n");
+        fragment.append("}\n");
+        fragment.append("```\n\n");
 
-            return sceneDTO;
+        // ========== 11. 质量要求 ==========
+        fragment.append("# 质量标准\n");
+        fragment.append("1. **细节真实**: 物理描写要具体可感，避免空洞抽象\n");
+        fragment.append("2. **氛围连贯**: 各要素相互呼应，营造统一氛围\n");
+        fragment.append("3. **感官丰富**: 充分调动多种感官描写\n");
+        fragment.append("4. **道具合理**: 可用道具符合场景设定和时代背景\n");
+        fragment.append("5. **可用性强**: 环境元素可以用于故事情节展开\n");
+        return fragment.toString();
+    }
 
-        } catch (Exception e) {
-            log.error("解析场景响应失败", e);
+    /**
+     * 解析AI响应
+     *
+     * @param session    解析会话（流式生成时已接收过输出）
+     * @param aiResponse 完整的AI响应
+     * @param request    原始请求（用于补充默认值）
+     */
+    private SceneDTO parseSceneResponse(StructuredOutputParser.Session<SceneDTO> session, String aiResponse,
+                                        SceneGenerationRequest request) {
+        SceneDTO sceneDTO;
+        try {
+            session.accept(aiResponse);
+            sceneDTO = session.finish();
+        } catch (IllegalArgumentException e) {
+            log.error("解析场景响应失败: {}", e.getMessage());
             // 返回fallback
             return createFallbackScene(request, aiResponse);
         }
+
+        // 模型未给出的字段使用请求中的设定
+        if (sceneDTO.getName() == null) {
+            sceneDTO.setName(generateDefaultName(request));
+        }
+        if (sceneDTO.getTimeSetting() == null) {
+            sceneDTO.setTimeSetting(request.getTimeOfDay());
+        }
+        if (sceneDTO.getAtmosphere() == null) {
+            sceneDTO.setAtmosphere(request.getAtmosphere());
+        }
+        if (sceneDTO.getWeather() == null) {
+            sceneDTO.setWeather(request.getWeather());
+        }
+        return sceneDTO;
     }
 
     /**
@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.SceneDTO;
 import com.linyuan.storyforge.entity.Project;
 import com.linyuan.storyforge.entity.Scene;
@@ -30,14 +33,14 @@ public class SceneService {
     private final WorldviewRepository worldviewRepository;
 
     /**
-     * Get all scenes
+     * Get a page of scenes in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<SceneDTO> getAllScenes() {
-        log.debug("Fetching all scenes");
-        return sceneRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<SceneDTO> getScenesPage(String cursor, Integer size) {
+        log.debug("Fetching scenes page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<Scene> rows = sceneRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -187,8 +190,8 @@ public class SceneService {
     private SceneDTO convertToDTO(Scene scene) {
         SceneDTO dto = new SceneDTO();
         dto.setId(scene.getId());
-        dto.setProjectId(scene.getProject().getId());
-        dto.setWorldviewId(scene.getWorldview() != null ? scene.getWorldview().getId() : null);
+        dto.setProjectId(EntityIds.idOf(scene.getProject()));
+        dto.setWorldviewId(EntityIds.idOf(scene.getWorldview()));
         dto.setName(scene.getName());
         dto.setLocationType(scene.getLocationType());
         dto.setPhysicalDescription(scene.getPhysicalDescription());
@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.StoryChapterDTO;
 import com.linyuan.storyforge.entity.Project;
 import com.linyuan.storyforge.entity.Scene;
@@ -14,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -28,16 +32,17 @@ public class StoryChapterService {
     private final StoryChapterRepository chapterRepository;
     private final ProjectRepository projectRepository;
     private final SceneRepository sceneRepository;
+    private final ChapterVersionService versionService;
 
     /**
-     * Get all chapters
+     * Get a page of chapters in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<StoryChapterDTO> getAllChapters() {
-        log.debug("Fetching all chapters");
-        return chapterRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<StoryChapterDTO> getChaptersPage(String cursor, Integer size) {
+        log.debug("Fetching chapters page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<StoryChapter> rows = chapterRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -96,6 +101,13 @@ public class StoryChapterService {
         StoryChapter existingChapter = chapterRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("StoryChapter", "id", id));
 
+        // Archived deltas are anchored on the current content, re-encode them before it changes
+        if (!Objects.equals(existingChapter.getGeneratedContent(), chapterDTO.getGeneratedContent()) ||
+                !Objects.equals(existingChapter.getVersion(), chapterDTO.getVersion()) ||
+                !Objects.equals(existingChapter.getChapterNumber(), chapterDTO.getChapterNumber())) {
+            versionService.detachFromHead(existingChapter);
+        }
+
         // Update fields
         existingChapter.setChapterNumber(chapterDTO.getChapterNumber());
         existingChapter.setTitle(chapterDTO.getTitle());
@@ -127,10 +139,10 @@ public class StoryChapterService {
     @Transactional
     public void deleteChapter(UUID id) {
         log.info("Deleting chapter with id: {}", id);
-        if (!chapterRepository.existsById(id)) {
-            throw new ResourceNotFoundException("StoryChapter", "id", id);
-        }
-        chapterRepository.deleteById(id);
+        StoryChapter chapter = chapterRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("StoryChapter", "id", id));
+        versionService.detachFromHead(chapter);
+        chapterRepository.delete(chapter);
     }
 
     /**
@@ -148,13 +160,13 @@ public class StoryChapterService {
     StoryChapterDTO convertToDTO(StoryChapter chapter) {
         return StoryChapterDTO.builder()
                 .id(chapter.getId())
-                .projectId(chapter.getProject().getId())
+                .projectId(EntityIds.idOf(chapter.getProject()))
                 .chapterNumber(chapter.getChapterNumber())
                 .title(chapter.getTitle())
                 .outline(chapter.getOutline())
                 .mainConflict(chapter.getMainConflict())
                 .participatingCharacters(chapter.getParticipatingCharacters())
-                .mainSceneId(chapter.getMainScene() != null ? chapter.getMainScene().getId() : null)
+                .mainSceneId(EntityIds.idOf(chapter.getMainScene()))
                 .targetWordCount(chapter.getTargetWordCount())
                 .tone(chapter.getTone())
                 .pacing(chapter.getPacing())
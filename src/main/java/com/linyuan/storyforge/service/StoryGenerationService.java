@@ -32,6 +32,7 @@ public class StoryGenerationService {
     private final MemoryIntegrationService memoryService;
     private final GenerationHistoryEnhancedService historyService;
     private final StoryChapterService chapterService;
+    private final ChapterVersionService versionService;
     private final StoryChapterRepository chapterRepository;
     private final ProjectRepository projectRepository;
     private final SceneRepository sceneRepository;
@@ -65,29 +66,9 @@ public class StoryGenerationService {
                             request.getChapterNumber()));
         }
 
-        // 3. 加载前文上下文（如果需要）
-        String previousContent = null;
-        if (Boolean.TRUE.equals(request.getLoadPreviousContext()) && request.getChapterNumber() > 1) {
-            previousContent = loadPreviousChaptersContext(
-                    request.getProjectId(),
-                    request.getChapterNumber() - 1,
-                    request.getPreviousContextSize()
-            );
-            log.info("加载前文上下文: {} 个章节", request.getPreviousContextSize());
-        }
-
-        // 4. 转换为 GenerationRequest
+        // 3-5. 加载前文并调用生成管道
         GenerationRequest genRequest = request.toGenerationRequest();
-        genRequest.setPreviousContent(previousContent);
-
-        // 5. 调用生成管道
-        log.info("调用生成管道...");
-        GenerationResult result = generationPipeline.execute(genRequest);
-
-        if (!result.isSuccess()) {
-            log.error("生成失败: {}", result.getErrorMessage());
-            throw new RuntimeException("章节生成失败: " + result.getErrorMessage());
-        }
+        GenerationResult result = runPipeline(request, genRequest);
 
         // 6. 创建 StoryChapter 实体
         StoryChapter chapter = createChapterEntity(request, result);
@@ -137,12 +118,13 @@ public class StoryGenerationService {
         // 2. 构建新的生成请求（基于原章节）
         ChapterGenerationRequest request = buildRequestFromChapter(originalChapter, options);
 
-        // 3. 如果保留原版本，设置新版本号
+        // 3. 如果保留原版本，原版本压缩归档，章节记录原地更新为新版本
         if (Boolean.TRUE.equals(options.getKeepOriginal())) {
             int newVersion = options.getNewVersion() != null ?
                     options.getNewVersion() :
                     originalChapter.getVersion() + 1;
             request.setSaveAsVersion(newVersion);
+            return regenerateInPlace(originalChapter, request);
         }
 
         // 4. 生成新章节
@@ -270,38 +252,106 @@ public class StoryGenerationService {
     }
 
     /**
-     * 获取章节的所有版本
+     * 获取章节的所有版本（仅元数据，不解压正文）
      *
      * @param projectId     项目ID
      * @param chapterNumber 章节编号
-     * @return 所有版本的章节列表
+     * @return 所有版本的元数据列表
      */
     @Transactional(readOnly = true)
-    public List<StoryChapterDTO> getChapterVersions(UUID projectId, int chapterNumber) {
+    public List<ChapterVersionDTO> getChapterVersions(UUID projectId, int chapterNumber) {
         log.debug("获取章节所有版本 - 项目: {}, 章节号: {}", projectId, chapterNumber);
+        return versionService.listVersions(projectId, chapterNumber);
+    }
+
+    /**
+     * 获取章节指定版本的完整内容
+     * 当前版本直接读取，历史版本按需解压重建
+     *
+     * @param projectId     项目ID
+     * @param chapterNumber 章节编号
+     * @param version       版本号
+     * @return 指定版本的章节
+     */
+    @Transactional(readOnly = true)
+    public StoryChapterDTO getChapterVersion(UUID projectId, int chapterNumber, int version) {
+        log.debug("获取章节版本 - 项目: {}, 章节号: {}, 版本: {}", projectId, chapterNumber, version);
 
-        return chapterRepository.findByProjectIdOrderByChapterNumberAsc(projectId).stream()
-                .filter(c -> c.getChapterNumber().equals(chapterNumber))
-                .sorted(Comparator.comparing(StoryChapter::getVersion))
+        return chapterRepository.findFirstByProjectIdAndChapterNumberAndVersion(projectId, chapterNumber, version)
                 .map(chapterService::convertToDTO)
-                .collect(Collectors.toList());
+                .orElseGet(() -> versionService.reconstruct(projectId, chapterNumber, version));
     }
 
     // ========== 私有辅助方法 ==========
 
     /**
-     * 创建 StoryChapter 实体
+     * 加载前文上下文并调用生成管道
      */
-    private StoryChapter createChapterEntity(ChapterGenerationRequest request, GenerationResult result) {
-        Project project = projectRepository.findById(request.getProjectId())
-                .orElseThrow(() -> new ResourceNotFoundException("Project", "id", request.getProjectId()));
+    private GenerationResult runPipeline(ChapterGenerationRequest request, GenerationRequest genRequest) {
+        // 加载前文上下文（如果需要）
+        if (Boolean.TRUE.equals(request.getLoadPreviousContext()) && request.getChapterNumber() > 1) {
+            String previousContent = loadPreviousChaptersContext(
+                    request.getProjectId(),
+                    request.getChapterNumber() - 1,
+                    request.getPreviousContextSize()
+            );
+            genRequest.setPreviousContent(previousContent);
+            log.info("加载前文上下文: {} 个章节", request.getPreviousContextSize());
+        }
 
-        Scene mainScene = null;
-        if (request.getMainSceneId() != null) {
-            mainScene = sceneRepository.findById(request.getMainSceneId()).orElse(null);
+        // 调用生成管道
+        log.info("调用生成管道...");
+        GenerationResult result = generationPipeline.execute(genRequest);
+
+        if (!result.isSuccess()) {
+            log.error("生成失败: {}", result.getErrorMessage());
+            throw new RuntimeException("章节生成失败: " + result.getErrorMessage());
         }
+        return result;
+    }
+
+    /**
+     * 原地重新生成：旧版本正文压缩归档，章节记录更新为新版本
+     */
+    private StoryChapterDTO regenerateInPlace(StoryChapter chapter, ChapterGenerationRequest request) {
+        GenerationRequest genRequest = request.toGenerationRequest();
+        GenerationResult result = runPipeline(request, genRequest);
+
+        int newVersion = request.getSaveAsVersion();
+        versionService.archive(chapter, result.getGeneratedContent(), newVersion);
+
+        chapter.setTitle(request.getTitle());
+        chapter.setOutline(request.getOutline());
+        chapter.setMainConflict(request.getMainConflict());
+        chapter.setParticipatingCharacters(request.getCharacterIds());
+        chapter.setTargetWordCount(request.getTargetWordCount());
+        chapter.setTone(request.getTone());
+        chapter.setPacing(request.getPacing());
+        chapter.setGeneratedContent(result.getGeneratedContent());
+        chapter.setGenerationParams(buildGenerationParams(request, result));
+        chapter.setVersion(newVersion);
+        chapter.setStatus(request.getStatus());
+        chapter = chapterRepository.save(chapter);
+        log.info("章节 {} 已更新为版本 {}", chapter.getId(), newVersion);
+
+        UUID historyId = historyService.recordGeneration(
+                result,
+                genRequest,
+                result.getGeneratedContent(),
+                chapter.getId(),
+                "chapter"
+        );
+        log.info("生成历史记录成功: {}", historyId);
 
-        // 构建生成参数记录
+        StoryChapterDTO dto = chapterService.convertToDTO(chapter);
+        dto.setGenerationResult(result);
+        return dto;
+    }
+
+    /**
+     * 构建生成参数记录
+     */
+    private Map<String, Object> buildGenerationParams(ChapterGenerationRequest request, GenerationResult result) {
         Map<String, Object> generationParams = new HashMap<>();
         generationParams.put("temperature", request.getTemperature());
         generationParams.put("maxTokens", request.getMaxTokens());
@@ -309,6 +359,20 @@ public class StoryGenerationService {
         generationParams.put("passedValidation", result.isPassedAllValidation());
         generationParams.put("retryCount", result.getRetryCount());
         generationParams.put("qualityScore", result.getLowestConsistencyScore());
+        return generationParams;
+    }
+
+    /**
+     * 创建 StoryChapter 实体
+     */
+    private StoryChapter createChapterEntity(ChapterGenerationRequest request, GenerationResult result) {
+        Project project = projectRepository.findById(request.getProjectId())
+                .orElseThrow(() -> new ResourceNotFoundException("Project", "id", request.getProjectId()));
+
+        Scene mainScene = null;
+        if (request.getMainSceneId() != null) {
+            mainScene = sceneRepository.findById(request.getMainSceneId()).orElse(null);
+        }
 
         int version = request.getSaveAsVersion() != null ?
                 request.getSaveAsVersion() : 1;
@@ -325,7 +389,7 @@ public class StoryGenerationService {
                 .tone(request.getTone())
                 .pacing(request.getPacing())
                 .generatedContent(result.getGeneratedContent())
-                .generationParams(generationParams)
+                .generationParams(buildGenerationParams(request, result))
                 .version(version)
                 .status(request.getStatus())
                 .build();
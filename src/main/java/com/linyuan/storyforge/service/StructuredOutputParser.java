@@ -0,0 +1,356 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * StructuredOutputParser - AI 结构化输出（JSON）的增量解析
+ * <p>
+ * 基于 Jackson 非阻塞 JsonParser，输出边到达边解析：跳过根对象之前的文本（如 Markdown 代码块标记），
+ * 根对象闭合后忽略其余内容；声明过的字段路径只把该值的 token 复制到 TokenBuffer，
+ * 值完整后直接绑定为目标类型并写入 DTO，不构建整棵 JsonNode 树，也不做正则清理和二次 convertValue
+ * <p>
+ * 解析器定义是无状态的，可作为常量共享；每次解析通过 {@link #open} 创建独立的会话
+ *
+ * @param <T> 目标 DTO 类型
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+public final class StructuredOutputParser<T> {
+
+    public static final TypeReference<Map<String, Object>> OBJECT_MAP = new TypeReference<>() {
+    };
+    public static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {
+    };
+
+    private final Map<String, Binding<T>> bindings;
+
+    private StructuredOutputParser(Map<String, Binding<T>> bindings) {
+        this.bindings = bindings;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 一次性解析完整输出
+     *
+     * @param mapper  ObjectMapper
+     * @param content AI 输出
+     * @param target  目标对象工厂
+     * @return 绑定后的对象
+     * @throws IllegalArgumentException 输出中没有完整的 JSON 对象或 JSON 格式错误
+     */
+    public T parse(ObjectMapper mapper, String content, Supplier<T> target) {
+        Session<T> session = open(mapper, target.get(), null);
+        session.accept(content);
+        return session.finish();
+    }
+
+    /**
+     * 打开增量解析会话
+     *
+     * @param mapper   ObjectMapper
+     * @param target   目标对象（字段解析完成后立即写入）
+     * @param listener 字段解析完成时的回调（字段名, 值），可为 null
+     * @return 解析会话
+     */
+    public Session<T> open(ObjectMapper mapper, T target, BiConsumer<String, Object> listener) {
+        return new Session<>(this, mapper, target, listener);
+    }
+
+    /**
+     * 字段绑定
+     * 同一绑定可以声明多个路径（字段别名），按输出中先出现的路径生效
+     *
+     * @param name   字段名（回调中使用，取第一个路径）
+     * @param type   目标类型
+     * @param setter 写入目标对象
+     */
+    private record Binding<T>(String name, Type type, BiConsumer<T, Object> setter) {
+    }
+
+    public static final class Builder<T> {
+
+        private final Map<String, Binding<T>> bindings = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 绑定字段
+         *
+         * @param path   字段路径，嵌套字段用 "." 连接（如 basicInfo.name）
+         * @param type   值类型
+         * @param setter 写入目标对象
+         */
+        public <V> Builder<T> field(String path, Class<V> type, BiConsumer<T, V> setter) {
+            return bind(List.of(path), type, setter);
+        }
+
+        public <V> Builder<T> field(String path, TypeReference<V> type, BiConsumer<T, V> setter) {
+            return bind(List.of(path), type.getType(), setter);
+        }
+
+        /**
+         * 绑定带别名的字段（模型可能使用不同的字段名）
+         *
+         * @param paths  字段路径及其别名
+         * @param type   值类型
+         * @param setter 写入目标对象
+         */
+        public <V> Builder<T> field(List<String> paths, Class<V> type, BiConsumer<T, V> setter) {
+            return bind(paths, type, setter);
+        }
+
+        public <V> Builder<T> field(List<String> paths, TypeReference<V> type, BiConsumer<T, V> setter) {
+            return bind(paths, type.getType(), setter);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> Builder<T> bind(List<String> paths, Type type, BiConsumer<T, V> setter) {
+            Binding<T> binding = new Binding<>(paths.get(0), type, (target, value) -> setter.accept(target, (V) value));
+            for (String path : paths) {
+                if (bindings.putIfAbsent(path, binding) != null) {
+                    throw new IllegalArgumentException("字段路径重复绑定: " + path);
+                }
+            }
+            return this;
+        }
+
+        public StructuredOutputParser<T> build() {
+            return new StructuredOutputParser<>(Map.copyOf(bindings));
+        }
+    }
+
+    /**
+     * 解析会话（非线程安全，一次输出对应一个会话）
+     */
+    public static final class Session<T> {
+
+        /**
+         * 路径栈中表示"不需要解析的子树"（未绑定字段下的数组或对象）
+         */
+        private static final String IGNORED = "\u0000";
+
+        private final StructuredOutputParser<T> definition;
+        private final ObjectMapper mapper;
+        private final T target;
+        private final BiConsumer<String, Object> listener;
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+
+        private final Deque<String> path = new ArrayDeque<>();
+        private final Set<Binding<T>> applied = new HashSet<>();
+        private String fieldName;
+
+        private TokenBuffer capture;
+        private Binding<T> captureBinding;
+        private int captureDepth;
+
+        private int consumed;
+        private boolean started;
+        private boolean complete;
+        private IOException failure;
+
+        private Session(StructuredOutputParser<T> definition, ObjectMapper mapper, T target,
+                        BiConsumer<String, Object> listener) {
+            this.definition = definition;
+            this.mapper = mapper;
+            this.target = target;
+            this.listener = listener;
+            try {
+                this.parser = mapper.getFactory().createNonBlockingByteArrayParser();
+            } catch (IOException e) {
+                throw new IllegalStateException("无法创建非阻塞 JSON 解析器", e);
+            }
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        /**
+         * 接收目前为止的完整输出，只解析新增部分
+         * 可直接用作流式生成的进度回调：根对象闭合后返回 false，不再需要后续输出
+         *
+         * @param output 目前为止的完整输出
+         * @return 是否还需要更多输出
+         */
+        public boolean accept(CharSequence output) {
+            if (complete || failure != null) {
+                return false;
+            }
+            int end = output.length();
+            // 代理对被拆在两次回调之间时，等下一次再解析
+            if (end > consumed && Character.isHighSurrogate(output.charAt(end - 1))) {
+                end--;
+            }
+            if (end <= consumed) {
+                return true;
+            }
+
+            int from = consumed;
+            consumed = end;
+            if (!started) {
+                from = indexOf(output, '{', from, end);
+                if (from < 0) {
+                    return true;
+                }
+                started = true;
+            }
+
+            byte[] bytes = output.subSequence(from, end).toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                feeder.feedInput(bytes, 0, bytes.length);
+                drain();
+            } catch (IOException e) {
+                failure = e;
+                log.debug("结构化输出解析失败: {}", e.getMessage());
+                return false;
+            }
+            return !complete;
+        }
+
+        /**
+         * 根对象是否已完整解析
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * 结束解析
+         *
+         * @return 绑定后的对象
+         * @throws IllegalArgumentException 输出中没有完整的 JSON 对象或 JSON 格式错误
+         */
+        public T finish() {
+            if (failure != null) {
+                throw new IllegalArgumentException("AI输出的JSON格式错误: " + failure.getMessage(), failure);
+            }
+            if (!complete) {
+                throw new IllegalArgumentException(started ? "AI输出的JSON不完整" : "AI输出中没有JSON对象");
+            }
+            return target;
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while (!complete && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+                if (token == null) {
+                    return;
+                }
+                if (capture != null) {
+                    continueCapture(token);
+                } else {
+                    handle(token);
+                }
+            }
+        }
+
+        private void handle(JsonToken token) throws IOException {
+            if (path.isEmpty()) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "AI输出的根节点不是JSON对象");
+                }
+                path.push("");
+                return;
+            }
+
+            switch (token) {
+                case FIELD_NAME -> fieldName = parser.currentName();
+                case END_OBJECT, END_ARRAY -> {
+                    path.pop();
+                    if (path.isEmpty()) {
+                        complete = true;
+                    }
+                }
+                default -> value(token);
+            }
+        }
+
+        /**
+         * 处理字段值：已绑定的字段开始捕获，未绑定的对象继续向下查找，其余跳过
+         */
+        private void value(JsonToken token) throws IOException {
+            String parent = path.peek();
+            String current = IGNORED.equals(parent) || fieldName == null
+                    ? IGNORED
+                    : parent.isEmpty() ? fieldName : parent + "." + fieldName;
+            fieldName = null;
+
+            Binding<T> binding = IGNORED.equals(current) ? null : definition.bindings.get(current);
+            if (binding != null && !applied.contains(binding)) {
+                capture = new TokenBuffer(parser);
+                captureBinding = binding;
+                captureDepth = 0;
+                continueCapture(token);
+                return;
+            }
+
+            if (token == JsonToken.START_OBJECT) {
+                path.push(binding == null ? current : IGNORED);
+            } else if (token == JsonToken.START_ARRAY) {
+                path.push(IGNORED);
+            }
+        }
+
+        private void continueCapture(JsonToken token) throws IOException {
+            capture.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                captureDepth++;
+            } else if (token.isStructEnd()) {
+                captureDepth--;
+            }
+            if (captureDepth == 0 && token != JsonToken.FIELD_NAME) {
+                bind();
+            }
+        }
+
+        private void bind() {
+            Binding<T> binding = captureBinding;
+            TokenBuffer buffer = capture;
+            capture = null;
+            captureBinding = null;
+            applied.add(binding);
+
+            Object value;
+            try (JsonParser valueParser = buffer.asParser(mapper)) {
+                value = mapper.readValue(valueParser, mapper.getTypeFactory().constructType(binding.type()));
+            } catch (IOException e) {
+                // 单个字段类型不符时跳过该字段，不影响其余字段
+                log.debug("字段 {} 绑定失败，已跳过: {}", binding.name(), e.getMessage());
+                return;
+            }
+            if (value == null) {
+                return;
+            }
+            binding.setter().accept(target, value);
+            if (listener != null) {
+                listener.accept(binding.name(), value);
+            }
+        }
+
+        private static int indexOf(CharSequence text, char c, int from, int end) {
+            for (int i = from; i < end; i++) {
+                if (text.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
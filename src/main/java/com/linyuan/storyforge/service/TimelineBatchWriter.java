@@ -0,0 +1,149 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linyuan.storyforge.dto.TimelineDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * TimelineBatchWriter - 时间线事件批量写入
+ * 使用 JDBC 批量 INSERT 绕过逐条 save；每个分块独立提交，
+ * 分块失败时逐条重试，只把真正写不进去的行作为失败返回
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class TimelineBatchWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO timelines (id, project_id, character_id, event_time, relative_time, event_type,
+                event_description, participating_characters, location_id, emotional_changes, memory_importance,
+                consequences, character_growth, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?::jsonb, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxBatchSize;
+
+    public TimelineBatchWriter(JdbcTemplate jdbcTemplate,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${storyforge.timeline.batch-chunk-size:500}") int chunkSize,
+                               @Value("${storyforge.timeline.batch-max-size:5000}") int maxBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 单次批量导入允许的最大事件数
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 批量写入已校验的事件；调用前需已分配 id 和时间戳
+     *
+     * @param rows 待写入的事件（键为请求下标）
+     * @return 写入失败的行（请求下标 -> 错误信息）
+     */
+    public Map<Integer, String> insert(SortedMap<Integer, TimelineDTO> rows) {
+        Map<Integer, String> failures = new LinkedHashMap<>();
+        List<Map.Entry<Integer, TimelineDTO>> entries = new ArrayList<>(rows.entrySet());
+        for (int from = 0; from < entries.size(); from += chunkSize) {
+            writeChunk(entries.subList(from, Math.min(from + chunkSize, entries.size())), failures);
+        }
+        log.info("批量写入时间线事件 - 成功: {}, 失败: {}", rows.size() - failures.size(), failures.size());
+        return failures;
+    }
+
+    private void writeChunk(List<Map.Entry<Integer, TimelineDTO>> chunk, Map<Integer, String> failures) {
+        try {
+            transactionTemplate.executeWithoutResult(tx ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, chunk, chunk.size(), (ps, entry) -> bind(ps, entry.getValue())));
+        } catch (DataAccessException | IllegalArgumentException e) {
+            if (chunk.size() == 1) {
+                failures.put(chunk.get(0).getKey(), rootMessage(e));
+                return;
+            }
+            log.warn("时间线分块写入失败，逐条重试: {}", e.getMessage());
+            for (Map.Entry<Integer, TimelineDTO> entry : chunk) {
+                writeChunk(List.of(entry), failures);
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, TimelineDTO dto) throws SQLException {
+        ps.setObject(1, dto.getId());
+        ps.setObject(2, dto.getProjectId());
+        ps.setObject(3, dto.getCharacterId());
+        ps.setTimestamp(4, toTimestamp(dto.getEventTime()));
+        ps.setString(5, dto.getRelativeTime());
+        ps.setString(6, dto.getEventType());
+        ps.setString(7, dto.getEventDescription());
+        if (dto.getParticipatingCharacters() != null) {
+            ps.setArray(8, ps.getConnection().createArrayOf("uuid", dto.getParticipatingCharacters().toArray()));
+        } else {
+            ps.setNull(8, Types.ARRAY);
+        }
+        ps.setObject(9, dto.getLocationId());
+        ps.setString(10, toJson(dto.getEmotionalChanges()));
+        if (dto.getMemoryImportance() != null) {
+            ps.setInt(11, dto.getMemoryImportance());
+        } else {
+            ps.setNull(11, Types.INTEGER);
+        }
+        if (dto.getConsequences() != null) {
+            ps.setArray(12, ps.getConnection().createArrayOf("text", dto.getConsequences().toArray()));
+        } else {
+            ps.setNull(12, Types.ARRAY);
+        }
+        ps.setString(13, toJson(dto.getCharacterGrowth()));
+        ps.setTimestamp(14, toTimestamp(dto.getCreatedAt()));
+        ps.setTimestamp(15, toTimestamp(dto.getUpdatedAt()));
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    private String toJson(Map<String, Object> value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化时间线字段", e);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : e.getClass().getSimpleName();
+    }
+}
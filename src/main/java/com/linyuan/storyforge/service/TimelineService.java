@@ -1,6 +1,11 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
+import com.linyuan.storyforge.dto.TimelineBatchResultDTO;
 import com.linyuan.storyforge.dto.TimelineDTO;
+import com.linyuan.storyforge.dto.TimelineSnapshotDTO;
 import com.linyuan.storyforge.entity.Character;
 import com.linyuan.storyforge.entity.Project;
 import com.linyuan.storyforge.entity.Timeline;
@@ -13,9 +18,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -29,16 +34,26 @@ public class TimelineService {
     private final TimelineRepository timelineRepository;
     private final ProjectRepository projectRepository;
     private final CharacterRepository characterRepository;
+    private final TimelineSnapshotService snapshotService;
+    private final TimelineBatchWriter batchWriter;
+    private final NdjsonExportService ndjsonExportService;
 
     /**
-     * Get all timelines
+     * Get a page of timelines in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<TimelineDTO> getAllTimelines() {
-        log.debug("Fetching all timelines");
-        return timelineRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<TimelineDTO> getTimelinesPage(String cursor, Integer size) {
+        log.debug("Fetching timelines page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<Timeline> rows = timelineRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
+    }
+
+    /**
+     * Stream all timelines as NDJSON
+     */
+    public void exportTimelines(OutputStream output) {
+        ndjsonExportService.write("timelines", timelineRepository::streamAll, this::convertToDTO, output);
     }
 
     /**
@@ -61,9 +76,7 @@ public class TimelineService {
         if (!projectRepository.existsById(projectId)) {
             throw new ResourceNotFoundException("Project", "id", projectId);
         }
-        return timelineRepository.findByProjectIdOrderByEventTimeAsc(projectId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return loadSnapshot(projectId).allEvents();
     }
 
     /**
@@ -92,12 +105,15 @@ public class TimelineService {
     }
 
     /**
-     * Get timelines within a time range
+     * Get timelines within a time range, optionally scoped to a project
      */
     @Transactional(readOnly = true)
-    public List<TimelineDTO> getTimelinesByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
-        log.debug("Fetching timelines between {} and {}", startTime, endTime);
-        return timelineRepository.findByEventTimeBetween(startTime, endTime).stream()
+    public List<TimelineDTO> getTimelinesByTimeRange(UUID projectId, LocalDateTime startTime, LocalDateTime endTime) {
+        log.debug("Fetching timelines between {} and {} for project: {}", startTime, endTime, projectId);
+        List<Timeline> timelines = projectId != null
+                ? timelineRepository.findByProjectIdAndEventTimeBetween(projectId, startTime, endTime)
+                : timelineRepository.findByEventTimeBetween(startTime, endTime);
+        return timelines.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -135,6 +151,7 @@ public class TimelineService {
         timeline.setProject(project);
         timeline.setCharacter(character);
         Timeline savedTimeline = timelineRepository.save(timeline);
+        snapshotService.invalidate(project.getId());
         return convertToDTO(savedTimeline);
     }
 
@@ -160,6 +177,7 @@ public class TimelineService {
         existingTimeline.setCharacterGrowth(timelineDTO.getCharacterGrowth());
 
         Timeline updatedTimeline = timelineRepository.save(existingTimeline);
+        snapshotService.invalidate(updatedTimeline.getProject().getId());
         return convertToDTO(updatedTimeline);
     }
 
@@ -169,10 +187,10 @@ public class TimelineService {
     @Transactional
     public void deleteTimeline(UUID id) {
         log.info("Deleting timeline with id: {}", id);
-        if (!timelineRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Timeline", "id", id);
-        }
-        timelineRepository.deleteById(id);
+        Timeline timeline = timelineRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Timeline", "id", id));
+        timelineRepository.delete(timeline);
+        snapshotService.invalidate(timeline.getProject().getId());
     }
 
     /**
@@ -198,9 +216,80 @@ public class TimelineService {
             throw new ResourceNotFoundException("Project", "id", projectId);
         }
 
-        return timelineRepository.findByProjectIdOrderByEventTimeAsc(projectId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return loadSnapshot(projectId).allEvents();
+    }
+
+    /**
+     * Get the versioned project timeline snapshot
+     * 客户端携带上次拿到的版本号时，若时间线未变化只返回版本信息
+     *
+     * @param projectId    项目ID
+     * @param sinceVersion 客户端已有的快照版本（可选）
+     * @return 时间线快照
+     */
+    @Transactional(readOnly = true)
+    public TimelineSnapshotDTO getTimelineSnapshot(UUID projectId, String sinceVersion) {
+        if (!projectRepository.existsById(projectId)) {
+            throw new ResourceNotFoundException("Project", "id", projectId);
+        }
+
+        TimelineSnapshotService.Snapshot snapshot = loadSnapshot(projectId);
+        boolean notModified = snapshot.version().equals(sinceVersion);
+        return TimelineSnapshotDTO.builder()
+                .projectId(projectId)
+                .version(snapshot.version())
+                .notModified(notModified)
+                .totalEvents(snapshot.size())
+                .earliestEventTime(snapshot.earliest())
+                .latestEventTime(snapshot.latest())
+                .events(notModified ? null : snapshot.allEvents())
+                .characterSpans(notModified ? null : snapshot.spans())
+                .build();
+    }
+
+    /**
+     * Get project events within a time range from the snapshot
+     *
+     * @param projectId 项目ID
+     * @param startTime 开始时间（可选）
+     * @param endTime   结束时间（可选）
+     * @return 范围内的事件，按时间排序
+     */
+    @Transactional(readOnly = true)
+    public TimelineSnapshotDTO getTimelineRange(UUID projectId, LocalDateTime startTime, LocalDateTime endTime) {
+        validateRange(startTime, endTime);
+        TimelineSnapshotService.Snapshot snapshot = loadSnapshot(projectId);
+        List<TimelineDTO> events = snapshot.range(startTime, endTime);
+        return TimelineSnapshotDTO.builder()
+                .projectId(projectId)
+                .version(snapshot.version())
+                .totalEvents(events.size())
+                .earliestEventTime(events.isEmpty() ? null : events.get(0).getEventTime())
+                .latestEventTime(events.isEmpty() ? null : events.get(events.size() - 1).getEventTime())
+                .events(events)
+                .build();
+    }
+
+    /**
+     * Get characters whose active span overlaps a time window
+     *
+     * @param projectId 项目ID
+     * @param startTime 开始时间（可选）
+     * @param endTime   结束时间（可选）
+     * @return 活跃区间与窗口重叠的角色
+     */
+    @Transactional(readOnly = true)
+    public TimelineSnapshotDTO getOverlappingCharacters(UUID projectId, LocalDateTime startTime, LocalDateTime endTime) {
+        validateRange(startTime, endTime);
+        TimelineSnapshotService.Snapshot snapshot = loadSnapshot(projectId);
+        return TimelineSnapshotDTO.builder()
+                .projectId(projectId)
+                .version(snapshot.version())
+                .totalEvents(snapshot.size())
+                .earliestEventTime(snapshot.earliest())
+                .latestEventTime(snapshot.latest())
+                .characterSpans(snapshot.overlapping(startTime, endTime))
+                .build();
     }
 
     /**
@@ -218,9 +307,7 @@ public class TimelineService {
             threshold = 7;
         }
 
-        Integer finalThreshold = threshold;
-        return timelineRepository.findByProjectIdOrderByEventTimeAsc(projectId).stream()
-                .filter(t -> t.getMemoryImportance() != null && t.getMemoryImportance() >= finalThreshold)
+        return timelineRepository.findKeyEvents(projectId, threshold).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -236,25 +323,99 @@ public class TimelineService {
     public List<TimelineDTO> getEventsByType(UUID projectId, String eventType) {
         log.info("获取特定类型事件 - 项目ID: {}, 类型: {}", projectId, eventType);
 
-        return timelineRepository.findByProjectIdOrderByEventTimeAsc(projectId).stream()
-                .filter(t -> eventType.equalsIgnoreCase(t.getEventType()))
+        return timelineRepository.findByProjectIdAndEventType(projectId, eventType).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
     /**
      * Batch create timeline events
+     * 项目和角色各用一次 IN 查询解析，在内存中逐行校验，通过校验的行用 JDBC 批量写入。
+     * 单行失败不会中断整批，失败原因按请求下标返回
      *
      * @param timelineDTOs 时间线事件列表
-     * @return 创建的事件列表
+     * @return 批量导入结果
      */
-    @Transactional
-    public List<TimelineDTO> batchCreateTimelines(List<TimelineDTO> timelineDTOs) {
+    public TimelineBatchResultDTO batchCreateTimelines(List<TimelineDTO> timelineDTOs) {
         log.info("批量创建时间线事件 - 数量: {}", timelineDTOs.size());
 
-        return timelineDTOs.stream()
-                .map(this::createTimeline)
+        if (timelineDTOs.size() > batchWriter.getMaxBatchSize()) {
+            throw new IllegalArgumentException(
+                    String.format("单次批量创建不能超过%d个事件", batchWriter.getMaxBatchSize()));
+        }
+
+        // 1. 一次性解析引用的项目和角色
+        Set<UUID> projectIds = timelineDTOs.stream()
+                .map(TimelineDTO::getProjectId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<UUID> characterIds = timelineDTOs.stream()
+                .map(TimelineDTO::getCharacterId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<UUID> existingProjects = projectIds.isEmpty() ? Set.of() : projectRepository.findExistingIds(projectIds);
+        Map<UUID, UUID> characterProjects = characterIds.isEmpty() ? Map.of()
+                : characterRepository.findProjectRefsByIdIn(characterIds).stream()
+                .collect(Collectors.toMap(CharacterRepository.CharacterProjectRef::getId,
+                        CharacterRepository.CharacterProjectRef::getProjectId));
+
+        // 2. 内存校验
+        LocalDateTime now = LocalDateTime.now();
+        SortedMap<Integer, TimelineDTO> valid = new TreeMap<>();
+        Map<Integer, String> errors = new TreeMap<>();
+        for (int i = 0; i < timelineDTOs.size(); i++) {
+            TimelineDTO dto = timelineDTOs.get(i);
+            String error = validateBatchRow(dto, existingProjects, characterProjects);
+            if (error != null) {
+                errors.put(i, error);
+                continue;
+            }
+            TimelineDTO row = TimelineDTO.builder()
+                    .id(UUID.randomUUID())
+                    .projectId(dto.getProjectId())
+                    .characterId(dto.getCharacterId())
+                    .eventTime(dto.getEventTime())
+                    .relativeTime(dto.getRelativeTime())
+                    .eventType(dto.getEventType())
+                    .eventDescription(dto.getEventDescription())
+                    .participatingCharacters(dto.getParticipatingCharacters())
+                    .locationId(dto.getLocationId())
+                    .emotionalChanges(dto.getEmotionalChanges())
+                    .memoryImportance(dto.getMemoryImportance())
+                    .consequences(dto.getConsequences())
+                    .characterGrowth(dto.getCharacterGrowth())
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build();
+            valid.put(i, row);
+        }
+
+        // 3. 批量写入
+        if (!valid.isEmpty()) {
+            Map<Integer, String> writeFailures = batchWriter.insert(valid);
+            errors.putAll(writeFailures);
+            writeFailures.keySet().forEach(valid::remove);
+            valid.values().stream()
+                    .map(TimelineDTO::getProjectId)
+                    .distinct()
+                    .forEach(snapshotService::invalidate);
+        }
+
+        List<TimelineBatchResultDTO.RowError> rowErrors = errors.entrySet().stream()
+                .map(e -> TimelineBatchResultDTO.RowError.builder()
+                        .index(e.getKey())
+                        .message(e.getValue())
+                        .build())
                 .collect(Collectors.toList());
+
+        log.info("批量创建时间线事件完成 - 成功: {}, 失败: {}", valid.size(), rowErrors.size());
+        return TimelineBatchResultDTO.builder()
+                .total(timelineDTOs.size())
+                .created(valid.size())
+                .failed(rowErrors.size())
+                .createdEvents(new ArrayList<>(valid.values()))
+                .errors(rowErrors)
+                .build();
     }
 
     /**
@@ -288,12 +449,51 @@ public class TimelineService {
         return createTimeline(timelineDTO);
     }
 
+    private TimelineSnapshotService.Snapshot loadSnapshot(UUID projectId) {
+        return snapshotService.getSnapshot(projectId, () ->
+                timelineRepository.findByProjectIdOrderByEventTimeAsc(projectId).stream()
+                        .map(this::convertToDTO)
+                        .collect(Collectors.toList()));
+    }
+
+    private String validateBatchRow(TimelineDTO dto, Set<UUID> existingProjects, Map<UUID, UUID> characterProjects) {
+        if (dto == null) {
+            return "Timeline event cannot be null";
+        }
+        if (dto.getProjectId() == null) {
+            return "Project ID cannot be null";
+        }
+        if (dto.getCharacterId() == null) {
+            return "Character ID cannot be null";
+        }
+        if (!existingProjects.contains(dto.getProjectId())) {
+            return String.format("Project not found with id: '%s'", dto.getProjectId());
+        }
+        UUID characterProject = characterProjects.get(dto.getCharacterId());
+        if (characterProject == null) {
+            return String.format("Character not found with id: '%s'", dto.getCharacterId());
+        }
+        if (!characterProject.equals(dto.getProjectId())) {
+            return "Character " + dto.getCharacterId() + " does not belong to project " + dto.getProjectId();
+        }
+        if (dto.getMemoryImportance() != null && (dto.getMemoryImportance() < 1 || dto.getMemoryImportance() > 10)) {
+            return "Memory importance must be between 1 and 10";
+        }
+        return null;
+    }
+
+    private void validateRange(LocalDateTime startTime, LocalDateTime endTime) {
+        if (startTime != null && endTime != null && startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("startTime must not be after endTime");
+        }
+    }
+
     // Conversion methods
     private TimelineDTO convertToDTO(Timeline timeline) {
         TimelineDTO dto = new TimelineDTO();
         dto.setId(timeline.getId());
-        dto.setProjectId(timeline.getProject().getId());
-        dto.setCharacterId(timeline.getCharacter().getId());
+        dto.setProjectId(EntityIds.idOf(timeline.getProject()));
+        dto.setCharacterId(EntityIds.idOf(timeline.getCharacter()));
         dto.setEventTime(timeline.getEventTime());
         dto.setRelativeTime(timeline.getRelativeTime());
         dto.setEventType(timeline.getEventType());
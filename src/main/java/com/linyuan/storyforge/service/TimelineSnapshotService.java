@@ -0,0 +1,270 @@
+package com.linyuan.storyforge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linyuan.storyforge.dto.TimelineDTO;
+import com.linyuan.storyforge.dto.TimelineSnapshotDTO;
+import com.linyuan.storyforge.repository.TimelineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * TimelineSnapshotService - 项目时间线快照缓存
+ * 每个项目缓存一份按事件时间排序的只读快照，时间范围查询用二分查找，
+ * 区间重叠查询使用预先计算的角色活跃区间。
+ * <p>
+ * 快照版本由数据库中项目事件的最后更新时间和事件数得出，不依赖进程内状态：
+ * 重启后、不同实例之间同一份时间线的版本相同，任一实例的写入（包括删除）都会改变版本。
+ * 本实例的写入提交后还会立即丢弃快照。缓存按事件总数限制大小，返回给调用方的事件都是副本
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TimelineSnapshotService {
+
+    /**
+     * 所有缓存快照的事件总数上限
+     */
+    private static final long MAX_CACHED_EVENTS = 200_000;
+
+    /**
+     * 快照闲置多久后释放
+     */
+    private static final Duration SNAPSHOT_IDLE_TTL = Duration.ofMinutes(30);
+
+    private static final LocalDateTime VERSION_EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    /**
+     * 没有事件的项目的版本
+     */
+    private static final String EMPTY_VERSION = "0";
+
+    private final TimelineRepository timelineRepository;
+
+    private final Cache<UUID, Snapshot> snapshots = Caffeine.newBuilder()
+            .maximumWeight(MAX_CACHED_EVENTS)
+            .weigher((UUID projectId, Snapshot snapshot) -> snapshot.size() + 1)
+            .expireAfterAccess(SNAPSHOT_IDLE_TTL)
+            .build();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+
+    /**
+     * 获取项目快照，不存在或版本已变化时通过 loader 重新加载
+     *
+     * @param projectId 项目ID
+     * @param loader    按事件时间升序加载项目全部事件
+     */
+    public Snapshot getSnapshot(UUID projectId, Supplier<List<TimelineDTO>> loader) {
+        String version = currentVersion(projectId);
+        Snapshot snapshot = snapshots.getIfPresent(projectId);
+        if (snapshot != null && snapshot.version().equals(version)) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+
+        builds.incrementAndGet();
+        snapshot = Snapshot.of(projectId, version, loader.get());
+        // 加载期间有写入提交时不缓存，下次请求重新加载
+        if (currentVersion(projectId).equals(version)) {
+            snapshots.put(projectId, snapshot);
+        }
+        log.debug("构建时间线快照 - 项目: {}, 版本: {}, 事件数: {}", projectId, version, snapshot.size());
+        return snapshot;
+    }
+
+    /**
+     * 项目时间线写入后调用，事务提交后丢弃快照
+     */
+    public void invalidate(UUID projectId) {
+        EntityCacheService.runAfterCommit(() -> snapshots.invalidate(projectId));
+    }
+
+    /**
+     * 快照缓存统计
+     */
+    public Map<String, Object> getStatistics() {
+        Collection<Snapshot> cached = snapshots.asMap().values();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedProjects", cached.size());
+        stats.put("cachedEvents", cached.stream().mapToInt(Snapshot::size).sum());
+        stats.put("hits", hits.get());
+        stats.put("builds", builds.get());
+        return stats;
+    }
+
+    /**
+     * 项目时间线的当前版本：最后更新时间（微秒）与事件数的十六进制组合，删除事件会改变事件数
+     * 版本是不透明字符串，不做数值运算，不会溢出，JSON 客户端也能原样传回
+     */
+    private String currentVersion(UUID projectId) {
+        TimelineRepository.TimelineVersion marker = timelineRepository.findVersionByProjectId(projectId);
+        if (marker == null || marker.getLastUpdated() == null) {
+            return EMPTY_VERSION;
+        }
+        long micros = ChronoUnit.MICROS.between(VERSION_EPOCH, marker.getLastUpdated());
+        return Long.toHexString(micros) + "-" + Long.toHexString(marker.getEventCount());
+    }
+
+    /**
+     * 不可变的项目时间线快照
+     * 快照被所有请求共享，对外返回的事件和角色区间都是副本，调用方修改不会影响缓存
+     *
+     * @param timed   有绝对时间的事件，按时间升序
+     * @param times   与 timed 对应的事件时间，用于二分查找
+     * @param untimed 只有相对时间描述的事件
+     * @param spans   角色活跃区间，按开始时间升序
+     */
+    public record Snapshot(UUID projectId, String version, List<TimelineDTO> timed, LocalDateTime[] times,
+                           List<TimelineDTO> untimed, List<TimelineSnapshotDTO.CharacterSpan> spans) {
+
+        static Snapshot of(UUID projectId, String version, List<TimelineDTO> events) {
+            List<TimelineDTO> timed = events.stream()
+                    .filter(e -> e.getEventTime() != null)
+                    .sorted(Comparator.comparing(TimelineDTO::getEventTime))
+                    .collect(Collectors.toUnmodifiableList());
+            List<TimelineDTO> untimed = events.stream()
+                    .filter(e -> e.getEventTime() == null)
+                    .collect(Collectors.toUnmodifiableList());
+            LocalDateTime[] times = timed.stream().map(TimelineDTO::getEventTime).toArray(LocalDateTime[]::new);
+
+            Map<UUID, TimelineSnapshotDTO.CharacterSpan> spans = new LinkedHashMap<>();
+            for (TimelineDTO event : timed) {
+                TimelineSnapshotDTO.CharacterSpan span = spans.computeIfAbsent(event.getCharacterId(),
+                        id -> TimelineSnapshotDTO.CharacterSpan.builder()
+                                .characterId(id)
+                                .firstEventTime(event.getEventTime())
+                                .build());
+                span.setLastEventTime(event.getEventTime());
+                span.setEventCount(span.getEventCount() + 1);
+            }
+            return new Snapshot(projectId, version, timed, times, untimed, List.copyOf(spans.values()));
+        }
+
+        public int size() {
+            return timed.size() + untimed.size();
+        }
+
+        @Override
+        public List<TimelineDTO> timed() {
+            return copyEvents(timed);
+        }
+
+        @Override
+        public List<TimelineDTO> untimed() {
+            return copyEvents(untimed);
+        }
+
+        @Override
+        public List<TimelineSnapshotDTO.CharacterSpan> spans() {
+            return spans.stream().map(span -> span.toBuilder().build()).collect(Collectors.toList());
+        }
+
+        /**
+         * 全部事件，无绝对时间的排在最后
+         */
+        public List<TimelineDTO> allEvents() {
+            List<TimelineDTO> all = new ArrayList<>(size());
+            all.addAll(copyEvents(timed));
+            all.addAll(copyEvents(untimed));
+            return all;
+        }
+
+        /**
+         * 时间范围 [start, end] 内的事件（任一端为 null 表示不限）
+         */
+        public List<TimelineDTO> range(LocalDateTime start, LocalDateTime end) {
+            int from = start == null ? 0 : lowerBound(start);
+            int to = end == null ? times.length : upperBound(end);
+            return from >= to ? new ArrayList<>() : copyEvents(timed.subList(from, to));
+        }
+
+        /**
+         * 活跃区间与 [start, end] 重叠的角色
+         */
+        public List<TimelineSnapshotDTO.CharacterSpan> overlapping(LocalDateTime start, LocalDateTime end) {
+            return spans.stream()
+                    .filter(span -> (end == null || !span.getFirstEventTime().isAfter(end))
+                            && (start == null || !span.getLastEventTime().isBefore(start)))
+                    .map(span -> span.toBuilder().build())
+                    .collect(Collectors.toList());
+        }
+
+        public LocalDateTime earliest() {
+            return times.length > 0 ? times[0] : null;
+        }
+
+        public LocalDateTime latest() {
+            return times.length > 0 ? times[times.length - 1] : null;
+        }
+
+        private static List<TimelineDTO> copyEvents(List<TimelineDTO> events) {
+            return events.stream().map(Snapshot::copy).collect(Collectors.toList());
+        }
+
+        /**
+         * 事件副本，集合字段为只读视图
+         */
+        private static TimelineDTO copy(TimelineDTO event) {
+            return event.toBuilder()
+                    .participatingCharacters(readOnly(event.getParticipatingCharacters()))
+                    .consequences(readOnly(event.getConsequences()))
+                    .emotionalChanges(event.getEmotionalChanges() != null
+                            ? Collections.unmodifiableMap(event.getEmotionalChanges()) : null)
+                    .characterGrowth(event.getCharacterGrowth() != null
+                            ? Collections.unmodifiableMap(event.getCharacterGrowth()) : null)
+                    .build();
+        }
+
+        private static <T> List<T> readOnly(List<T> values) {
+            return values != null ? Collections.unmodifiableList(values) : null;
+        }
+
+        /**
+         * 第一个不早于 time 的下标
+         */
+        private int lowerBound(LocalDateTime time) {
+            int low = 0;
+            int high = times.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid].isBefore(time)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 第一个晚于 time 的下标
+         */
+        private int upperBound(LocalDateTime time) {
+            int low = 0;
+            int high = times.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid].isAfter(time)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+}
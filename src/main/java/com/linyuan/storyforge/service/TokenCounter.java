@@ -0,0 +1,276 @@
+package com.linyuan.storyforge.service;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import com.linyuan.storyforge.config.TokenizerProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TokenCounter - 提示词 token 计数
+ * 配置了 tokenizer.json 的模型用模型自己的分词器计数；其余模型按字符估算（1 个中文字符约 0.6 token，
+ * 1 个英文字符约 0.3 token），并用该模型 API 返回的 prompt_tokens 持续校准（指数滑动平均）
+ * <p>
+ * 不同模型的分词器差异很大，校准系数按模型分别维护；未指定模型时按 {@link TokenizerProperties#getDefaultModel()} 计数。
+ * 计数只用于预算分配和截断，不要求与服务端逐 token 一致（服务端还会计入消息模板开销）
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class TokenCounter {
+
+    private static final double CJK_TOKENS = 0.6;
+    private static final double OTHER_TOKENS = 0.3;
+
+    /**
+     * 校准系数的平滑因子与取值范围
+     */
+    private static final double CALIBRATION_ALPHA = 0.1;
+    private static final double MIN_CALIBRATION = 0.5;
+    private static final double MAX_CALIBRATION = 2.0;
+
+    /**
+     * 样本太小时噪声（消息模板开销）占比过大，不参与校准
+     */
+    private static final int MIN_CALIBRATION_TOKENS = 200;
+
+    private final String defaultModel;
+    private final Map<String, HuggingFaceTokenizer> tokenizers = new HashMap<>();
+    private final Map<String, Calibration> calibrations = new ConcurrentHashMap<>();
+
+    public TokenCounter(TokenizerProperties properties) {
+        this.defaultModel = properties.getDefaultModel();
+        properties.getFiles().forEach((model, file) -> {
+            if (StringUtils.hasText(file)) {
+                HuggingFaceTokenizer tokenizer = load(model, file);
+                if (tokenizer != null) {
+                    tokenizers.put(model, tokenizer);
+                }
+            }
+        });
+    }
+
+    /**
+     * 按默认模型计数
+     *
+     * @param text 文本
+     * @return token 数（至少为 0）
+     */
+    public int count(CharSequence text) {
+        return count(defaultModel, text);
+    }
+
+    /**
+     * 按指定模型计数
+     *
+     * @param model 模型名称（为空时按默认模型）
+     * @param text  文本
+     * @return token 数（至少为 0）
+     */
+    public int count(String model, CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        HuggingFaceTokenizer tokenizer = tokenizer(model);
+        if (tokenizer != null) {
+            return tokenizer.encode(text.toString()).getIds().length;
+        }
+        return (int) Math.ceil(rawCount(text) * calibration(model).factor);
+    }
+
+    /**
+     * 按默认模型从头部截取不超过 maxTokens 的文本
+     *
+     * @param text      文本
+     * @param maxTokens token 上限
+     * @return 截取后的文本（未超限时原样返回）
+     */
+    public String truncateHead(String text, int maxTokens) {
+        if (text == null || count(text) <= maxTokens) {
+            return text;
+        }
+        HuggingFaceTokenizer tokenizer = tokenizer(defaultModel);
+        if (tokenizer != null) {
+            // 前缀越长 token 越多，二分找出不超限的最长前缀
+            int low = 0;
+            int high = text.length();
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (count(defaultModel, text.substring(0, mid)) <= maxTokens) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (low > 0 && Character.isHighSurrogate(text.charAt(low - 1))) {
+                low--;
+            }
+            return text.substring(0, low);
+        }
+        double budget = maxTokens / calibration(defaultModel).factor;
+        double used = 0;
+        int end = 0;
+        while (end < text.length()) {
+            double cost = charCost(text.charAt(end));
+            if (used + cost > budget) {
+                break;
+            }
+            used += cost;
+            end++;
+        }
+        return text.substring(0, end);
+    }
+
+    /**
+     * 按默认模型从尾部截取不超过 maxTokens 的文本（保留最近的内容，如前文）
+     *
+     * @param text      文本
+     * @param maxTokens token 上限
+     * @return 截取后的文本（未超限时原样返回）
+     */
+    public String truncateTail(String text, int maxTokens) {
+        if (text == null || count(text) <= maxTokens) {
+            return text;
+        }
+        HuggingFaceTokenizer tokenizer = tokenizer(defaultModel);
+        if (tokenizer != null) {
+            int low = 0;
+            int high = text.length();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (count(defaultModel, text.substring(mid)) <= maxTokens) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            if (low < text.length() && Character.isLowSurrogate(text.charAt(low))) {
+                low++;
+            }
+            return text.substring(low);
+        }
+        double budget = maxTokens / calibration(defaultModel).factor;
+        double used = 0;
+        int start = text.length();
+        while (start > 0) {
+            double cost = charCost(text.charAt(start - 1));
+            if (used + cost > budget) {
+                break;
+            }
+            used += cost;
+            start--;
+        }
+        return text.substring(start);
+    }
+
+    /**
+     * 用 API 返回的实际 prompt_tokens 校准该模型的估算
+     * 已加载分词器的模型按分词器计数，不参与校准
+     *
+     * @param model        实际调用的模型
+     * @param prompt       发送的提示词（用户消息与系统消息）
+     * @param actualTokens API 返回的 prompt_tokens
+     */
+    public void calibrate(String model, CharSequence prompt, int actualTokens) {
+        if (tokenizer(model) != null || prompt == null) {
+            return;
+        }
+        double raw = rawCount(prompt);
+        if (raw < MIN_CALIBRATION_TOKENS || actualTokens <= 0) {
+            return;
+        }
+        Calibration calibration = calibration(model);
+        double ratio = Math.max(MIN_CALIBRATION, Math.min(MAX_CALIBRATION, actualTokens / raw));
+        double updated;
+        synchronized (calibration) {
+            updated = calibration.factor + CALIBRATION_ALPHA * (ratio - calibration.factor);
+            calibration.factor = updated;
+        }
+        if (calibration.samples.incrementAndGet() % 100 == 0) {
+            log.info("模型 {} 的 token 估算校准系数: {}", modelOrDefault(model), String.format("%.3f", updated));
+        }
+    }
+
+    /**
+     * 模型当前的校准系数（已加载分词器的模型恒为 1.0）
+     *
+     * @param model 模型名称（为空时按默认模型）
+     */
+    public double getCalibration(String model) {
+        return tokenizer(model) != null ? 1.0 : calibration(model).factor;
+    }
+
+    @PreDestroy
+    public void close() {
+        tokenizers.values().forEach(HuggingFaceTokenizer::close);
+    }
+
+    private HuggingFaceTokenizer tokenizer(String model) {
+        return tokenizers.get(modelOrDefault(model));
+    }
+
+    private Calibration calibration(String model) {
+        return calibrations.computeIfAbsent(modelOrDefault(model), key -> new Calibration());
+    }
+
+    private String modelOrDefault(String model) {
+        return StringUtils.hasText(model) ? model : defaultModel;
+    }
+
+    private static HuggingFaceTokenizer load(String model, String file) {
+        try {
+            HuggingFaceTokenizer tokenizer = HuggingFaceTokenizer.builder()
+                    .optTokenizerPath(Path.of(file))
+                    .optAddSpecialTokens(false)
+                    .optTruncation(false)
+                    .optPadding(false)
+                    .build();
+            log.info("模型 {} 按分词器计数 token: {}", model, file);
+            return tokenizer;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            // 文件缺失或本地库不可用（如不支持的平台）时退回字符估算
+            log.warn("加载模型 {} 的分词器失败，改为按字符估算: {}", model, e.getMessage());
+            return null;
+        }
+    }
+
+    private double rawCount(CharSequence text) {
+        double tokens = 0;
+        for (int i = 0; i < text.length(); i++) {
+            tokens += charCost(text.charAt(i));
+        }
+        return tokens;
+    }
+
+    private double charCost(char c) {
+        return isCjk(c) ? CJK_TOKENS : OTHER_TOKENS;
+    }
+
+    private boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA;
+    }
+
+    /**
+     * 单个模型的估算校准状态
+     */
+    private static final class Calibration {
+        private volatile double factor = 1.0;
+        private final AtomicLong samples = new AtomicLong();
+    }
+}
@@ -1,13 +1,11 @@
 package com.linyuan.storyforge.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linyuan.storyforge.dto.WorldviewDTO;
 import com.linyuan.storyforge.dto.WorldviewGenerationRequest;
 import com.linyuan.storyforge.entity.Project;
 import com.linyuan.storyforge.entity.Worldview;
+import com.linyuan.storyforge.enums.LlmPriority;
 import com.linyuan.storyforge.enums.WorldviewGenre;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.repository.ProjectRepository;
@@ -31,6 +29,21 @@ import java.util.*;
 @RequiredArgsConstructor
 public class WorldviewGenerationService {
 
+    /**
+     * 世界观 JSON 输出的字段绑定
+     */
+    private static final StructuredOutputParser<WorldviewDTO> WORLDVIEW_PARSER = StructuredOutputParser.<WorldviewDTO>builder()
+            .field("name", String.class, WorldviewDTO::setName)
+            .field("summary", String.class, WorldviewDTO::setSummary)
+            .field("universeLaws", StructuredOutputParser.OBJECT_MAP, WorldviewDTO::setUniverseLaws)
+            .field("socialStructure", StructuredOutputParser.OBJECT_MAP, WorldviewDTO::setSocialStructure)
+            .field("geography", StructuredOutputParser.OBJECT_MAP, WorldviewDTO::setGeography)
+            .field("historyBackground", StructuredOutputParser.OBJECT_MAP, WorldviewDTO::setHistoryBackground)
+            .field("terminology", StructuredOutputParser.OBJECT_MAP, WorldviewDTO::setTerminology)
+            .field("rules", StructuredOutputParser.STRING_LIST, WorldviewDTO::setRules)
+            .field("constraints", StructuredOutputParser.STRING_LIST, WorldviewDTO::setConstraints)
+            .build();
+
     private final AiGenerationService aiService;
     private final WorldviewService worldviewService;
     private final ProjectRepository projectRepository;
@@ -58,7 +71,11 @@ public class WorldviewGenerationService {
 
         // 3. 调用AI生成
         double temperature = (request.getCreativity() != null) ? request.getCreativity() : 0.8;
-        String aiResponse = aiService.chatWithOptions(prompt, temperature, 3500);
+        String aiResponse;
+        try (LlmUsageScope ignored = LlmUsageScope.open(request.getProjectId(), "worldview")
+                .priority(LlmPriority.INTERACTIVE)) {
+            aiResponse = aiService.chatWithOptions(prompt, temperature, 3500);
+        }
         log.debug("AI响应长度: {} 字符", aiResponse.length());
 
         // 4. 解析AI响应
@@ -237,80 +254,7 @@ public class WorldviewGenerationService {
      */
     private WorldviewDTO parseWorldviewResponse(String aiResponse, WorldviewGenerationRequest request) {
         try {
-            // 清理响应，移除可能的Markdown代码块标记
-            String cleanJson = aiResponse
-                    .replaceAll("```json\\s*", "")
-                    .replaceAll("```\\s*$", "")
-                    .trim();
-
-            // 配置ObjectMapper，忽略未知属性
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
-            // 解析JSON
-            JsonNode rootNode = mapper.readTree(cleanJson);
-
-            // 构建WorldviewDTO
-            WorldviewDTO dto = new WorldviewDTO();
-            dto.setName(rootNode.path("name").asText());
-            dto.setSummary(rootNode.path("summary").asText());
-
-            // 解析universeLaws
-            if (rootNode.has("universeLaws")) {
-                dto.setUniverseLaws(mapper.convertValue(
-                        rootNode.get("universeLaws"),
-                        new TypeReference<Map<String, Object>>() {}
-                ));
-            }
-
-            // 解析socialStructure
-            if (rootNode.has("socialStructure")) {
-                dto.setSocialStructure(mapper.convertValue(
-                        rootNode.get("socialStructure"),
-                        new TypeReference<Map<String, Object>>() {}
-                ));
-            }
-
-            // 解析geography
-            if (rootNode.has("geography")) {
-                dto.setGeography(mapper.convertValue(
-                        rootNode.get("geography"),
-                        new TypeReference<Map<String, Object>>() {}
-                ));
-            }
-
-            // 解析historyBackground
-            if (rootNode.has("historyBackground")) {
-                dto.setHistoryBackground(mapper.convertValue(
-                        rootNode.get("historyBackground"),
-                        new TypeReference<Map<String, Object>>() {}
-                ));
-            }
-
-            // 解析terminology
-            if (rootNode.has("terminology")) {
-                dto.setTerminology(mapper.convertValue(
-                        rootNode.get("terminology"),
-                        new TypeReference<Map<String, Object>>() {}
-                ));
-            }
-
-            // 解析rules
-            if (rootNode.has("rules")) {
-                dto.setRules(mapper.convertValue(
-                        rootNode.get("rules"),
-                        new TypeReference<List<String>>() {}
-                ));
-            }
-
-            // 解析constraints
-            if (rootNode.has("constraints")) {
-                dto.setConstraints(mapper.convertValue(
-                        rootNode.get("constraints"),
-                        new TypeReference<List<String>>() {}
-                ));
-            }
-
+            WorldviewDTO dto = WORLDVIEW_PARSER.parse(objectMapper, aiResponse, WorldviewDTO::new);
             log.info("成功解析AI响应 - 世界观名称: {}", dto.getName());
             return dto;
 
@@ -353,20 +297,24 @@ public class WorldviewGenerationService {
         log.info("批量生成 {} 个世界观方案", count);
 
         List<WorldviewDTO> worldviews = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            try {
-                // 每次生成使用略微不同的创意度
-                Double originalCreativity = request.getCreativity();
-                request.setCreativity(originalCreativity + (i * 0.05)); // 逐渐提高创意度
-
-                WorldviewDTO worldview = generateWorldview(request);
-                worldviews.add(worldview);
-
-                // 恢复原始创意度
-                request.setCreativity(originalCreativity);
-
-            } catch (Exception e) {
-                log.error("第 {} 个世界观生成失败", i + 1, e);
+        // 多个方案按批量优先级排队，不挤占交互请求的调用名额
+        try (LlmUsageScope ignored = LlmUsageScope.open(request.getProjectId(), "worldview")
+                .priority(LlmPriority.BATCH)) {
+            for (int i = 0; i < count; i++) {
+                try {
+                    // 每次生成使用略微不同的创意度
+                    Double originalCreativity = request.getCreativity();
+                    request.setCreativity(originalCreativity + (i * 0.05)); // 逐渐提高创意度
+
+                    WorldviewDTO worldview = generateWorldview(request);
+                    worldviews.add(worldview);
+
+                    // 恢复原始创意度
+                    request.setCreativity(originalCreativity);
+
+                } catch (Exception e) {
+                    log.error("第 {} 个世界观生成失败", i + 1, e);
+                }
             }
         }
 
@@ -1,5 +1,8 @@
 package com.linyuan.storyforge.service;
 
+import com.linyuan.storyforge.common.CursorPage;
+import com.linyuan.storyforge.common.EntityIds;
+import com.linyuan.storyforge.common.PageCursor;
 import com.linyuan.storyforge.dto.WorldviewDTO;
 import com.linyuan.storyforge.entity.Project;
 import com.linyuan.storyforge.entity.Worldview;
@@ -25,16 +28,17 @@ public class WorldviewService {
 
     private final WorldviewRepository worldviewRepository;
     private final ProjectRepository projectRepository;
+    private final EntityCacheService entityCacheService;
 
     /**
-     * Get all worldviews
+     * Get a page of worldviews in creation order (keyset pagination)
      */
     @Transactional(readOnly = true)
-    public List<WorldviewDTO> getAllWorldviews() {
-        log.debug("Fetching all worldviews");
-        return worldviewRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<WorldviewDTO> getWorldviewsPage(String cursor, Integer size) {
+        log.debug("Fetching worldviews page after cursor: {}", cursor);
+        int pageSize = PageCursor.pageSize(size);
+        List<Worldview> rows = worldviewRepository.findKeysetPage(PageCursor.decode(cursor), pageSize);
+        return CursorPage.of(rows, pageSize, this::convertToDTO);
     }
 
     /**
@@ -113,6 +117,7 @@ public class WorldviewService {
         existingWorldview.setConstraints(worldviewDTO.getConstraints());
 
         Worldview updatedWorldview = worldviewRepository.save(existingWorldview);
+        entityCacheService.evictAfterCommit(Worldview.class, id);
         return convertToDTO(updatedWorldview);
     }
 
@@ -126,6 +131,7 @@ public class WorldviewService {
             throw new ResourceNotFoundException("Worldview", "id", id);
         }
         worldviewRepository.deleteById(id);
+        entityCacheService.evictAfterCommit(Worldview.class, id);
     }
 
     /**
@@ -141,7 +147,7 @@ public class WorldviewService {
     private WorldviewDTO convertToDTO(Worldview worldview) {
         WorldviewDTO dto = new WorldviewDTO();
         dto.setId(worldview.getId());
-        dto.setProjectId(worldview.getProject().getId());
+        dto.setProjectId(EntityIds.idOf(worldview.getProject()));
         dto.setName(worldview.getName());
         dto.setUniverseLaws(worldview.getUniverseLaws());
         dto.setSocialStructure(worldview.getSocialStructure());
@@ -5,6 +5,7 @@ import com.linyuan.storyforge.enums.ContentType;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.repository.CharacterRepository;
 import com.linyuan.storyforge.service.AiGenerationService;
+import com.linyuan.storyforge.service.LlmUsageScope;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -111,6 +112,35 @@ public class CharacterConsistencyValidator {
         return result;
     }
 
+    /**
+     * 编译可在流式生成中增量检查的硬性规则
+     * 只包含确定性的关键词规则（角色明确避免的行为），与 checkBehaviorViolations 的判定一致
+     *
+     * @param character 角色
+     * @return 规则列表
+     */
+    public List<StreamingConsistencyChecker.Rule> compileStreamingRules(Character character) {
+        List<StreamingConsistencyChecker.Rule> rules = new ArrayList<>();
+        if (character.getBehavioralHabits() == null) {
+            return rules;
+        }
+
+        for (String habit : character.getBehavioralHabits()) {
+            if (habit == null || habit.trim().isEmpty()) {
+                continue;
+            }
+            String forbidden = extractForbiddenBehavior(habit);
+            if (forbidden != null && !forbidden.isBlank()) {
+                rules.add(new StreamingConsistencyChecker.Rule(
+                        forbidden,
+                        String.format("内容中出现了角色明确避免的行为: %s", habit),
+                        StreamingConsistencyChecker.Scope.CHARACTER,
+                        character.getName()));
+            }
+        }
+        return rules;
+    }
+
     /**
      * 验证性格向量
      * 简化实现:检查内容中是否体现了主要性格特征
@@ -369,7 +399,7 @@ public class CharacterConsistencyValidator {
                     content
             );
 
-            return aiService.chatWithOptions(prompt, 0.3, 500);
+            return LlmUsageScope.within("validation", () -> aiService.chatWithOptions(prompt, 0.3, 500));
         } catch (Exception e) {
             log.error("AI验证失败", e);
             return "AI验证暂时不可用";
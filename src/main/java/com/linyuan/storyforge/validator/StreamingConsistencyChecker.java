@@ -0,0 +1,122 @@
+package com.linyuan.storyforge.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * StreamingConsistencyChecker - 流式生成的增量一致性检查
+ * 在 token 流到达时执行角色/世界观验证器编译出的硬性规则（被禁止的概念/行为），
+ * 一旦命中即返回 false 以中止流，不必等整段内容生成完毕再验证
+ * <p>
+ * 每累积 checkInterval 个字符检查一次，检查窗口向前重叠最长关键词长度 - 1 个字符，
+ * 保证跨越两次检查边界的关键词也能命中；每个字符只被扫描常数次
+ * <p>
+ * 非线程安全，每次生成尝试创建一个实例
+ *
+ * @author StoryForge Team
+ * @since 1.0.0
+ */
+public class StreamingConsistencyChecker {
+
+    /**
+     * 规则来源
+     */
+    public enum Scope {
+        CHARACTER,
+        WORLDVIEW
+    }
+
+    /**
+     * 编译后的硬性规则
+     *
+     * @param term      被禁止的关键词（小写）
+     * @param violation 命中时的违规描述（与完整验证的描述一致，用于重试反馈）
+     * @param scope     规则来源
+     * @param source    来源名称（角色名或世界观名，用于日志）
+     */
+    public record Rule(String term, String violation, Scope scope, String source) {
+
+        public Rule {
+            term = term.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final List<Rule> rules;
+    private final int checkInterval;
+    private final int overlap;
+
+    private int scannedUpTo = 0;
+    private Rule violated;
+
+    public StreamingConsistencyChecker(List<Rule> rules, int checkInterval) {
+        this.rules = new ArrayList<>(rules);
+        this.checkInterval = Math.max(1, checkInterval);
+        this.overlap = rules.stream().mapToInt(rule -> rule.term().length()).max().orElse(1) - 1;
+    }
+
+    /**
+     * 是否没有可增量检查的规则
+     */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * 接收当前累计的生成内容
+     *
+     * @param accumulated 到目前为止的完整输出
+     * @return true 继续生成；false 发现硬性违规，应中止
+     */
+    public boolean accept(CharSequence accumulated) {
+        if (violated != null) {
+            return false;
+        }
+        if (accumulated.length() - scannedUpTo < checkInterval) {
+            return true;
+        }
+        return scan(accumulated);
+    }
+
+    /**
+     * 检查尚未扫描的尾部（流结束时调用，避免最后不足一个间隔的内容漏检）
+     *
+     * @param accumulated 完整输出
+     * @return true 未发现硬性违规
+     */
+    public boolean finish(CharSequence accumulated) {
+        if (violated != null) {
+            return false;
+        }
+        return accumulated.length() <= scannedUpTo || scan(accumulated);
+    }
+
+    /**
+     * 命中的规则，未命中时为 null
+     */
+    public Rule getViolated() {
+        return violated;
+    }
+
+    /**
+     * 已扫描的字符数（即中止位置）
+     */
+    public int getScannedLength() {
+        return scannedUpTo;
+    }
+
+    private boolean scan(CharSequence accumulated) {
+        int end = accumulated.length();
+        int start = Math.max(0, scannedUpTo - overlap);
+        String window = accumulated.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+        scannedUpTo = end;
+
+        for (Rule rule : rules) {
+            if (window.contains(rule.term())) {
+                violated = rule;
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -5,6 +5,7 @@ import com.linyuan.storyforge.enums.ContentType;
 import com.linyuan.storyforge.exception.ResourceNotFoundException;
 import com.linyuan.storyforge.repository.WorldviewRepository;
 import com.linyuan.storyforge.service.AiGenerationService;
+import com.linyuan.storyforge.service.LlmUsageScope;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -111,6 +112,52 @@ public class WorldviewConsistencyValidator {
         return result;
     }
 
+    /**
+     * 编译可在流式生成中增量检查的硬性规则
+     * 只包含确定性的关键词规则（禁止性规则与约束中被禁止的概念），与完整验证的判定一致
+     *
+     * @param worldview 世界观
+     * @return 规则列表
+     */
+    public List<StreamingConsistencyChecker.Rule> compileStreamingRules(Worldview worldview) {
+        List<StreamingConsistencyChecker.Rule> rules = new ArrayList<>();
+
+        if (worldview.getRules() != null) {
+            for (String rule : worldview.getRules()) {
+                if (rule == null || rule.trim().isEmpty()) {
+                    continue;
+                }
+                String ruleLower = rule.toLowerCase();
+                if (!(ruleLower.contains("禁止") || ruleLower.contains("不能") ||
+                        ruleLower.contains("不允许") || ruleLower.contains("绝不"))) {
+                    continue;
+                }
+                addStreamingRule(rules, worldview, extractForbiddenConcept(rule),
+                        String.format("违反规则: %s (内容中出现了被禁止的概念)", rule));
+            }
+        }
+
+        if (worldview.getConstraints() != null) {
+            for (String constraint : worldview.getConstraints()) {
+                if (constraint == null || constraint.trim().isEmpty()) {
+                    continue;
+                }
+                addStreamingRule(rules, worldview, extractForbiddenConcept(constraint),
+                        String.format("违反约束: %s", constraint));
+            }
+        }
+
+        return rules;
+    }
+
+    private void addStreamingRule(List<StreamingConsistencyChecker.Rule> rules, Worldview worldview,
+                                  String forbidden, String violation) {
+        if (forbidden != null && !forbidden.isBlank()) {
+            rules.add(new StreamingConsistencyChecker.Rule(
+                    forbidden, violation, StreamingConsistencyChecker.Scope.WORLDVIEW, worldview.getName()));
+        }
+    }
+
     /**
      * 检查是否遵守世界观规则
      *
@@ -319,7 +366,7 @@ public class WorldviewConsistencyValidator {
                     content
             );
 
-            return aiService.chatWithOptions(prompt, 0.3, 500);
+            return LlmUsageScope.within("validation", () -> aiService.chatWithOptions(prompt, 0.3, 500));
 
         } catch (Exception e) {
             log.error("AI验证失败", e);
@@ -0,0 +1,36 @@
+-- Migration script for compressed chapter version storage
+-- The latest version of each chapter stays in story_chapters; older versions are
+-- archived here as deflate snapshots (FULL) or reverse deltas against the next version (DELTA)
+
+CREATE TABLE chapter_versions (
+                                  id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                  project_id UUID REFERENCES projects(id) ON DELETE CASCADE,
+                                  chapter_number INTEGER NOT NULL,
+                                  version INTEGER NOT NULL,
+                                  title VARCHAR(255),
+
+    -- 版本设定
+                                  outline TEXT,
+                                  main_conflict TEXT,
+                                  target_word_count INTEGER,
+                                  tone VARCHAR(50),
+                                  pacing VARCHAR(30),
+                                  status VARCHAR(20),
+                                  generation_params JSONB,
+
+    -- 压缩存储
+                                  encoding VARCHAR(10) NOT NULL, -- FULL/DELTA
+                                  base_version INTEGER, -- DELTA 依赖的版本号
+                                  content_length INTEGER, -- 原文字符数
+                                  content_checksum BIGINT, -- 原文 CRC32
+                                  stored_bytes INTEGER, -- 压缩后字节数
+                                  content_payload BYTEA,
+
+                                  version_created_at TIMESTAMP,
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  UNIQUE(project_id, chapter_number, version)
+);
+
+-- Payloads are already deflate-compressed, skip pglz and store them out of line directly
+ALTER TABLE chapter_versions ALTER COLUMN content_payload SET STORAGE EXTERNAL;
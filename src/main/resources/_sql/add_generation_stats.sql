@@ -0,0 +1,71 @@
+-- Migration script for pre-aggregated generation statistics
+-- One row per (project, generation type), refreshed by GenerationStatsService with a single
+-- SQL aggregation over generation_history. Only groups with rows updated since the last refresh
+-- watermark, or with rows deleted since then, are recomputed.
+
+CREATE TABLE generation_stats (
+                                  id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                  project_id UUID REFERENCES projects(id) ON DELETE CASCADE,
+                                  generation_type VARCHAR(50) NOT NULL,
+
+    -- 整体统计
+                                  total_count BIGINT,
+                                  scored_count BIGINT,
+                                  avg_quality FLOAT,
+                                  p90_quality FLOAT,
+                                  feedback_count BIGINT,
+
+    -- 质量排名前 K 条记录的参数分布
+                                  top_k_sample_size INTEGER,
+                                  top_k_avg_quality FLOAT,
+                                  top_k_avg_temperature FLOAT,
+                                  top_k_median_temperature FLOAT,
+                                  top_k_avg_max_tokens FLOAT,
+                                  top_k_median_max_tokens FLOAT,
+
+                                  last_generated_at TIMESTAMP,
+                                  refreshed_at TIMESTAMP,
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  UNIQUE(project_id, generation_type)
+);
+
+-- Dirty-group detection for incremental refresh
+CREATE INDEX idx_history_updated ON generation_history(updated_at);
+
+-- Refresh watermark, kept next to the stats so every instance and every restart continues from it
+CREATE TABLE generation_stats_state (
+                                        id SMALLINT PRIMARY KEY CHECK (id = 1),
+                                        watermark TIMESTAMP NOT NULL
+);
+INSERT INTO generation_stats_state (id, watermark) VALUES (1, TIMESTAMP '1970-01-01 00:00:00');
+
+-- Groups that lost rows (deleted, moved to another project/type, or archived with their partition).
+-- updated_at cannot reveal a deleted row, so the next refresh consumes these tombstones instead
+CREATE TABLE generation_stats_dirty (
+                                        project_id UUID NOT NULL,
+                                        generation_type VARCHAR(50) NOT NULL,
+                                        marked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (project_id, generation_type)
+);
+
+CREATE OR REPLACE FUNCTION mark_generation_stats_dirty() RETURNS trigger AS $$
+BEGIN
+    IF OLD.project_id IS NOT NULL THEN
+        INSERT INTO generation_stats_dirty (project_id, generation_type)
+        VALUES (OLD.project_id, COALESCE(OLD.generation_type, 'unknown'))
+        ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_generation_history_stats_delete
+    AFTER DELETE ON generation_history
+    FOR EACH ROW EXECUTE FUNCTION mark_generation_stats_dirty();
+
+CREATE TRIGGER trg_generation_history_stats_regroup
+    AFTER UPDATE OF project_id, generation_type ON generation_history
+    FOR EACH ROW
+    WHEN (OLD.project_id IS DISTINCT FROM NEW.project_id OR OLD.generation_type IS DISTINCT FROM NEW.generation_type)
+    EXECUTE FUNCTION mark_generation_stats_dirty();
@@ -0,0 +1,24 @@
+-- Migration script for keyset pagination indexes
+-- List endpoints page on (created_at, id) with a cursor instead of loading whole tables,
+-- so every paginated table needs a matching composite index
+
+CREATE INDEX IF NOT EXISTS idx_projects_created_id ON projects(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_worldviews_created_id ON worldviews(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_characters_created_id ON characters(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_character_memories_created_id ON character_memories(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_character_relationships_created_id ON character_relationships(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_dialogues_created_id ON dialogues(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_scenes_created_id ON scenes(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_story_chapters_created_id ON story_chapters(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_timelines_created_id ON timelines(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_prompt_templates_created_id ON prompt_templates(created_at, id);
+
+-- Generation history is listed newest first, globally and per project
+CREATE INDEX IF NOT EXISTS idx_generation_history_created_id ON generation_history(created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_generation_history_project_created_id ON generation_history(project_id, created_at DESC, id DESC);
+
+-- Filtered listings page on the same keys
+CREATE INDEX IF NOT EXISTS idx_generation_history_type_created_id ON generation_history(generation_type, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_generation_history_target_created_id ON generation_history(target_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_generation_history_feedback_created_id ON generation_history(created_at DESC, id DESC) WHERE user_feedback IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_character_memories_character_created_id ON character_memories(character_id, created_at, id);
@@ -0,0 +1,45 @@
+-- Migration script for the model token usage ledger
+-- Every model call appends one row with its usage block (prompt/completion/cached tokens), latency
+-- and the model that actually served it. Rows are written in batches by LlmUsageLedger, which adds
+-- each batch into llm_usage_daily in the same transaction; reports and budget checks read the rollup.
+-- project_id has no foreign key: spend stays attributable after a project is deleted.
+
+CREATE TABLE IF NOT EXISTS llm_usage_ledger (
+                                  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+                                  project_id UUID,
+                                  source VARCHAR(100),
+                                  prompt_template VARCHAR(255),
+                                  model_name VARCHAR(100) NOT NULL,
+                                  prompt_tokens INTEGER NOT NULL,
+                                  completion_tokens INTEGER NOT NULL,
+                                  cached_tokens INTEGER NOT NULL DEFAULT 0,
+                                  total_tokens INTEGER NOT NULL,
+                                  latency_ms INTEGER,
+                                  streamed BOOLEAN NOT NULL DEFAULT FALSE,
+                                  estimated BOOLEAN NOT NULL DEFAULT FALSE, -- 响应中没有 usage，按本地估算
+                                  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_llm_usage_ledger_project_created ON llm_usage_ledger(project_id, created_at);
+
+-- Per project / day / source / template / model totals.
+-- Unattributed calls use the nil UUID and missing source/template use '' so the conflict key is never NULL.
+CREATE TABLE IF NOT EXISTS llm_usage_daily (
+                                  project_id UUID NOT NULL,
+                                  usage_date DATE NOT NULL,
+                                  source VARCHAR(100) NOT NULL DEFAULT '',
+                                  prompt_template VARCHAR(255) NOT NULL DEFAULT '',
+                                  model_name VARCHAR(100) NOT NULL,
+                                  calls BIGINT NOT NULL DEFAULT 0,
+                                  prompt_tokens BIGINT NOT NULL DEFAULT 0,
+                                  completion_tokens BIGINT NOT NULL DEFAULT 0,
+                                  cached_tokens BIGINT NOT NULL DEFAULT 0,
+                                  total_tokens BIGINT NOT NULL DEFAULT 0,
+                                  latency_ms BIGINT NOT NULL DEFAULT 0,
+                                  estimated_calls BIGINT NOT NULL DEFAULT 0,
+                                  updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  PRIMARY KEY (project_id, usage_date, source, prompt_template, model_name)
+);
+
+-- Cross-project reports filter by date only
+CREATE INDEX IF NOT EXISTS idx_llm_usage_daily_date ON llm_usage_daily(usage_date);
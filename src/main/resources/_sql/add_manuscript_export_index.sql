@@ -0,0 +1,5 @@
+-- Migration script for streaming manuscript export
+-- The export query picks the latest version of each chapter (DISTINCT ON chapter_number),
+-- this index lets PostgreSQL walk it in order without sorting the whole project
+
+CREATE INDEX idx_chapter_project_number_version ON story_chapters(project_id, chapter_number, version DESC);
@@ -0,0 +1,6 @@
+-- Migration script for scheduled memory accessibility decay
+-- Accessibility is now recomputed in bulk by MemoryDecayService and stored, so retrieval
+-- filters on the stored value directly; this index serves "accessibility > threshold" per character
+
+CREATE INDEX IF NOT EXISTS idx_character_memories_character_accessibility
+    ON character_memories(character_id, accessibility DESC);
@@ -0,0 +1,24 @@
+-- Migration script for memory consolidation
+-- MemoryConsolidationService summarizes clusters of stale memories into one semantic memory
+-- and moves the originals here; consolidated_into points at the summary that replaced them
+
+CREATE TABLE IF NOT EXISTS character_memories_archive (
+                                                          id UUID PRIMARY KEY,
+                                                          character_id UUID REFERENCES characters(id) ON DELETE CASCADE,
+                                                          timeline_id UUID,
+                                                          memory_type VARCHAR(50),
+                                                          memory_content TEXT,
+                                                          emotional_weight FLOAT,
+                                                          keywords TEXT[],
+                                                          related_characters UUID[],
+                                                          related_locations UUID[],
+                                                          accessibility FLOAT,
+                                                          last_accessed TIMESTAMP,
+                                                          access_count INTEGER,
+                                                          created_at TIMESTAMP,
+                                                          consolidated_into UUID,
+                                                          archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_memory_archive_character_archived ON character_memories_archive(character_id, archived_at DESC);
+CREATE INDEX IF NOT EXISTS idx_memory_archive_consolidated_into ON character_memories_archive(consolidated_into);
@@ -0,0 +1,31 @@
+-- Migration script for prompt template variants and runtime reload
+-- Active templates sharing a variant_group are A/B variants of one prompt; generation routes
+-- between them by traffic_weight. Any change to prompt_templates sends a NOTIFY so running
+-- instances reload their in-memory template snapshot without a restart.
+-- generation_history records latency and token counts so each variant's cost can be aggregated
+-- next to its quality score.
+
+ALTER TABLE prompt_templates ADD COLUMN IF NOT EXISTS variant_group VARCHAR(255);
+ALTER TABLE prompt_templates ADD COLUMN IF NOT EXISTS traffic_weight INTEGER NOT NULL DEFAULT 100;
+
+ALTER TABLE generation_history ADD COLUMN IF NOT EXISTS latency_ms INTEGER;
+ALTER TABLE generation_history ADD COLUMN IF NOT EXISTS prompt_tokens INTEGER;
+ALTER TABLE generation_history ADD COLUMN IF NOT EXISTS completion_tokens INTEGER;
+
+-- Per-variant metrics aggregate generation_history by template name
+CREATE INDEX IF NOT EXISTS idx_generation_history_prompt_template_created
+    ON generation_history(prompt_template, created_at);
+
+-- One notification per statement; the payload is informational, listeners reload the whole
+-- (small) set of active templates
+CREATE OR REPLACE FUNCTION notify_prompt_templates_changed() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('prompt_templates_changed', TG_OP);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_prompt_templates_changed ON prompt_templates;
+CREATE TRIGGER trg_prompt_templates_changed
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON prompt_templates
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_prompt_templates_changed();
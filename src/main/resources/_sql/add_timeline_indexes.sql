@@ -0,0 +1,10 @@
+-- Migration script for timeline query indexes
+-- Project timeline, key event and event type queries filter by project in SQL instead of
+-- loading the whole project timeline; important-memory lookups filter by character and importance
+
+CREATE INDEX IF NOT EXISTS idx_timeline_project_time ON timelines(project_id, event_time);
+
+-- Event type matching is case-insensitive, so the index is on lower(event_type)
+CREATE INDEX IF NOT EXISTS idx_timeline_project_type ON timelines(project_id, lower(event_type), event_time);
+
+CREATE INDEX IF NOT EXISTS idx_timeline_character_importance ON timelines(character_id, memory_importance DESC);
@@ -0,0 +1,87 @@
+-- Migration script for monthly partitioned generation history
+-- generation_history is rebuilt as a range-partitioned table on created_at (one partition per month).
+-- The primary key has to include the partition key, so it becomes (id, created_at).
+-- Future partitions are created by GenerationHistoryPartitionService; partitions older than the
+-- retention period are compressed into generation_history_archive and dropped.
+
+BEGIN;
+
+ALTER TABLE generation_history RENAME TO generation_history_legacy;
+ALTER TABLE generation_history_legacy RENAME CONSTRAINT generation_history_pkey TO generation_history_legacy_pkey;
+
+CREATE TABLE generation_history (
+                                    id UUID NOT NULL DEFAULT gen_random_uuid(),
+                                    project_id UUID REFERENCES projects(id) ON DELETE CASCADE,
+                                    generation_type VARCHAR(50), -- chapter/dialogue/scene_description
+                                    target_id UUID, -- 关联的章节/对话等ID
+
+                                    prompt_template TEXT, -- 使用的提示词模板
+                                    prompt_variables JSONB, -- 填充的变量
+                                    full_prompt TEXT, -- 完整提示词
+
+                                    model_name VARCHAR(50),
+                                    model_parameters JSONB, -- temperature, max_tokens等
+
+                                    generated_result TEXT,
+                                    quality_score FLOAT, -- 质量评分
+                                    user_feedback TEXT,
+
+                                    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Catch-all partition so inserts never fail if the maintenance job falls behind
+CREATE TABLE generation_history_default PARTITION OF generation_history DEFAULT;
+
+-- Monthly partitions covering existing rows and the next three months
+DO $$
+DECLARE
+    m DATE;
+BEGIN
+    FOR m IN
+        SELECT generate_series(
+                       date_trunc('month', COALESCE((SELECT MIN(created_at) FROM generation_history_legacy), now())),
+                       date_trunc('month', now()) + INTERVAL '3 months',
+                       INTERVAL '1 month')::DATE
+    LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF generation_history FOR VALUES FROM (%L) TO (%L)',
+                       'generation_history_p' || to_char(m, 'YYYYMM'), m, (m + INTERVAL '1 month')::DATE);
+    END LOOP;
+END $$;
+
+INSERT INTO generation_history (id, project_id, generation_type, target_id, prompt_template, prompt_variables,
+                                full_prompt, model_name, model_parameters, generated_result, quality_score,
+                                user_feedback, created_at, updated_at)
+SELECT id, project_id, generation_type, target_id, prompt_template, prompt_variables,
+       full_prompt, model_name, model_parameters, generated_result, quality_score,
+       user_feedback, COALESCE(created_at, CURRENT_TIMESTAMP), updated_at
+FROM generation_history_legacy;
+
+DROP TABLE generation_history_legacy;
+
+-- Indexes (created on every partition)
+CREATE INDEX idx_history_project_created ON generation_history(project_id, created_at DESC);
+CREATE INDEX idx_history_project_type_created ON generation_history(project_id, generation_type, created_at DESC);
+CREATE INDEX idx_history_type_created ON generation_history(generation_type, created_at DESC);
+CREATE INDEX idx_history_target ON generation_history(target_id);
+
+-- Cold storage for expired partitions: metadata stays queryable, text/jsonb columns are
+-- serialized to JSON and deflate-compressed into payload
+CREATE TABLE generation_history_archive (
+                                            id UUID PRIMARY KEY,
+                                            project_id UUID REFERENCES projects(id) ON DELETE CASCADE,
+                                            generation_type VARCHAR(50),
+                                            target_id UUID,
+                                            model_name VARCHAR(50),
+                                            quality_score FLOAT,
+                                            created_at TIMESTAMP NOT NULL,
+                                            payload_bytes INTEGER,
+                                            payload BYTEA,
+                                            archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER TABLE generation_history_archive ALTER COLUMN payload SET STORAGE EXTERNAL;
+CREATE INDEX idx_history_archive_project_created ON generation_history_archive(project_id, created_at DESC);
+
+COMMIT;
@@ -0,0 +1,54 @@
+package com.linyuan.storyforge.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 章节版本增量压缩测试
+ */
+class DeltaCompressionTest {
+
+    private static String randomChapter(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) (0x4e00 + random.nextInt(3000)));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void fullSnapshotRoundTrip() {
+        String content = randomChapter(1, 3000);
+        byte[] payload = DeltaCompression.compress(content, null);
+        assertEquals(content, DeltaCompression.decompress(payload, null));
+    }
+
+    @Test
+    void deltaIsMuchSmallerForRefinedChapter() {
+        String newer = randomChapter(2, 4000);
+        String older = newer.substring(0, 1000) + "修改过的段落" + newer.substring(1200);
+
+        byte[] full = DeltaCompression.compress(older, null);
+        byte[] delta = DeltaCompression.compress(older, newer);
+
+        assertEquals(older, DeltaCompression.decompress(delta, newer));
+        assertTrue(delta.length * 10 < full.length, "增量应远小于完整快照");
+    }
+
+    @Test
+    void deltaWithoutBaseFails() {
+        String newer = randomChapter(3, 500);
+        byte[] delta = DeltaCompression.compress(newer + "尾", newer);
+        assertThrows(IllegalStateException.class, () -> DeltaCompression.decompress(delta, null));
+    }
+
+    @Test
+    void checksumDetectsChange() {
+        assertEquals(DeltaCompression.checksum("章节"), DeltaCompression.checksum("章节"));
+        assertNotEquals(DeltaCompression.checksum("章节"), DeltaCompression.checksum("章节。"));
+    }
+}
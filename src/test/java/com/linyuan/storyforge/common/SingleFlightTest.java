@@ -0,0 +1,112 @@
+package com.linyuan.storyforge.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相同请求合并执行测试
+ */
+class SingleFlightTest {
+
+    private static final int WAITERS = 4;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void waitersShareLeaderResult() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        List<Future<String>> results = startCalls(flight, () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "章节大纲";
+        });
+        awaitCoalesced(flight, WAITERS);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("章节大纲", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, flight.getStatistics().get("inFlight"));
+    }
+
+    @Test
+    void leaderFailurePropagatesToWaiters() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("模型调用失败");
+
+        List<Future<String>> results = startCalls(flight, () -> {
+            await(release);
+            throw failure;
+        });
+        awaitCoalesced(flight, WAITERS);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(failure, thrown.getCause(), "等待方应收到发起方的同一个异常");
+        }
+        assertEquals(1L, flight.getStatistics().get("failures"));
+
+        // 失败不会被缓存，之后的请求重新执行
+        assertEquals("重试成功", flight.execute("key", () -> "重试成功"));
+    }
+
+    /**
+     * 先启动发起方，等它进入执行后再启动等待方
+     */
+    private List<Future<String>> startCalls(SingleFlight<String, String> flight,
+                                            Supplier<String> call) throws InterruptedException {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.execute("key", () -> {
+            leaderStarted.countDown();
+            return call.get();
+        })));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < WAITERS; i++) {
+            results.add(executor.submit(() -> flight.execute("key", () -> {
+                throw new AssertionError("等待方不应执行调用");
+            })));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(SingleFlight<String, String> flight, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((long) flight.getStatistics().get("coalesced") < expected) {
+            assertTrue(System.nanoTime() < deadline, "等待方未合并到进行中的请求");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.validator.StreamingConsistencyChecker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * 段落级修正测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ContentRepairServiceTest {
+
+    private static final String VIOLATION = "林风不会使用剑术";
+
+    private static final List<StreamingConsistencyChecker.Rule> RULES = List.of(
+            new StreamingConsistencyChecker.Rule("剑", VIOLATION, StreamingConsistencyChecker.Scope.CHARACTER, "林风"));
+
+    private static final String CONTENT = String.join("\n",
+            "　　山门前雾气弥漫。",
+            "　　林风拔出长剑，迎了上去。",
+            "　　众人屏息凝神。",
+            "　　远处传来钟声。",
+            "　　夜色渐深。");
+
+    @Mock
+    private AiGenerationService aiService;
+
+    private ContentRepairService repairService;
+
+    @BeforeEach
+    void setUp() {
+        repairService = new ContentRepairService(aiService, true, 0.4);
+    }
+
+    @Test
+    void splicesRewrittenParagraphAndKeepsIndentation() {
+        when(aiService.chatWithOptions(anyString(), any(), any())).thenReturn("  林风抬手一掌，\n迎了上去。\n");
+
+        ContentRepairService.RepairOutcome outcome =
+                repairService.repair(CONTENT, RULES, List.of(VIOLATION), 0.8, 2000);
+
+        assertNotNull(outcome);
+        assertTrue(outcome.passed());
+        assertEquals(1, outcome.repairedParagraphs());
+        assertEquals(5, outcome.totalParagraphs());
+        assertEquals(CONTENT.replace("　　林风拔出长剑，迎了上去。", "　　林风抬手一掌，迎了上去。"), outcome.content());
+    }
+
+    @Test
+    void reportsViolationsLeftInRewrittenParagraph() {
+        when(aiService.chatWithOptions(anyString(), any(), any())).thenReturn("林风收剑入鞘，迎了上去。");
+
+        ContentRepairService.RepairOutcome outcome =
+                repairService.repair(CONTENT, RULES, List.of(VIOLATION), 0.8, 2000);
+
+        assertNotNull(outcome);
+        assertFalse(outcome.passed());
+        assertEquals(List.of(VIOLATION), outcome.remainingViolations());
+    }
+
+    @Test
+    void blankRewriteFailsRepair() {
+        when(aiService.chatWithOptions(anyString(), any(), any())).thenReturn("  \n");
+
+        assertNull(repairService.repair(CONTENT, RULES, List.of(VIOLATION), 0.8, 2000));
+    }
+
+    @Test
+    void unlocatedViolationFallsBackToRegeneration() {
+        assertNull(repairService.repair(CONTENT, RULES, List.of(VIOLATION, "世界观中不存在魔法"), 0.8, 2000));
+    }
+}
@@ -0,0 +1,175 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.dto.GenerationContext;
+import com.linyuan.storyforge.dto.GenerationRequest;
+import com.linyuan.storyforge.dto.GenerationResult;
+import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.enums.ContentType;
+import com.linyuan.storyforge.exception.BudgetExceededException;
+import com.linyuan.storyforge.validator.CharacterConsistencyValidator;
+import com.linyuan.storyforge.validator.ConsistencyResult;
+import com.linyuan.storyforge.validator.StreamingConsistencyChecker;
+import com.linyuan.storyforge.validator.WorldviewConsistencyValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 生成管道重试测试
+ * 验证失败后的重试必须把违规反馈带进下一次的提示词
+ */
+@ExtendWith(MockitoExtension.class)
+class GenerationPipelineTest {
+
+    private static final String VIOLATION = "林风不会使用剑术";
+
+    @Mock
+    private MemoryIntegrationService memoryService;
+
+    @Mock
+    private AiGenerationService aiService;
+
+    @Mock
+    private CharacterConsistencyValidator characterValidator;
+
+    @Mock
+    private WorldviewConsistencyValidator worldviewValidator;
+
+    @Mock
+    private ContentRepairService repairService;
+
+    @InjectMocks
+    private GenerationPipeline pipeline;
+
+    private Character character;
+    private GenerationRequest request;
+
+    @BeforeEach
+    void setUp() {
+        character = Character.builder().name("林风").build();
+        character.setId(UUID.randomUUID());
+
+        request = GenerationRequest.builder()
+                .projectId(UUID.randomUUID())
+                .characterIds(List.of(character.getId()))
+                .contentType(ContentType.CHAPTER)
+                .generationGoal("林风初入山门")
+                .maxRetries(1)
+                .autoCreateMemory(false)
+                .build();
+
+        GenerationContext context = GenerationContext.builder()
+                .characters(List.of(character))
+                .generationGoal(request.getGenerationGoal())
+                .build();
+
+        when(memoryService.buildGenerationContext(request)).thenReturn(context);
+        when(memoryService.buildPromptMessages(anyString(), eq(context)))
+                .thenAnswer(invocation -> new PromptAssembler.AssembledPrompt(null, invocation.getArgument(0)));
+    }
+
+    @Test
+    void retryPromptCarriesValidationFeedback() {
+        when(characterValidator.compileStreamingRules(character)).thenReturn(List.of());
+        when(aiService.chatWithOptions(anyString(), any(), any(), any())).thenReturn("第一稿", "第二稿");
+        when(characterValidator.validateContent(eq(character.getId()), eq("第一稿"), any()))
+                .thenReturn(ConsistencyResult.builder()
+                        .passed(false)
+                        .overallScore(0.4)
+                        .violations(new ArrayList<>(List.of(VIOLATION)))
+                        .build());
+        when(characterValidator.validateContent(eq(character.getId()), eq("第二稿"), any()))
+                .thenReturn(ConsistencyResult.builder().passed(true).overallScore(0.9).build());
+
+        GenerationResult result = pipeline.execute(request);
+
+        ArgumentCaptor<String> userMessages = ArgumentCaptor.forClass(String.class);
+        verify(aiService, times(2)).chatWithOptions(userMessages.capture(), any(), any(), any());
+        List<String> prompts = userMessages.getAllValues();
+
+        assertFalse(prompts.get(0).contains(VIOLATION));
+        assertTrue(prompts.get(1).contains(VIOLATION), "重试提示词应包含上次的违规");
+        assertTrue(prompts.get(1).contains("林风初入山门"), "重试提示词应保留原始生成目标");
+        assertTrue(result.isSuccess());
+        assertTrue(result.isPassedAllValidation());
+        assertEquals(1, result.getRetryCount());
+    }
+
+    @Test
+    void repairedContentIsRevalidatedInFull() {
+        when(characterValidator.compileStreamingRules(character)).thenReturn(List.of());
+        when(aiService.chatWithOptions(anyString(), any(), any(), any())).thenReturn("第一稿", "第二稿");
+        when(repairService.repair(eq("第一稿"), any(), any(), any(), any()))
+                .thenReturn(new ContentRepairService.RepairOutcome("修正稿", 1, 5, List.of()));
+        when(characterValidator.validateContent(eq(character.getId()), any(), any()))
+                .thenAnswer(invocation -> "第二稿".equals(invocation.getArgument(1))
+                        ? ConsistencyResult.builder().passed(true).overallScore(0.9).build()
+                        : ConsistencyResult.builder()
+                                .passed(false)
+                                .overallScore(0.4)
+                                .violations(new ArrayList<>(List.of(VIOLATION)))
+                                .build());
+
+        GenerationResult result = pipeline.execute(request);
+
+        // 改写段落本身通过了硬性规则，但全文仍未通过完整验证，应继续重试
+        verify(characterValidator).validateContent(eq(character.getId()), eq("修正稿"), any());
+        verify(aiService, times(2)).chatWithOptions(anyString(), any(), any(), any());
+        assertEquals(1, result.getRepairCount());
+        assertEquals("第二稿", result.getGeneratedContent());
+        assertTrue(result.isPassedAllValidation());
+        // 修正前的失败结果被修正后的完整验证结果替换，没有重复记录
+        assertEquals(2, result.getCharacterConsistencyResults().size());
+    }
+
+    @Test
+    void bestOfNFallsBackToSequentialWhenEveryCandidateBreaksHardRules() {
+        ReflectionTestUtils.setField(pipeline, "maxCandidates", 5);
+        request.setCandidateCount(2);
+        request.setEarlyAcceptScore(null);
+        when(characterValidator.compileStreamingRules(character)).thenReturn(List.of(
+                new StreamingConsistencyChecker.Rule("剑", VIOLATION, StreamingConsistencyChecker.Scope.CHARACTER, "林风")));
+        when(aiService.chatStream(anyString(), any(), any(), any(), any()))
+                .thenReturn(new QianfanDirectService.StreamedCompletion("林风拔剑而起。", false));
+        when(aiService.chatWithOptions(anyString(), any(), any(), any())).thenReturn("林风抬手一掌。");
+        when(characterValidator.validateContent(eq(character.getId()), eq("林风抬手一掌。"), any()))
+                .thenReturn(ConsistencyResult.builder().passed(true).overallScore(0.9).build());
+
+        GenerationResult result = pipeline.execute(request);
+
+        ArgumentCaptor<String> userMessage = ArgumentCaptor.forClass(String.class);
+        verify(aiService, times(2)).chatStream(anyString(), any(), any(), any(), any());
+        verify(aiService).chatWithOptions(userMessage.capture(), any(), any(), any());
+        assertTrue(userMessage.getValue().contains(VIOLATION), "回退生成的提示词应包含候选命中的违规");
+        assertTrue(result.isSuccess());
+        assertTrue(result.isPassedAllValidation());
+        assertEquals("林风抬手一掌。", result.getGeneratedContent());
+    }
+
+    @Test
+    void budgetExceededReachesTheCaller() {
+        when(characterValidator.compileStreamingRules(character)).thenReturn(List.of());
+        when(aiService.chatWithOptions(anyString(), any(), any(), any()))
+                .thenThrow(new BudgetExceededException(request.getProjectId(), 1_000, 1_000));
+
+        // 不转成 success=false，由 GlobalExceptionHandler 返回 429
+        assertThrows(BudgetExceededException.class, () -> pipeline.execute(request));
+    }
+}
@@ -0,0 +1,145 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.entity.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 列表接口查询次数回归测试
+ * DTO 转换只读取 LAZY 关联的主键，列表接口无论返回多少行都应只执行一条查询
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({TimelineService.class, TimelineSnapshotService.class, TimelineBatchWriter.class,
+        DialogueService.class, CharacterRelationshipService.class, CharacterRelationshipGraphService.class,
+        CharacterMemoryService.class, NdjsonExportService.class})
+@Testcontainers(disabledWithoutDocker = true)
+class ListQueryCountTest {
+
+    private static final int ROWS_PER_CHARACTER = 5;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private DialogueService dialogueService;
+
+    @Autowired
+    private CharacterRelationshipService relationshipService;
+
+    @Autowired
+    private CharacterMemoryService memoryService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        Project project = entityManager.persist(Project.builder().name("查询次数测试").build());
+        StoryChapter chapter = entityManager.persist(StoryChapter.builder()
+                .project(project)
+                .chapterNumber(1)
+                .title("第一章")
+                .build());
+
+        List<Character> characters = List.of(
+                entityManager.persist(Character.builder().project(project).name("甲").build()),
+                entityManager.persist(Character.builder().project(project).name("乙").build()),
+                entityManager.persist(Character.builder().project(project).name("丙").build()));
+
+        for (Character character : characters) {
+            for (int i = 0; i < ROWS_PER_CHARACTER; i++) {
+                Timeline timeline = entityManager.persist(Timeline.builder()
+                        .project(project)
+                        .character(character)
+                        .eventTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(i))
+                        .eventType("action")
+                        .memoryImportance(5)
+                        .build());
+                entityManager.persist(CharacterMemory.builder()
+                        .character(character)
+                        .timeline(timeline)
+                        .memoryContent("记忆 " + i)
+                        .build());
+                entityManager.persist(Dialogue.builder()
+                        .chapter(chapter)
+                        .speaker(character)
+                        .dialogueText("台词 " + i)
+                        .sequenceNumber(i)
+                        .build());
+            }
+        }
+        for (int i = 0; i < characters.size(); i++) {
+            entityManager.persist(CharacterRelationship.builder()
+                    .characterA(characters.get(i))
+                    .characterB(characters.get((i + 1) % characters.size()))
+                    .relationshipType("朋友")
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void timelinesPageRunsSingleQuery() {
+        assertSingleQuery(() -> timelineService.getTimelinesPage(null, 100).getItems(), 3 * ROWS_PER_CHARACTER);
+    }
+
+    @Test
+    void dialoguesPageRunsSingleQuery() {
+        assertSingleQuery(() -> dialogueService.getDialoguesPage(null, 100).getItems(), 3 * ROWS_PER_CHARACTER);
+    }
+
+    @Test
+    void relationshipsPageRunsSingleQuery() {
+        assertSingleQuery(() -> relationshipService.getRelationshipsPage(null, 100).getItems(), 3);
+    }
+
+    @Test
+    void memoriesPageRunsSingleQuery() {
+        assertSingleQuery(() -> memoryService.getMemoriesPage(null, 100).getItems(), 3 * ROWS_PER_CHARACTER);
+    }
+
+    private void assertSingleQuery(Supplier<List<?>> listCall, int expectedRows) {
+        statistics.clear();
+        List<?> result = listCall.get();
+        assertEquals(expectedRows, result.size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "列表转换不应逐行加载关联实体");
+    }
+}
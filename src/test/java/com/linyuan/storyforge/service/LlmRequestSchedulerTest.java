@@ -0,0 +1,175 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.LlmSchedulerProperties;
+import com.linyuan.storyforge.enums.LlmPriority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 模型调用调度测试
+ * 每个排队请求在独立线程上取得名额后交给测试线程，由测试线程逐个归还，名额的分配顺序因此是确定的
+ */
+class LlmRequestSchedulerTest {
+
+    private static final int COST = 1000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final BlockingQueue<Grant> grants = new LinkedBlockingQueue<>();
+
+    private record Grant(String label, LlmRequestScheduler.Permit permit) {
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void freedSlotsAreSharedByPriorityWeight() throws InterruptedException {
+        LlmRequestScheduler scheduler = scheduler(1);
+        LlmRequestScheduler.Permit holder = scheduler.acquire(COST);
+
+        UUID project = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            enqueue(scheduler, "interactive", LlmPriority.INTERACTIVE, project);
+            enqueue(scheduler, "batch", LlmPriority.BATCH, project);
+        }
+        awaitQueued(scheduler, LlmPriority.INTERACTIVE, 10);
+        awaitQueued(scheduler, LlmPriority.BATCH, 10);
+
+        holder.close();
+        List<String> order = drain(20);
+
+        // 权重 8:2，前 10 个名额中交互占 8 个，批量也不会被饿死
+        List<String> first = order.subList(0, 10);
+        assertEquals(8, first.stream().filter("interactive"::equals).count(), order.toString());
+        assertEquals(2, first.stream().filter("batch"::equals).count(), order.toString());
+        assertEquals(10, order.stream().filter("batch"::equals).count());
+    }
+
+    @Test
+    void projectsAreQueuedFairlyWithinPriority() throws InterruptedException {
+        LlmRequestScheduler scheduler = scheduler(1);
+        LlmRequestScheduler.Permit holder = scheduler.acquire(COST);
+
+        UUID busy = UUID.randomUUID();
+        UUID quiet = UUID.randomUUID();
+        for (int i = 0; i < 6; i++) {
+            enqueue(scheduler, "busy", LlmPriority.BATCH, busy);
+        }
+        awaitQueued(scheduler, LlmPriority.BATCH, 6);
+        enqueue(scheduler, "quiet", LlmPriority.BATCH, quiet);
+        enqueue(scheduler, "quiet", LlmPriority.BATCH, quiet);
+        awaitQueued(scheduler, LlmPriority.BATCH, 8);
+
+        holder.close();
+        List<String> order = drain(8);
+
+        // 后到的项目与先排了 6 个请求的项目交替获得名额，不必等对方全部完成
+        assertEquals(List.of("busy", "quiet", "busy", "quiet", "busy", "busy", "busy", "busy"), order);
+    }
+
+    @Test
+    void lowerPrioritiesAreCappedSoInteractiveAlwaysHasASlot() throws InterruptedException {
+        // 4 个名额：批量最多 2 个，后台最多 1 个
+        LlmRequestScheduler scheduler = scheduler(4);
+
+        for (int i = 0; i < 3; i++) {
+            enqueue(scheduler, "batch", LlmPriority.BATCH, UUID.randomUUID());
+            enqueue(scheduler, "background", LlmPriority.BACKGROUND, UUID.randomUUID());
+        }
+        awaitQueued(scheduler, LlmPriority.BATCH, 1);
+        awaitQueued(scheduler, LlmPriority.BACKGROUND, 2);
+
+        List<Grant> granted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            granted.add(take());
+        }
+        assertNull(grants.poll(100, TimeUnit.MILLISECONDS), "低优先级不应超出名额上限");
+        assertEquals(2, granted.stream().filter(grant -> grant.label().equals("batch")).count());
+        assertEquals(1, granted.stream().filter(grant -> grant.label().equals("background")).count());
+
+        // 低优先级仍在排队，交互请求立即拿到剩下的名额
+        LlmRequestScheduler.Permit interactive = scheduler.acquire(COST);
+        assertEquals(1, inFlight(scheduler, LlmPriority.INTERACTIVE));
+        assertEquals(1, queueDepth(scheduler, LlmPriority.BATCH));
+        assertEquals(2, queueDepth(scheduler, LlmPriority.BACKGROUND));
+
+        // 后台名额归还后由排队的后台请求接上
+        granted.stream().filter(grant -> grant.label().equals("background")).findFirst().orElseThrow().permit().close();
+        assertEquals("background", take().label());
+        interactive.close();
+    }
+
+    private LlmRequestScheduler scheduler(int maxConcurrency) {
+        LlmSchedulerProperties properties = new LlmSchedulerProperties();
+        properties.setMaxConcurrency(maxConcurrency);
+        return new LlmRequestScheduler(properties);
+    }
+
+    /**
+     * 在独立线程上以指定优先级和项目排队，取得名额后交给测试线程
+     */
+    private void enqueue(LlmRequestScheduler scheduler, String label, LlmPriority priority, UUID projectId) {
+        executor.submit(() -> {
+            try (LlmUsageScope ignored = LlmUsageScope.open(projectId, "test").priority(priority)) {
+                grants.add(new Grant(label, scheduler.acquire(COST)));
+            }
+            return null;
+        });
+    }
+
+    private Grant take() throws InterruptedException {
+        Grant grant = grants.poll(5, TimeUnit.SECONDS);
+        assertNotNull(grant, "等待名额超时");
+        return grant;
+    }
+
+    /**
+     * 逐个取得并归还名额，返回分配顺序
+     */
+    private List<String> drain(int count) throws InterruptedException {
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Grant grant = take();
+            order.add(grant.label());
+            grant.permit().close();
+        }
+        return order;
+    }
+
+    private void awaitQueued(LlmRequestScheduler scheduler, LlmPriority priority, int expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queueDepth(scheduler, priority) < expected) {
+            assertTrue(System.nanoTime() < deadline, "等待请求排队超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private static int queueDepth(LlmRequestScheduler scheduler, LlmPriority priority) {
+        return (int) priorityStats(scheduler, priority).get("queueDepth");
+    }
+
+    private static int inFlight(LlmRequestScheduler scheduler, LlmPriority priority) {
+        return (int) priorityStats(scheduler, priority).get("inFlight");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> priorityStats(LlmRequestScheduler scheduler, LlmPriority priority) {
+        Map<String, Object> priorities = (Map<String, Object>) scheduler.getStatistics().get("priorities");
+        return (Map<String, Object>) priorities.get(priority.getCode());
+    }
+}
@@ -0,0 +1,155 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.MemoryConsolidationProperties;
+import com.linyuan.storyforge.entity.Character;
+import com.linyuan.storyforge.entity.CharacterMemory;
+import com.linyuan.storyforge.entity.Project;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 记忆整合测试
+ * 概括记忆陈旧后可以再次整合，在线记忆数的上界不随运行次数增长
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({MemoryConsolidationService.class, MemoryConsolidationProperties.class})
+@Sql("/_sql/add_memory_consolidation_archive.sql")
+@Testcontainers(disabledWithoutDocker = true)
+class MemoryConsolidationServiceTest {
+
+    private static final String CORE = "核心记忆";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MemoryConsolidationProperties properties;
+
+    @Autowired
+    private MemoryConsolidationService consolidationService;
+
+    @MockBean
+    private AiGenerationService aiService;
+
+    private Character character;
+
+    @BeforeEach
+    void setUp() {
+        properties.setStaleThreshold(0.3f);
+        properties.setMinClusterSize(3);
+        properties.setMaxClusterSize(12);
+
+        Project project = entityManager.persist(Project.builder().name("记忆整合测试").build());
+        character = entityManager.persist(Character.builder().project(project).name("林风").build());
+    }
+
+    @Test
+    void summaryIsConsolidatedAgainOnceStale() {
+        properties.setWorkingSetSize(100);
+        when(aiService.chatWithOptions(anyString(), any(), any())).thenReturn("林风在山门练剑的往事");
+        for (int i = 0; i < 4; i++) {
+            memory(null, 0.1f, "剑", "山门");
+        }
+        entityManager.flush();
+
+        assertEquals(4, consolidationService.consolidateCharacter(character.getId()));
+        UUID summaryId = onlyLiveMemory();
+
+        // 刚写入的概括不是陈旧记忆，下一次执行不会再概括它
+        assertEquals(0, consolidationService.consolidateCharacter(character.getId()));
+
+        // 概括衰减到陈旧阈值以下后与新的陈旧记忆一起整合
+        jdbcTemplate.update("UPDATE character_memories SET accessibility = 0.2 WHERE id = ?", summaryId);
+        for (int i = 0; i < 3; i++) {
+            memory(null, 0.1f, "剑", "山门");
+        }
+        entityManager.flush();
+
+        assertEquals(4, consolidationService.consolidateCharacter(character.getId()));
+        UUID replacement = onlyLiveMemory();
+        assertEquals(replacement, jdbcTemplate.queryForObject(
+                "SELECT consolidated_into FROM character_memories_archive WHERE id = ?", UUID.class, summaryId));
+    }
+
+    @Test
+    void overflowIsTakenOnlyFromEligibleMemories() {
+        properties.setWorkingSetSize(3);
+        when(aiService.chatWithOptions(anyString(), any(), any())).thenReturn("林风的日常琐事");
+        for (int i = 0; i < 5; i++) {
+            memory(CORE, 1.0f);
+        }
+        memory(null, 1.0f);
+        memory(null, 1.0f);
+        entityManager.flush();
+
+        // 超出上限，但可整合的记忆凑不成一个聚类：不选中该角色
+        assertEquals(0, consolidationService.consolidateCharacter(character.getId()));
+        verifyNoInteractions(aiService);
+
+        memory(null, 1.0f);
+        memory(null, 1.0f);
+        entityManager.flush();
+
+        // 超出 6 条，但只有 4 条可整合：全部概括为一条，核心记忆不动
+        assertEquals(4, consolidationService.consolidateCharacter(character.getId()));
+        assertEquals(5 + 1, liveMemories());
+
+        // 仍超出上限，但剩下的是核心记忆和新概括：上界为 workingSetSize + 核心记忆 + 未陈旧概括，不再重复选中
+        assertEquals(0, consolidationService.consolidateCharacter(character.getId()));
+        verify(aiService, times(1)).chatWithOptions(anyString(), any(), any());
+    }
+
+    private void memory(String memoryType, float accessibility, String... keywords) {
+        entityManager.persist(CharacterMemory.builder()
+                .character(character)
+                .memoryType(memoryType)
+                .memoryContent("记忆")
+                .keywords(List.of(keywords))
+                .accessibility(accessibility)
+                .accessCount(0)
+                .build());
+    }
+
+    private int liveMemories() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM character_memories WHERE character_id = ?",
+                Integer.class, character.getId());
+    }
+
+    private UUID onlyLiveMemory() {
+        List<UUID> ids = jdbcTemplate.queryForList("SELECT id FROM character_memories WHERE character_id = ?",
+                UUID.class, character.getId());
+        assertEquals(1, ids.size(), ids.toString());
+        return ids.get(0);
+    }
+}
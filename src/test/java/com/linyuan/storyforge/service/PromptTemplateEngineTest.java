@@ -0,0 +1,69 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.entity.PromptTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 提示词模板预编译测试
+ */
+class PromptTemplateEngineTest {
+
+    private static PromptTemplateEngine.CompiledTemplate compile(String content, List<String> required,
+                                                                 List<String> optional) {
+        PromptTemplate template = PromptTemplate.builder()
+                .name("chapter")
+                .templateContent(content)
+                .requiredVariables(required)
+                .optionalVariables(optional)
+                .build();
+        template.setUpdatedAt(LocalDateTime.of(2026, 1, 1, 0, 0));
+        return PromptTemplateEngine.compile(template);
+    }
+
+    @Test
+    void compilesIntoAlternatingSegments() {
+        PromptTemplateEngine.CompiledTemplate compiled = compile(
+                "为{{ character.name }}写一段{{tone}}的独白，参考{{tone}}。", List.of("character.name"), List.of());
+
+        assertArrayEquals(new String[]{"为", "写一段", "的独白，参考", "。"}, compiled.literals());
+        assertArrayEquals(new String[]{"character.name", "tone", "tone"}, compiled.variables());
+        assertEquals("为写一段的独白，参考。".length(), compiled.literalLength());
+        assertEquals(Set.of("character.name", "tone"), compiled.variableNames());
+        assertEquals("为林风写一段愤怒的独白，参考愤怒。",
+                compiled.render(Map.of("character.name", "林风", "tone", "愤怒")));
+    }
+
+    @Test
+    void keepsBracesThatAreNotPlaceholders() {
+        PromptTemplateEngine.CompiledTemplate compiled = compile(
+                "输出 JSON：{{\"name\": \"{{name}}\"}} {{ }} {{未闭合", List.of(), List.of());
+
+        assertArrayEquals(new String[]{"name"}, compiled.variables());
+        assertEquals("输出 JSON：{{\"name\": \"林风\"}} {{ }} {{未闭合", compiled.render(Map.of("name", "林风")));
+    }
+
+    @Test
+    void missingRequiredVariablesAreReportedTogether() {
+        PromptTemplateEngine.CompiledTemplate compiled = compile(
+                "{{worldview}}中的{{character}}，{{goal}}", List.of("worldview", "character"), List.of("goal"));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> compiled.render(Map.of("goal", "出发")));
+        assertTrue(error.getMessage().contains("[character, worldview]"), error.getMessage());
+
+        // 可选变量缺失或为 null 时按空值渲染
+        Map<String, Object> values = new HashMap<>();
+        values.put("worldview", "青云界");
+        values.put("character", "林风");
+        values.put("goal", null);
+        assertEquals("青云界中的林风，", compiled.render(values));
+    }
+}
@@ -0,0 +1,86 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 结构化输出增量解析测试
+ */
+class StructuredOutputParserTest {
+
+    private static final StructuredOutputParser<Map<String, Object>> PARSER =
+            StructuredOutputParser.<Map<String, Object>>builder()
+                    .field(List.of("name", "title"), String.class, (target, value) -> target.put("name", value))
+                    .field("basicInfo.age", Integer.class, (target, value) -> target.put("age", value))
+                    .field("tags", StructuredOutputParser.STRING_LIST, (target, value) -> target.put("tags", value))
+                    .build();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void parsesTokensSplitAcrossChunks() {
+        List<String> completed = new ArrayList<>();
+        Map<String, Object> target = new HashMap<>();
+        StructuredOutputParser.Session<Map<String, Object>> session =
+                PARSER.open(mapper, target, (field, value) -> completed.add(field));
+
+        StringBuilder output = new StringBuilder();
+        List<String> chunks = List.of(
+                "```json\n{\"na", "me\": \"林", "风\", \"basicInfo\": {\"a", "ge\": 1",
+                "8, \"ignored\": [1, {\"tags\": [\"x\"]}]}, \"tags\": [\"剑", "客\", \"少年\"]",
+                "}\n```\n以上是角色设定。");
+        boolean needMore = true;
+        for (String chunk : chunks) {
+            output.append(chunk);
+            needMore = session.accept(output);
+            if (chunk.startsWith("me")) {
+                // 字符串在下一个分块闭合前不会绑定
+                assertTrue(completed.isEmpty());
+            }
+        }
+
+        assertFalse(needMore, "根对象闭合后不再需要更多输出");
+        assertTrue(session.isComplete());
+        assertEquals(List.of("name", "basicInfo.age", "tags"), completed);
+        Map<String, Object> result = session.finish();
+        assertEquals("林风", result.get("name"));
+        assertEquals(18, result.get("age"));
+        assertEquals(List.of("剑客", "少年"), result.get("tags"));
+    }
+
+    @Test
+    void waitsForSurrogatePairSplitAcrossChunks() {
+        String json = "{\"name\": \"林风😀\"}";
+        int split = json.indexOf("😀") + 1;
+        StructuredOutputParser.Session<Map<String, Object>> session = PARSER.open(mapper, new HashMap<>(), null);
+
+        assertTrue(session.accept(json.substring(0, split)));
+        assertFalse(session.accept(json));
+        assertEquals("林风😀", session.finish().get("name"));
+    }
+
+    @Test
+    void aliasAndTypeMismatch() {
+        Map<String, Object> result = PARSER.parse(mapper,
+                "{\"title\": \"青云\", \"basicInfo\": {\"age\": \"不详\"}}", HashMap::new);
+
+        assertEquals("青云", result.get("name"));
+        assertFalse(result.containsKey("age"), "类型不符的字段跳过，不影响其他字段");
+    }
+
+    @Test
+    void incompleteOutputIsRejected() {
+        StructuredOutputParser.Session<Map<String, Object>> session = PARSER.open(mapper, new HashMap<>(), null);
+        session.accept("{\"name\": \"林");
+
+        assertThrows(IllegalArgumentException.class, session::finish);
+        assertThrows(IllegalArgumentException.class, () -> PARSER.parse(mapper, "没有 JSON", HashMap::new));
+    }
+}
@@ -0,0 +1,108 @@
+package com.linyuan.storyforge.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linyuan.storyforge.dto.TimelineSnapshotDTO;
+import com.linyuan.storyforge.repository.CharacterRepository;
+import com.linyuan.storyforge.repository.ProjectRepository;
+import com.linyuan.storyforge.repository.TimelineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * 时间线快照版本测试
+ * 版本经 JSON 往返后原样传回应能命中 notModified
+ */
+@ExtendWith(MockitoExtension.class)
+class TimelineSnapshotServiceTest {
+
+    private static final LocalDateTime LAST_UPDATED = LocalDateTime.of(2026, 10, 19, 8, 30, 15, 123_456_000);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Mock
+    private TimelineRepository timelineRepository;
+
+    @Mock
+    private ProjectRepository projectRepository;
+
+    @Mock
+    private CharacterRepository characterRepository;
+
+    private TimelineService timelineService;
+    private UUID projectId;
+
+    @BeforeEach
+    void setUp() {
+        timelineService = new TimelineService(timelineRepository, projectRepository, characterRepository,
+                new TimelineSnapshotService(timelineRepository), null, null);
+        projectId = UUID.randomUUID();
+        when(projectRepository.existsById(projectId)).thenReturn(true);
+        when(timelineRepository.findByProjectIdOrderByEventTimeAsc(projectId)).thenReturn(List.of());
+    }
+
+    @Test
+    void versionRoundTripsThroughJson() throws Exception {
+        when(timelineRepository.findVersionByProjectId(projectId)).thenReturn(version(LAST_UPDATED, 42));
+
+        TimelineSnapshotDTO first = timelineService.getTimelineSnapshot(projectId, null);
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(first));
+
+        // 字符串版本不受 JavaScript 数值精度（2^53）限制
+        assertTrue(json.get("version").isTextual(), json.toString());
+        String returned = json.get("version").asText();
+        assertEquals(first.getVersion(), returned);
+
+        TimelineSnapshotDTO second = timelineService.getTimelineSnapshot(projectId, returned);
+        assertTrue(second.isNotModified());
+        assertNull(second.getEvents());
+    }
+
+    @Test
+    void anyChangeProducesANewVersion() {
+        AtomicReference<TimelineRepository.TimelineVersion> marker =
+                new AtomicReference<>(version(LAST_UPDATED, 42));
+        when(timelineRepository.findVersionByProjectId(projectId)).thenAnswer(invocation -> marker.get());
+
+        String original = timelineService.getTimelineSnapshot(projectId, null).getVersion();
+
+        // 删除事件：最后更新时间不变，事件数减少
+        marker.set(version(LAST_UPDATED, 41));
+        TimelineSnapshotDTO deleted = timelineService.getTimelineSnapshot(projectId, original);
+
+        // 更新事件：事件数不变，最后更新时间推后 1 微秒
+        marker.set(version(LAST_UPDATED.plusNanos(1_000), 42));
+        TimelineSnapshotDTO updated = timelineService.getTimelineSnapshot(projectId, original);
+
+        assertFalse(deleted.isNotModified());
+        assertFalse(updated.isNotModified());
+        assertNotEquals(original, deleted.getVersion());
+        assertNotEquals(original, updated.getVersion());
+        assertNotEquals(deleted.getVersion(), updated.getVersion());
+    }
+
+    private static TimelineRepository.TimelineVersion version(LocalDateTime lastUpdated, long eventCount) {
+        return new TimelineRepository.TimelineVersion() {
+            @Override
+            public LocalDateTime getLastUpdated() {
+                return lastUpdated;
+            }
+
+            @Override
+            public long getEventCount() {
+                return eventCount;
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.linyuan.storyforge.service;
+
+import com.linyuan.storyforge.config.TokenizerProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 提示词 token 计数测试
+ * 没有分词器的模型按字符估算，校准系数按模型分别维护
+ */
+class TokenCounterTest {
+
+    private static final String DEEPSEEK = "deepseek-v3.1-250821";
+    private static final String ERNIE = "ernie-speed-128k";
+
+    @Test
+    void estimatesByCharacterClass() {
+        TokenCounter counter = new TokenCounter(new TokenizerProperties());
+
+        assertEquals(0, counter.count(""));
+        assertEquals(8, counter.count("林风拔剑而起，剑光如虹。")); // 12 × 0.6 向上取整
+        assertEquals(3, counter.count("0123456789"));
+    }
+
+    @Test
+    void calibrationConvergesTowardsReportedTokens() {
+        TokenCounter counter = new TokenCounter(new TokenizerProperties());
+        String prompt = "林".repeat(1000); // 估算 600 token
+
+        // 太短的样本不参与校准
+        counter.calibrate(DEEPSEEK, "林".repeat(100), 120);
+        assertEquals(1.0, counter.getCalibration(DEEPSEEK), 1e-9);
+
+        for (int i = 0; i < 100; i++) {
+            counter.calibrate(DEEPSEEK, prompt, 900);
+        }
+        assertEquals(1.5, counter.getCalibration(DEEPSEEK), 0.01);
+        assertEquals(900, counter.count(DEEPSEEK, prompt), 10);
+
+        // 比例被限制在 [0.5, 2.0]
+        for (int i = 0; i < 200; i++) {
+            counter.calibrate(DEEPSEEK, prompt, 6000);
+        }
+        assertEquals(2.0, counter.getCalibration(DEEPSEEK), 0.01);
+    }
+
+    @Test
+    void calibrationIsKeptPerModel() {
+        TokenCounter counter = new TokenCounter(new TokenizerProperties());
+        String prompt = "林".repeat(1000);
+
+        for (int i = 0; i < 100; i++) {
+            counter.calibrate(DEEPSEEK, prompt, 900);
+            counter.calibrate(ERNIE, prompt, 420);
+        }
+
+        // 两个模型交替调用，各自收敛到自己的分词比例
+        assertEquals(1.5, counter.getCalibration(DEEPSEEK), 0.01);
+        assertEquals(0.7, counter.getCalibration(ERNIE), 0.01);
+        assertEquals(900, counter.count(DEEPSEEK, prompt), 10);
+        assertEquals(420, counter.count(ERNIE, prompt), 10);
+
+        // 未指定模型时按默认模型计数
+        assertEquals(counter.count(DEEPSEEK, prompt), counter.count(prompt));
+    }
+
+    @Test
+    void fallsBackToEstimateWhenTokenizerCannotBeLoaded() {
+        TokenizerProperties properties = new TokenizerProperties();
+        properties.getFiles().put(DEEPSEEK, "/nonexistent/tokenizer.json");
+        TokenCounter counter = new TokenCounter(properties);
+
+        assertEquals(8, counter.count(DEEPSEEK, "林风拔剑而起，剑光如虹。"));
+        for (int i = 0; i < 100; i++) {
+            counter.calibrate(DEEPSEEK, "林".repeat(1000), 900);
+        }
+        assertEquals(1.5, counter.getCalibration(DEEPSEEK), 0.01);
+    }
+
+    @Test
+    void truncationRespectsCalibratedBudget() {
+        TokenCounter counter = new TokenCounter(new TokenizerProperties());
+        String text = "甲乙丙丁戊己庚辛壬癸";
+
+        assertEquals("甲乙丙丁戊", counter.truncateHead(text, 3));
+        assertEquals("己庚辛壬癸", counter.truncateTail(text, 3));
+        assertSame(text, counter.truncateHead(text, 100));
+
+        for (int i = 0; i < 200; i++) {
+            counter.calibrate(DEEPSEEK, "林".repeat(1000), 1200);
+        }
+        // 默认模型校准系数 2.0 后同样的预算只能容纳一半字符
+        assertEquals("甲乙", counter.truncateHead(text, 3));
+    }
+}
@@ -0,0 +1,63 @@
+package com.linyuan.storyforge.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式增量验证测试
+ */
+class StreamingConsistencyCheckerTest {
+
+    private static final StreamingConsistencyChecker.Rule MAGIC = new StreamingConsistencyChecker.Rule(
+            "魔法师", "世界观中不存在魔法", StreamingConsistencyChecker.Scope.WORLDVIEW, "青云界");
+    private static final StreamingConsistencyChecker.Rule GUN = new StreamingConsistencyChecker.Rule(
+            "Gun", "世界观中不存在火器", StreamingConsistencyChecker.Scope.WORLDVIEW, "青云界");
+
+    @Test
+    void termSplitAcrossCheckIntervalsIsFound() {
+        StreamingConsistencyChecker checker = new StreamingConsistencyChecker(List.of(MAGIC), 4);
+
+        // 第一次检查扫描到"来了一位魔"，术语的后半部分在下一个间隔才到达
+        assertTrue(checker.accept("来了一位魔"));
+        assertEquals(5, checker.getScannedLength());
+        assertTrue(checker.accept("来了一位魔法"));
+        assertFalse(checker.accept("来了一位魔法师，手"));
+
+        assertSame(MAGIC, checker.getViolated());
+        assertFalse(checker.accept("来了一位魔法师，手持长杖"), "命中后不再继续");
+    }
+
+    @Test
+    void finishScansTailShorterThanInterval() {
+        StreamingConsistencyChecker checker = new StreamingConsistencyChecker(List.of(MAGIC), 48);
+
+        assertTrue(checker.accept("夜色中走来一位魔法师"));
+        assertNull(checker.getViolated(), "不足一个间隔时不检查");
+        assertFalse(checker.finish("夜色中走来一位魔法师"));
+        assertSame(MAGIC, checker.getViolated());
+    }
+
+    @Test
+    void matchingIsCaseInsensitive() {
+        StreamingConsistencyChecker checker = new StreamingConsistencyChecker(List.of(MAGIC, GUN), 1);
+
+        assertFalse(checker.accept("他掏出一把 GUN"));
+        assertSame(GUN, checker.getViolated());
+    }
+
+    @Test
+    void cleanContentPasses() {
+        StreamingConsistencyChecker checker = new StreamingConsistencyChecker(List.of(MAGIC), 2);
+
+        String text = "";
+        for (String chunk : List.of("林风", "拔剑", "而起，", "剑光", "如虹。")) {
+            text += chunk;
+            assertTrue(checker.accept(text));
+        }
+        assertTrue(checker.finish(text));
+        assertNull(checker.getViolated());
+    }
+}